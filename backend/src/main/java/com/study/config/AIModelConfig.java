@@ -5,103 +5,264 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Registry of the AI models declared in models.json.
+ *
+ * The parsed file is an immutable {@link Snapshot} (models by id, the default model and
+ * the light-task routing) that lookups read without locking or copying; a reload parses
+ * the file into a new snapshot and swaps it in atomically. models.json comes from the
+ * classpath, or from ai.models.path when set. That file is checked for changes every
+ * ai.models.watch-interval-ms and can be reloaded on demand (POST /ai/models/reload).
+ * A file that fails to parse or declares no models leaves the current snapshot in place;
+ * at startup the bundled classpath copy stands in until the file is fixed.
+ */
 @Slf4j
 @Component
 public class AIModelConfig {
 
+    /** Token budget for retrieved context when a model doesn't declare contextTokens */
+    public static final int DEFAULT_CONTEXT_TOKENS = 1500;
+
+    /**
+     * One parsed models.json. {@code version} increases with every swap, so derived data
+     * (like the serialized /ai/models payload) can be cached per snapshot.
+     */
+    public record Snapshot(long version, String defaultModelId, AIModel defaultModel, List<AIModel> models,
+                           Map<String, AIModel> byId, Map<String, String> routing) {
+    }
+
     private final ObjectMapper objectMapper;
-    private String defaultModelId;
-    private final List<AIModel> models = new ArrayList<>();
+    private final Path modelsPath;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    /** Modification time of ai.models.path when it was last loaded */
+    private volatile FileTime loadedModified;
+    /** ai.models.path could not be stat'ed at the last check (reported once) */
+    private volatile boolean pathUnreadable;
 
-    public AIModelConfig(ObjectMapper objectMapper) {
+    public AIModelConfig(ObjectMapper objectMapper,
+                         @Value("${ai.models.path:}") String modelsPath) {
         this.objectMapper = objectMapper;
+        this.modelsPath = modelsPath == null || modelsPath.isBlank() ? null : Path.of(modelsPath);
     }
 
     @PostConstruct
     public void init() {
         try {
-            ClassPathResource resource = new ClassPathResource("models.json");
-            InputStream is = resource.getInputStream();
-            JsonNode root = objectMapper.readTree(is);
-
-            this.defaultModelId = root.get("defaultModel").asText();
-
-            JsonNode modelsNode = root.get("models");
-            if (modelsNode != null && modelsNode.isArray()) {
-                for (JsonNode m : modelsNode) {
-                    AIModel model = new AIModel();
-                    model.setId(m.get("id").asText());
-                    model.setName(m.get("name").asText());
-                    model.setProvider(m.has("provider") ? m.get("provider").asText() : "");
-                    model.setDescription(m.has("description") ? m.get("description").asText() : "");
-                    model.setMaxTokens(m.has("maxTokens") ? m.get("maxTokens").asInt() : 16384);
-                    model.setSupportsStreaming(m.has("supportsStreaming") && m.get("supportsStreaming").asBoolean());
-                    model.setSupportsThinking(m.has("supportsThinking") && m.get("supportsThinking").asBoolean());
-                    model.setCategory(m.has("category") ? m.get("category").asText() : "general");
-
-                    List<String> tags = new ArrayList<>();
-                    if (m.has("tags") && m.get("tags").isArray()) {
-                        for (JsonNode t : m.get("tags")) {
-                            tags.add(t.asText());
-                        }
-                    }
-                    model.setTags(tags);
-                    models.add(model);
-                }
+            reload();
+            return;
+        } catch (Exception e) {
+            if (modelsPath == null) {
+                log.error("Failed to load models.json, using fallback defaults", e);
+            } else {
+                log.error("Failed to load {}, using the bundled models.json until it is fixed", modelsPath, e);
             }
+        }
+        if (modelsPath != null) {
+            try {
+                swap(load(null), null);
+                return;
+            } catch (Exception e) {
+                log.error("Failed to load the bundled models.json, using fallback defaults", e);
+            }
+        }
+        AIModel fallback = new AIModel();
+        fallback.setId("minimaxai/minimax-m2.1");
+        fallback.setName("MiniMax M2.1");
+        fallback.setProvider("MiniMax");
+        fallback.setBackend("nvidia");
+        fallback.setDescription("Default model");
+        fallback.setMaxTokens(16384);
+        fallback.setContextTokens(DEFAULT_CONTEXT_TOKENS);
+        fallback.setSupportsStreaming(true);
+        fallback.setCategory("general");
+        fallback.setTags(List.of("default"));
+        snapshot.set(new Snapshot(versions.incrementAndGet(), fallback.getId(), fallback, List.of(fallback),
+                Map.of(fallback.getId(), fallback), Map.of()));
+    }
+
+    /**
+     * Read models.json again and swap in the result.
+     *
+     * @throws IOException if the file can't be read or parsed, or declares no models;
+     *                     the current snapshot is kept
+     */
+    public synchronized Snapshot reload() throws IOException {
+        FileTime modified = modelsPath != null ? Files.getLastModifiedTime(modelsPath) : null;
+        return swap(load(modelsPath), modified);
+    }
 
-            log.info("Loaded {} AI models from models.json, default: {}", models.size(), defaultModelId);
+    /**
+     * Reload ai.models.path when its modification time changes. A missing or unreadable
+     * path is reported once, not on every tick, and picked up as soon as it is readable.
+     */
+    @Scheduled(fixedDelayString = "${ai.models.watch-interval-ms:5000}")
+    void reloadIfChanged() {
+        if (modelsPath == null) {
+            return;
+        }
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(modelsPath);
+        } catch (IOException e) {
+            if (!pathUnreadable) {
+                pathUnreadable = true;
+                log.warn("Cannot read {} ({}), keeping model registry version {}", modelsPath, e.toString(),
+                        snapshot.get().version());
+            }
+            return;
+        }
+        pathUnreadable = false;
+        if (modified.equals(loadedModified)) {
+            return;
+        }
+        try {
+            reload();
         } catch (Exception e) {
-            log.error("Failed to load models.json, using fallback defaults", e);
-            this.defaultModelId = "minimaxai/minimax-m2.1";
-            AIModel fallback = new AIModel();
-            fallback.setId(defaultModelId);
-            fallback.setName("MiniMax M2.1");
-            fallback.setProvider("MiniMax");
-            fallback.setDescription("Default model");
-            fallback.setMaxTokens(16384);
-            fallback.setSupportsStreaming(true);
-            fallback.setCategory("general");
-            fallback.setTags(List.of("default"));
-            models.add(fallback);
+            log.error("Failed to reload {}, keeping model registry version {}", modelsPath,
+                    snapshot.get().version(), e);
+            // Don't retry the same broken file on every tick
+            loadedModified = modified;
+        }
+    }
+
+    /** Parse models.json from {@code path}, or the bundled classpath copy when null */
+    private Snapshot load(Path path) throws IOException {
+        try (InputStream is = path != null
+                ? Files.newInputStream(path)
+                : new ClassPathResource("models.json").getInputStream()) {
+            Snapshot loaded = parse(objectMapper.readTree(is));
+            log.info("Loaded {} AI models from {} (version {}), default: {}, routed tasks: {}",
+                    loaded.models().size(), path != null ? path : "classpath:models.json",
+                    loaded.version(), loaded.defaultModelId(), loaded.routing().keySet());
+            return loaded;
+        }
+    }
+
+    private synchronized Snapshot swap(Snapshot loaded, FileTime modified) {
+        snapshot.set(loaded);
+        loadedModified = modified;
+        return loaded;
+    }
+
+    private Snapshot parse(JsonNode root) throws IOException {
+        JsonNode modelsNode = root.get("models");
+        if (root.get("defaultModel") == null || modelsNode == null || !modelsNode.isArray() || modelsNode.isEmpty()) {
+            throw new IOException("models.json needs a defaultModel and a non-empty models array");
         }
+        String defaultModelId = root.get("defaultModel").asText();
+
+        Map<String, AIModel> byId = new LinkedHashMap<>();
+        for (JsonNode m : modelsNode) {
+            AIModel model = new AIModel();
+            model.setId(m.get("id").asText());
+            model.setName(m.get("name").asText());
+            model.setProvider(m.has("provider") ? m.get("provider").asText() : "");
+            model.setBackend(m.has("backend") ? m.get("backend").asText() : "nvidia");
+            model.setDescription(m.has("description") ? m.get("description").asText() : "");
+            model.setMaxTokens(m.has("maxTokens") ? m.get("maxTokens").asInt() : 16384);
+            model.setContextTokens(m.has("contextTokens") ? m.get("contextTokens").asInt() : DEFAULT_CONTEXT_TOKENS);
+            model.setSupportsStreaming(m.has("supportsStreaming") && m.get("supportsStreaming").asBoolean());
+            model.setSupportsThinking(m.has("supportsThinking") && m.get("supportsThinking").asBoolean());
+            model.setCategory(m.has("category") ? m.get("category").asText() : "general");
+
+            List<String> tags = new ArrayList<>();
+            if (m.has("tags") && m.get("tags").isArray()) {
+                for (JsonNode t : m.get("tags")) {
+                    tags.add(t.asText());
+                }
+            }
+            model.setTags(List.copyOf(tags));
+            byId.put(model.getId(), model);
+        }
+
+        Map<String, String> routing = new HashMap<>();
+        JsonNode routingNode = root.get("routing");
+        if (routingNode != null && routingNode.isObject()) {
+            routingNode.fields().forEachRemaining(route -> {
+                if (byId.containsKey(route.getValue().asText())) {
+                    routing.put(route.getKey(), route.getValue().asText());
+                } else {
+                    log.warn("models.json routes '{}' to unknown model {}", route.getKey(), route.getValue().asText());
+                }
+            });
+        }
+
+        AIModel defaultModel = byId.getOrDefault(defaultModelId, byId.values().iterator().next());
+        return new Snapshot(versions.incrementAndGet(), defaultModelId, defaultModel,
+                List.copyOf(byId.values()), Map.copyOf(byId), Map.copyOf(routing));
+    }
+
+    /** The current registry; read it once when several lookups must agree. */
+    public Snapshot snapshot() {
+        return snapshot.get();
     }
 
     public String getDefaultModelId() {
-        return defaultModelId;
+        return snapshot.get().defaultModelId();
     }
 
     public List<AIModel> getModels() {
-        return List.copyOf(models);
+        return snapshot.get().models();
     }
 
     public Optional<AIModel> getModelById(String id) {
-        return models.stream().filter(m -> m.getId().equals(id)).findFirst();
+        return id == null ? Optional.empty() : Optional.ofNullable(snapshot.get().byId().get(id));
     }
 
     public AIModel getDefaultModel() {
-        return getModelById(defaultModelId).orElse(models.get(0));
+        return snapshot.get().defaultModel();
     }
 
     /** Resolve a model ID: if null/empty, return default; if invalid, return default */
     public String resolveModelId(String modelId) {
-        if (modelId == null || modelId.isBlank()) {
-            return defaultModelId;
+        Snapshot current = snapshot.get();
+        if (modelId == null || modelId.isBlank() || !current.byId().containsKey(modelId)) {
+            return current.defaultModelId();
         }
-        return getModelById(modelId).map(AIModel::getId).orElse(defaultModelId);
+        return modelId;
     }
 
     public int resolveMaxTokens(String modelId) {
-        String resolved = resolveModelId(modelId);
-        return getModelById(resolved).map(AIModel::getMaxTokens).orElse(16384);
+        AIModel model = resolve(modelId);
+        return model != null ? model.getMaxTokens() : 16384;
+    }
+
+    /** Token budget for retrieved (RAG) context in prompts sent to this model */
+    public int resolveContextTokens(String modelId) {
+        AIModel model = resolve(modelId);
+        return model != null ? model.getContextTokens() : DEFAULT_CONTEXT_TOKENS;
+    }
+
+    /** Model routed for a light task in models.json, or null if the task isn't routed */
+    public String getRoutedModelId(String task) {
+        return snapshot.get().routing().get(task);
+    }
+
+    /** The model itself, else the declared default model; null if the default isn't declared */
+    private AIModel resolve(String modelId) {
+        Snapshot current = snapshot.get();
+        AIModel model = modelId != null ? current.byId().get(modelId) : null;
+        return model != null ? model : current.byId().get(current.defaultModelId());
     }
 
     @Data
@@ -109,8 +270,11 @@ public class AIModelConfig {
         private String id;
         private String name;
         private String provider;
+        /** Inference backend serving this model: "nvidia" (default) or "local" */
+        private String backend;
         private String description;
         private int maxTokens;
+        private int contextTokens;
         private boolean supportsStreaming;
         private boolean supportsThinking;
         private String category;
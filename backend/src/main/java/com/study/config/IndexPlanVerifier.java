@@ -0,0 +1,254 @@
+package com.study.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Index plan for the derived repository queries.
+ *
+ * Every derived finder/counter is turned into a query shape (filter fields per OR branch
+ * plus sort). On startup each shape is explained against the live database and any
+ * winning plan containing a COLLSCAN or SORT stage is reported. The same shapes back
+ * RepositoryIndexCoverageTest, which fails when a repository method has no supporting
+ * index declared on its entity.
+ */
+@Slf4j
+@Component
+public class IndexPlanVerifier {
+
+    /** One query a repository method issues. Each branch is a set of ANDed fields; branches are ORed. */
+    public record QueryShape(String repository, String method, Class<?> domainType,
+                             List<List<Part>> branches, Sort sort) {
+
+        public String describe() {
+            return repository + "." + method;
+        }
+    }
+
+    private final ListableBeanFactory beanFactory;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${mongo.index-check.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mongo.index-check.fail-on-violation:false}")
+    private boolean failOnViolation;
+
+    public IndexPlanVerifier(ListableBeanFactory beanFactory, MongoTemplate mongoTemplate) {
+        this.beanFactory = beanFactory;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() {
+        if (!enabled) {
+            return;
+        }
+        Repositories repositories = new Repositories(beanFactory);
+        List<String> violations = new ArrayList<>();
+        int checked = 0;
+
+        for (Class<?> domainType : repositories) {
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+            String collection = mongoTemplate.getCollectionName(domainType);
+            for (QueryShape shape : queryShapes(information.getRepositoryInterface(), domainType)) {
+                Document plan;
+                try {
+                    plan = mongoTemplate.getCollection(collection)
+                            .find(filter(shape))
+                            .sort(sortDocument(shape.sort()))
+                            .explain();
+                } catch (Exception e) {
+                    log.warn("Index plan check skipped, explain() is not available: {}", e.getMessage());
+                    return;
+                }
+                checked++;
+                Set<String> stages = new LinkedHashSet<>();
+                collectStages(plan.get("queryPlanner", Document.class).get("winningPlan"), stages);
+                if (stages.contains("COLLSCAN") || stages.contains("SORT")) {
+                    violations.add(shape.describe() + " " + stages);
+                }
+            }
+        }
+
+        if (violations.isEmpty()) {
+            log.info("Index plan check: {} repository queries use an index with no in-memory sort", checked);
+            return;
+        }
+        violations.forEach(violation -> log.warn("Query without a supporting index: {}", violation));
+        if (failOnViolation) {
+            throw new IllegalStateException(violations.size() + " repository queries have no supporting index");
+        }
+    }
+
+    /**
+     * Query shapes of the derived query methods declared on a repository interface.
+     * {@code @Query} methods and methods that are not derived queries are skipped.
+     */
+    public static List<QueryShape> queryShapes(Class<?> repositoryInterface, Class<?> domainType) {
+        List<QueryShape> shapes = new ArrayList<>();
+        for (Method method : repositoryInterface.getDeclaredMethods()) {
+            if (method.isDefault() || Modifier.isStatic(method.getModifiers())
+                    || method.isAnnotationPresent(Query.class)) {
+                continue;
+            }
+            PartTree tree = new PartTree(method.getName(), domainType);
+            List<List<Part>> branches = tree.stream()
+                    .map(orPart -> orPart.stream().toList())
+                    .toList();
+            // A Pageable sort is chosen by the caller, so only the filter is checked
+            boolean pageable = Arrays.asList(method.getParameterTypes()).contains(Pageable.class);
+            shapes.add(new QueryShape(repositoryInterface.getSimpleName(), method.getName(), domainType,
+                    branches, pageable ? Sort.unsorted() : tree.getSort()));
+        }
+        return shapes;
+    }
+
+    /**
+     * True if one index serves every branch of the shape: it starts with a queried field
+     * and, when the query sorts, continues with the sort keys right after its equality prefix.
+     *
+     * @param indexes key documents of the entity's indexes, e.g. {userId: 1, createdAt: -1}
+     */
+    public static boolean isSupported(QueryShape shape, List<Document> indexes) {
+        for (List<Part> branch : shape.branches()) {
+            if (indexes.stream().noneMatch(index -> supports(index, branch, shape.sort()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean supports(Document index, List<Part> branch, Sort sort) {
+        List<String> keys = new ArrayList<>(index.keySet());
+        Set<String> equality = new HashSet<>();
+        Set<String> queried = new HashSet<>();
+        for (Part part : branch) {
+            String field = fieldName(part);
+            queried.add(field);
+            if (isEquality(part.getType())) {
+                equality.add(field);
+            }
+        }
+        if (keys.isEmpty() || !queried.contains(keys.get(0))) {
+            return false;
+        }
+        if (sort.isUnsorted()) {
+            return true;
+        }
+
+        int position = 0;
+        while (position < keys.size() && equality.contains(keys.get(position))) {
+            position++;
+        }
+        Integer direction = null;
+        for (Sort.Order order : sort) {
+            if (position >= keys.size() || !keys.get(position).equals(fieldName(order.getProperty()))) {
+                return false;
+            }
+            int indexDirection = ((Number) index.get(keys.get(position))).intValue();
+            int relative = (order.isAscending() ? 1 : -1) * indexDirection;
+            if (direction != null && direction != relative) {
+                return false;
+            }
+            direction = relative;
+            position++;
+        }
+        return true;
+    }
+
+    private static boolean isEquality(Part.Type type) {
+        return switch (type) {
+            case SIMPLE_PROPERTY, TRUE, FALSE, IS_NULL -> true;
+            default -> false;
+        };
+    }
+
+    private static String fieldName(Part part) {
+        return fieldName(part.getProperty().toDotPath());
+    }
+
+    private static String fieldName(String property) {
+        return "id".equals(property) ? "_id" : property;
+    }
+
+    /** Filter with placeholder values; the plan depends on the shape, not the values. */
+    private static Document filter(QueryShape shape) {
+        List<Document> branches = new ArrayList<>();
+        for (List<Part> branch : shape.branches()) {
+            Document and = new Document();
+            for (Part part : branch) {
+                Object value = placeholder(part);
+                and.put(fieldName(part), switch (part.getType()) {
+                    case GREATER_THAN -> new Document("$gt", value);
+                    case GREATER_THAN_EQUAL, AFTER -> new Document("$gte", value);
+                    case LESS_THAN, BEFORE -> new Document("$lt", value);
+                    case LESS_THAN_EQUAL -> new Document("$lte", value);
+                    case TRUE -> true;
+                    case FALSE -> false;
+                    case IS_NULL -> null;
+                    default -> value;
+                });
+            }
+            branches.add(and);
+        }
+        return branches.size() == 1 ? branches.get(0) : new Document("$or", branches);
+    }
+
+    private static Object placeholder(Part part) {
+        Class<?> type = part.getProperty().getLeafType();
+        if ("_id".equals(fieldName(part))) {
+            return new ObjectId();
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0].toString();
+        }
+        if (Number.class.isAssignableFrom(type) || type.isPrimitive() && type != boolean.class) {
+            return 0;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return false;
+        }
+        if (type == LocalDate.class || type == LocalDateTime.class || type == Date.class) {
+            return new Date();
+        }
+        return "index-check";
+    }
+
+    private static Document sortDocument(Sort sort) {
+        Document document = new Document();
+        sort.forEach(order -> document.put(fieldName(order.getProperty()), order.isAscending() ? 1 : -1));
+        return document;
+    }
+
+    private static void collectStages(Object node, Set<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+}
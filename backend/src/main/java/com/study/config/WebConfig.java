@@ -0,0 +1,37 @@
+package com.study.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.observability.AIMetrics;
+import com.study.security.RateLimitInterceptor;
+import com.study.security.RateLimiter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final RateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+    private final AIMetrics metrics;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimit(RateLimiter.Endpoint.CHAT))
+                .addPathPatterns("/chat/send");
+        registry.addInterceptor(rateLimit(RateLimiter.Endpoint.DOUBT))
+                .addPathPatterns("/doubts", "/doubts/stream", "/jobs/doubts");
+        registry.addInterceptor(rateLimit(RateLimiter.Endpoint.ROADMAP))
+                .addPathPatterns("/roadmaps", "/roadmaps/stream", "/jobs/roadmaps");
+        registry.addInterceptor(rateLimit(RateLimiter.Endpoint.CONTENT))
+                .addPathPatterns("/roadmaps/topics/*/generate-content", "/roadmaps/topics/*/generate-content/stream",
+                        "/roadmaps/*/generate-content/stream",
+                        "/jobs/topics/*/content");
+    }
+
+    private RateLimitInterceptor rateLimit(RateLimiter.Endpoint endpoint) {
+        return new RateLimitInterceptor(rateLimiter, endpoint, objectMapper, metrics);
+    }
+}
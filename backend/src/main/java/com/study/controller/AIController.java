@@ -1,15 +1,24 @@
 package com.study.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.study.config.AIModelConfig;
 import com.study.dto.ApiResponse;
+import com.study.security.UserPrincipal;
+import com.study.service.LLMProviderRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -18,38 +27,102 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AIController {
 
+    /** Serialized GET /ai/models response for one registry snapshot */
+    private record ModelsPayload(long version, String body, String etag) {
+    }
+
     private final AIModelConfig modelConfig;
+    private final LLMProviderRegistry providers;
+    private final ObjectMapper objectMapper;
+    private final AtomicReference<ModelsPayload> payload = new AtomicReference<>();
 
+    /**
+     * The model list, serialized once per registry snapshot. Clients revalidate with
+     * If-None-Match and get 304 while models.json is unchanged.
+     */
     @GetMapping("/models")
-    public ResponseEntity<ApiResponse<Map<String, Object>>> getModels() {
+    public ResponseEntity<String> getModels(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            // Serialize models to plain Maps so Jackson has no trouble with inner classes
-            List<Map<String, Object>> modelList = modelConfig.getModels().stream()
-                    .map(m -> {
-                        Map<String, Object> map = new LinkedHashMap<>();
-                        map.put("id", m.getId());
-                        map.put("name", m.getName());
-                        map.put("provider", m.getProvider());
-                        map.put("description", m.getDescription());
-                        map.put("maxTokens", m.getMaxTokens());
-                        map.put("supportsStreaming", m.isSupportsStreaming());
-                        map.put("supportsThinking", m.isSupportsThinking());
-                        map.put("category", m.getCategory());
-                        map.put("tags", m.getTags());
-                        return map;
-                    })
-                    .collect(Collectors.toList());
-
-            Map<String, Object> result = new LinkedHashMap<>();
-            result.put("defaultModel", modelConfig.getDefaultModelId());
-            result.put("models", modelList);
-
-            log.debug("GET /ai/models — returning {} models, default={}", modelList.size(), modelConfig.getDefaultModelId());
-            return ResponseEntity.ok(ApiResponse.success(result));
+            ModelsPayload current = currentPayload();
+            if (ifNoneMatch != null && ifNoneMatch.contains(current.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(current.etag())
+                        .cacheControl(CacheControl.noCache())
+                        .build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(current.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(current.body());
         } catch (Exception e) {
             log.error("Failed to fetch AI models", e);
             return ResponseEntity.internalServerError()
-                    .body(ApiResponse.error("Failed to load AI models: " + e.getMessage()));
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("{\"success\":false,\"message\":\"Failed to load AI models\"}");
+        }
+    }
+
+    /**
+     * Re-read models.json without a restart (admins only, see SecurityConfig).
+     */
+    @PostMapping("/models/reload")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> reloadModels(
+            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+
+        log.info("POST /ai/models/reload - User: {}", userPrincipal.getId());
+        try {
+            AIModelConfig.Snapshot loaded = modelConfig.reload();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("version", loaded.version());
+            result.put("defaultModel", loaded.defaultModelId());
+            result.put("models", loaded.models().size());
+            return ResponseEntity.ok(ApiResponse.success("Model registry reloaded", result));
+        } catch (Exception e) {
+            log.error("Failed to reload models.json", e);
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Failed to reload models.json: " + e.getMessage()));
         }
     }
+
+    private ModelsPayload currentPayload() throws Exception {
+        AIModelConfig.Snapshot snapshot = modelConfig.snapshot();
+        ModelsPayload cached = payload.get();
+        if (cached != null && cached.version() == snapshot.version()) {
+            return cached;
+        }
+
+        // Serialize models to plain Maps so Jackson has no trouble with inner classes.
+        // Local models aren't offered unless a local inference server is configured
+        List<Map<String, Object>> modelList = snapshot.models().stream()
+                .filter(m -> LLMProviderRegistry.NVIDIA.equals(m.getBackend()) || providers.isAvailable(m.getBackend()))
+                .map(m -> {
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    map.put("id", m.getId());
+                    map.put("name", m.getName());
+                    map.put("provider", m.getProvider());
+                    map.put("backend", m.getBackend());
+                    map.put("description", m.getDescription());
+                    map.put("maxTokens", m.getMaxTokens());
+                    map.put("supportsStreaming", m.isSupportsStreaming());
+                    map.put("supportsThinking", m.isSupportsThinking());
+                    map.put("category", m.getCategory());
+                    map.put("tags", m.getTags());
+                    return map;
+                })
+                .collect(Collectors.toList());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("defaultModel", snapshot.defaultModelId());
+        result.put("models", modelList);
+
+        String body = objectMapper.writeValueAsString(ApiResponse.success(result));
+        String etag = "\"" + DigestUtils.md5DigestAsHex(body.getBytes(StandardCharsets.UTF_8)) + "\"";
+        ModelsPayload built = new ModelsPayload(snapshot.version(), body, etag);
+        payload.set(built);
+        log.debug("Serialized /ai/models for registry version {}: {} models, default={}",
+                snapshot.version(), modelList.size(), snapshot.defaultModelId());
+        return built;
+    }
 }
@@ -2,10 +2,15 @@ package com.study.controller;
 
 import com.study.dto.ApiResponse;
 import com.study.dto.ChatRequest;
+import com.study.dto.KeysetPage;
 import com.study.model.ChatMessage;
 import com.study.model.ChatSession;
+import com.study.observability.AIMetrics;
 import com.study.security.UserPrincipal;
 import com.study.service.ChatService;
+import com.study.service.ResumableStreamHub;
+import com.study.util.KeysetCursor;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
@@ -25,34 +30,46 @@ import java.util.Map;
 public class ChatController {
 
     private final ChatService chatService;
+    private final ResumableStreamHub streamHub;
+    private final AIMetrics metrics;
 
     /**
      * Send a message and stream the AI response via SSE.
      * Creates a new session if sessionId is null in the request body.
+     * The answer keeps generating if the connection drops; resume it with
+     * GET /streams/{X-Stream-Id} and Last-Event-ID.
      */
     @PostMapping(value = "/send", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<String>> sendMessage(
             @AuthenticationPrincipal UserPrincipal userPrincipal,
-            @RequestBody ChatRequest request) {
+            @RequestBody ChatRequest request,
+            HttpServletResponse response) {
 
         log.info("POST /chat/send - User: {}, Session: {}, Model: {}",
                 userPrincipal.getId(),
                 request.getSessionId() != null ? request.getSessionId() : "NEW",
                 request.getModel());
 
-        return chatService.sendMessageStream(userPrincipal.getId(), request);
+        ResumableStreamHub.Started stream = streamHub.start(userPrincipal.getId(),
+                chatService.sendMessageStream(userPrincipal.getId(), request));
+        response.setHeader(ResumableStreamHub.STREAM_ID_HEADER, stream.streamId());
+        return metrics.instrumentSse("/chat/send", stream.events());
     }
 
     /**
-     * List all chat sessions for the current user.
+     * List chat sessions for the current user, most recently active first.
+     * Pass the X-Next-Cursor response header back as {@code cursor} for the next page.
      */
     @GetMapping("/sessions")
     public ResponseEntity<ApiResponse<List<ChatSession>>> getSessions(
-            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
 
-        log.info("GET /chat/sessions - User: {}", userPrincipal.getId());
-        List<ChatSession> sessions = chatService.getUserSessions(userPrincipal.getId());
-        return ResponseEntity.ok(ApiResponse.success(sessions));
+        log.info("GET /chat/sessions - User: {}, Limit: {}, Cursor: {}", userPrincipal.getId(), limit, cursor);
+        KeysetPage<ChatSession> page = chatService.listSessions(
+                userPrincipal.getId(), cursor, KeysetCursor.clampLimit(limit));
+        return ResponseEntity.ok().headers(page.headers()).body(ApiResponse.success(page.items()));
     }
 
     /**
@@ -68,6 +85,20 @@ public class ChatController {
         return ResponseEntity.ok(ApiResponse.success(messages));
     }
 
+    /**
+     * Stop the answer currently being generated for a session (the stop button).
+     * The running stream ends with a "done" event and the partial answer is kept.
+     */
+    @PostMapping("/sessions/{sessionId}/cancel")
+    public ResponseEntity<ApiResponse<Map<String, Boolean>>> cancelGeneration(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @PathVariable String sessionId) {
+
+        log.info("POST /chat/sessions/{}/cancel - User: {}", sessionId, userPrincipal.getId());
+        boolean cancelled = chatService.cancelGeneration(sessionId, userPrincipal.getId());
+        return ResponseEntity.ok(ApiResponse.success(Map.of("cancelled", cancelled)));
+    }
+
     /**
      * Delete a chat session and all its messages.
      */
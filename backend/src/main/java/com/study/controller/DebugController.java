@@ -0,0 +1,35 @@
+package com.study.controller;
+
+import com.study.dto.ApiResponse;
+import com.study.observability.SlowTraceExporter;
+import com.study.security.UserPrincipal;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/debug")
+@RequiredArgsConstructor
+public class DebugController {
+
+    private final SlowTraceExporter traceExporter;
+
+    /**
+     * Slowest recent request traces with their span breakdown
+     * (repository calls, context assembly, upstream LLM call, post-processing).
+     * Admins only (see SecurityConfig): the traces cover every user's requests.
+     */
+    @GetMapping("/traces/slowest")
+    public ResponseEntity<ApiResponse<List<SlowTraceExporter.TraceView>>> getSlowestTraces(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        log.info("GET /debug/traces/slowest - User: {}, Limit: {}", userPrincipal.getId(), limit);
+        return ResponseEntity.ok(ApiResponse.success(traceExporter.slowest(Math.max(1, Math.min(limit, 50)))));
+    }
+}
@@ -1,15 +1,25 @@
 package com.study.controller;
 
 import com.study.dto.ApiResponse;
+import com.study.dto.DoubtDetail;
 import com.study.dto.DoubtRequest;
-import com.study.model.UserInteraction;
+import com.study.dto.DoubtSummary;
+import com.study.dto.KeysetPage;
+import com.study.observability.AIMetrics;
 import com.study.security.UserPrincipal;
 import com.study.service.DoubtService;
+import com.study.service.IdempotencyService;
+import com.study.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Map;
@@ -21,28 +31,79 @@ import java.util.Map;
 public class DoubtController {
 
     private final DoubtService doubtService;
+    private final IdempotencyService idempotency;
+    private final AIMetrics metrics;
 
     @PostMapping
     public ResponseEntity<ApiResponse<Map<String, Object>>> askDoubt(
             @AuthenticationPrincipal UserPrincipal userPrincipal,
-            @RequestBody DoubtRequest request) {
+            @RequestBody DoubtRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         
         log.info("POST /doubts - User: {}, Doubt: '{}'", userPrincipal.getId(), 
                 request.getDoubt() != null ? request.getDoubt().substring(0, Math.min(50, request.getDoubt().length())) : "null");
-        Map<String, Object> response = doubtService.solveDoubt(userPrincipal.getId(), request);
+        Map<String, Object> response = idempotency.execute(userPrincipal.getId(), idempotencyKey, "POST /doubts", request,
+                () -> doubtService.solveDoubt(userPrincipal.getId(), request));
         log.info("Doubt processed: resolved={}", response.get("resolved"));
         return ResponseEntity.ok(ApiResponse.success("Doubt processed successfully", response));
     }
 
+    /**
+     * Ask a doubt and stream the answer via SSE.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> askDoubtStream(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @RequestBody DoubtRequest request) {
+        
+        log.info("POST /doubts/stream - User: {}, Doubt: '{}'", userPrincipal.getId(), 
+                request.getDoubt() != null ? request.getDoubt().substring(0, Math.min(50, request.getDoubt().length())) : "null");
+        return metrics.instrumentSse("/doubts/stream", doubtService.solveDoubtStream(userPrincipal.getId(), request));
+    }
+
+    /**
+     * Doubt history, newest first. Pass the X-Next-Cursor response header back
+     * as {@code cursor} to fetch the next page.
+     */
     @GetMapping("/history")
-    public ResponseEntity<ApiResponse<List<UserInteraction>>> getDoubtHistory(
+    public ResponseEntity<ApiResponse<List<DoubtSummary>>> getDoubtHistory(
             @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "20") int limit) {
         
-        log.info("GET /doubts/history - User: {}, Limit: {}", userPrincipal.getId(), limit);
-        List<UserInteraction> history = doubtService.getDoubtHistory(userPrincipal.getId(), limit);
-        log.info("Returning {} history items", history.size());
-        return ResponseEntity.ok(ApiResponse.success(history));
+        log.info("GET /doubts/history - User: {}, Limit: {}, Cursor: {}", userPrincipal.getId(), limit, cursor);
+        KeysetPage<DoubtSummary> page = doubtService.listDoubtHistory(
+                userPrincipal.getId(), cursor, KeysetCursor.clampLimit(limit));
+        log.info("Returning {} history items", page.items().size());
+        return ResponseEntity.ok().headers(page.headers()).body(ApiResponse.success(page.items()));
+    }
+
+    /**
+     * Full doubt history as newline-delimited JSON, streamed as it is read.
+     */
+    @GetMapping(value = "/history/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportDoubtHistory(
+            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+
+        String userId = userPrincipal.getId();
+        log.info("GET /doubts/history/export - User: {}", userId);
+        StreamingResponseBody body = out -> {
+            long written = doubtService.exportDoubtHistory(userId, out);
+            log.info("Exported {} doubts for user {}", written, userId);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"doubt-history.ndjson\"")
+                .body(body);
+    }
+
+    @GetMapping("/{doubtId}")
+    public ResponseEntity<ApiResponse<DoubtDetail>> getDoubt(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @PathVariable String doubtId) {
+
+        log.info("GET /doubts/{} - User: {}", doubtId, userPrincipal.getId());
+        return ResponseEntity.ok(ApiResponse.success(doubtService.getDoubt(userPrincipal.getId(), doubtId)));
     }
 
     @GetMapping("/insights")
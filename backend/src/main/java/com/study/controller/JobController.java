@@ -0,0 +1,111 @@
+package com.study.controller;
+
+import com.study.dto.ApiResponse;
+import com.study.dto.DoubtRequest;
+import com.study.dto.RoadmapRequest;
+import com.study.model.GenerationJob;
+import com.study.observability.AIMetrics;
+import com.study.security.UserPrincipal;
+import com.study.service.GenerationJobService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Background generation jobs. Submitting returns 202 with the job right away; poll
+ * GET /jobs/{id} for its status and result id, or follow GET /jobs/{id}/events.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/jobs")
+@RequiredArgsConstructor
+public class JobController {
+
+    private final GenerationJobService jobService;
+    private final AIMetrics metrics;
+
+    @PostMapping("/roadmaps")
+    public ResponseEntity<ApiResponse<GenerationJob>> submitRoadmap(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @Valid @RequestBody RoadmapRequest request) {
+
+        log.info("POST /jobs/roadmaps - User: {}, Title: '{}'", userPrincipal.getId(), request.getTitle());
+        GenerationJob job = jobService.submitRoadmap(userPrincipal.getId(), request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Roadmap generation queued", job));
+    }
+
+    @PostMapping("/topics/{topicId}/content")
+    public ResponseEntity<ApiResponse<GenerationJob>> submitContent(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @PathVariable String topicId,
+            @RequestParam(required = false, defaultValue = "THEORY") String contentType) {
+
+        log.info("POST /jobs/topics/{}/content - User: {}, Type: {}", topicId, userPrincipal.getId(), contentType);
+        GenerationJob job = jobService.submitContent(userPrincipal.getId(), topicId, contentType);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Content generation queued", job));
+    }
+
+    @PostMapping("/doubts")
+    public ResponseEntity<ApiResponse<GenerationJob>> submitDoubt(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @RequestBody DoubtRequest request) {
+
+        log.info("POST /jobs/doubts - User: {}", userPrincipal.getId());
+        GenerationJob job = jobService.submitDoubt(userPrincipal.getId(), request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Doubt queued", job));
+    }
+
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<GenerationJob>>> getJobs(
+            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+
+        log.info("GET /jobs - User: {}", userPrincipal.getId());
+        return ResponseEntity.ok(ApiResponse.success(jobService.listJobs(userPrincipal.getId())));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ApiResponse<GenerationJob>> getJob(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @PathVariable String jobId) {
+
+        return ResponseEntity.ok(ApiResponse.success(jobService.getJob(jobId, userPrincipal.getId())));
+    }
+
+    /**
+     * Follow a job's events via SSE. Several observers may follow the same job; pass
+     * Last-Event-ID to continue after a dropped connection. Disconnecting does not
+     * stop the job.
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> getJobEvents(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @PathVariable String jobId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+
+        log.info("GET /jobs/{}/events - User: {}, Last-Event-ID: {}", jobId, userPrincipal.getId(), lastEventId);
+        return metrics.instrumentSse("/jobs/events", jobService.events(jobId, userPrincipal.getId(), lastEventId));
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<ApiResponse<Map<String, Boolean>>> cancelJob(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @PathVariable String jobId) {
+
+        log.info("POST /jobs/{}/cancel - User: {}", jobId, userPrincipal.getId());
+        boolean cancelled = jobService.cancel(jobId, userPrincipal.getId());
+        return ResponseEntity.ok(ApiResponse.success(Map.of("cancelled", cancelled)));
+    }
+}
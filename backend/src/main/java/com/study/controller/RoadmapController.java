@@ -1,8 +1,15 @@
 package com.study.controller;
 
 import com.study.dto.*;
+import com.study.observability.AIMetrics;
 import com.study.security.UserPrincipal;
+import com.study.service.ContentPrefetchService;
+import com.study.service.IdempotencyService;
+import com.study.service.ResumableStreamHub;
+import com.study.service.RoadmapContentBatchService;
 import com.study.service.RoadmapService;
+import com.study.util.KeysetCursor;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -23,38 +30,63 @@ import reactor.core.publisher.Flux;
 public class RoadmapController {
 
     private final RoadmapService roadmapService;
+    private final RoadmapContentBatchService contentBatch;
+    private final ContentPrefetchService prefetchService;
+    private final ResumableStreamHub streamHub;
+    private final IdempotencyService idempotency;
+    private final AIMetrics metrics;
 
+    /**
+     * Generate a roadmap topic by topic via SSE. Generation continues if the connection
+     * drops; resume it with GET /streams/{X-Stream-Id} and Last-Event-ID.
+     */
     @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<String>> createRoadmapStream(
             @AuthenticationPrincipal UserPrincipal userPrincipal,
-            @Valid @RequestBody RoadmapRequest request) {
+            @Valid @RequestBody RoadmapRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            HttpServletResponse response) {
         
         log.info("POST /roadmaps/stream - User: {}, Title: '{}', AI: {}", 
                 userPrincipal.getId(), request.getTitle(), request.isGenerateWithAI());
         
-        return roadmapService.createRoadmapStreaming(userPrincipal.getId(), request);
+        ResumableStreamHub.Started stream = idempotency.stream(userPrincipal.getId(), idempotencyKey,
+                "POST /roadmaps/stream", request,
+                () -> streamHub.start(userPrincipal.getId(),
+                        roadmapService.createRoadmapStreaming(userPrincipal.getId(), request)));
+        response.setHeader(ResumableStreamHub.STREAM_ID_HEADER, stream.streamId());
+        return metrics.instrumentSse("/roadmaps/stream", stream.events());
     }
 
     @PostMapping
     public ResponseEntity<ApiResponse<RoadmapResponse>> createRoadmap(
             @AuthenticationPrincipal UserPrincipal userPrincipal,
-            @Valid @RequestBody RoadmapRequest request) {
+            @Valid @RequestBody RoadmapRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         
         log.info("POST /roadmaps - User: {}, Title: '{}', AI: {}", 
                 userPrincipal.getId(), request.getTitle(), request.isGenerateWithAI());
-        RoadmapResponse roadmap = roadmapService.createRoadmap(userPrincipal.getId(), request);
+        RoadmapResponse roadmap = idempotency.execute(userPrincipal.getId(), idempotencyKey, "POST /roadmaps", request,
+                () -> roadmapService.createRoadmap(userPrincipal.getId(), request));
         log.info("Roadmap created successfully: id={}", roadmap.getId());
         return ResponseEntity.ok(ApiResponse.success("Roadmap created successfully", roadmap));
     }
 
+    /**
+     * Newest roadmaps first. Pass the X-Next-Cursor response header back as
+     * {@code cursor} to fetch the next page.
+     */
     @GetMapping
     public ResponseEntity<ApiResponse<List<RoadmapResponse>>> getUserRoadmaps(
-            @AuthenticationPrincipal UserPrincipal userPrincipal) {
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
         
-        log.info("GET /roadmaps - User: {}", userPrincipal.getId());
-        List<RoadmapResponse> roadmaps = roadmapService.getUserRoadmaps(userPrincipal.getId());
-        log.info("Returning {} roadmaps", roadmaps.size());
-        return ResponseEntity.ok(ApiResponse.success(roadmaps));
+        log.info("GET /roadmaps - User: {}, Limit: {}, Cursor: {}", userPrincipal.getId(), limit, cursor);
+        KeysetPage<RoadmapResponse> page = roadmapService.listRoadmaps(
+                userPrincipal.getId(), cursor, KeysetCursor.clampLimit(limit));
+        log.info("Returning {} roadmaps", page.items().size());
+        return ResponseEntity.ok().headers(page.headers()).body(ApiResponse.success(page.items()));
     }
 
     @GetMapping("/{roadmapId}")
@@ -75,6 +107,16 @@ public class RoadmapController {
         return ResponseEntity.ok(ApiResponse.success("Roadmap started successfully", roadmap));
     }
 
+    @PostMapping("/{roadmapId}/pause")
+    public ResponseEntity<ApiResponse<RoadmapResponse>> pauseRoadmap(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @PathVariable String roadmapId) {
+        
+        log.info("POST /roadmaps/{}/pause - User: {}", roadmapId, userPrincipal.getId());
+        RoadmapResponse roadmap = roadmapService.pauseRoadmap(userPrincipal.getId(), roadmapId);
+        return ResponseEntity.ok(ApiResponse.success("Roadmap paused", roadmap));
+    }
+
     @DeleteMapping("/{roadmapId}")
     public ResponseEntity<ApiResponse<Void>> deleteRoadmap(
             @AuthenticationPrincipal UserPrincipal userPrincipal,
@@ -84,14 +126,54 @@ public class RoadmapController {
         return ResponseEntity.ok(ApiResponse.success("Roadmap deleted successfully", null));
     }
 
+    /**
+     * Generate content for all topics of a roadmap that have none yet, or for the given
+     * topicIds, in one SSE stream of "topic" / "topic-error" events and a final "complete".
+     * Resumable like the roadmap stream.
+     */
+    @PostMapping(value = "/{roadmapId}/generate-content/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> generateRoadmapContentStream(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @PathVariable String roadmapId,
+            @RequestParam(required = false) List<String> topicIds,
+            @RequestParam(required = false, defaultValue = "THEORY") String contentType,
+            HttpServletResponse response) {
+        
+        log.info("POST /roadmaps/{}/generate-content/stream - User: {}, Topics: {}, Type: {}",
+                roadmapId, userPrincipal.getId(), topicIds != null ? topicIds.size() : "all", contentType);
+        
+        ResumableStreamHub.Started stream = streamHub.start(userPrincipal.getId(),
+                contentBatch.generateRoadmapContentBatch(userPrincipal.getId(), roadmapId, topicIds, contentType));
+        response.setHeader(ResumableStreamHub.STREAM_ID_HEADER, stream.streamId());
+        return metrics.instrumentSse("/roadmaps/generate-content/stream", stream.events());
+    }
+
     @PostMapping("/topics/{topicId}/generate-content")
     public ResponseEntity<ApiResponse<ContentResponse>> generateTopicContent(
             @AuthenticationPrincipal UserPrincipal userPrincipal,
             @PathVariable String topicId,
-            @RequestParam(required = false, defaultValue = "THEORY") String contentType) {
+            @RequestParam(required = false, defaultValue = "THEORY") String contentType,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         
-        ContentResponse content = roadmapService.generateTopicContent(
-                userPrincipal.getId(), topicId, contentType);
+        ContentResponse content = idempotency.execute(userPrincipal.getId(), idempotencyKey,
+                "POST /roadmaps/topics/generate-content", List.of(topicId, contentType), () -> {
+                    prefetchService.prefetchAfter(userPrincipal.getId(), topicId);
+                    return roadmapService.generateTopicContent(userPrincipal.getId(), topicId, contentType);
+                });
         return ResponseEntity.ok(ApiResponse.success("Content generated successfully", content));
     }
+
+    @PostMapping(value = "/topics/{topicId}/generate-content/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> generateTopicContentStream(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @PathVariable String topicId,
+            @RequestParam(required = false, defaultValue = "THEORY") String contentType) {
+        
+        log.info("POST /roadmaps/topics/{}/generate-content/stream - User: {}, Type: {}",
+                topicId, userPrincipal.getId(), contentType);
+        
+        prefetchService.prefetchAfter(userPrincipal.getId(), topicId);
+        return metrics.instrumentSse("/roadmaps/topics/generate-content/stream",
+                roadmapService.generateTopicContentStreaming(userPrincipal.getId(), topicId, contentType));
+    }
 }
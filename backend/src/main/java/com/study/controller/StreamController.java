@@ -0,0 +1,36 @@
+package com.study.controller;
+
+import com.study.observability.AIMetrics;
+import com.study.security.UserPrincipal;
+import com.study.service.ResumableStreamHub;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+@Slf4j
+@RestController
+@RequestMapping("/streams")
+@RequiredArgsConstructor
+public class StreamController {
+
+    private final ResumableStreamHub streamHub;
+    private final AIMetrics metrics;
+
+    /**
+     * Reconnect to a chat or roadmap stream after the connection dropped.
+     * Replays the events after Last-Event-ID, then follows the live stream.
+     */
+    @GetMapping(value = "/{streamId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> resumeStream(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @PathVariable String streamId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+
+        log.info("GET /streams/{} - User: {}, Last-Event-ID: {}", streamId, userPrincipal.getId(), lastEventId);
+        return metrics.instrumentSse("/streams", streamHub.resume(streamId, userPrincipal.getId(), lastEventId));
+    }
+}
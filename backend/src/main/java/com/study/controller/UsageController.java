@@ -0,0 +1,34 @@
+package com.study.controller;
+
+import com.study.dto.ApiResponse;
+import com.study.dto.UsageResponse;
+import com.study.security.UserPrincipal;
+import com.study.service.UsageLedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+@Slf4j
+@RestController
+@RequestMapping("/usage")
+@RequiredArgsConstructor
+public class UsageController {
+
+    private final UsageLedgerService usageLedgerService;
+
+    /**
+     * Token usage of the current user for the last {@code days} days (max 90),
+     * split by feature and model, with today's remaining quota.
+     */
+    @GetMapping("/me")
+    public ResponseEntity<ApiResponse<UsageResponse>> getMyUsage(
+            @AuthenticationPrincipal UserPrincipal userPrincipal,
+            @RequestParam(defaultValue = "7") int days) {
+
+        log.info("GET /usage/me - User: {}, Days: {}", userPrincipal.getId(), days);
+        UsageResponse usage = usageLedgerService.getUsage(userPrincipal.getId(), Math.max(1, Math.min(days, 90)));
+        return ResponseEntity.ok(ApiResponse.success(usage));
+    }
+}
@@ -1,5 +1,6 @@
 package com.study.dto;
 
+import com.study.model.TokenUsage;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -32,6 +33,11 @@ public class AIRequest {
     
     private String model;
     
+    // Usage accounting only, never sent upstream
+    private String userId;
+    
+    private TokenUsage.Feature feature;
+    
     @Data
     @Builder
     @NoArgsConstructor
@@ -41,6 +47,15 @@ public class AIRequest {
         private String content;
     }
     
+    /**
+     * Attribute this request's token usage to a user and feature.
+     */
+    public AIRequest attributedTo(String userId, TokenUsage.Feature feature) {
+        this.userId = userId;
+        this.feature = feature;
+        return this;
+    }
+    
     public static AIRequest withPrompt(String prompt) {
         return AIRequest.builder()
                 .prompt(prompt)
@@ -0,0 +1,31 @@
+package com.study.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single doubt with its full answer, as served by GET /doubts/{id}.
+ * Internal fields of the stored interaction (e.g. its retrieval embedding) are not part of it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DoubtDetail {
+
+    private String id;
+    private String userId;
+    private String roadmapId;
+    private String topicId;
+    private String type;
+    private String content;
+    private String aiResponse;
+    private boolean resolved;
+    private double confidence;
+    private LocalDateTime createdAt;
+    private LocalDateTime respondedAt;
+}
@@ -0,0 +1,32 @@
+package com.study.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of the doubt history list: the question and the start of the answer.
+ * The full answer is served by GET /doubts/{id}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DoubtSummary {
+
+    /** Characters of the answer included in {@link #answerPreview} */
+    public static final int PREVIEW_CHARS = 200;
+
+    private String id;
+    private String roadmapId;
+    private String topicId;
+    private String question;
+    private String answerPreview;
+    private boolean resolved;
+    private double confidence;
+    private LocalDateTime createdAt;
+    private LocalDateTime respondedAt;
+}
@@ -0,0 +1,40 @@
+package com.study.dto;
+
+import com.study.util.KeysetCursor;
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated list. {@code nextCursor} is null on the last page.
+ */
+public record KeysetPage<T>(List<T> items, String nextCursor) {
+
+    /** Response header carrying the cursor of the next page; absent on the last page */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * Build a page from a query that fetched up to {@code limit + 1} rows; the extra
+     * row only signals that another page exists.
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int limit, Function<T, KeysetCursor> cursorOf) {
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new KeysetPage<>(items, cursorOf.apply(items.get(limit - 1)).encode());
+    }
+
+    public HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        if (nextCursor != null) {
+            headers.set(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return headers;
+    }
+
+    public <R> KeysetPage<R> map(Function<T, R> mapper) {
+        return new KeysetPage<>(items.stream().map(mapper).toList(), nextCursor);
+    }
+}
@@ -44,4 +44,10 @@ public class RoadmapRequest {
     
     @Builder.Default
     private boolean generateWithAI = true;
+    
+    /** Outline first, then expand topics in parallel; null uses roadmap.outline-first.enabled */
+    private Boolean outlineFirst;
+    
+    /** Generate a fresh roadmap even if a matching template exists */
+    private boolean regenerate;
 }
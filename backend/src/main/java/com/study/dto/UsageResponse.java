@@ -0,0 +1,39 @@
+package com.study.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UsageResponse {
+
+    private long tokensToday;
+    private long dailyQuota; // 0 = unlimited
+    private long remainingToday; // -1 when unlimited
+
+    private int days;
+    private long promptTokens;
+    private long completionTokens;
+    private long calls;
+
+    private Map<String, Long> tokensByFeature;
+    private Map<String, Long> tokensByModel;
+    private List<DailyUsage> daily;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class DailyUsage {
+        private String date;
+        private long promptTokens;
+        private long completionTokens;
+    }
+}
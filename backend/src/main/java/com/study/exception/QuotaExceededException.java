@@ -0,0 +1,12 @@
+package com.study.exception;
+
+/**
+ * Thrown before an upstream AI call when the user has used up their daily token quota.
+ * Mapped to HTTP 429.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,19 @@
+package com.study.exception;
+
+/**
+ * Thrown when the server has no capacity left for a request (e.g. the generation job
+ * queue is full). Mapped to HTTP 503 with a Retry-After header.
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -16,12 +17,12 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "chat_messages")
+@CompoundIndex(name = "session_created", def = "{'sessionId': 1, 'createdAt': 1}")
 public class ChatMessage {
 
     @Id
     private String id;
 
-    @Indexed
     private String sessionId;
 
     @Indexed
@@ -38,6 +39,9 @@ public class ChatMessage {
     /** Model used to generate this message (null for user messages) */
     private String model;
 
+    /** True if generation was stopped before the model finished (stop button or client disconnect) */
+    private boolean truncated;
+
     @CreatedDate
     private LocalDateTime createdAt;
 }
@@ -7,6 +7,8 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -19,18 +21,20 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "contents")
+@CompoundIndexes({
+        @CompoundIndex(name = "topic_created", def = "{'topicId': 1, 'createdAt': 1}"),
+        @CompoundIndex(name = "user_created", def = "{'userId': 1, 'createdAt': -1}")
+})
 public class Content {
     
     @Id
     private String id;
     
-    @Indexed
     private String topicId;
     
     @Indexed
     private String roadmapId;
     
-    @Indexed
     private String userId;
     
     private ContentType type;
@@ -54,6 +58,14 @@ public class Content {
     
     private String aiModelVersion;
     
+    /** Shared library entry this content was copied from (null for private content) */
+    private String sharedContentId;
+    
+    private int sharedContentRevision;
+    
+    /** Generated ahead of the student opening the topic; cleared when it is first served */
+    private boolean prefetched;
+    
     private int readingTimeMinutes;
     
     private double complexity;
@@ -0,0 +1,62 @@
+package com.study.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A roadmap, content or doubt generation running in the background, detached from
+ * the request that submitted it. The generated roadmap / content / doubt is stored
+ * by its own service; the job records where to find it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "generation_jobs")
+@CompoundIndex(name = "user_created", def = "{'userId': 1, 'createdAt': -1}")
+public class GenerationJob {
+
+    @Id
+    private String id;
+
+    private String userId;
+
+    private JobType type;
+
+    private JobStatus status;
+
+    /** Resumable stream the job's events are recorded into (GET /jobs/{id}/events) */
+    private String streamId;
+
+    /** Roadmap, content or doubt id once the job succeeded */
+    private String resultId;
+
+    private String error;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+
+    /**
+     * Finished jobs are removed by Mongo a week later. Jobs a crash left QUEUED or
+     * RUNNING get it when the service starts again (GenerationJobService).
+     */
+    @Indexed(name = "finished_ttl", expireAfter = "7d")
+    private LocalDateTime finishedAt;
+
+    public enum JobType {
+        ROADMAP, CONTENT, DOUBT
+    }
+
+    public enum JobStatus {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+}
@@ -7,7 +7,7 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -19,12 +19,12 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "roadmaps")
+@CompoundIndex(name = "user_created", def = "{'userId': 1, 'createdAt': -1, '_id': -1}")
 public class Roadmap {
     
     @Id
     private String id;
     
-    @Indexed
     private String userId;
     
     private String title;
@@ -54,6 +54,9 @@ public class Roadmap {
     
     private int totalTopics;
     
+    /** Template the topics were copied from, when reused instead of generated */
+    private String templateId;
+    
     @CreatedDate
     private LocalDateTime createdAt;
     
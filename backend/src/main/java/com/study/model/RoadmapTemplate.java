@@ -0,0 +1,105 @@
+package com.study.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable roadmap outline for one class of learning request. Users asking for
+ * practically the same roadmap get a copy of its topics as their own {@link Roadmap}
+ * and {@link Topic} documents instead of a new generation.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "roadmap_templates")
+public class RoadmapTemplate {
+
+    @Id
+    private String id;
+
+    /** SHA-256 of (goal class, level, difficulty, hours/week bucket, learning style, model, template version) */
+    @Indexed(unique = true)
+    private String fingerprint;
+
+    private String goalClass;
+
+    private String currentLevel;
+
+    private String difficulty;
+
+    private String hoursBucket;
+
+    private String learningStyle;
+
+    private String model;
+
+    /** Bumped every time the template is regenerated under the refresh policy */
+    @Builder.Default
+    private int revision = 1;
+
+    /** Derived from the fingerprint fields; shared by every user, so never the author's own wording */
+    private String title;
+
+    private String description;
+
+    private int estimatedHours;
+
+    private int estimatedWeeks;
+
+    @Builder.Default
+    private List<String> tags = new ArrayList<>();
+
+    @Builder.Default
+    private List<TemplateTopic> topics = new ArrayList<>();
+
+    /** Heuristic 0.0-1.0 score, lowered whenever a user regenerates instead of reusing it */
+    private double qualityScore;
+
+    @Builder.Default
+    private long reuseCount = 0;
+
+    @Builder.Default
+    private long regenerateCount = 0;
+
+    private LocalDateTime lastReusedAt;
+
+    /** When this revision was generated; drives the max-age refresh policy */
+    private LocalDateTime generatedAt;
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TemplateTopic {
+        private String title;
+        private String description;
+        private int estimatedMinutes;
+
+        @Builder.Default
+        private List<String> learningObjectives = new ArrayList<>();
+
+        @Builder.Default
+        private List<String> prerequisites = new ArrayList<>();
+
+        @Builder.Default
+        private List<Topic.Resource> resources = new ArrayList<>();
+    }
+}
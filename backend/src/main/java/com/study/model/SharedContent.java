@@ -0,0 +1,85 @@
+package com.study.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content-addressed library entry for AI generated topic content.
+ * One document per fingerprint; users' {@link Content} records link to it
+ * via {@code sharedContentId} so identical topics are generated only once.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "shared_contents")
+public class SharedContent {
+
+    @Id
+    private String id;
+
+    /** SHA-256 of (goal class, topic title, topic description, content type, model, library version) */
+    @Indexed(unique = true)
+    private String fingerprint;
+
+    private String goalClass;
+
+    private String topicTitle;
+
+    private String topicDescription;
+
+    private Content.ContentType type;
+
+    private String model;
+
+    /** Bumped every time the entry is regenerated under the refresh policy */
+    @Builder.Default
+    private int revision = 1;
+
+    private String title;
+
+    private String markdownContent;
+
+    private String rawContent;
+
+    @Builder.Default
+    private List<String> codeExamples = new ArrayList<>();
+
+    @Builder.Default
+    private List<Content.QuizQuestion> quizQuestions = new ArrayList<>();
+
+    @Builder.Default
+    private List<String> keyPoints = new ArrayList<>();
+
+    private int readingTimeMinutes;
+
+    private double complexity;
+
+    /** Heuristic 0.0-1.0 score; entries below the configured minimum are never reused */
+    private double qualityScore;
+
+    @Builder.Default
+    private long reuseCount = 0;
+
+    private LocalDateTime lastReusedAt;
+
+    /** When this revision was generated; drives the max-age refresh policy */
+    private LocalDateTime generatedAt;
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+}
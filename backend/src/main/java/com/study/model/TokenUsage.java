@@ -0,0 +1,52 @@
+package com.study.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Daily token usage of one user for one model and feature.
+ * Written by {@code UsageLedgerService} in batched $inc upserts.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "token_usage")
+@CompoundIndex(name = "user_day_model_feature", def = "{'userId': 1, 'day': 1, 'model': 1, 'feature': 1}", unique = true)
+public class TokenUsage {
+
+    @Id
+    private String id;
+
+    private String userId;
+
+    private LocalDate day;
+
+    private String model;
+
+    private Feature feature;
+
+    private long promptTokens;
+
+    private long completionTokens;
+
+    /** Upstream calls counted in this bucket */
+    private long calls;
+
+    /** Calls whose tokens were estimated because the API reported no usage */
+    private long estimatedCalls;
+
+    private LocalDateTime updatedAt;
+
+    public enum Feature {
+        CHAT, DOUBT, ROADMAP, CONTENT, PREFETCH, OTHER
+    }
+}
@@ -7,7 +7,8 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -19,15 +20,18 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "topics")
+@CompoundIndexes({
+        @CompoundIndex(name = "roadmap_sequence", def = "{'roadmapId': 1, 'sequenceOrder': 1}"),
+        @CompoundIndex(name = "roadmap_status", def = "{'roadmapId': 1, 'status': 1}"),
+        @CompoundIndex(name = "user_created", def = "{'userId': 1, 'createdAt': -1}")
+})
 public class Topic {
     
     @Id
     private String id;
     
-    @Indexed
     private String roadmapId;
     
-    @Indexed
     private String userId;
     
     private String title;
@@ -67,6 +71,9 @@ public class Topic {
     
     private LocalDateTime completedAt;
     
+    /** Set while a background prefetch is generating this topic's content */
+    private LocalDateTime prefetchClaimedAt;
+    
     @Data
     @Builder
     @NoArgsConstructor
@@ -1,11 +1,14 @@
 package com.study.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -18,12 +21,17 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "user_interactions")
+@CompoundIndexes({
+        @CompoundIndex(name = "user_created", def = "{'userId': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "user_roadmap_created", def = "{'userId': 1, 'roadmapId': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "user_topic_created", def = "{'userId': 1, 'topicId': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "user_type_created", def = "{'userId': 1, 'type': 1, 'createdAt': -1, '_id': -1}")
+})
 public class UserInteraction {
     
     @Id
     private String id;
     
-    @Indexed
     private String userId;
     
     @Indexed
@@ -44,6 +52,8 @@ public class UserInteraction {
     @Builder.Default
     private List<String> relevantContentIds = new ArrayList<>();
     
+    /** Retrieval vector; internal only, never part of an API response */
+    @JsonIgnore
     @Builder.Default
     private List<Double> embedding = new ArrayList<>();
     
@@ -0,0 +1,245 @@
+package com.study.observability;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.IntSupplier;
+
+/**
+ * Application metrics for upstream AI calls, SSE streams and in-app caches.
+ * Scraped from /actuator/prometheus on the management port (management.server.port).
+ *
+ * Meters:
+ * - ai.upstream.ttft            time to first streamed chunk, per model
+ * - ai.upstream.generation      total upstream call time, per model / mode / outcome
+ * - ai.upstream.tokens.rate     completion tokens per second, per model
+ * - ai.tokens                   prompt / completion token counters, per model
+ * - sse.events, sse.bytes       events and payload bytes sent, per endpoint / event type
+ * - cache.lookups               hit / miss counters, per cache
+ * - ratelimit.rejections        requests refused with 429, per endpoint
+ * - ai.scheduler.wait           time spent queued for an upstream slot, per feature
+ * - ai.scheduler.queued/running upstream calls waiting / in flight
+ * - ai.stream.cancellations    streams stopped before the model finished, per model / feature
+ * - ai.tokens.saved             estimated completion tokens not generated thanks to a cancel, per model
+ * - writebehind.queued          bookkeeping writes waiting for the next flush
+ * - writebehind.flushed         buffered writes persisted, per kind / outcome
+ * - jobs.queued/running         background generation jobs waiting / executing
+ * - jobs.finished               generation jobs ended, per type / outcome
+ * - content.prefetch            next-topic prefetches, per outcome (generated, dropped, skipped-*, ...)
+ * - idempotency.requests        requests carrying an Idempotency-Key, per outcome (new, replayed, joined, ...)
+ *
+ * Repository latency comes from Spring Boot's built-in spring.data.repository.invocations timer.
+ */
+@Component
+public class AIMetrics {
+
+    private final MeterRegistry registry;
+
+    public AIMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordTtft(String model, Duration ttft) {
+        Timer.builder("ai.upstream.ttft")
+                .description("Time from upstream request to first streamed chunk")
+                .tag("model", model)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(ttft);
+    }
+
+    /**
+     * @param stream  true for SSE calls, false for blocking completions
+     * @param outcome "success" or "error"
+     */
+    public void recordGeneration(String model, boolean stream, String outcome, Duration duration) {
+        Timer.builder("ai.upstream.generation")
+                .description("Total upstream generation time")
+                .tag("model", model)
+                .tag("mode", stream ? "stream" : "blocking")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(duration);
+    }
+
+    /**
+     * Record completion throughput. For streams the token count is the number of
+     * content chunks and the window starts at the first chunk.
+     */
+    public void recordTokenRate(String model, long completionTokens, Duration window) {
+        if (completionTokens <= 0 || window.isZero() || window.isNegative()) {
+            return;
+        }
+        DistributionSummary.builder("ai.upstream.tokens.rate")
+                .description("Completion tokens per second")
+                .baseUnit("tokens/s")
+                .tag("model", model)
+                .register(registry)
+                .record(completionTokens * 1000.0 / window.toMillis());
+    }
+
+    public void countTokens(String model, long promptTokens, long completionTokens) {
+        if (promptTokens > 0) {
+            tokenCounter(model, "prompt").increment(promptTokens);
+        }
+        if (completionTokens > 0) {
+            tokenCounter(model, "completion").increment(completionTokens);
+        }
+    }
+
+    /**
+     * Count a cache lookup. Hit rate = hits / (hits + misses) per cache tag.
+     */
+    public void cacheLookup(String cache, boolean hit) {
+        Counter.builder("cache.lookups")
+                .tag("cache", cache)
+                .tag("result", hit ? "hit" : "miss")
+                .register(registry)
+                .increment();
+    }
+
+    public void countRateLimited(String endpoint) {
+        Counter.builder("ratelimit.rejections")
+                .description("Requests refused by the per-user rate limiter")
+                .tag("endpoint", endpoint)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordQueueWait(String feature, Duration wait) {
+        Timer.builder("ai.scheduler.wait")
+                .description("Time an upstream call waited for a free slot")
+                .tag("feature", feature)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(wait);
+    }
+
+    public void schedulerGauges(IntSupplier queued, IntSupplier running) {
+        Gauge.builder("ai.scheduler.queued", queued::getAsInt)
+                .description("Upstream calls waiting for a free slot")
+                .register(registry);
+        Gauge.builder("ai.scheduler.running", running::getAsInt)
+                .description("Upstream calls in flight")
+                .register(registry);
+    }
+
+    /**
+     * @param savedTokens estimated completion tokens the call would still have produced
+     */
+    public void recordCancelledStream(String model, String feature, long savedTokens) {
+        Counter.builder("ai.stream.cancellations")
+                .description("Upstream streams cancelled before the model finished")
+                .tag("model", model)
+                .tag("feature", feature)
+                .register(registry)
+                .increment();
+        Counter.builder("ai.tokens.saved")
+                .description("Estimated completion tokens not generated because the stream was cancelled")
+                .tag("model", model)
+                .register(registry)
+                .increment(savedTokens);
+    }
+
+    public void writeBehindGauge(IntSupplier queued) {
+        Gauge.builder("writebehind.queued", queued::getAsInt)
+                .description("Bookkeeping writes waiting for the next flush")
+                .register(registry);
+    }
+
+    /**
+     * @param outcome "success", "retry", or "sync" for writes done on the caller's thread
+     */
+    public void countWriteBehind(String kind, String outcome, int count) {
+        Counter.builder("writebehind.flushed")
+                .description("Buffered bookkeeping writes")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment(count);
+    }
+
+    public void jobGauges(IntSupplier queued, IntSupplier running) {
+        Gauge.builder("jobs.queued", queued::getAsInt)
+                .description("Generation jobs waiting for a worker")
+                .register(registry);
+        Gauge.builder("jobs.running", running::getAsInt)
+                .description("Generation jobs executing")
+                .register(registry);
+    }
+
+    /**
+     * @param outcome "succeeded", "failed", "cancelled", or "rejected" when the queue was full
+     */
+    public void countJob(String type, String outcome) {
+        Counter.builder("jobs.finished")
+                .description("Background generation jobs that ended")
+                .tag("type", type)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * @param outcome "generated", "dropped" (not needed any more or cancelled), "failed",
+     *                "queue-full", "skipped-quota" or "skipped-load"
+     */
+    public void countPrefetch(String outcome) {
+        Counter.builder("content.prefetch")
+                .description("Speculative next-topic content prefetches")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * @param outcome "new", "replayed" (stored result returned), "joined" (waited for the
+     *                first request), "mismatch" (key reused for another request) or
+     *                "store-full" (not tracked)
+     */
+    public void countIdempotency(String outcome) {
+        Counter.builder("idempotency.requests")
+                .description("Requests carrying an Idempotency-Key")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Count events and payload bytes of an SSE response as they are emitted.
+     */
+    public Flux<ServerSentEvent<String>> instrumentSse(String endpoint, Flux<ServerSentEvent<String>> events) {
+        return events.doOnNext(sse -> {
+            String type = sse.event() != null ? sse.event() : "message";
+            Counter.builder("sse.events")
+                    .tag("endpoint", endpoint)
+                    .tag("event", type)
+                    .register(registry)
+                    .increment();
+            if (sse.data() != null) {
+                Counter.builder("sse.bytes")
+                        .baseUnit("bytes")
+                        .tag("endpoint", endpoint)
+                        .register(registry)
+                        .increment(sse.data().getBytes(StandardCharsets.UTF_8).length);
+            }
+        });
+    }
+
+    private Counter tokenCounter(String model, String type) {
+        return Counter.builder("ai.tokens")
+                .description("Tokens reported by the upstream API")
+                .tag("model", model)
+                .tag("type", type)
+                .register(registry);
+    }
+}
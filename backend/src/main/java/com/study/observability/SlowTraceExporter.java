@@ -0,0 +1,181 @@
+package com.study.observability;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * In-process span exporter that keeps the most recent traces in memory and logs
+ * slow ones. Backs GET /debug/traces/slowest; nothing leaves the JVM.
+ *
+ * Spans are grouped by trace id. A trace is complete once its local root span
+ * (the HTTP request) has ended; spans that arrive later are still attached.
+ * Both the number of traces and the spans per trace are capped.
+ */
+@Slf4j
+@Component
+public class SlowTraceExporter implements SpanExporter {
+
+    public record EventView(String name, long offsetMillis, Map<String, String> attributes) {
+    }
+
+    public record SpanView(String spanId, String parentSpanId, String name,
+                           long offsetMillis, long durationMillis, String status,
+                           Map<String, String> attributes, List<EventView> events) {
+    }
+
+    public record TraceView(String traceId, String name, Instant startedAt,
+                            long durationMillis, int spanCount, List<SpanView> spans) {
+    }
+
+    private static final class TraceBuffer {
+        final List<SpanData> spans = new ArrayList<>();
+        SpanData root;
+    }
+
+    private final int maxTraces;
+    private final int maxSpansPerTrace;
+    private final long slowThresholdMillis;
+    private final Map<String, TraceBuffer> traces;
+
+    public SlowTraceExporter(@Value("${tracing.buffer.max-traces:500}") int maxTraces,
+                             @Value("${tracing.buffer.max-spans-per-trace:300}") int maxSpansPerTrace,
+                             @Value("${tracing.slow-threshold-ms:10000}") long slowThresholdMillis) {
+        this.maxTraces = maxTraces;
+        this.maxSpansPerTrace = maxSpansPerTrace;
+        this.slowThresholdMillis = slowThresholdMillis;
+        this.traces = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TraceBuffer> eldest) {
+                return size() > SlowTraceExporter.this.maxTraces;
+            }
+        };
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        List<TraceBuffer> completed = new ArrayList<>();
+        synchronized (traces) {
+            for (SpanData span : spans) {
+                TraceBuffer buffer = traces.computeIfAbsent(span.getTraceId(), id -> new TraceBuffer());
+                if (buffer.spans.size() < maxSpansPerTrace) {
+                    buffer.spans.add(span);
+                }
+                if (isLocalRoot(span)) {
+                    buffer.root = span;
+                    completed.add(buffer);
+                }
+            }
+        }
+        for (TraceBuffer buffer : completed) {
+            logIfSlow(buffer);
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * Completed traces ordered by root span duration, longest first.
+     */
+    public List<TraceView> slowest(int limit) {
+        List<TraceBuffer> snapshot;
+        synchronized (traces) {
+            snapshot = traces.values().stream()
+                    .filter(buffer -> buffer.root != null)
+                    .sorted(Comparator.comparingLong((TraceBuffer buffer) -> durationNanos(buffer.root)).reversed())
+                    .limit(limit)
+                    .map(buffer -> {
+                        TraceBuffer copy = new TraceBuffer();
+                        copy.root = buffer.root;
+                        copy.spans.addAll(buffer.spans);
+                        return copy;
+                    })
+                    .toList();
+        }
+        return snapshot.stream().map(this::toView).toList();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        synchronized (traces) {
+            traces.clear();
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    private void logIfSlow(TraceBuffer buffer) {
+        long durationMillis = durationNanos(buffer.root) / 1_000_000;
+        if (durationMillis < slowThresholdMillis) {
+            return;
+        }
+        String breakdown;
+        synchronized (traces) {
+            breakdown = buffer.spans.stream()
+                    .filter(span -> span != buffer.root)
+                    .sorted(Comparator.comparingLong(SlowTraceExporter::durationNanos).reversed())
+                    .limit(5)
+                    .map(span -> span.getName() + "=" + durationNanos(span) / 1_000_000 + "ms")
+                    .collect(Collectors.joining(", "));
+        }
+        log.warn("Slow trace {} '{}' took {}ms (slowest spans: {})",
+                buffer.root.getTraceId(), buffer.root.getName(), durationMillis, breakdown);
+    }
+
+    private TraceView toView(TraceBuffer buffer) {
+        long origin = buffer.spans.stream().mapToLong(SpanData::getStartEpochNanos).min()
+                .orElse(buffer.root.getStartEpochNanos());
+        List<SpanView> spans = buffer.spans.stream()
+                .sorted(Comparator.comparingLong(SpanData::getStartEpochNanos))
+                .map(span -> new SpanView(
+                        span.getSpanId(),
+                        span.getParentSpanContext().isValid() ? span.getParentSpanId() : null,
+                        span.getName(),
+                        (span.getStartEpochNanos() - origin) / 1_000_000,
+                        durationNanos(span) / 1_000_000,
+                        span.getStatus().getStatusCode().name(),
+                        attributes(span.getAttributes().asMap()),
+                        span.getEvents().stream()
+                                .map(event -> toEventView(event, origin))
+                                .toList()))
+                .toList();
+        return new TraceView(
+                buffer.root.getTraceId(),
+                buffer.root.getName(),
+                Instant.ofEpochSecond(0, buffer.root.getStartEpochNanos()),
+                durationNanos(buffer.root) / 1_000_000,
+                buffer.spans.size(),
+                spans);
+    }
+
+    private EventView toEventView(EventData event, long origin) {
+        return new EventView(event.getName(), (event.getEpochNanos() - origin) / 1_000_000,
+                attributes(event.getAttributes().asMap()));
+    }
+
+    private static Map<String, String> attributes(Map<AttributeKey<?>, Object> raw) {
+        Map<String, String> attributes = new TreeMap<>();
+        raw.forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+        return attributes;
+    }
+
+    private static boolean isLocalRoot(SpanData span) {
+        return !span.getParentSpanContext().isValid() || span.getParentSpanContext().isRemote();
+    }
+
+    private static long durationNanos(SpanData span) {
+        return span.getEndEpochNanos() - span.getStartEpochNanos();
+    }
+}
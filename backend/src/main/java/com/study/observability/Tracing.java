@@ -0,0 +1,101 @@
+package com.study.observability;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.util.function.Function;
+
+/**
+ * Thin helper over the OpenTelemetry tracer for application spans.
+ *
+ * The HTTP server span is opened by Spring Boot's observation filter and is current
+ * on the request thread. Work that runs later on Reactor threads does not see it, so
+ * callers capture {@link Context#current()} while assembling a pipeline and pass it
+ * as the explicit parent, or attach it to the subscriber context with {@link #capture()}
+ * so {@link #traceFlux} can pick it up.
+ */
+@Component
+public class Tracing {
+
+    /** Reactor context key holding the parent OpenTelemetry context */
+    public static final Class<Context> CONTEXT_KEY = Context.class;
+
+    private final Tracer tracer;
+
+    public Tracing(OpenTelemetry openTelemetry) {
+        this.tracer = openTelemetry.getTracer("com.study");
+    }
+
+    @FunctionalInterface
+    public interface SpanWork<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Reactor context carrying the current OpenTelemetry context. Evaluated eagerly,
+     * so call it on the thread that owns the parent span.
+     */
+    public static reactor.util.context.Context capture() {
+        return reactor.util.context.Context.of(CONTEXT_KEY, Context.current());
+    }
+
+    public Span start(String name, Context parent) {
+        return tracer.spanBuilder(name).setParent(parent).startSpan();
+    }
+
+    /**
+     * Run work inside a child span of the current context.
+     */
+    public <T, E extends Exception> T inSpan(String name, SpanWork<T, E> work) throws E {
+        return inSpan(name, Context.current(), work);
+    }
+
+    /**
+     * Run work inside a child span of the given parent. The span is current while the
+     * work runs, so repository calls made from it nest underneath.
+     */
+    public <T, E extends Exception> T inSpan(String name, Context parent, SpanWork<T, E> work) throws E {
+        Span span = start(name, parent);
+        try (Scope ignored = span.makeCurrent()) {
+            return work.run();
+        } catch (Exception e) {
+            fail(span, e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Trace a Flux from subscription to completion, error or cancellation. The parent is
+     * taken from the subscriber context ({@link #capture()}), falling back to the context
+     * current at subscription. The body is built per subscription and may add events.
+     */
+    public <T> Flux<T> traceFlux(String name, Function<Span, Flux<T>> body) {
+        return Flux.deferContextual(view -> {
+            Context parent = view.getOrDefault(CONTEXT_KEY, Context.current());
+            Span span = start(name, parent);
+            return body.apply(span)
+                    .doOnError(e -> fail(span, e))
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            span.setAttribute("cancelled", true);
+                        }
+                        span.end();
+                    })
+                    .contextWrite(ctx -> ctx.put(CONTEXT_KEY, parent.with(span)));
+        });
+    }
+
+    public static void fail(Span span, Throwable e) {
+        span.recordException(e);
+        span.setStatus(StatusCode.ERROR, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+    }
+}
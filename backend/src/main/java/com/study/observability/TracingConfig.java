@@ -0,0 +1,69 @@
+package com.study.observability;
+
+import io.micrometer.observation.ObservationPredicate;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+
+/**
+ * Span instrumentation that is not owned by a single service:
+ * - one span per Spring Data repository method call
+ * - no traces for actuator scrapes
+ */
+@Configuration
+public class TracingConfig {
+
+    /**
+     * Adds a span around every repository method invoked inside a traced request.
+     * Calls with no active span (startup, background work) are not traced.
+     */
+    @Bean
+    static BeanPostProcessor repositorySpanPostProcessor(ObjectProvider<Tracing> tracing) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory ->
+                            factory.addRepositoryProxyPostProcessor((proxyFactory, information) -> {
+                                String repository = information.getRepositoryInterface().getSimpleName();
+                                proxyFactory.addAdvice(repositorySpan(tracing, repository));
+                            }));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static MethodInterceptor repositorySpan(ObjectProvider<Tracing> tracing, String repository) {
+        return invocation -> {
+            if (!Span.current().getSpanContext().isValid()
+                    || invocation.getMethod().getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+            Span span = tracing.getObject().start("db " + repository + "." + invocation.getMethod().getName(),
+                    Context.current());
+            span.setAttribute("db.system", "mongodb");
+            try (Scope ignored = span.makeCurrent()) {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                Tracing.fail(span, e);
+                throw e;
+            } finally {
+                span.end();
+            }
+        };
+    }
+
+    @Bean
+    ObservationPredicate ignoreActuatorObservations() {
+        return (name, context) -> !(context instanceof ServerRequestObservationContext request
+                && request.getCarrier().getRequestURI().contains("/actuator"));
+    }
+}
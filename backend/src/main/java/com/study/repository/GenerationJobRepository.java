@@ -0,0 +1,16 @@
+package com.study.repository;
+
+import com.study.model.GenerationJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GenerationJobRepository extends MongoRepository<GenerationJob, String> {
+
+    Optional<GenerationJob> findByIdAndUserId(String id, String userId);
+
+    List<GenerationJob> findTop20ByUserIdOrderByCreatedAtDesc(String userId);
+}
@@ -0,0 +1,13 @@
+package com.study.repository;
+
+import com.study.model.RoadmapTemplate;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RoadmapTemplateRepository extends MongoRepository<RoadmapTemplate, String> {
+
+    Optional<RoadmapTemplate> findByFingerprint(String fingerprint);
+}
@@ -0,0 +1,13 @@
+package com.study.repository;
+
+import com.study.model.SharedContent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SharedContentRepository extends MongoRepository<SharedContent, String> {
+
+    Optional<SharedContent> findByFingerprint(String fingerprint);
+}
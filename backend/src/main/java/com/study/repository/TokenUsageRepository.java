@@ -0,0 +1,14 @@
+package com.study.repository;
+
+import com.study.model.TokenUsage;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface TokenUsageRepository extends MongoRepository<TokenUsage, String> {
+    List<TokenUsage> findByUserIdAndDay(String userId, LocalDate day);
+    List<TokenUsage> findByUserIdAndDayGreaterThanEqualOrderByDayAsc(String userId, LocalDate from);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface UserInteractionRepository extends MongoRepository<UserInteraction, String> {
@@ -17,7 +18,7 @@ public interface UserInteractionRepository extends MongoRepository<UserInteracti
     
     List<UserInteraction> findByUserIdAndTopicIdOrderByCreatedAtDesc(String userId, String topicId);
     
-    List<UserInteraction> findByUserIdAndTypeOrderByCreatedAtDesc(String userId, UserInteraction.InteractionType type);
+    Optional<UserInteraction> findByIdAndUserId(String id, String userId);
     
     long countByUserIdAndResolvedFalse(String userId);
     
@@ -0,0 +1,68 @@
+package com.study.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.dto.ApiResponse;
+import com.study.observability.AIMetrics;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects AI requests with 429 and a Retry-After header once the user's bucket
+ * for the endpoint is empty. One instance is registered per endpoint in WebConfig.
+ * Only POSTs start a generation; reads sharing a path (GET /roadmaps) are not counted.
+ */
+@Slf4j
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiter rateLimiter;
+    private final RateLimiter.Endpoint endpoint;
+    private final ObjectMapper objectMapper;
+    private final AIMetrics metrics;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, RateLimiter.Endpoint endpoint,
+                                ObjectMapper objectMapper, AIMetrics metrics) {
+        this.rateLimiter = rateLimiter;
+        this.endpoint = endpoint;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // SSE completion re-dispatches as ASYNC; the request was already counted
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !"POST".equals(request.getMethod())) {
+            return true;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal principal)) {
+            return true;
+        }
+
+        long waitNanos = rateLimiter.tryAcquire(principal.getId(), endpoint);
+        if (waitNanos == 0) {
+            return true;
+        }
+
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+        log.warn("Rate limited user {} on {} {} (retry after {}s)", principal.getId(),
+                request.getMethod(), request.getRequestURI(), retryAfter);
+        metrics.countRateLimited(endpoint.name().toLowerCase());
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                ApiResponse.error("Too many requests. Please retry in " + retryAfter + "s."));
+        return false;
+    }
+}
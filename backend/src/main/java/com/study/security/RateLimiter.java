@@ -0,0 +1,110 @@
+package com.study.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-user, per-endpoint token buckets for the AI endpoints.
+ *
+ * Each bucket is an immutable (tokens, refilledAt) pair swapped with compare-and-set,
+ * so concurrent requests never block each other. Buckets refill continuously and idle
+ * full buckets are evicted.
+ *
+ * Buckets live in this instance only. With several instances behind a load balancer,
+ * set rate-limit.cluster-size so each instance enforces its share of the limit.
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    public enum Endpoint {
+        CHAT, DOUBT, ROADMAP, CONTENT
+    }
+
+    record Limit(double capacity, double tokensPerNano) {
+    }
+
+    private record Bucket(double tokens, long refilledAt) {
+    }
+
+    private final boolean enabled;
+    private final Map<Endpoint, Limit> limits = new EnumMap<>(Endpoint.class);
+    private final ConcurrentHashMap<String, AtomicReference<Bucket>> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(@Value("${rate-limit.enabled:true}") boolean enabled,
+                       @Value("${rate-limit.cluster-size:1}") int clusterSize,
+                       @Value("${rate-limit.chat.capacity:20}") int chatCapacity,
+                       @Value("${rate-limit.chat.per-minute:10}") double chatPerMinute,
+                       @Value("${rate-limit.doubts.capacity:10}") int doubtCapacity,
+                       @Value("${rate-limit.doubts.per-minute:5}") double doubtPerMinute,
+                       @Value("${rate-limit.roadmaps.capacity:5}") int roadmapCapacity,
+                       @Value("${rate-limit.roadmaps.per-minute:2}") double roadmapPerMinute,
+                       @Value("${rate-limit.content.capacity:10}") int contentCapacity,
+                       @Value("${rate-limit.content.per-minute:5}") double contentPerMinute) {
+        this.enabled = enabled;
+        int share = Math.max(1, clusterSize);
+        limits.put(Endpoint.CHAT, limit(chatCapacity, chatPerMinute, share));
+        limits.put(Endpoint.DOUBT, limit(doubtCapacity, doubtPerMinute, share));
+        limits.put(Endpoint.ROADMAP, limit(roadmapCapacity, roadmapPerMinute, share));
+        limits.put(Endpoint.CONTENT, limit(contentCapacity, contentPerMinute, share));
+    }
+
+    private static Limit limit(int capacity, double perMinute, int share) {
+        return new Limit(Math.max(1.0, (double) capacity / share),
+                perMinute / share / TimeUnit.MINUTES.toNanos(1));
+    }
+
+    /**
+     * Take one token from the user's bucket for this endpoint.
+     *
+     * @return 0 if the request may proceed, otherwise nanoseconds until a token is available
+     */
+    public long tryAcquire(String userId, Endpoint endpoint) {
+        if (!enabled) {
+            return 0;
+        }
+        Limit limit = limits.get(endpoint);
+        AtomicReference<Bucket> ref = buckets.computeIfAbsent(endpoint.name() + ":" + userId,
+                key -> new AtomicReference<>(new Bucket(limit.capacity(), System.nanoTime())));
+
+        while (true) {
+            Bucket current = ref.get();
+            long now = System.nanoTime();
+            double tokens = refill(current, limit, now);
+            if (tokens < 1.0) {
+                return (long) Math.ceil((1.0 - tokens) / limit.tokensPerNano());
+            }
+            if (ref.compareAndSet(current, new Bucket(tokens - 1.0, now))) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drop buckets that have refilled completely; they are recreated full on next use.
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.entrySet().removeIf(entry -> {
+            Limit limit = limits.get(Endpoint.valueOf(entry.getKey().substring(0, entry.getKey().indexOf(':'))));
+            return refill(entry.getValue().get(), limit, now) >= limit.capacity();
+        });
+        if (before != buckets.size()) {
+            log.debug("Evicted {} idle rate limit buckets", before - buckets.size());
+        }
+    }
+
+    private static double refill(Bucket bucket, Limit limit, long now) {
+        return Math.min(limit.capacity(), bucket.tokens() + (now - bucket.refilledAt()) * limit.tokensPerNano());
+    }
+}
@@ -2,45 +2,87 @@ package com.study.service;
 
 import com.study.config.AIModelConfig;
 import com.study.dto.AIRequest;
+import com.study.dto.AIResponse;
 import com.study.dto.ChatRequest;
+import com.study.dto.KeysetPage;
+import com.study.exception.QuotaExceededException;
+import com.study.exception.ServiceOverloadedException;
 import com.study.model.ChatMessage;
 import com.study.model.ChatSession;
+import com.study.model.TokenUsage;
+import com.study.observability.Tracing;
 import com.study.repository.ChatMessageRepository;
 import com.study.repository.ChatSessionRepository;
+import com.study.util.KeysetCursor;
 import com.study.util.PromptTemplates;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Service
 public class ChatService {
 
+    /** models.json routing task for chat session titles */
+    private static final String TITLE_TASK = "title";
+
     private final ChatSessionRepository sessionRepository;
     private final ChatMessageRepository messageRepository;
     private final NvidiaAIService aiService;
     private final AIModelConfig modelConfig;
+    private final Tracing tracing;
+    private final MongoTemplate mongoTemplate;
+    private final StreamCancellationRegistry cancellations;
 
     public ChatService(ChatSessionRepository sessionRepository,
                        ChatMessageRepository messageRepository,
                        NvidiaAIService aiService,
-                       AIModelConfig modelConfig) {
+                       AIModelConfig modelConfig,
+                       Tracing tracing,
+                       MongoTemplate mongoTemplate,
+                       StreamCancellationRegistry cancellations) {
         this.sessionRepository = sessionRepository;
         this.messageRepository = messageRepository;
         this.aiService = aiService;
         this.modelConfig = modelConfig;
+        this.tracing = tracing;
+        this.mongoTemplate = mongoTemplate;
+        this.cancellations = cancellations;
     }
 
     // ── Session Management ──
 
-    public List<ChatSession> getUserSessions(String userId) {
-        return sessionRepository.findByUserIdOrderByUpdatedAtDesc(userId);
+    /**
+     * Sessions for the sidebar, most recently active first, one keyset page at a time.
+     */
+    public KeysetPage<ChatSession> listSessions(String userId, String cursor, int limit) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (after != null) {
+            criteria = criteria.andOperator(after.after("updatedAt"));
+        }
+        Query query = Query.query(criteria)
+                .with(KeysetCursor.newestFirst("updatedAt"))
+                .limit(limit + 1);
+        query.fields().include("userId", "title", "model", "messageCount", "createdAt", "updatedAt");
+
+        return KeysetPage.of(mongoTemplate.find(query, ChatSession.class), limit,
+                session -> new KeysetCursor(session.getUpdatedAt(), session.getId()));
     }
 
     public Optional<ChatSession> getSession(String sessionId, String userId) {
@@ -62,6 +104,21 @@ public class ChatService {
         log.info("Deleted chat session {} for user {}", sessionId, userId);
     }
 
+    /**
+     * Stop the answer being generated for a session. The stream ends with a "done" event
+     * and the partial answer is saved as truncated.
+     *
+     * @return true if a generation was running
+     */
+    public boolean cancelGeneration(String sessionId, String userId) {
+        sessionRepository.findByIdAndUserId(sessionId, userId)
+                .orElseThrow(() -> new RuntimeException("Session not found"));
+        boolean cancelled = cancellations.cancel(streamKey(sessionId, userId));
+        log.info("Cancel requested for chat session {} by user {}: {}", sessionId, userId,
+                cancelled ? "stopped" : "nothing running");
+        return cancelled;
+    }
+
     public ChatSession updateSessionTitle(String sessionId, String userId, String title) {
         ChatSession session = sessionRepository.findByIdAndUserId(sessionId, userId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
@@ -70,6 +127,44 @@ public class ChatService {
         return sessionRepository.save(session);
     }
 
+    /**
+     * Replace a new session's title (the truncated first message) with a short generated
+     * one, when models.json routes the "title" task to an available model (typically a
+     * small local one). Runs off the request; a title the user set meanwhile is kept.
+     */
+    private void suggestTitle(String sessionId, String userId, String message, String placeholder) {
+        Optional<String> model = aiService.modelForTask(TITLE_TASK);
+        if (model.isEmpty()) {
+            return;
+        }
+        Schedulers.boundedElastic().schedule(() -> {
+            try {
+                AIRequest aiRequest = AIRequest.withPrompt(PromptTemplates.formatChatTitlePrompt(
+                        message.length() > 1000 ? message.substring(0, 1000) : message));
+                aiRequest.setModel(model.get());
+                aiRequest.setMaxTokens(32);
+                aiRequest.setTemperature(0.3);
+                aiRequest.attributedTo(userId, TokenUsage.Feature.CHAT);
+                AIResponse response = aiService.generate(aiRequest);
+                if (!response.isSuccess() || response.getContent() == null) {
+                    return;
+                }
+                String title = stripThinkingTags(response.getContent()).strip()
+                        .replaceAll("^[\"'`]+|[\"'`.]+$", "");
+                if (title.isBlank() || title.length() > 80) {
+                    return;
+                }
+                mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(sessionId).and("title").is(placeholder)),
+                        new Update().set("title", title),
+                        ChatSession.class);
+                log.debug("Titled chat session {} with {}: {}", sessionId, model.get(), title);
+            } catch (Exception e) {
+                log.debug("Chat session title for {} not generated: {}", sessionId, e.getMessage());
+            }
+        });
+    }
+
     // ── Chat Streaming ──
 
     /**
@@ -97,6 +192,7 @@ public class ChatService {
                         .build();
                 session = sessionRepository.save(session);
                 log.info("Created new chat session {} for user {}", session.getId(), userId);
+                suggestTitle(session.getId(), userId, request.getMessage(), title);
             } else {
                 session = sessionRepository.findByIdAndUserId(request.getSessionId(), userId)
                         .orElseThrow(() -> new RuntimeException("Session not found"));
@@ -131,7 +227,8 @@ public class ChatService {
             boolean thinkingEnabled = modelSupportsThinking && request.isEnableThinking();
 
             // Build AI request with conversation history
-            AIRequest aiRequest = buildConversationRequest(history, resolvedModel, thinkingEnabled);
+            AIRequest aiRequest = buildConversationRequest(history, resolvedModel, thinkingEnabled)
+                    .attributedTo(userId, TokenUsage.Feature.CHAT);
 
             // Stream AI response
             final String sessionId = finalSession.getId();
@@ -149,7 +246,7 @@ public class ChatService {
                     aiRequest, sessionId, userId, resolvedModel, thinkingEnabled
             );
 
-            return sessionEvent.concatWith(contentStream);
+            return sessionEvent.concatWith(contentStream).contextWrite(Tracing.capture());
 
         } catch (Exception e) {
             log.error("Error sending chat message", e);
@@ -206,7 +303,9 @@ public class ChatService {
      * Handles two thinking formats:
      * 1. REASONING_MARKER prefix from NvidiaAIService (delta.reasoning_content field)
      * 2. Inline <think>...</think> tags in content stream (DeepSeek R1 style)
-     * Saves the assistant message when the stream completes.
+     * Saves the assistant message when the stream completes. If the stream is stopped
+     * via {@link #cancelGeneration} or abandoned by its client, the upstream call is cancelled
+     * and the partial message is saved with {@code truncated} set.
      */
     private Flux<ServerSentEvent<String>> streamAIResponse(AIRequest aiRequest,
                                                             String sessionId,
@@ -217,113 +316,168 @@ public class ChatService {
         StringBuilder thinkingContent = new StringBuilder();
         // Track state: [0] = inThinking (for inline <think> tag parsing)
         boolean[] state = {false};
+        Context parent = Context.current();
+        AtomicBoolean saved = new AtomicBoolean(false);
 
-        return aiService.generateStream(aiRequest)
-                .map(chunk -> {
-                    if (chunk.startsWith("[ERROR]")) {
-                        return ServerSentEvent.<String>builder()
-                                .event("error")
-                                .data("{\"message\":\"" + chunk.replace("\"", "'") + "\"}")
-                                .build();
-                    }
-
-                    if (thinkingEnabled) {
-                        // Check for REASONING_MARKER (from delta.reasoning_content)
-                        if (chunk.startsWith(NvidiaAIService.REASONING_MARKER)) {
-                            String reasoning = chunk.substring(NvidiaAIService.REASONING_MARKER.length());
-                            thinkingContent.append(reasoning);
-                            String escaped = escapeJson(reasoning);
+        return Flux.defer(() -> {
+            StreamCancellationRegistry.Registration stop = cancellations.register(streamKey(sessionId, userId));
+
+            return aiService.generateStream(aiRequest)
+                    .takeUntilOther(stop.signal())
+                    .map(chunk -> {
+                        if (chunk.startsWith("[ERROR]")) {
                             return ServerSentEvent.<String>builder()
-                                    .event("thinking")
-                                    .data("{\"content\":\"" + escaped + "\"}")
+                                    .event("error")
+                                    .data("{\"message\":\"" + chunk.replace("\"", "'") + "\"}")
                                     .build();
                         }
-                        // Otherwise parse inline <think> tags (DeepSeek R1 style)
-                        return processChunkWithThinking(chunk, fullContent, thinkingContent, state);
-                    } else {
-                        // Non-thinking mode: strip any accidental <think> tags and
-                        // reasoning markers, send only content
-                        String cleanChunk = chunk;
-                        if (cleanChunk.startsWith(NvidiaAIService.REASONING_MARKER)) {
-                            // Skip reasoning chunks when thinking is disabled
+
+                        if (thinkingEnabled) {
+                            // Check for REASONING_MARKER (from delta.reasoning_content)
+                            if (chunk.startsWith(NvidiaAIService.REASONING_MARKER)) {
+                                String reasoning = chunk.substring(NvidiaAIService.REASONING_MARKER.length());
+                                thinkingContent.append(reasoning);
+                                String escaped = escapeJson(reasoning);
+                                return ServerSentEvent.<String>builder()
+                                        .event("thinking")
+                                        .data("{\"content\":\"" + escaped + "\"}")
+                                        .build();
+                            }
+                            // Otherwise parse inline <think> tags (DeepSeek R1 style)
+                            return processChunkWithThinking(chunk, fullContent, thinkingContent, state);
+                        } else {
+                            // Non-thinking mode: strip any accidental <think> tags and
+                            // reasoning markers, send only content
+                            String cleanChunk = chunk;
+                            if (cleanChunk.startsWith(NvidiaAIService.REASONING_MARKER)) {
+                                // Skip reasoning chunks when thinking is disabled
+                                return ServerSentEvent.<String>builder()
+                                        .event("content")
+                                        .data("{\"content\":\"\"}")
+                                        .build();
+                            }
+                            fullContent.append(cleanChunk);
+                            String escaped = escapeJson(cleanChunk);
                             return ServerSentEvent.<String>builder()
                                     .event("content")
-                                    .data("{\"content\":\"\"}")
+                                    .data("{\"content\":\"" + escaped + "\"}")
                                     .build();
                         }
-                        fullContent.append(cleanChunk);
-                        String escaped = escapeJson(cleanChunk);
-                        return ServerSentEvent.<String>builder()
-                                .event("content")
-                                .data("{\"content\":\"" + escaped + "\"}")
-                                .build();
-                    }
-                })
-                .concatWith(Flux.defer(() -> {
-                    // Stream complete — save assistant message
-                    try {
-                        String content = fullContent.toString();
-                        String thinking = thinkingContent.toString();
-
-                        // Post-process: if content still has <think> tags (partial/leftover), strip them
-                        if (content.contains("</think>")) {
-                            String afterThink = content.split("</think>", 2).length > 1
-                                    ? content.split("</think>", 2)[1].stripLeading() : content;
-                            String beforeThink = content.split("<think>", 2).length > 1
-                                    ? content.split("<think>", 2)[0] : "";
-                            // Extract any thinking from content
-                            if (thinking.isEmpty() && content.contains("<think>") && content.contains("</think>")) {
-                                thinking = content.substring(
-                                        content.indexOf("<think>") + 7,
-                                        content.indexOf("</think>")
-                                ).strip();
-                            }
-                            content = (beforeThink + afterThink).strip();
+                    })
+                    .concatWith(Flux.defer(() -> {
+                        // Stream complete (or stopped) — save assistant message
+                        boolean truncated = stop.isCancelled();
+                        try {
+                            saveAssistantMessage(sessionId, userId, model, fullContent, thinkingContent,
+                                    truncated, saved, parent);
+                            return Flux.just(ServerSentEvent.<String>builder()
+                                    .event("done")
+                                    .data("{\"sessionId\":\"" + sessionId + "\",\"model\":\"" + model
+                                            + "\",\"truncated\":" + truncated + "}")
+                                    .build());
+                        } catch (Exception e) {
+                            log.error("Error saving assistant message", e);
+                            return Flux.just(ServerSentEvent.<String>builder()
+                                    .event("error")
+                                    .data("{\"message\":\"Failed to save response\"}")
+                                    .build());
                         }
-
-                        ChatMessage assistantMessage = ChatMessage.builder()
-                                .sessionId(sessionId)
-                                .userId(userId)
-                                .role("assistant")
-                                .content(content)
-                                .thinking(thinking.isEmpty() ? null : thinking)
-                                .model(model)
-                                .createdAt(LocalDateTime.now())
-                                .build();
-                        messageRepository.save(assistantMessage);
-
-                        // Update session
-                        sessionRepository.findById(sessionId).ifPresent(session -> {
-                            session.setMessageCount((int) messageRepository.countBySessionId(sessionId));
-                            session.setUpdatedAt(LocalDateTime.now());
-                            sessionRepository.save(session);
+                    }))
+                    .doOnCancel(() -> {
+                        // Abandoned mid-answer (no client came back in time): keep what was generated.
+                        // Saving blocks, so not on this thread.
+                        log.info("Chat stream for session {} cancelled before completion", sessionId);
+                        Schedulers.boundedElastic().schedule(() -> {
+                            try {
+                                saveAssistantMessage(sessionId, userId, model, fullContent, thinkingContent,
+                                        true, saved, parent);
+                            } catch (Exception e) {
+                                log.error("Error saving partial assistant message", e);
+                            }
                         });
+                    })
+                    // Refused before any token (quota used up, no upstream slot): tell the user why
+                    .onErrorResume(e -> e instanceof QuotaExceededException || e instanceof ServiceOverloadedException,
+                            e -> Flux.just(ServerSentEvent.<String>builder()
+                                    .event("error")
+                                    .data("{\"message\":\"" + escapeJson(e.getMessage()) + "\"}")
+                                    .build()))
+                    .doFinally(signal -> stop.release());
+        });
+    }
+
+    /**
+     * Save the assistant message and bump the session. Runs at most once per stream;
+     * a stream that produced nothing leaves no message behind when truncated.
+     */
+    private void saveAssistantMessage(String sessionId, String userId, String model,
+                                      StringBuilder fullContent, StringBuilder thinkingContent,
+                                      boolean truncated, AtomicBoolean saved, Context parent) {
+        if ((truncated && fullContent.isEmpty() && thinkingContent.isEmpty()) || !saved.compareAndSet(false, true)) {
+            return;
+        }
+        Span span = tracing.start("chat.persist", parent);
+        try (Scope ignored = span.makeCurrent()) {
+            String content = fullContent.toString();
+            String thinking = thinkingContent.toString();
+
+            // Post-process: if content still has <think> tags (partial/leftover), strip them
+            if (content.contains("</think>")) {
+                String afterThink = content.split("</think>", 2).length > 1
+                        ? content.split("</think>", 2)[1].stripLeading() : content;
+                String beforeThink = content.split("<think>", 2).length > 1
+                        ? content.split("<think>", 2)[0] : "";
+                // Extract any thinking from content
+                if (thinking.isEmpty() && content.contains("<think>") && content.contains("</think>")) {
+                    thinking = content.substring(
+                            content.indexOf("<think>") + 7,
+                            content.indexOf("</think>")
+                    ).strip();
+                }
+                content = (beforeThink + afterThink).strip();
+            }
+
+            ChatMessage assistantMessage = ChatMessage.builder()
+                    .sessionId(sessionId)
+                    .userId(userId)
+                    .role("assistant")
+                    .content(content)
+                    .thinking(thinking.isEmpty() ? null : thinking)
+                    .model(model)
+                    .truncated(truncated)
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            messageRepository.save(assistantMessage);
+
+            // Update session
+            sessionRepository.findById(sessionId).ifPresent(session -> {
+                session.setMessageCount((int) messageRepository.countBySessionId(sessionId));
+                session.setUpdatedAt(LocalDateTime.now());
+                sessionRepository.save(session);
+            });
+
+            log.info("Chat stream {} for session {}: content={}chars, thinking={}chars",
+                    truncated ? "truncated" : "completed", sessionId, content.length(), thinking.length());
+        } catch (RuntimeException e) {
+            Tracing.fail(span, e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
 
-                        log.info("Chat stream completed for session {}: content={}chars, thinking={}chars",
-                                sessionId, content.length(), thinking.length());
-
-                        return Flux.just(ServerSentEvent.<String>builder()
-                                .event("done")
-                                .data("{\"sessionId\":\"" + sessionId + "\",\"model\":\"" + model + "\"}")
-                                .build());
-                    } catch (Exception e) {
-                        log.error("Error saving assistant message", e);
-                        return Flux.just(ServerSentEvent.<String>builder()
-                                .event("error")
-                                .data("{\"message\":\"Failed to save response\"}")
-                                .build());
-                    }
-                }));
+    private static String streamKey(String sessionId, String userId) {
+        return userId + ":" + sessionId;
     }
 
     /**
      * Process a streaming chunk, detecting <think> tags for thinking-capable models.
      * Routes content to either "thinking" or "content" SSE event types.
      */
-    private ServerSentEvent<String> processChunkWithThinking(String chunk,
-                                                              StringBuilder fullContent,
-                                                              StringBuilder thinkingContent,
-                                                              boolean[] state) {
+    ServerSentEvent<String> processChunkWithThinking(String chunk,
+                                                     StringBuilder fullContent,
+                                                     StringBuilder thinkingContent,
+                                                     boolean[] state) {
         String remaining = chunk;
         StringBuilder thinkingPart = new StringBuilder();
         StringBuilder contentPart = new StringBuilder();
@@ -395,7 +549,7 @@ public class ChatService {
     /**
      * Escape a string for safe JSON embedding.
      */
-    private String escapeJson(String text) {
+    String escapeJson(String text) {
         if (text == null) return "";
         return text
                 .replace("\\", "\\\\")
@@ -0,0 +1,303 @@
+package com.study.service;
+
+import com.study.model.Content;
+import com.study.model.SharedContent;
+import com.study.model.Topic;
+import com.study.observability.AIMetrics;
+import com.study.repository.ContentRepository;
+import com.study.repository.SharedContentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Shared, content-addressed library of AI generated topic content.
+ *
+ * Topic content is keyed by a canonical fingerprint of the roadmap goal class,
+ * the topic title/description, the content type and the model. When a user asks
+ * for content that another user already generated, the library entry is copied
+ * into the user's own {@link Content} record instead of calling the AI again.
+ *
+ * Refresh policy: an entry is only reused while it is younger than
+ * {@code content.library.max-age-days} and scores at least
+ * {@code content.library.min-quality}. A stale or low-quality entry is treated
+ * as a miss; the fresh generation then replaces it in place and bumps its revision.
+ * Changing {@code content.library.version} invalidates every existing fingerprint.
+ */
+@Slf4j
+@Service
+public class ContentLibraryService {
+
+    private static final Set<String> GOAL_STOP_WORDS = Set.of(
+            "a", "an", "the", "and", "or", "to", "of", "in", "on", "for", "with", "as", "at", "by",
+            "i", "me", "my", "want", "would", "like", "how", "get", "be", "become", "becoming",
+            "learn", "learning", "master", "mastering", "understand", "understanding", "study", "studying",
+            "beginner", "beginners", "intermediate", "advanced", "expert", "basics", "from", "scratch",
+            "good", "better", "really", "able", "some", "into", "about", "using", "use"
+    );
+
+    private final SharedContentRepository sharedContentRepository;
+    private final ContentRepository contentRepository;
+    private final MongoTemplate mongoTemplate;
+    private final AIMetrics metrics;
+
+    @Value("${content.library.enabled:true}")
+    private boolean enabled;
+
+    @Value("${content.library.version:1}")
+    private int libraryVersion;
+
+    @Value("${content.library.max-age-days:90}")
+    private int maxAgeDays;
+
+    @Value("${content.library.min-quality:0.6}")
+    private double minQuality;
+
+    public ContentLibraryService(SharedContentRepository sharedContentRepository,
+                                 ContentRepository contentRepository,
+                                 MongoTemplate mongoTemplate,
+                                 AIMetrics metrics) {
+        this.sharedContentRepository = sharedContentRepository;
+        this.contentRepository = contentRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Compute the canonical fingerprint for a piece of topic content.
+     */
+    public String fingerprint(String goal, String topicTitle, String topicDescription,
+                              Content.ContentType type, String model) {
+        String canonical = String.join("\u001F",
+                "v" + libraryVersion,
+                goalClass(goal),
+                normalizeText(topicTitle),
+                normalizeText(topicDescription),
+                type != null ? type.name() : Content.ContentType.THEORY.name(),
+                model != null ? model : "");
+        return sha256(canonical);
+    }
+
+    /**
+     * Reduce a free-form learning goal to its subject keywords, so "Learn Python"
+     * and "I want to master python" land in the same class.
+     */
+    public String goalClass(String goal) {
+        if (goal == null || goal.isBlank()) {
+            return "";
+        }
+        return Arrays.stream(goal.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}+#]+"))
+                .filter(word -> !word.isEmpty())
+                .filter(word -> !GOAL_STOP_WORDS.contains(word))
+                .filter(word -> !word.chars().allMatch(Character::isDigit))
+                .collect(Collectors.toCollection(TreeSet::new))
+                .stream()
+                .collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Look up a reusable entry. Returns empty on a miss, or when the entry exists
+     * but is stale or below the quality bar (the caller then regenerates).
+     */
+    public Optional<SharedContent> findReusable(String fingerprint) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Optional<SharedContent> entry = sharedContentRepository.findByFingerprint(fingerprint);
+        if (entry.isEmpty()) {
+            log.debug("Content library miss: {}", fingerprint);
+            metrics.cacheLookup("content-library", false);
+            return Optional.empty();
+        }
+
+        SharedContent shared = entry.get();
+        if (isStale(shared)) {
+            log.info("Content library entry {} (rev {}) is stale, regenerating", shared.getId(), shared.getRevision());
+            metrics.cacheLookup("content-library", false);
+            return Optional.empty();
+        }
+        if (shared.getQualityScore() < minQuality) {
+            log.info("Content library entry {} quality {} below {}, regenerating",
+                    shared.getId(), shared.getQualityScore(), minQuality);
+            metrics.cacheLookup("content-library", false);
+            return Optional.empty();
+        }
+
+        log.info("Content library hit: {} (rev {}, reused {} times)",
+                shared.getId(), shared.getRevision(), shared.getReuseCount());
+        metrics.cacheLookup("content-library", true);
+        return entry;
+    }
+
+    /**
+     * Copy a library entry into a user's own content record for the given topic.
+     */
+    public Content copyForUser(SharedContent shared, Topic topic, String roadmapId, String userId) {
+        return contentRepository.save(prepareCopy(shared, topic, roadmapId, userId));
+    }
+
+    /**
+     * Same as {@link #copyForUser} but leaves saving the copy to the caller, for bulk inserts.
+     */
+    public Content prepareCopy(SharedContent shared, Topic topic, String roadmapId, String userId) {
+        Content content = Content.builder()
+                .topicId(topic.getId())
+                .roadmapId(roadmapId)
+                .userId(userId)
+                .type(shared.getType())
+                .title(shared.getTitle())
+                .markdownContent(shared.getMarkdownContent())
+                .rawContent(shared.getRawContent())
+                .codeExamples(new ArrayList<>(shared.getCodeExamples()))
+                .quizQuestions(new ArrayList<>(shared.getQuizQuestions()))
+                .keyPoints(new ArrayList<>(shared.getKeyPoints()))
+                .aiGenerated(true)
+                .aiModelVersion(shared.getModel())
+                .sharedContentId(shared.getId())
+                .sharedContentRevision(shared.getRevision())
+                .readingTimeMinutes(shared.getReadingTimeMinutes())
+                .complexity(shared.getComplexity())
+                .build();
+
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(shared.getId())),
+                new Update().inc("reuseCount", 1).set("lastReusedAt", LocalDateTime.now()),
+                SharedContent.class);
+
+        return content;
+    }
+
+    /**
+     * Publish freshly generated content to the library. A missing entry is inserted,
+     * a stale or lower-quality entry is replaced in place with a bumped revision.
+     * The user's content record is linked to the resulting entry.
+     */
+    public Content publish(String fingerprint, String goal, Topic topic, String model, Content generated) {
+        return publishEntry(fingerprint, goal, topic, model, generated)
+                ? contentRepository.save(generated)
+                : generated;
+    }
+
+    /**
+     * Same as {@link #publish} but only links {@code generated} to the entry without
+     * saving it, for callers that insert their content in bulk.
+     *
+     * @return true if the content was linked to a new or replaced library entry
+     */
+    public boolean publishEntry(String fingerprint, String goal, Topic topic, String model, Content generated) {
+        if (!enabled) {
+            return false;
+        }
+
+        double quality = scoreQuality(generated);
+        LocalDateTime now = LocalDateTime.now();
+
+        try {
+            Optional<SharedContent> existing = sharedContentRepository.findByFingerprint(fingerprint);
+            SharedContent shared;
+            if (existing.isPresent()) {
+                shared = existing.get();
+                boolean replace = isStale(shared) || quality >= shared.getQualityScore();
+                if (!replace) {
+                    log.debug("Keeping library entry {} (quality {} >= {})",
+                            shared.getId(), shared.getQualityScore(), quality);
+                    return false;
+                }
+                shared.setRevision(shared.getRevision() + 1);
+            } else {
+                shared = SharedContent.builder()
+                        .fingerprint(fingerprint)
+                        .goalClass(goalClass(goal))
+                        .topicTitle(topic.getTitle())
+                        .topicDescription(topic.getDescription())
+                        .type(generated.getType())
+                        .model(model)
+                        .build();
+            }
+
+            shared.setTitle(generated.getTitle());
+            shared.setMarkdownContent(generated.getMarkdownContent());
+            shared.setRawContent(generated.getRawContent());
+            shared.setCodeExamples(new ArrayList<>(generated.getCodeExamples()));
+            shared.setQuizQuestions(new ArrayList<>(generated.getQuizQuestions()));
+            shared.setKeyPoints(new ArrayList<>(generated.getKeyPoints()));
+            shared.setReadingTimeMinutes(generated.getReadingTimeMinutes());
+            shared.setComplexity(generated.getComplexity());
+            shared.setQualityScore(quality);
+            shared.setGeneratedAt(now);
+            shared = sharedContentRepository.save(shared);
+
+            log.info("Published content to library: {} rev {} (quality {})",
+                    shared.getId(), shared.getRevision(), String.format("%.2f", quality));
+
+            generated.setSharedContentId(shared.getId());
+            generated.setSharedContentRevision(shared.getRevision());
+            return true;
+
+        } catch (DuplicateKeyException e) {
+            // Another user published the same fingerprint concurrently; theirs wins
+            log.debug("Concurrent library publish for {}, keeping existing entry", fingerprint);
+            return false;
+        } catch (Exception e) {
+            log.error("Failed to publish content to library: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Heuristic quality score from the structure of the generated artefact.
+     */
+    double scoreQuality(Content content) {
+        double score = 0.0;
+
+        int markdownLength = content.getMarkdownContent() != null ? content.getMarkdownContent().length() : 0;
+        score += Math.min(markdownLength / 4000.0, 1.0) * 0.5;
+
+        int quizCount = (int) content.getQuizQuestions().stream()
+                .filter(q -> q.getQuestion() != null && !q.getQuestion().isBlank())
+                .filter(q -> q.getOptions() != null && q.getOptions().size() >= 2)
+                .count();
+        score += Math.min(quizCount / 3.0, 1.0) * 0.25;
+
+        score += Math.min(content.getKeyPoints().size() / 5.0, 1.0) * 0.15;
+
+        boolean hasTitle = content.getTitle() != null && !content.getTitle().isBlank();
+        score += hasTitle ? 0.1 : 0.0;
+
+        return score;
+    }
+
+    private boolean isStale(SharedContent shared) {
+        LocalDateTime generatedAt = shared.getGeneratedAt() != null ? shared.getGeneratedAt() : shared.getCreatedAt();
+        return generatedAt == null || generatedAt.isBefore(LocalDateTime.now().minusDays(maxAgeDays));
+    }
+
+    static String normalizeText(String text) {
+        if (text == null) return "";
+        return text.toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{N}+#]+", " ")
+                .trim();
+    }
+
+    static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.study.service;
+
+import com.study.model.Topic;
+import com.study.observability.AIMetrics;
+import com.study.repository.TopicRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Speculative prefetch of the next topic's content.
+ *
+ * When a student opens topic N, THEORY content for the topic after it (by sequenceOrder)
+ * is generated in the background, so opening it next is served from the database
+ * instead of waiting for the model. Prefetches run on their own small pool
+ * (max-concurrent, queue-capacity; overflow is dropped) and upstream calls are
+ * attributed to the PREFETCH feature, which the fair-share scheduler weighs below
+ * user-facing generation.
+ *
+ * The request thread only queues the opened topic's id; finding the next topic and the
+ * checks run on the pool. A prefetch is skipped when it starts if the user has used
+ * max-quota-used of their daily token quota or the upstream scheduler's load is at
+ * max-upstream-load. Pausing or deleting the roadmap cancels a running prefetch.
+ * TopicContentPrefetcher claims, generates and stores the chosen topic's content.
+ */
+@Slf4j
+@Service
+public class ContentPrefetchService {
+
+    private final TopicContentPrefetcher prefetcher;
+    private final TopicRepository topicRepository;
+    private final UsageLedgerService usageLedger;
+    private final FairShareScheduler scheduler;
+    private final AIMetrics metrics;
+
+    private final boolean enabled;
+    private final double maxQuotaUsed;
+    private final double maxUpstreamLoad;
+    private final ThreadPoolExecutor executor;
+    /** Opened topics whose prefetch is queued or running */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public ContentPrefetchService(TopicContentPrefetcher prefetcher,
+                                  TopicRepository topicRepository,
+                                  UsageLedgerService usageLedger,
+                                  FairShareScheduler scheduler,
+                                  AIMetrics metrics,
+                                  @Value("${prefetch.enabled:true}") boolean enabled,
+                                  @Value("${prefetch.max-concurrent:2}") int maxConcurrent,
+                                  @Value("${prefetch.queue-capacity:20}") int queueCapacity,
+                                  @Value("${prefetch.max-quota-used:0.8}") double maxQuotaUsed,
+                                  @Value("${prefetch.max-upstream-load:0.5}") double maxUpstreamLoad) {
+        this.prefetcher = prefetcher;
+        this.topicRepository = topicRepository;
+        this.usageLedger = usageLedger;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.maxQuotaUsed = maxQuotaUsed;
+        this.maxUpstreamLoad = maxUpstreamLoad;
+
+        AtomicInteger threads = new AtomicInteger();
+        int workers = Math.max(1, maxConcurrent);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                task -> {
+                    Thread thread = new Thread(task, "content-prefetch-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * The student opened a topic: queue a prefetch of the topic after it, if it has no
+     * content yet. Returns immediately; every lookup happens on the prefetch pool.
+     */
+    public void prefetchAfter(String userId, String topicId) {
+        if (!enabled || !pending.add(topicId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> run(userId, topicId));
+        } catch (RejectedExecutionException e) {
+            pending.remove(topicId);
+            metrics.countPrefetch("queue-full");
+        }
+    }
+
+    private void run(String userId, String openedTopicId) {
+        try {
+            String skipped = skipReason(userId);
+            if (skipped != null) {
+                metrics.countPrefetch(skipped);
+                return;
+            }
+            Topic opened = topicRepository.findByIdAndUserId(openedTopicId, userId).orElse(null);
+            if (opened == null) {
+                return;
+            }
+            Topic next = topicRepository.findByRoadmapIdOrderBySequenceOrderAsc(opened.getRoadmapId()).stream()
+                    .filter(topic -> topic.getSequenceOrder() > opened.getSequenceOrder())
+                    .findFirst()
+                    .orElse(null);
+            if (next == null || !next.getContentIds().isEmpty() || next.getStatus() == Topic.TopicStatus.COMPLETED) {
+                return;
+            }
+
+            log.debug("Prefetching content for topic {} after {}", next.getId(), openedTopicId);
+            boolean stored = prefetcher.prefetchTopicContent(userId, next.getId());
+            metrics.countPrefetch(stored ? "generated" : "dropped");
+        } catch (Exception e) {
+            log.warn("Content prefetch after topic {} failed: {}", openedTopicId, e.getMessage());
+            metrics.countPrefetch("failed");
+        } finally {
+            pending.remove(openedTopicId);
+        }
+    }
+
+    private String skipReason(String userId) {
+        if (usageLedger.quotaUsed(userId) >= maxQuotaUsed) {
+            return "skipped-quota";
+        }
+        if (scheduler.load() >= maxUpstreamLoad) {
+            return "skipped-load";
+        }
+        return null;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
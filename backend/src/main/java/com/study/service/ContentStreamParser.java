@@ -0,0 +1,302 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental parser for the CONTENT_GENERATION JSON document as it streams in.
+ *
+ * The model answers with a single JSON object (optionally fenced or preceded by
+ * a think block). This parser tracks just enough JSON structure to:
+ * - emit the top-level "title" as soon as it is complete
+ * - stream the "markdownContent" string, decoded, one markdown section at a time
+ * - emit each element of "quizQuestions" and "codeExamples" as soon as it closes
+ *
+ * The full text is kept so the caller can do an authoritative parse at the end.
+ * Not thread-safe; one instance per stream.
+ */
+@Slf4j
+class ContentStreamParser {
+
+    enum EventType { TITLE, MARKDOWN, QUIZ_QUESTION, CODE_EXAMPLE }
+
+    record Event(EventType type, String text, JsonNode node) {
+        static Event text(EventType type, String text) {
+            return new Event(type, text, null);
+        }
+
+        static Event node(EventType type, JsonNode node) {
+            return new Event(type, null, node);
+        }
+    }
+
+    /** Flush a long section at the next blank line once it grows past this size */
+    private static final int PARAGRAPH_FLUSH_CHARS = 1200;
+
+    private final ObjectMapper objectMapper;
+    private final StringBuilder raw = new StringBuilder();
+
+    // ── JSON structure state ──
+    private boolean started;
+    private boolean closed;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private int unicodeRemaining;
+    private final StringBuilder unicode = new StringBuilder(4);
+    private boolean expectingKey;
+    private String currentKey;
+    private final StringBuilder stringValue = new StringBuilder();
+    private StringTarget stringTarget = StringTarget.NONE;
+
+    // ── Array element capture ──
+    private EventType arrayCapture;
+    private int elementStart = -1;
+
+    // ── Markdown sectioning ──
+    private final StringBuilder section = new StringBuilder();
+    private final StringBuilder line = new StringBuilder();
+    private boolean inFence;
+
+    private enum StringTarget { NONE, KEY, TITLE, MARKDOWN, OTHER }
+
+    ContentStreamParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Feed the next chunk of model output and return any events it completed.
+     */
+    List<Event> feed(String chunk) {
+        List<Event> events = new ArrayList<>();
+        int offset = raw.length();
+        raw.append(chunk);
+
+        if (!started) {
+            int jsonStart = findJsonStart();
+            if (jsonStart == -1) {
+                return events;
+            }
+            started = true;
+            offset = jsonStart;
+        }
+
+        for (int i = offset; i < raw.length(); i++) {
+            consume(raw.charAt(i), i, events);
+        }
+        return events;
+    }
+
+    /**
+     * Signal end of stream and flush whatever markdown is still buffered.
+     */
+    List<Event> finish() {
+        List<Event> events = new ArrayList<>();
+        if (stringTarget == StringTarget.MARKDOWN) {
+            flushLine();
+            flushSection(events);
+        }
+        return events;
+    }
+
+    /** Everything received so far, for the authoritative parse at the end */
+    String rawContent() {
+        return raw.toString();
+    }
+
+    private int findJsonStart() {
+        String text = raw.toString();
+        int searchFrom = 0;
+        int thinkOpen = text.indexOf("<think>");
+        if (thinkOpen != -1) {
+            int thinkClose = text.indexOf("</think>", thinkOpen);
+            if (thinkClose == -1) {
+                return -1;
+            }
+            searchFrom = thinkClose + "</think>".length();
+        }
+        return text.indexOf('{', searchFrom);
+    }
+
+    private void consume(char c, int index, List<Event> events) {
+        if (closed) {
+            // Top-level object already closed; ignore trailing text (closing fences etc.)
+            return;
+        }
+
+        if (inString) {
+            consumeStringChar(c, events);
+            return;
+        }
+
+        switch (c) {
+            case '"' -> startString();
+            case '{' -> {
+                depth++;
+                if (depth == 1) {
+                    expectingKey = true;
+                }
+                if (depth == 3 && arrayCapture != null) {
+                    elementStart = index;
+                }
+            }
+            case '}' -> {
+                if (depth == 3 && arrayCapture != null && elementStart != -1) {
+                    emitElement(raw.substring(elementStart, index + 1), events);
+                    elementStart = -1;
+                }
+                if (--depth == 0) {
+                    closed = true;
+                }
+            }
+            case '[' -> {
+                depth++;
+                if (depth == 2 && "quizQuestions".equals(currentKey)) {
+                    arrayCapture = EventType.QUIZ_QUESTION;
+                } else if (depth == 2 && "codeExamples".equals(currentKey)) {
+                    arrayCapture = EventType.CODE_EXAMPLE;
+                }
+            }
+            case ']' -> {
+                if (depth == 2) {
+                    arrayCapture = null;
+                }
+                depth--;
+            }
+            case ':' -> {
+                if (depth == 1) expectingKey = false;
+            }
+            case ',' -> {
+                if (depth == 1) expectingKey = true;
+            }
+            default -> { /* whitespace, numbers, literals */ }
+        }
+    }
+
+    private void startString() {
+        inString = true;
+        stringValue.setLength(0);
+        if (depth != 1) {
+            stringTarget = StringTarget.OTHER;
+        } else if (expectingKey) {
+            stringTarget = StringTarget.KEY;
+        } else if ("title".equals(currentKey)) {
+            stringTarget = StringTarget.TITLE;
+        } else if ("markdownContent".equals(currentKey)) {
+            stringTarget = StringTarget.MARKDOWN;
+            section.setLength(0);
+            line.setLength(0);
+            inFence = false;
+        } else {
+            stringTarget = StringTarget.OTHER;
+        }
+    }
+
+    private void consumeStringChar(char c, List<Event> events) {
+        if (unicodeRemaining > 0) {
+            unicode.append(c);
+            if (--unicodeRemaining == 0) {
+                try {
+                    appendDecoded((char) Integer.parseInt(unicode.toString(), 16), events);
+                } catch (NumberFormatException e) {
+                    log.trace("Bad unicode escape in content stream: {}", unicode);
+                }
+                unicode.setLength(0);
+            }
+            return;
+        }
+
+        if (escaped) {
+            escaped = false;
+            switch (c) {
+                case 'n' -> appendDecoded('\n', events);
+                case 't' -> appendDecoded('\t', events);
+                case 'r' -> appendDecoded('\r', events);
+                case 'b' -> appendDecoded('\b', events);
+                case 'f' -> appendDecoded('\f', events);
+                case 'u' -> unicodeRemaining = 4;
+                default -> appendDecoded(c, events);
+            }
+            return;
+        }
+
+        if (c == '\\') {
+            escaped = true;
+        } else if (c == '"') {
+            endString(events);
+        } else {
+            appendDecoded(c, events);
+        }
+    }
+
+    private void endString(List<Event> events) {
+        inString = false;
+        switch (stringTarget) {
+            case KEY -> currentKey = stringValue.toString();
+            case TITLE -> events.add(Event.text(EventType.TITLE, stringValue.toString()));
+            case MARKDOWN -> {
+                flushLine();
+                flushSection(events);
+            }
+            default -> { }
+        }
+        stringTarget = StringTarget.NONE;
+    }
+
+    private void appendDecoded(char c, List<Event> events) {
+        if (stringTarget != StringTarget.MARKDOWN) {
+            if (stringTarget == StringTarget.KEY || stringTarget == StringTarget.TITLE) {
+                stringValue.append(c);
+            }
+            return;
+        }
+
+        line.append(c);
+        if (c != '\n') {
+            return;
+        }
+
+        String completed = line.toString();
+        line.setLength(0);
+        String trimmed = completed.stripLeading();
+
+        if (trimmed.startsWith("```")) {
+            inFence = !inFence;
+        } else if (!inFence && trimmed.startsWith("#") && !section.toString().isBlank()) {
+            // New heading outside a code fence: the previous section is complete
+            flushSection(events);
+        }
+
+        section.append(completed);
+
+        if (!inFence && completed.isBlank() && section.length() >= PARAGRAPH_FLUSH_CHARS) {
+            flushSection(events);
+        }
+    }
+
+    private void flushLine() {
+        if (!line.isEmpty()) {
+            section.append(line);
+            line.setLength(0);
+        }
+    }
+
+    private void flushSection(List<Event> events) {
+        if (!section.isEmpty()) {
+            events.add(Event.text(EventType.MARKDOWN, section.toString()));
+            section.setLength(0);
+        }
+    }
+
+    private void emitElement(String json, List<Event> events) {
+        try {
+            events.add(Event.node(arrayCapture, objectMapper.readTree(json)));
+        } catch (Exception e) {
+            log.debug("Skipping unparseable {} element: {}", arrayCapture, e.getMessage());
+        }
+    }
+}
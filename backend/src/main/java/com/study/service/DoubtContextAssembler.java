@@ -0,0 +1,136 @@
+package com.study.service;
+
+import com.study.dto.DoubtRequest;
+import com.study.model.Content;
+import com.study.model.Roadmap;
+import com.study.model.Topic;
+import com.study.model.UserInteraction;
+import com.study.observability.Tracing;
+import com.study.repository.ContentRepository;
+import com.study.repository.RoadmapRepository;
+import com.study.repository.TopicRepository;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gathers everything a doubt prompt needs in a single parallel wave.
+ *
+ * Each record is fetched once per request: the topic, the roadmap, the topic's
+ * contents, one page of recent interactions (large enough for both the RAG
+ * similarity window and the history section) and, optionally, the user's
+ * topics for related-topic suggestions. Lookups run concurrently on the
+ * bounded elastic scheduler and each stage's duration is recorded, both in the
+ * snapshot and as a child span of "doubt.context".
+ */
+@Slf4j
+@Service
+public class DoubtContextAssembler {
+
+    private final TopicRepository topicRepository;
+    private final RoadmapRepository roadmapRepository;
+    private final ContentRepository contentRepository;
+    private final RAGService ragService;
+    private final Tracing tracing;
+
+    public DoubtContextAssembler(TopicRepository topicRepository,
+                                 RoadmapRepository roadmapRepository,
+                                 ContentRepository contentRepository,
+                                 RAGService ragService,
+                                 Tracing tracing) {
+        this.topicRepository = topicRepository;
+        this.roadmapRepository = roadmapRepository;
+        this.contentRepository = contentRepository;
+        this.ragService = ragService;
+        this.tracing = tracing;
+    }
+
+    /**
+     * Per-request snapshot of the data behind a doubt prompt.
+     * userTopics is empty unless it was requested.
+     */
+    public record Snapshot(Topic topic,
+                           Roadmap roadmap,
+                           List<Content> topicContents,
+                           List<UserInteraction> recentInteractions,
+                           List<Topic> userTopics,
+                           Map<String, Long> stageTimings,
+                           long totalMillis) {
+    }
+
+    /**
+     * Assemble the snapshot for a doubt.
+     *
+     * @param includeUserTopics also load the user's topics for suggestions; streaming
+     *                          callers leave this off so it never delays the first token
+     */
+    public Mono<Snapshot> assemble(String userId, DoubtRequest request, boolean includeUserTopics) {
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        String topicId = request.getTopicId();
+        String roadmapId = request.getRoadmapId();
+        int interactionPage = request.isIncludeUserHistory()
+                ? Math.max(RAGService.SIMILARITY_WINDOW, request.getMaxHistoryItems())
+                : RAGService.SIMILARITY_WINDOW;
+
+        // Captured on the calling thread; the lookups run on scheduler threads
+        Context parent = Context.current();
+
+        return Mono.defer(() -> {
+            Span span = tracing.start("doubt.context", parent);
+            Context context = parent.with(span);
+
+            Mono<Optional<Topic>> topic = topicId == null
+                    ? Mono.just(Optional.empty())
+                    : timed("topic", timings, context, () -> topicRepository.findById(topicId));
+            Mono<Optional<Roadmap>> roadmap = roadmapId == null
+                    ? Mono.just(Optional.empty())
+                    : timed("roadmap", timings, context, () -> roadmapRepository.findById(roadmapId));
+            Mono<List<Content>> contents = topicId == null
+                    ? Mono.just(List.of())
+                    : timed("contents", timings, context, () -> contentRepository.findByTopicIdOrderByCreatedAtAsc(topicId));
+            Mono<List<UserInteraction>> interactions = timed("interactions", timings, context,
+                    () -> ragService.getUserLearningHistory(userId, interactionPage));
+            Mono<List<Topic>> userTopics = includeUserTopics
+                    ? timed("userTopics", timings, context, () -> topicRepository.findByUserIdOrderByCreatedAtDesc(userId))
+                    : Mono.just(List.of());
+
+            long start = System.nanoTime();
+            return Mono.zip(topic, roadmap, contents, interactions, userTopics)
+                    .map(parts -> {
+                        long totalMillis = (System.nanoTime() - start) / 1_000_000;
+                        Snapshot snapshot = new Snapshot(
+                                parts.getT1().orElse(null),
+                                parts.getT2().orElse(null),
+                                parts.getT3(),
+                                parts.getT4(),
+                                parts.getT5(),
+                                new TreeMap<>(timings),
+                                totalMillis);
+                        log.info("Doubt context assembled in {}ms for user {} (stages: {})",
+                                totalMillis, userId, snapshot.stageTimings());
+                        return snapshot;
+                    })
+                    .doOnError(e -> Tracing.fail(span, e))
+                    .doFinally(signal -> span.end());
+        });
+    }
+
+    private <T> Mono<T> timed(String stage, Map<String, Long> timings, Context parent, Callable<T> lookup) {
+        return Mono.fromCallable(() -> tracing.inSpan("doubt.context." + stage, parent, () -> {
+                    long start = System.nanoTime();
+                    try {
+                        return lookup.call();
+                    } finally {
+                        timings.put(stage, (System.nanoTime() - start) / 1_000_000);
+                    }
+                }))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
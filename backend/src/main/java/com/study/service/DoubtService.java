@@ -5,48 +5,72 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.study.config.AIModelConfig;
 import com.study.dto.AIRequest;
 import com.study.dto.AIResponse;
+import com.study.dto.DoubtDetail;
 import com.study.dto.DoubtRequest;
+import com.study.dto.DoubtSummary;
+import com.study.dto.KeysetPage;
 import com.study.model.*;
+import com.study.observability.Tracing;
 import com.study.repository.*;
+import com.study.util.KeysetCursor;
 import com.study.util.PromptTemplates;
+import com.study.util.SseEvents;
+import io.opentelemetry.context.Context;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 public class DoubtService {
 
-    private final UserInteractionRepository interactionRepository;
+    /** Mongo cursor batch size and flush interval of the NDJSON export */
+    private static final int EXPORT_BATCH_SIZE = 100;
+
     private final TopicRepository topicRepository;
-    private final RoadmapRepository roadmapRepository;
-    private final ContentRepository contentRepository;
     private final NvidiaAIService aiService;
     private final RAGService ragService;
+    private final DoubtContextAssembler contextAssembler;
     private final ObjectMapper objectMapper;
     private final AIModelConfig modelConfig;
-    private final GamificationService gamificationService;
+    private final WriteBehindService writeBehind;
+    private final Tracing tracing;
+    private final MongoTemplate mongoTemplate;
 
-    public DoubtService(UserInteractionRepository interactionRepository,
-                        TopicRepository topicRepository,
-                        RoadmapRepository roadmapRepository,
-                        ContentRepository contentRepository,
+    public DoubtService(TopicRepository topicRepository,
                         NvidiaAIService aiService,
                         RAGService ragService,
+                        DoubtContextAssembler contextAssembler,
                         ObjectMapper objectMapper,
                         AIModelConfig modelConfig,
-                        GamificationService gamificationService) {
-        this.interactionRepository = interactionRepository;
+                        WriteBehindService writeBehind,
+                        Tracing tracing,
+                        MongoTemplate mongoTemplate) {
         this.topicRepository = topicRepository;
-        this.roadmapRepository = roadmapRepository;
-        this.contentRepository = contentRepository;
         this.aiService = aiService;
         this.ragService = ragService;
+        this.contextAssembler = contextAssembler;
         this.objectMapper = objectMapper;
         this.modelConfig = modelConfig;
-        this.gamificationService = gamificationService;
+        this.writeBehind = writeBehind;
+        this.tracing = tracing;
+        this.mongoTemplate = mongoTemplate;
     }
 
     /**
@@ -55,7 +79,114 @@ public class DoubtService {
     public Map<String, Object> solveDoubt(String userId, DoubtRequest request) {
         log.info("Processing doubt for user {}: {}", userId, request.getDoubt());
         
-        // Create interaction record
+        // Fetch everything the prompt needs in one parallel wave
+        DoubtContextAssembler.Snapshot snapshot = contextAssembler.assemble(userId, request, true).block();
+        
+        // Build prompt for AI
+        String prompt = tracing.inSpan("doubt.prompt", () -> buildPrompt(snapshot, request));
+        
+        // Generate AI response (with optional model selection)
+        String resolvedModel = modelConfig.resolveModelId(request.getModel());
+        AIRequest aiRequest = AIRequest.withSystemPrompt(
+                PromptTemplates.SYSTEM_PROMPT_DOUBT_SOLVER,
+                prompt
+        ).attributedTo(userId, TokenUsage.Feature.DOUBT);
+        aiRequest.setModel(resolvedModel);
+        AIResponse aiResponse = aiService.generate(aiRequest);
+        
+        UserInteraction interaction = tracing.inSpan("doubt.persist", () -> recordDoubt(userId, request,
+                aiResponse.isSuccess() ? aiResponse.getContent() : null));
+        
+        // Prepare response
+        Map<String, Object> response = new HashMap<>();
+        response.put("doubtId", interaction.getId());
+        response.put("answer", interaction.getAiResponse());
+        response.put("resolved", interaction.isResolved());
+        response.put("confidence", interaction.getConfidence());
+        response.put("timestamp", interaction.getCreatedAt());
+        response.put("suggestedTopics", suggestRelatedTopics(snapshot.userTopics(), request.getDoubt()));
+        
+        return response;
+    }
+
+    /**
+     * Solve a doubt with the answer streamed via SSE.
+     * Context lookups run in one parallel wave before the first token; the interaction is
+     * written once when the stream completes. Event types: "thinking", "content",
+     * "error", "done" (with doubtId) and a final "suggestions" event.
+     */
+    public Flux<ServerSentEvent<String>> solveDoubtStream(String userId, DoubtRequest request) {
+        log.info("Processing streamed doubt for user {}: {}", userId, request.getDoubt());
+        Context parent = Context.current();
+        
+        // Related topics don't feed the prompt, so compute them alongside the answer
+        Mono<List<Map<String, String>>> suggestions = Mono
+                .fromCallable(() -> tracing.inSpan("doubt.suggestions", parent, () -> suggestRelatedTopics(
+                        topicRepository.findByUserIdOrderByCreatedAtDesc(userId), request.getDoubt())))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("Failed to suggest related topics for user {}: {}", userId, e.getMessage());
+                    return Mono.just(List.of());
+                })
+                .cache();
+        
+        return contextAssembler.assemble(userId, request, false)
+                .doOnSubscribe(s -> suggestions.subscribe())
+                .flatMapMany(snapshot -> {
+                    String prompt = tracing.inSpan("doubt.prompt", parent, () -> buildPrompt(snapshot, request));
+                    
+                    AIRequest aiRequest = AIRequest.withSystemPrompt(
+                            PromptTemplates.SYSTEM_PROMPT_DOUBT_SOLVER,
+                            prompt
+                    ).attributedTo(userId, TokenUsage.Feature.DOUBT);
+                    aiRequest.setModel(modelConfig.resolveModelId(request.getModel()));
+                    
+                    StringBuilder answer = new StringBuilder();
+                    AtomicBoolean failed = new AtomicBoolean(false);
+                    
+                    return aiService.generateStream(aiRequest)
+                            .map(chunk -> {
+                                if (chunk.startsWith("[ERROR]")) {
+                                    failed.set(true);
+                                    return sseEvent("error", Map.of("message", chunk));
+                                }
+                                if (chunk.startsWith(NvidiaAIService.REASONING_MARKER)) {
+                                    String reasoning = chunk.substring(NvidiaAIService.REASONING_MARKER.length());
+                                    return sseEvent("thinking", Map.of("content", reasoning));
+                                }
+                                answer.append(chunk);
+                                return sseEvent("content", Map.of("content", chunk));
+                            })
+                            .concatWith(Flux.defer(() -> {
+                                boolean resolved = !failed.get() && !answer.isEmpty();
+                                UserInteraction interaction = tracing.inSpan("doubt.persist", parent,
+                                        () -> recordDoubt(userId, request, resolved ? answer.toString() : null));
+                                
+                                Map<String, Object> done = new HashMap<>();
+                                done.put("doubtId", interaction.getId());
+                                done.put("resolved", interaction.isResolved());
+                                done.put("confidence", interaction.getConfidence());
+                                done.put("timestamp", interaction.getCreatedAt());
+                                
+                                return Flux.just(sseEvent("done", done));
+                            }))
+                            .concatWith(suggestions.map(topics ->
+                                    sseEvent("suggestions", Map.of("suggestedTopics", topics))));
+                })
+                .onErrorResume(e -> {
+                    log.error("Error streaming doubt answer", e);
+                    return Flux.just(sseEvent("error", Map.of("message",
+                            e.getMessage() != null ? e.getMessage() : "Failed to process doubt")));
+                })
+                .contextWrite(Tracing.capture());
+    }
+
+    /**
+     * Queue the doubt with its answer and the doubt XP on the write-behind buffer;
+     * the returned interaction already has its id and timestamp.
+     * A null answer records the doubt as unresolved with the fallback message.
+     */
+    private UserInteraction recordDoubt(String userId, DoubtRequest request, String answer) {
         UserInteraction interaction = UserInteraction.builder()
                 .userId(userId)
                 .roadmapId(request.getRoadmapId())
@@ -65,37 +196,8 @@ public class DoubtService {
                 .resolved(false)
                 .build();
         
-        // Get context for the doubt
-        String context = buildContext(userId, request);
-        String topicInfo = getTopicInfo(request.getTopicId());
-        String roadmapInfo = getRoadmapInfo(request.getRoadmapId());
-        
-        // Get history context if requested
-        String historyContext = "";
-        if (request.isIncludeUserHistory()) {
-            historyContext = getHistoryContext(userId, request.getMaxHistoryItems());
-        }
-        
-        // Build prompt for AI
-        String prompt = PromptTemplates.formatDoubtPrompt(
-                request.getDoubt(),
-                roadmapInfo,
-                topicInfo,
-                context,
-                historyContext
-        );
-        
-        // Generate AI response (with optional model selection)
-        String resolvedModel = modelConfig.resolveModelId(request.getModel());
-        AIResponse aiResponse = aiService.generateWithSystem(
-                PromptTemplates.SYSTEM_PROMPT_DOUBT_SOLVER,
-                prompt,
-                resolvedModel
-        );
-        
-        // Update interaction with response
-        if (aiResponse.isSuccess()) {
-            interaction.setAiResponse(aiResponse.getContent());
+        if (answer != null) {
+            interaction.setAiResponse(answer);
             interaction.setResolved(true);
             interaction.setConfidence(0.85); // Default confidence
             interaction.setRespondedAt(LocalDateTime.now());
@@ -105,114 +207,213 @@ public class DoubtService {
             interaction.setConfidence(0.0);
         }
         
-        // Save interaction with RAG
-        interaction = ragService.saveInteraction(interaction);
+        // Embedding and insert happen at the next flush
+        interaction = writeBehind.saveInteraction(interaction);
         
         // Award XP for asking a doubt
         try {
-            gamificationService.awardXP(userId, GamificationService.XP_ASK_DOUBT,
+            writeBehind.awardXP(userId, GamificationService.XP_ASK_DOUBT,
                     "Asked a doubt", "ASK_DOUBT");
         } catch (Exception e) {
             log.error("Failed to award doubt XP for user {}: {}", userId, e.getMessage());
         }
         
-        // Prepare response
-        Map<String, Object> response = new HashMap<>();
-        response.put("doubtId", interaction.getId());
-        response.put("answer", interaction.getAiResponse());
-        response.put("resolved", interaction.isResolved());
-        response.put("confidence", interaction.getConfidence());
-        response.put("timestamp", interaction.getCreatedAt());
-        response.put("suggestedTopics", suggestRelatedTopics(userId, request.getDoubt()));
-        
-        return response;
+        return interaction;
+    }
+
+    private ServerSentEvent<String> sseEvent(String event, Object payload) {
+        return SseEvents.json(objectMapper, event, payload);
+    }
+
+    /**
+     * Doubt history, newest first, one keyset page at a time. The limit and the
+     * answer preview are applied in Mongo, so only the summary fields leave the server.
+     */
+    public KeysetPage<DoubtSummary> listDoubtHistory(String userId, String cursor, int limit) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Criteria criteria = Criteria.where("userId").is(userId)
+                .and("type").is(UserInteraction.InteractionType.DOUBT);
+        if (after != null) {
+            criteria = criteria.andOperator(after.after("createdAt"));
+        }
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.sort(KeysetCursor.newestFirst("createdAt")),
+                Aggregation.limit(limit + 1L),
+                Aggregation.project("roadmapId", "topicId", "resolved", "confidence", "createdAt", "respondedAt")
+                        .and("content").as("question")
+                        .and(StringOperators.valueOf("aiResponse").substringCP(0, DoubtSummary.PREVIEW_CHARS))
+                        .as("answerPreview"));
+
+        List<DoubtSummary> rows = mongoTemplate.aggregate(aggregation, UserInteraction.class, DoubtSummary.class)
+                .getMappedResults();
+        return KeysetPage.of(withPending(rows, userId, after), limit,
+                summary -> new KeysetCursor(summary.getCreatedAt(), summary.getId()));
     }
 
     /**
-     * Get user doubt history
+     * Merge doubts still on the write-behind buffer into a page, so a doubt shows up
+     * in the history as soon as it is answered.
      */
-    public List<UserInteraction> getDoubtHistory(String userId, int limit) {
-        return interactionRepository.findByUserIdAndTypeOrderByCreatedAtDesc(
-                userId, UserInteraction.InteractionType.DOUBT)
-                .stream()
-                .limit(limit)
+    private List<DoubtSummary> withPending(List<DoubtSummary> rows, String userId, KeysetCursor after) {
+        Set<String> listed = new HashSet<>();
+        rows.forEach(row -> listed.add(row.getId()));
+        List<DoubtSummary> pending = writeBehind.pendingInteractions(userId).stream()
+                .filter(interaction -> interaction.getType() == UserInteraction.InteractionType.DOUBT)
+                .filter(interaction -> after == null || after.precedes(interaction.getCreatedAt(), interaction.getId()))
+                .filter(interaction -> !listed.contains(interaction.getId()))
+                .map(this::toSummary)
                 .toList();
+        if (pending.isEmpty()) {
+            return rows;
+        }
+        List<DoubtSummary> merged = new ArrayList<>(rows);
+        merged.addAll(pending);
+        merged.sort(Comparator.comparing(DoubtSummary::getCreatedAt)
+                .thenComparing(DoubtSummary::getId)
+                .reversed());
+        return merged;
+    }
+
+    private DoubtSummary toSummary(UserInteraction interaction) {
+        String answer = interaction.getAiResponse();
+        return DoubtSummary.builder()
+                .id(interaction.getId())
+                .roadmapId(interaction.getRoadmapId())
+                .topicId(interaction.getTopicId())
+                .question(interaction.getContent())
+                .answerPreview(answer != null && answer.codePointCount(0, answer.length()) > DoubtSummary.PREVIEW_CHARS
+                        ? answer.substring(0, answer.offsetByCodePoints(0, DoubtSummary.PREVIEW_CHARS))
+                        : answer)
+                .resolved(interaction.isResolved())
+                .confidence(interaction.getConfidence())
+                .createdAt(interaction.getCreatedAt())
+                .respondedAt(interaction.getRespondedAt())
+                .build();
     }
 
     /**
-     * Get insights about user's learning patterns
+     * A single doubt with its full answer.
      */
-    public Map<String, Object> getLearningInsights(String userId) {
-        return ragService.getUserLearningInsights(userId);
+    public DoubtDetail getDoubt(String userId, String doubtId) {
+        Query query = Query.query(Criteria.where("_id").is(doubtId).and("userId").is(userId));
+        query.fields().exclude("embedding");
+
+        return Optional.ofNullable(mongoTemplate.findOne(query, UserInteraction.class))
+                .or(() -> writeBehind.pendingInteractions(userId).stream()
+                        .filter(interaction -> interaction.getId().equals(doubtId))
+                        .findFirst())
+                .map(this::toDetail)
+                .orElseThrow(() -> new RuntimeException("Doubt not found"));
+    }
+
+    private DoubtDetail toDetail(UserInteraction interaction) {
+        return DoubtDetail.builder()
+                .id(interaction.getId())
+                .userId(interaction.getUserId())
+                .roadmapId(interaction.getRoadmapId())
+                .topicId(interaction.getTopicId())
+                .type(interaction.getType() != null ? interaction.getType().name() : null)
+                .content(interaction.getContent())
+                .aiResponse(interaction.getAiResponse())
+                .resolved(interaction.isResolved())
+                .confidence(interaction.getConfidence())
+                .createdAt(interaction.getCreatedAt())
+                .respondedAt(interaction.getRespondedAt())
+                .build();
     }
 
     /**
-     * Build context for doubt solving
+     * Write the user's whole doubt history, oldest first, as newline-delimited JSON.
+     * Documents are read through a Mongo cursor and written one at a time, so memory
+     * use does not grow with the history.
+     *
+     * @return number of doubts written
      */
-    private String buildContext(String userId, DoubtRequest request) {
-        StringBuilder context = new StringBuilder();
-        
-        // Add current topic context
-        if (request.getTopicId() != null) {
-            List<Content> contents = contentRepository.findByTopicIdOrderByCreatedAtAsc(request.getTopicId());
-            if (!contents.isEmpty()) {
-                context.append("Current Learning Materials:\n");
-                for (Content content : contents) {
-                    context.append("- ").append(content.getTitle())
-                           .append(" (").append(content.getType()).append(")\n");
-                    if (content.getKeyPoints() != null && !content.getKeyPoints().isEmpty()) {
-                        context.append("  Key concepts: ")
-                               .append(String.join(", ", content.getKeyPoints().subList(0, 
-                                   Math.min(3, content.getKeyPoints().size()))))
-                               .append("\n");
-                    }
+    public long exportDoubtHistory(String userId, OutputStream out) throws IOException {
+        Query query = Query.query(Criteria.where("userId").is(userId)
+                        .and("type").is(UserInteraction.InteractionType.DOUBT))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt", "_id"))
+                .cursorBatchSize(EXPORT_BATCH_SIZE);
+        query.fields().exclude("embedding");
+
+        long written = 0;
+        try (Stream<UserInteraction> doubts = mongoTemplate.stream(query, UserInteraction.class)) {
+            Iterator<UserInteraction> iterator = doubts.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(iterator.next()));
+                out.write('\n');
+                if (++written % EXPORT_BATCH_SIZE == 0) {
+                    out.flush();
                 }
             }
         }
+        out.flush();
+        return written;
+    }
+
+    /**
+     * Get insights about user's learning patterns
+     */
+    public Map<String, Object> getLearningInsights(String userId) {
+        return ragService.getUserLearningInsights(userId);
+    }
+
+    /**
+     * Build the doubt prompt from an assembled context snapshot
+     */
+    private String buildPrompt(DoubtContextAssembler.Snapshot snapshot, DoubtRequest request) {
+        String historyContext = request.isIncludeUserHistory()
+                ? getHistoryContext(snapshot.recentInteractions(), request.getMaxHistoryItems())
+                : "";
         
-        // Add relevant context from user history
-        String relevantContext = ragService.getRelevantContext(
-                userId, 
-                request.getRoadmapId(), 
-                request.getTopicId(), 
-                request.getDoubt(), 
-                5
+        return PromptTemplates.formatDoubtPrompt(
+                request.getDoubt(),
+                getRoadmapInfo(request.getRoadmapId(), snapshot.roadmap()),
+                getTopicInfo(request.getTopicId(), snapshot.topic()),
+                buildContext(snapshot, request),
+                historyContext
+        );
+    }
+
+    /**
+     * Build context for doubt solving.
+     * Topic materials, past answers and recent activity are ranked and budgeted
+     * by the RAG context builder, reusing the snapshot (no refetch).
+     */
+    private String buildContext(DoubtContextAssembler.Snapshot snapshot, DoubtRequest request) {
+        return ragService.buildRelevantContext(
+                snapshot.topic(),
+                snapshot.topicContents(),
+                snapshot.recentInteractions(),
+                request.getDoubt(),
+                modelConfig.resolveModelId(request.getModel())
         );
-        
-        if (!relevantContext.isEmpty()) {
-            context.append("\n").append(relevantContext);
-        }
-        
-        return context.toString();
     }
 
     /**
      * Get topic information
      */
-    private String getTopicInfo(String topicId) {
+    private String getTopicInfo(String topicId, Topic topic) {
         if (topicId == null) return "General learning";
         
-        return topicRepository.findById(topicId)
-                .map(topic -> topic.getTitle() + " - " + topic.getDescription())
-                .orElse("Unknown topic");
+        return topic != null ? topic.getTitle() + " - " + topic.getDescription() : "Unknown topic";
     }
 
     /**
      * Get roadmap information
      */
-    private String getRoadmapInfo(String roadmapId) {
+    private String getRoadmapInfo(String roadmapId, Roadmap roadmap) {
         if (roadmapId == null) return "General learning path";
         
-        return roadmapRepository.findById(roadmapId)
-                .map(roadmap -> roadmap.getTitle() + " (" + roadmap.getGoal() + ")")
-                .orElse("Unknown roadmap");
+        return roadmap != null ? roadmap.getTitle() + " (" + roadmap.getGoal() + ")" : "Unknown roadmap";
     }
 
     /**
-     * Get user history context
+     * Get user history context from the most recent interactions (newest first)
      */
-    private String getHistoryContext(String userId, int limit) {
-        List<UserInteraction> history = ragService.getUserLearningHistory(userId, limit);
+    private String getHistoryContext(List<UserInteraction> recentInteractions, int limit) {
+        List<UserInteraction> history = recentInteractions.stream().limit(limit).toList();
         
         if (history.isEmpty()) {
             return "";
@@ -234,12 +435,9 @@ public class DoubtService {
     /**
      * Suggest related topics based on doubt content
      */
-    private List<Map<String, String>> suggestRelatedTopics(String userId, String doubt) {
+    private List<Map<String, String>> suggestRelatedTopics(List<Topic> userTopics, String doubt) {
         List<Map<String, String>> suggestions = new ArrayList<>();
         
-        // Get user's topics
-        List<Topic> userTopics = topicRepository.findByUserIdOrderByCreatedAtDesc(userId);
-        
         // Simple keyword matching for suggestions
         Set<String> doubtKeywords = extractKeywords(doubt);
         
@@ -0,0 +1,217 @@
+package com.study.service;
+
+import com.study.exception.ServiceOverloadedException;
+import com.study.model.TokenUsage;
+import com.study.observability.AIMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Weighted fair queueing in front of the upstream AI API.
+ *
+ * At most max-concurrent calls run at once. When all slots are busy, calls queue and
+ * are released in order of their virtual finish time: every user has their own clock
+ * that advances by 1/weight per call, starting no earlier than the global virtual time.
+ * A user with many queued calls therefore only gets their fair share of the free slots,
+ * while a user sending their first call is served next. Interactive features (chat,
+ * doubts) carry a higher weight than background generation, and speculative prefetch
+ * a lower one. A call that waits longer than max-wait-ms fails with
+ * {@link ServiceOverloadedException} (503 with Retry-After).
+ */
+@Slf4j
+@Component
+public class FairShareScheduler {
+
+    /** A granted upstream slot. Releasing it twice is a no-op. */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                FairShareScheduler.this.release();
+            }
+        }
+    }
+
+    private record Ticket(String userId, String feature, double finishTag, double startTag, long seq,
+                          long enqueuedAt, CompletableFuture<Permit> grant) {
+    }
+
+    private static final Comparator<Ticket> ORDER = Comparator.comparingDouble(Ticket::finishTag)
+            .thenComparingLong(Ticket::seq);
+
+    private final AIMetrics metrics;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final long retryAfterSeconds;
+    private final double interactiveWeight;
+    private final double prefetchWeight;
+
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(ORDER);
+    private final Map<String, Double> lastFinish = new HashMap<>();
+    private double virtualTime;
+    private long seq;
+    private int running;
+
+    public FairShareScheduler(AIMetrics metrics,
+                              @Value("${ai.scheduler.max-concurrent:16}") int maxConcurrent,
+                              @Value("${ai.scheduler.max-wait-ms:60000}") long maxWaitMillis,
+                              @Value("${ai.scheduler.retry-after-seconds:5}") long retryAfterSeconds,
+                              @Value("${ai.scheduler.interactive-weight:2}") double interactiveWeight,
+                              @Value("${ai.scheduler.prefetch-weight:0.5}") double prefetchWeight) {
+        this.metrics = metrics;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.interactiveWeight = interactiveWeight;
+        this.prefetchWeight = prefetchWeight;
+        metrics.schedulerGauges(this::queued, this::running);
+    }
+
+    /**
+     * Run a blocking upstream call once a slot is free.
+     */
+    public <T> T call(String userId, TokenUsage.Feature feature, Supplier<T> work) {
+        CompletableFuture<Permit> grant = submit(userId, feature);
+        Permit permit;
+        try {
+            permit = grant.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(grant);
+            throw busy();
+        } catch (InterruptedException e) {
+            abandon(grant);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the AI service");
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        try {
+            return work.get();
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Subscribe to an upstream stream once a slot is free. The slot is held until the
+     * stream completes, fails or is cancelled; cancelling while queued leaves the queue.
+     */
+    public <T> Flux<T> stream(String userId, TokenUsage.Feature feature, Supplier<Flux<T>> body) {
+        return Flux.defer(() -> {
+            CompletableFuture<Permit> grant = submit(userId, feature);
+            Mono<Permit> slot = Mono.fromFuture(grant)
+                    .timeout(Duration.ofMillis(maxWaitMillis),
+                            Mono.error(this::busy))
+                    .doOnCancel(() -> abandon(grant))
+                    .doOnError(e -> abandon(grant));
+            return Flux.usingWhen(slot, permit -> body.get(), permit -> Mono.fromRunnable(permit::release));
+        });
+    }
+
+    /**
+     * Calls running or queued per slot: below 1 there are free slots, above 1 calls wait.
+     */
+    public double load() {
+        synchronized (queue) {
+            return (running + queue.size()) / (double) maxConcurrent;
+        }
+    }
+
+    public int queued() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public int running() {
+        synchronized (queue) {
+            return running;
+        }
+    }
+
+    private ServiceOverloadedException busy() {
+        return new ServiceOverloadedException("AI service is busy, please retry shortly", retryAfterSeconds);
+    }
+
+    private CompletableFuture<Permit> submit(String userId, TokenUsage.Feature feature) {
+        String user = userId != null ? userId : UsageLedgerService.SYSTEM_USER;
+        String featureName = feature != null ? feature.name() : TokenUsage.Feature.OTHER.name();
+        double weight = feature == TokenUsage.Feature.CHAT || feature == TokenUsage.Feature.DOUBT
+                ? interactiveWeight
+                : feature == TokenUsage.Feature.PREFETCH ? prefetchWeight : 1.0;
+
+        CompletableFuture<Permit> grant = new CompletableFuture<>();
+        List<Ticket> granted;
+        synchronized (queue) {
+            double start = Math.max(virtualTime, lastFinish.getOrDefault(user, 0.0));
+            double finish = start + 1.0 / weight;
+            lastFinish.put(user, finish);
+            queue.add(new Ticket(user, featureName, finish, start, seq++, System.nanoTime(), grant));
+            granted = dispatch();
+        }
+        complete(granted);
+        return grant;
+    }
+
+    private void release() {
+        List<Ticket> granted;
+        synchronized (queue) {
+            running--;
+            granted = dispatch();
+        }
+        complete(granted);
+    }
+
+    /**
+     * Give up on a grant. If the slot was handed over concurrently, give it back.
+     */
+    private void abandon(CompletableFuture<Permit> grant) {
+        if (!grant.cancel(false)) {
+            grant.thenAccept(Permit::release);
+        }
+    }
+
+    /** Pops tickets into free slots. Caller holds the queue lock. */
+    private List<Ticket> dispatch() {
+        List<Ticket> granted = new ArrayList<>();
+        while (running < maxConcurrent && !queue.isEmpty()) {
+            Ticket ticket = queue.poll();
+            if (ticket.grant().isDone()) {
+                continue;
+            }
+            virtualTime = Math.max(virtualTime, ticket.startTag());
+            running++;
+            granted.add(ticket);
+        }
+        if (lastFinish.size() > 1024) {
+            lastFinish.values().removeIf(finish -> finish <= virtualTime);
+        }
+        return granted;
+    }
+
+    /** Completes grants outside the lock, since completion runs the caller's continuation. */
+    private void complete(List<Ticket> granted) {
+        for (Ticket ticket : granted) {
+            Duration waited = Duration.ofNanos(System.nanoTime() - ticket.enqueuedAt());
+            if (ticket.grant().complete(new Permit())) {
+                metrics.recordQueueWait(ticket.feature(), waited);
+                if (waited.toMillis() > 1000) {
+                    log.info("Upstream call for user {} waited {}ms for a slot", ticket.userId(), waited.toMillis());
+                }
+            } else {
+                // Cancelled between dispatch and completion
+                release();
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.study.dto.GamificationResponse;
 import com.study.model.GamificationData;
 import com.study.model.GamificationData.XPGainEntry;
 import com.study.model.Roadmap;
+import com.study.observability.AIMetrics;
 import com.study.repository.GamificationRepository;
 import com.study.repository.RoadmapRepository;
 import com.study.repository.TopicRepository;
@@ -26,6 +27,7 @@ public class GamificationService {
     private final RoadmapRepository roadmapRepository;
     private final TopicRepository topicRepository;
     private final UserInteractionRepository interactionRepository;
+    private final AIMetrics metrics;
 
     // ── XP Reward Constants ──
     public static final int XP_CREATE_ROADMAP = 100;
@@ -127,8 +129,10 @@ public class GamificationService {
 
         if (data.getLastActiveDate() != null && data.getLastActiveDate().equals(today)) {
             // Already logged in today, no-op
+            metrics.cacheLookup("daily-login", true);
             return data;
         }
+        metrics.cacheLookup("daily-login", false);
 
         // Update streak
         if (data.getLastActiveDate() != null && data.getLastActiveDate().equals(yesterday)) {
@@ -179,7 +183,7 @@ public class GamificationService {
         int xpProgress = levelInfo[3];
 
         // Build badges from real data
-        List<GamificationResponse.BadgeResponse> badges = buildBadges(data, userId);
+        List<GamificationResponse.BadgeResponse> badges = buildBadges(data, loadBadgeCounts(userId));
 
         // Auto-mark newly earned badges
         Set<String> newlyEarned = badges.stream()
@@ -223,7 +227,8 @@ public class GamificationService {
 
     // ── Level Calculation ──
 
-    private int[] computeLevel(int xp) {
+    /** Returns {level, xp at level start, xp for next level, progress percent} */
+    static int[] computeLevel(int xp) {
         int level = 1;
         int currentXP = 0;
         int nextXP = LEVEL_THRESHOLDS[1][1]; // 150
@@ -248,7 +253,12 @@ public class GamificationService {
 
     // ── Badge Calculation ──
 
-    private List<GamificationResponse.BadgeResponse> buildBadges(GamificationData data, String userId) {
+    /** Activity counts that badge progress is computed from */
+    record BadgeCounts(long roadmapCount, long activeRoadmaps, long completedRoadmaps,
+                       long completedTopics, long doubtsAsked) {
+    }
+
+    private BadgeCounts loadBadgeCounts(String userId) {
         // Query real counts from DB
         long roadmapCount = roadmapRepository.countByUserId(userId);
         long activeRoadmaps = roadmapRepository.countByUserIdAndStatus(userId, Roadmap.RoadmapStatus.ACTIVE);
@@ -275,6 +285,16 @@ public class GamificationService {
             log.warn("Could not count doubts for user {}: {}", userId, e.getMessage());
         }
 
+        return new BadgeCounts(roadmapCount, activeRoadmaps, completedRoadmaps, completedTopics, doubtsAsked);
+    }
+
+    List<GamificationResponse.BadgeResponse> buildBadges(GamificationData data, BadgeCounts counts) {
+        long roadmapCount = counts.roadmapCount();
+        long activeRoadmaps = counts.activeRoadmaps();
+        long completedRoadmaps = counts.completedRoadmaps();
+        long completedTopics = counts.completedTopics();
+        long doubtsAsked = counts.doubtsAsked();
+
         int level = computeLevel(data.getXp())[0];
 
         String today = LocalDate.now().toString();
@@ -0,0 +1,105 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.study.model.Content;
+import com.study.model.Roadmap;
+import com.study.model.Topic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reading the JSON documents the roadmap and content prompts ask the model for.
+ * Missing fields fall back to defaults, so a partial answer still yields a record.
+ */
+final class GeneratedJson {
+
+    private GeneratedJson() {
+    }
+
+    /**
+     * An unsaved {@link Content} for a topic from a generated content document.
+     */
+    static Content content(Topic topic, Roadmap roadmap, String userId, JsonNode root,
+                           String contentType, String model) {
+        return Content.builder()
+                .topicId(topic.getId())
+                .roadmapId(roadmap.getId())
+                .userId(userId)
+                .type(contentType != null ? Content.ContentType.valueOf(contentType) : Content.ContentType.THEORY)
+                .title(root.has("title") ? root.get("title").asText() : topic.getTitle())
+                .markdownContent(root.has("markdownContent") ? root.get("markdownContent").asText() : "")
+                .rawContent(root.has("rawContent") ? root.get("rawContent").asText() : "")
+                .codeExamples(codeExamples(root))
+                .quizQuestions(quizQuestions(root))
+                .keyPoints(stringArray(root, "keyPoints"))
+                .aiGenerated(true)
+                .aiModelVersion(model)
+                .readingTimeMinutes(root.has("readingTimeMinutes") ? root.get("readingTimeMinutes").asInt() : 10)
+                .complexity(root.has("complexity") ? root.get("complexity").asDouble() : 0.5)
+                .build();
+    }
+
+    static List<String> tags(JsonNode root) {
+        List<String> tags = new ArrayList<>();
+        if (root.has("tags") && root.get("tags").isArray()) {
+            for (JsonNode tag : root.get("tags")) {
+                tags.add(tag.asText());
+            }
+        }
+        return tags;
+    }
+
+    static List<String> stringArray(JsonNode node, String fieldName) {
+        List<String> result = new ArrayList<>();
+        if (node.has(fieldName) && node.get(fieldName).isArray()) {
+            for (JsonNode item : node.get(fieldName)) {
+                result.add(item.asText());
+            }
+        }
+        return result;
+    }
+
+    static List<Topic.Resource> resources(JsonNode topicNode) {
+        List<Topic.Resource> resources = new ArrayList<>();
+        if (topicNode.has("resources") && topicNode.get("resources").isArray()) {
+            for (JsonNode resNode : topicNode.get("resources")) {
+                Topic.Resource resource = Topic.Resource.builder()
+                        .type(resNode.has("type") ? resNode.get("type").asText() : "article")
+                        .title(resNode.has("title") ? resNode.get("title").asText() : "Resource")
+                        .url(resNode.has("url") ? resNode.get("url").asText() : "")
+                        .description(resNode.has("description") ? resNode.get("description").asText() : "")
+                        .build();
+                resources.add(resource);
+            }
+        }
+        return resources;
+    }
+
+    static List<String> codeExamples(JsonNode root) {
+        List<String> examples = new ArrayList<>();
+        if (root.has("codeExamples") && root.get("codeExamples").isArray()) {
+            for (JsonNode example : root.get("codeExamples")) {
+                examples.add(example.toString());
+            }
+        }
+        return examples;
+    }
+
+    static List<Content.QuizQuestion> quizQuestions(JsonNode root) {
+        List<Content.QuizQuestion> questions = new ArrayList<>();
+        if (root.has("quizQuestions") && root.get("quizQuestions").isArray()) {
+            for (JsonNode qNode : root.get("quizQuestions")) {
+                Content.QuizQuestion question = Content.QuizQuestion.builder()
+                        .question(qNode.has("question") ? qNode.get("question").asText() : "")
+                        .options(stringArray(qNode, "options"))
+                        .correctOptionIndex(qNode.has("correctOptionIndex") ? qNode.get("correctOptionIndex").asInt() : 0)
+                        .explanation(qNode.has("explanation") ? qNode.get("explanation").asText() : "")
+                        .difficulty(qNode.has("difficulty") ? qNode.get("difficulty").asText() : "medium")
+                        .build();
+                questions.add(question);
+            }
+        }
+        return questions;
+    }
+}
@@ -0,0 +1,312 @@
+package com.study.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.dto.DoubtRequest;
+import com.study.dto.RoadmapRequest;
+import com.study.exception.ServiceOverloadedException;
+import com.study.model.GenerationJob;
+import com.study.model.GenerationJob.JobStatus;
+import com.study.model.GenerationJob.JobType;
+import com.study.observability.AIMetrics;
+import com.study.repository.GenerationJobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Roadmap, content and doubt generations run as background jobs instead of inside
+ * the submitting request.
+ *
+ * A submitted job is persisted as QUEUED and its id is returned right away. Jobs run
+ * on a bounded pool (max-concurrent workers, queue-capacity waiting jobs; submissions
+ * beyond that get 503 with Retry-After), so the number of expensive generations in flight is capped
+ * regardless of how many clients ask. Each job records its events into a detached
+ * {@link ResumableStreamHub} stream: any number of observers can follow it with
+ * GET /jobs/{id}/events and Last-Event-ID, and none of them keeps it alive or stops it.
+ * The generated roadmap / content / doubt is saved by its service as usual; the job
+ * document records its id and the final status for polling.
+ *
+ * Jobs live in this instance's executor. A job interrupted by a shutdown is marked
+ * FAILED; one lost to a crash is marked FAILED when the service starts again.
+ */
+@Slf4j
+@Service
+public class GenerationJobService {
+
+    private static final class ActiveJob {
+        private final GenerationJob job;
+        /** Set by whoever gets to decide first: the worker starting it or a cancel while queued */
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile boolean cancelRequested;
+        private FutureTask<Void> task;
+
+        private ActiveJob(GenerationJob job) {
+            this.job = job;
+        }
+    }
+
+    private final RoadmapService roadmapService;
+    private final DoubtService doubtService;
+    private final ResumableStreamHub streamHub;
+    private final GenerationJobRepository jobRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final AIMetrics metrics;
+
+    private final long retryAfterSeconds;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, ActiveJob> active = new ConcurrentHashMap<>();
+    private volatile boolean shuttingDown;
+
+    public GenerationJobService(RoadmapService roadmapService,
+                                DoubtService doubtService,
+                                ResumableStreamHub streamHub,
+                                GenerationJobRepository jobRepository,
+                                MongoTemplate mongoTemplate,
+                                ObjectMapper objectMapper,
+                                AIMetrics metrics,
+                                @Value("${jobs.max-concurrent:4}") int maxConcurrent,
+                                @Value("${jobs.queue-capacity:100}") int queueCapacity,
+                                @Value("${jobs.retry-after-seconds:10}") long retryAfterSeconds) {
+        this.roadmapService = roadmapService;
+        this.doubtService = doubtService;
+        this.streamHub = streamHub;
+        this.jobRepository = jobRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        AtomicInteger threads = new AtomicInteger();
+        int workers = Math.max(1, maxConcurrent);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                task -> new Thread(task, "generation-job-" + threads.incrementAndGet()));
+        metrics.jobGauges(() -> executor.getQueue().size(), executor::getActiveCount);
+    }
+
+    /**
+     * Fail the jobs a previous run left QUEUED or RUNNING (a crash skips {@link #shutdown}).
+     * Their executor is gone, and without finishedAt the TTL index would never remove them.
+     */
+    @PostConstruct
+    void failInterruptedJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        long failed = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("status").in(JobStatus.QUEUED, JobStatus.RUNNING)
+                        .and("createdAt").lt(now)),
+                new Update().set("status", JobStatus.FAILED)
+                        .set("error", "Interrupted: the server restarted before the job finished")
+                        .set("finishedAt", now),
+                GenerationJob.class).getModifiedCount();
+        if (failed > 0) {
+            log.warn("Marked {} generation jobs interrupted by the previous run as FAILED", failed);
+        }
+    }
+
+    public GenerationJob submitRoadmap(String userId, RoadmapRequest request) {
+        return submit(userId, JobType.ROADMAP, () -> roadmapService.createRoadmapStreaming(userId, request));
+    }
+
+    public GenerationJob submitContent(String userId, String topicId, String contentType) {
+        return submit(userId, JobType.CONTENT,
+                () -> roadmapService.generateTopicContentStreaming(userId, topicId, contentType));
+    }
+
+    public GenerationJob submitDoubt(String userId, DoubtRequest request) {
+        return submit(userId, JobType.DOUBT, () -> doubtService.solveDoubtStream(userId, request));
+    }
+
+    public GenerationJob getJob(String jobId, String userId) {
+        ActiveJob handle = active.get(jobId);
+        if (handle != null && handle.job.getUserId().equals(userId)) {
+            return handle.job;
+        }
+        return jobRepository.findByIdAndUserId(jobId, userId)
+                .orElseThrow(() -> new RuntimeException("Job not found"));
+    }
+
+    public List<GenerationJob> listJobs(String userId) {
+        return jobRepository.findTop20ByUserIdOrderByCreatedAtDesc(userId);
+    }
+
+    /**
+     * Follow a job's events, replaying those after {@code lastEventId}. Completes when
+     * the job finishes; events of a job finished longer than the replay retention ago
+     * are gone, but its status and result stay available from {@link #getJob}.
+     */
+    public Flux<ServerSentEvent<String>> events(String jobId, String userId, String lastEventId) {
+        GenerationJob job = getJob(jobId, userId);
+        return streamHub.resume(job.getStreamId(), userId, lastEventId);
+    }
+
+    /**
+     * Cancel a queued or running job. A running generation is stopped the same way as a
+     * dropped connection, so the services keep what was generated so far.
+     *
+     * @return false if the job is not active (unknown, foreign or already finished)
+     */
+    public boolean cancel(String jobId, String userId) {
+        ActiveJob handle = active.get(jobId);
+        if (handle == null || !handle.job.getUserId().equals(userId)) {
+            return false;
+        }
+        handle.cancelRequested = true;
+        if (handle.started.compareAndSet(false, true)) {
+            // Still queued: the worker will skip it
+            executor.remove(handle.task);
+            active.remove(jobId);
+            streamHub.discard(handle.job.getStreamId());
+            complete(handle.job, JobStatus.CANCELLED, null, null);
+        } else {
+            handle.task.cancel(true);
+        }
+        return true;
+    }
+
+    private GenerationJob submit(String userId, JobType type, Supplier<Flux<ServerSentEvent<String>>> generation) {
+        GenerationJob job = GenerationJob.builder()
+                .id(new ObjectId().toHexString())
+                .userId(userId)
+                .type(type)
+                .status(JobStatus.QUEUED)
+                .streamId(streamHub.open(userId))
+                .createdAt(LocalDateTime.now())
+                .build();
+        jobRepository.save(job);
+
+        ActiveJob handle = new ActiveJob(job);
+        handle.task = new FutureTask<>(() -> run(handle, generation), null);
+        active.put(job.getId(), handle);
+        try {
+            executor.execute(handle.task);
+        } catch (RejectedExecutionException e) {
+            active.remove(job.getId());
+            streamHub.discard(job.getStreamId());
+            jobRepository.delete(job);
+            metrics.countJob(type.name(), "rejected");
+            throw new ServiceOverloadedException("Too many generations in progress, please retry shortly",
+                    retryAfterSeconds);
+        }
+        log.info("Queued {} job {} for user {} ({} waiting)", type, job.getId(), userId, executor.getQueue().size());
+        return job;
+    }
+
+    private void run(ActiveJob handle, Supplier<Flux<ServerSentEvent<String>>> generation) {
+        if (!handle.started.compareAndSet(false, true)) {
+            return;
+        }
+        GenerationJob job = handle.job;
+        AtomicReference<String> resultId = new AtomicReference<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        try {
+            job.setStatus(JobStatus.RUNNING);
+            job.setStartedAt(LocalDateTime.now());
+            jobRepository.save(job);
+
+            streamHub.relay(job.getStreamId(), Flux.defer(generation))
+                    .doOnNext(event -> inspect(job.getType(), event, resultId, failure))
+                    .blockLast();
+            complete(job, failure.get() == null ? JobStatus.SUCCEEDED : JobStatus.FAILED,
+                    resultId.get(), failure.get());
+        } catch (RuntimeException e) {
+            // Clear the interrupt from a cancel or shutdown so the final save goes through
+            Thread.interrupted();
+            if (handle.cancelRequested) {
+                complete(job, JobStatus.CANCELLED, resultId.get(), null);
+            } else if (shuttingDown) {
+                complete(job, JobStatus.FAILED, resultId.get(), "Interrupted by server shutdown");
+            } else {
+                log.error("Job {} failed", job.getId(), e);
+                complete(job, JobStatus.FAILED, resultId.get(),
+                        e.getMessage() != null ? e.getMessage() : "Generation failed");
+            }
+        } finally {
+            active.remove(job.getId());
+        }
+    }
+
+    /**
+     * Track the outcome from the events: an "error" event fails the job, the final
+     * "complete" (roadmap, content) or "done" (doubt) event carries the result id.
+     */
+    private void inspect(JobType jobType, ServerSentEvent<String> event, AtomicReference<String> resultId,
+                         AtomicReference<String> failure) {
+        String type = event.event();
+        if (!"error".equals(type) && !"complete".equals(type) && !"done".equals(type)) {
+            return;
+        }
+        JsonNode data;
+        try {
+            data = objectMapper.readTree(event.data());
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return;
+        }
+        if ("error".equals(type)) {
+            failure.compareAndSet(null, data.path("message").asText("Generation failed"));
+            return;
+        }
+        String field = switch (jobType) {
+            case ROADMAP -> "roadmapId";
+            case CONTENT -> "id";
+            case DOUBT -> "doubtId";
+        };
+        if (data.hasNonNull(field)) {
+            resultId.compareAndSet(null, data.get(field).asText());
+        }
+    }
+
+    private void complete(GenerationJob job, JobStatus status, String resultId, String error) {
+        job.setStatus(status);
+        job.setResultId(resultId);
+        job.setError(error);
+        job.setFinishedAt(LocalDateTime.now());
+        jobRepository.save(job);
+        metrics.countJob(job.getType().name(), status.name().toLowerCase());
+
+        LocalDateTime from = job.getStartedAt() != null ? job.getStartedAt() : job.getCreatedAt();
+        log.info("{} job {} {} after {}ms{}", job.getType(), job.getId(), status,
+                Duration.between(from, job.getFinishedAt()).toMillis(),
+                error != null ? ": " + error : "");
+    }
+
+    /**
+     * Interrupt running jobs (their partial output is saved as on a cancel) and fail the
+     * queued ones, so no job document is left QUEUED or RUNNING by a clean shutdown.
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        shuttingDown = true;
+        executor.shutdownNow();
+        for (ActiveJob handle : active.values()) {
+            if (handle.started.compareAndSet(false, true)) {
+                active.remove(handle.job.getId());
+                streamHub.discard(handle.job.getStreamId());
+                complete(handle.job, JobStatus.FAILED, null, "Server shut down before the job started");
+            }
+        }
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("{} generation jobs still running at shutdown", executor.getActiveCount());
+        }
+    }
+}
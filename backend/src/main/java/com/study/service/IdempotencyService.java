@@ -0,0 +1,212 @@
+package com.study.service;
+
+import com.study.observability.AIMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key handling for the generation POST endpoints, so a retried or
+ * double-submitted request does not start a second generation or write its documents
+ * (and XP) twice.
+ *
+ * The first request with a key runs; a repeat with the same key gets the stored result,
+ * waiting for it if the first is still running. For resumable streams the stored result
+ * is the stream id and a repeat attaches to that stream from its first event, so it is
+ * only replayable while the stream is (streams.replay.retention-ms after it finished).
+ * A key reused for a different endpoint or request body is refused. A request that
+ * fails forgets its key so the client can retry with it.
+ *
+ * Keys are per user and kept in this instance's memory: ttl-ms after their request
+ * finished, at most max-entries of them. When the store is full, new keys are not
+ * tracked (the request still runs).
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    /** Request header carrying the client's key */
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final class Entry {
+        private final String scope;
+        private final int requestHash;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        /** nanoTime after which the entry is forgotten; set when its request finishes */
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private Entry(String scope, int requestHash) {
+            this.scope = scope;
+            this.requestHash = requestHash;
+        }
+    }
+
+    private record Claim(Entry entry, boolean owner) {
+    }
+
+    private final ResumableStreamHub streamHub;
+    private final AIMetrics metrics;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    public IdempotencyService(ResumableStreamHub streamHub,
+                              AIMetrics metrics,
+                              @Value("${idempotency.ttl-ms:600000}") long ttlMillis,
+                              @Value("${idempotency.max-entries:10000}") int maxEntries) {
+        this.streamHub = streamHub;
+        this.metrics = metrics;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Run {@code action} once per key. Without a key it simply runs.
+     *
+     * @param scope   the endpoint, e.g. "POST /roadmaps"
+     * @param request what identifies the request besides the key (body, path variables);
+     *                compared by hash code on repeats
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String userId, String key, String scope, Object request, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        String entryKey = entryKey(userId, key);
+        Claim claim = claim(entryKey, scope, request);
+        if (claim == null) {
+            return action.get();
+        }
+        if (!claim.owner()) {
+            return (T) await(claim.entry());
+        }
+
+        try {
+            T result = action.get();
+            finish(claim.entry(), result);
+            return result;
+        } catch (RuntimeException e) {
+            abandon(entryKey, claim.entry(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Start a resumable stream once per key; a repeat attaches to the same stream and
+     * replays it from the beginning. Without a key it simply starts.
+     */
+    public ResumableStreamHub.Started stream(String userId, String key, String scope, Object request,
+                                             Supplier<ResumableStreamHub.Started> start) {
+        if (key == null || key.isBlank()) {
+            return start.get();
+        }
+        String entryKey = entryKey(userId, key);
+        Claim claim = claim(entryKey, scope, request);
+        if (claim == null) {
+            return start.get();
+        }
+        if (!claim.owner()) {
+            String streamId = (String) await(claim.entry());
+            return new ResumableStreamHub.Started(streamId, streamHub.resume(streamId, userId, null));
+        }
+
+        try {
+            ResumableStreamHub.Started started = start.get();
+            finish(claim.entry(), started.streamId());
+            return started;
+        } catch (RuntimeException e) {
+            abandon(entryKey, claim.entry(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Forget keys whose time is up.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        int before = entries.size();
+        entries.values().removeIf(entry -> isExpired(entry, now));
+        if (before != entries.size()) {
+            log.debug("Forgot {} idempotency keys", before - entries.size());
+        }
+    }
+
+    /**
+     * Register the key, or find the request that already holds it.
+     *
+     * @return null if the store is full and the request should run untracked
+     */
+    private Claim claim(String entryKey, String scope, Object request) {
+        int requestHash = Objects.hashCode(request);
+        while (true) {
+            Entry existing = entries.get(entryKey);
+            if (existing != null && isExpired(existing, System.nanoTime())) {
+                entries.remove(entryKey, existing);
+                continue;
+            }
+            if (existing != null) {
+                if (!existing.scope.equals(scope) || existing.requestHash != requestHash) {
+                    metrics.countIdempotency("mismatch");
+                    throw new RuntimeException("Idempotency-Key was already used for a different request");
+                }
+                metrics.countIdempotency(existing.result.isDone() ? "replayed" : "joined");
+                log.info("Repeated Idempotency-Key for {} ({})", scope,
+                        existing.result.isDone() ? "returning stored result" : "waiting for the first request");
+                return new Claim(existing, false);
+            }
+
+            if (entries.size() >= maxEntries) {
+                sweep();
+                if (entries.size() >= maxEntries) {
+                    metrics.countIdempotency("store-full");
+                    return null;
+                }
+            }
+            Entry fresh = new Entry(scope, requestHash);
+            if (entries.putIfAbsent(entryKey, fresh) == null) {
+                metrics.countIdempotency("new");
+                return new Claim(fresh, true);
+            }
+        }
+    }
+
+    private void finish(Entry entry, Object result) {
+        entry.expiresAt = System.nanoTime() + ttlNanos;
+        entry.result.complete(result);
+    }
+
+    /** The first request failed: its waiters get the same error, later repeats run afresh */
+    private void abandon(String entryKey, Entry entry, RuntimeException failure) {
+        entries.remove(entryKey, entry);
+        entry.result.completeExceptionally(failure);
+    }
+
+    private static Object await(Entry entry) {
+        try {
+            return entry.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException failure) {
+                throw failure;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isExpired(Entry entry, long now) {
+        return now - entry.expiresAt > 0;
+    }
+
+    private static String entryKey(String userId, String key) {
+        return userId + "\u001F" + key.trim();
+    }
+}
@@ -0,0 +1,38 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * An inference backend that serves chat completions for the models assigned to it in
+ * models.json ("backend" field). {@link NvidiaAIService} builds the request body and does
+ * the metering, tracing and parsing; a provider only moves the body over its own
+ * connection pool and timeouts.
+ */
+public interface LLMProvider {
+
+    /** Backend id as used in models.json, e.g. "nvidia" or "local" */
+    String id();
+
+    /** Whether the backend is configured well enough to take requests */
+    boolean isAvailable();
+
+    /**
+     * Whether calls go through the {@link FairShareScheduler}. Remote backends with a shared
+     * rate limit are scheduled; a local server is bounded by its own connection pool instead.
+     */
+    boolean isScheduled();
+
+    /** Upper bound for a whole call, streamed or not */
+    Duration timeout();
+
+    /** POST a non-streamed chat completion and return the raw JSON body. */
+    Mono<String> complete(ObjectNode requestBody);
+
+    /** POST a streamed chat completion and return its server-sent events. */
+    Flux<ServerSentEvent<String>> stream(ObjectNode requestBody);
+}
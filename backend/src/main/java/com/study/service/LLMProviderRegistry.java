@@ -0,0 +1,90 @@
+package com.study.service;
+
+import com.study.config.AIModelConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The configured inference backends and which one serves a model.
+ *
+ * "nvidia" is the hosted NVIDIA endpoint (nvidia.api.*), scheduled through the
+ * {@link FairShareScheduler}. "local" is an optional OpenAI-compatible server such as
+ * llama.cpp or vLLM (llm.local.*), enabled by setting its base URL; its calls skip the
+ * scheduler and are bounded by its own connection pool. models.json assigns every model
+ * a backend and can route light tasks (chat session titles) to a small model; such a task
+ * is skipped while the routed model's backend is unavailable.
+ */
+@Slf4j
+@Component
+public class LLMProviderRegistry {
+
+    public static final String NVIDIA = "nvidia";
+    public static final String LOCAL = "local";
+
+    private final AIModelConfig modelConfig;
+    private final Map<String, OpenAICompatibleProvider> providers = new LinkedHashMap<>();
+
+    public LLMProviderRegistry(WebClient.Builder webClientBuilder,
+                               AIModelConfig modelConfig,
+                               @Value("${nvidia.api.key:}") String nvidiaKey,
+                               @Value("${nvidia.api.base-url:https://integrate.api.nvidia.com/v1}") String nvidiaBaseUrl,
+                               @Value("${nvidia.api.timeout:300}") int nvidiaTimeout,
+                               @Value("${nvidia.api.connect-timeout-ms:30000}") int nvidiaConnectTimeout,
+                               @Value("${nvidia.api.max-connections:64}") int nvidiaMaxConnections,
+                               @Value("${llm.local.base-url:}") String localBaseUrl,
+                               @Value("${llm.local.api-key:}") String localKey,
+                               @Value("${llm.local.timeout:60}") int localTimeout,
+                               @Value("${llm.local.connect-timeout-ms:2000}") int localConnectTimeout,
+                               @Value("${llm.local.max-connections:8}") int localMaxConnections,
+                               @Value("${llm.local.pending-acquire-max:64}") int localPendingAcquire) {
+        this.modelConfig = modelConfig;
+        register(new OpenAICompatibleProvider(new OpenAICompatibleProvider.Settings(
+                NVIDIA, nvidiaBaseUrl, nvidiaKey, true, true, nvidiaTimeout, nvidiaConnectTimeout,
+                nvidiaMaxConnections, nvidiaMaxConnections * 4), webClientBuilder));
+        register(new OpenAICompatibleProvider(new OpenAICompatibleProvider.Settings(
+                LOCAL, localBaseUrl, localKey, false, false, localTimeout, localConnectTimeout,
+                localMaxConnections, localPendingAcquire), webClientBuilder));
+
+        providers.values().forEach(provider -> log.info("LLM backend {}: {}", provider,
+                provider.isAvailable() ? "available" : "not configured"));
+    }
+
+    private void register(OpenAICompatibleProvider provider) {
+        providers.put(provider.id(), provider);
+    }
+
+    /** The backend serving a model; unknown backends fall back to NVIDIA. */
+    public LLMProvider forModel(String modelId) {
+        String backend = modelConfig.getModelById(modelConfig.resolveModelId(modelId))
+                .map(AIModelConfig.AIModel::getBackend)
+                .orElse(NVIDIA);
+        return providers.getOrDefault(backend, providers.get(NVIDIA));
+    }
+
+    public boolean isAvailable(String backend) {
+        LLMProvider provider = providers.get(backend);
+        return provider != null && provider.isAvailable();
+    }
+
+    /**
+     * Model routed for a light task in models.json, if its backend is available. Empty
+     * when the task isn't routed or the backend is down; callers then skip the call
+     * rather than spend the default model on it.
+     */
+    public Optional<String> modelForTask(String task) {
+        return Optional.ofNullable(modelConfig.getRoutedModelId(task))
+                .filter(routed -> forModel(routed).isAvailable());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        providers.values().forEach(OpenAICompatibleProvider::dispose);
+    }
+}
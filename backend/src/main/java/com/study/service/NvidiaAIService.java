@@ -7,83 +7,69 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.study.config.AIModelConfig;
 import com.study.dto.AIRequest;
 import com.study.dto.AIResponse;
-import io.netty.channel.ChannelOption;
-import io.netty.handler.timeout.ReadTimeoutHandler;
+import com.study.exception.QuotaExceededException;
+import com.study.exception.ServiceOverloadedException;
+import com.study.model.TokenUsage;
+import com.study.observability.AIMetrics;
+import com.study.observability.Tracing;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.ExchangeStrategies;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
+/**
+ * Chat completions for every feature. Requests are built, metered, traced and parsed
+ * here; the {@link LLMProvider} serving the requested model (see {@link LLMProviderRegistry})
+ * carries them to the NVIDIA endpoint or a local inference server.
+ */
 @Slf4j
 @Service
 public class NvidiaAIService {
 
-    private WebClient webClient;
-    private final WebClient.Builder webClientBuilder;
+    private final LLMProviderRegistry providers;
     private final ObjectMapper objectMapper;
     private final AIModelConfig modelConfig;
-    
-    @Value("${nvidia.api.key:}")
-    private String apiKey;
-    
-    @Value("${nvidia.api.base-url:https://integrate.api.nvidia.com/v1}")
-    private String baseUrl;
-    
-    @Value("${nvidia.api.timeout:300}")
-    private int timeoutSeconds;
+    private final AIMetrics metrics;
+    private final Tracing tracing;
+    private final UsageLedgerService usageLedger;
+    private final FairShareScheduler scheduler;
+    /** Moving average of completion tokens per finished stream, per model; baseline for tokens saved by a cancel */
+    private final Map<String, Double> typicalCompletionTokens = new ConcurrentHashMap<>();
 
-    public NvidiaAIService(WebClient.Builder webClientBuilder, ObjectMapper objectMapper, AIModelConfig modelConfig) {
-        this.webClientBuilder = webClientBuilder;
+    public NvidiaAIService(LLMProviderRegistry providers, ObjectMapper objectMapper,
+                           AIModelConfig modelConfig, AIMetrics metrics, Tracing tracing,
+                           UsageLedgerService usageLedger, FairShareScheduler scheduler) {
+        this.providers = providers;
         this.objectMapper = objectMapper;
         this.modelConfig = modelConfig;
+        this.metrics = metrics;
+        this.tracing = tracing;
+        this.usageLedger = usageLedger;
+        this.scheduler = scheduler;
     }
 
     @PostConstruct
     public void init() {
         log.info("=== NVIDIA AI Service Initialization ===");
-        log.info("Base URL: {}", baseUrl);
-        log.info("API Key configured: {}", (apiKey != null && !apiKey.isEmpty()) ? "YES (length=" + apiKey.length() + ")" : "NO - AI features disabled");
-        log.info("Default model: {}", modelConfig.getDefaultModelId());
+        log.info("Default model: {} (backend {})", modelConfig.getDefaultModelId(),
+                providers.forModel(modelConfig.getDefaultModelId()).id());
         log.info("Available models: {}", modelConfig.getModels().size());
-        log.info("Timeout: {}s", timeoutSeconds);
-        
-        HttpClient httpClient = HttpClient.create()
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 30_000)
-                .responseTimeout(Duration.ofSeconds(timeoutSeconds))
-                .doOnConnected(conn -> conn
-                        .addHandlerLast(new ReadTimeoutHandler(timeoutSeconds, TimeUnit.SECONDS)));
-
-        // Allow large SSE buffers (some models return big chunks)
-        ExchangeStrategies strategies = ExchangeStrategies.builder()
-                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
-                .build();
-        
-        this.webClient = webClientBuilder
-                .baseUrl(baseUrl)
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
-                .exchangeStrategies(strategies)
-                .build();
         
         if (!isAvailable()) {
-            log.warn("NVIDIA AI service is NOT available - API key is missing or empty!");
+            log.warn("NVIDIA AI service is NOT available - the default model's backend is not configured!");
         } else {
             log.info("NVIDIA AI service initialized successfully.");
         }
@@ -103,100 +89,192 @@ public class NvidiaAIService {
     public AIResponse generate(AIRequest request) {
         long startTime = System.currentTimeMillis();
         
-        if (!isAvailable()) {
-            log.warn("AI generate called but service is not available (no API key)");
-            return AIResponse.error("NVIDIA AI service is not configured - API key is missing");
+        String modelId = modelConfig.resolveModelId(request.getModel());
+        LLMProvider provider = providers.forModel(modelId);
+        if (!provider.isAvailable()) {
+            log.warn("AI generate called but backend {} for model {} is not configured", provider.id(), modelId);
+            return AIResponse.error("AI backend '" + provider.id() + "' is not configured");
         }
+        usageLedger.checkQuota(request.getUserId());
         
+        Span span = tracing.start("llm.generate", Context.current());
+        span.setAttribute("llm.model", modelId);
+        span.setAttribute("llm.backend", provider.id());
         try {
             ObjectNode requestBody = buildRequestBody(request);
-            log.info("Calling NVIDIA API: model={}, messages={}", 
+            log.info("Calling {} API: model={}, messages={}", provider.id(),
                     requestBody.get("model"), 
                     requestBody.get("messages") != null ? requestBody.get("messages").size() + " messages" : "none");
             
-            String response = webClient.post()
-                    .uri("/chat/completions")
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(timeoutSeconds))
+            Supplier<String> call = () -> provider.complete(requestBody)
                     .retryWhen(Retry.backoff(2, Duration.ofSeconds(2))
                             .filter(ex -> !(ex instanceof WebClientResponseException.Unauthorized))
-                            .doBeforeRetry(signal -> log.warn("Retrying NVIDIA API call (attempt {}): {}",
+                            .doBeforeRetry(signal -> log.warn("Retrying {} API call (attempt {}): {}", provider.id(),
                                     signal.totalRetries() + 1, signal.failure().getMessage())))
                     .block();
+            String response = provider.isScheduled()
+                    ? scheduler.call(request.getUserId(), request.getFeature(), call)
+                    : call.get();
             
             long responseTime = System.currentTimeMillis() - startTime;
-            log.info("NVIDIA API response received in {}ms, length={}", responseTime, 
+            log.info("{} API response received in {}ms, length={}", provider.id(), responseTime, 
                     response != null ? response.length() : 0);
             
-            return parseResponse(response, responseTime);
+            AIResponse parsed = parseResponse(response, responseTime, request);
+            metrics.recordGeneration(modelId, false, parsed.isSuccess() ? "success" : "error",
+                    Duration.ofMillis(responseTime));
+            span.setAttribute("llm.completion_tokens", parsed.getCompletionTokens());
+            return parsed;
             
+        } catch (ServiceOverloadedException e) {
+            // No upstream slot in time: the caller answers 503, not a generation error
+            log.warn("No {} slot for user {}: {}", provider.id(), request.getUserId(), e.getMessage());
+            metrics.recordGeneration(modelId, false, "overloaded", Duration.ofMillis(System.currentTimeMillis() - startTime));
+            Tracing.fail(span, e);
+            throw e;
         } catch (WebClientResponseException e) {
-            log.error("NVIDIA API error: Status={}, Body={}", e.getStatusCode(), e.getResponseBodyAsString());
+            log.error("{} API error: Status={}, Body={}", provider.id(), e.getStatusCode(), e.getResponseBodyAsString());
+            metrics.recordGeneration(modelId, false, "error", Duration.ofMillis(System.currentTimeMillis() - startTime));
+            Tracing.fail(span, e);
             return AIResponse.error("AI service error: " + e.getMessage());
         } catch (Exception e) {
-            log.error("Error calling NVIDIA AI service: {}", e.getMessage(), e);
+            log.error("Error calling {} AI backend: {}", provider.id(), e.getMessage(), e);
+            metrics.recordGeneration(modelId, false, "error", Duration.ofMillis(System.currentTimeMillis() - startTime));
+            Tracing.fail(span, e);
             return AIResponse.error("Failed to generate content: " + e.getMessage());
+        } finally {
+            span.end();
         }
     }
 
     /**
      * Stream content generation for real-time responses.
      * Uses ParameterizedTypeReference<ServerSentEvent<String>> for proper SSE consumption
-     * from NVIDIA's text/event-stream endpoint.
+     * from the backend's text/event-stream endpoint.
      */
     public Flux<String> generateStream(AIRequest request) {
-        if (!isAvailable()) {
-            log.warn("AI stream called but service is not available (no API key)");
-            return Flux.error(new RuntimeException("NVIDIA AI service is not configured"));
+        LLMProvider provider = providers.forModel(request.getModel());
+        if (!provider.isAvailable()) {
+            log.warn("AI stream called but backend {} is not configured", provider.id());
+            return Flux.error(new RuntimeException("AI backend '" + provider.id() + "' is not configured"));
+        }
+        try {
+            usageLedger.checkQuota(request.getUserId());
+        } catch (QuotaExceededException e) {
+            return Flux.error(e);
         }
 
         ObjectNode requestBody = buildRequestBody(request);
         requestBody.put("stream", true);
+        // Ask for a final usage chunk so streamed calls are metered exactly
+        requestBody.putObject("stream_options").put("include_usage", true);
         
         String modelId = requestBody.get("model").asText();
-        log.info("Starting SSE stream: model={}, request body size={}bytes", modelId, requestBody.toString().length());
+        log.info("Starting SSE stream: backend={}, model={}, request body size={}bytes", provider.id(), modelId,
+                requestBody.toString().length());
 
-        AtomicLong startTime = new AtomicLong(System.currentTimeMillis());
-        AtomicLong chunkCount = new AtomicLong(0);
+        return tracing.traceFlux("llm.stream", span -> {
+            AtomicLong startTime = new AtomicLong(System.currentTimeMillis());
+            AtomicLong firstChunkTime = new AtomicLong(0);
+            AtomicLong chunkCount = new AtomicLong(0);
+            AtomicLong contentChunks = new AtomicLong(0);
+            AtomicLong contentChars = new AtomicLong(0);
+            AtomicReference<long[]> reportedUsage = new AtomicReference<>();
 
-        return webClient.post()
-                .uri("/chat/completions")
-                .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE)
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
-                .timeout(Duration.ofSeconds(timeoutSeconds))
-                .doOnNext(sse -> {
-                    long count = chunkCount.incrementAndGet();
-                    if (count == 1) {
-                        log.info("SSE first chunk received after {}ms", System.currentTimeMillis() - startTime.get());
-                    }
-                    if (count % 50 == 0) {
-                        log.debug("SSE progress: {} chunks received", count);
-                    }
-                })
-                .map(sse -> {
-                    String data = sse.data();
-                    if (data == null) return "";
-                    return data.trim();
-                })
-                .filter(data -> !data.isEmpty() && !data.equals("[DONE]"))
-                .map(this::extractContentFromChunk)
-                .filter(content -> !content.isEmpty())
-                .doOnComplete(() -> log.info("SSE stream completed: {} chunks in {}ms", 
-                        chunkCount.get(), System.currentTimeMillis() - startTime.get()))
-                .doOnError(e -> log.error("SSE stream error after {} chunks, {}ms: {}", 
-                        chunkCount.get(), System.currentTimeMillis() - startTime.get(), e.getMessage()))
-                .onErrorResume(e -> {
-                    log.error("Streaming failed, returning error signal", e);
-                    return Flux.just("[ERROR] " + e.getMessage());
-                });
+            span.setAttribute("llm.model", modelId);
+            span.setAttribute("llm.backend", provider.id());
+
+            Supplier<Flux<ServerSentEvent<String>>> upstream = () -> {
+                // Upstream timings start once a slot is granted, not while queued
+                long queuedMillis = System.currentTimeMillis() - startTime.get();
+                startTime.set(System.currentTimeMillis());
+                span.setAttribute("llm.queue_ms", queuedMillis);
+                return provider.stream(requestBody);
+            };
+            return (provider.isScheduled()
+                            ? scheduler.stream(request.getUserId(), request.getFeature(), upstream)
+                            : Flux.defer(upstream))
+                    .timeout(provider.timeout())
+                    .doOnNext(sse -> {
+                        long count = chunkCount.incrementAndGet();
+                        if (count == 1) {
+                            firstChunkTime.set(System.currentTimeMillis());
+                            long ttft = firstChunkTime.get() - startTime.get();
+                            log.info("SSE first chunk received after {}ms", ttft);
+                            metrics.recordTtft(modelId, Duration.ofMillis(ttft));
+                            span.addEvent("first_token");
+                            span.setAttribute("llm.ttft_ms", ttft);
+                        }
+                        if (count % 50 == 0) {
+                            log.debug("SSE progress: {} chunks received", count);
+                        }
+                    })
+                    .map(sse -> {
+                        String data = sse.data();
+                        if (data == null) return "";
+                        return data.trim();
+                    })
+                    .filter(data -> !data.isEmpty() && !data.equals("[DONE]"))
+                    .doOnNext(data -> {
+                        if (data.contains("\"usage\"")) {
+                            long[] usage = readUsage(data);
+                            if (usage != null) reportedUsage.set(usage);
+                        }
+                    })
+                    .map(this::extractContentFromChunk)
+                    .filter(content -> !content.isEmpty())
+                    .doOnNext(content -> {
+                        contentChunks.incrementAndGet();
+                        contentChars.addAndGet(content.length());
+                    })
+                    .doOnComplete(() -> {
+                        long now = System.currentTimeMillis();
+                        long[] usage = reportedUsage.get();
+                        long completionTokens = usage != null ? usage[1] : (contentChars.get() + 3) / 4;
+                        typicalCompletionTokens.merge(modelId, (double) completionTokens,
+                                (average, latest) -> average * 0.9 + latest * 0.1);
+                        log.info("SSE stream completed: {} chunks in {}ms", chunkCount.get(), now - startTime.get());
+                        span.setAttribute("llm.chunks", chunkCount.get());
+                        metrics.recordGeneration(modelId, true, "success", Duration.ofMillis(now - startTime.get()));
+                        if (firstChunkTime.get() > 0) {
+                            metrics.recordTokenRate(modelId, contentChunks.get(), Duration.ofMillis(now - firstChunkTime.get()));
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        // Cancelling the subscription closes the upstream connection, so generation stops here
+                        long generated = (contentChars.get() + 3) / 4;
+                        long typical = Math.round(typicalCompletionTokens.getOrDefault(modelId, 0.0));
+                        long saved = Math.max(0, typical - generated);
+                        log.info("SSE stream cancelled after {} chunks, ~{} tokens generated, ~{} saved",
+                                chunkCount.get(), generated, saved);
+                        span.setAttribute("llm.cancelled", true);
+                        metrics.recordGeneration(modelId, true, "cancelled",
+                                Duration.ofMillis(System.currentTimeMillis() - startTime.get()));
+                        metrics.recordCancelledStream(modelId, request.getFeature() != null
+                                ? request.getFeature().name() : TokenUsage.Feature.OTHER.name(), saved);
+                    })
+                    .doOnError(e -> {
+                        log.error("SSE stream error after {} chunks, {}ms: {}", 
+                                chunkCount.get(), System.currentTimeMillis() - startTime.get(), e.getMessage());
+                        metrics.recordGeneration(modelId, true, "error",
+                                Duration.ofMillis(System.currentTimeMillis() - startTime.get()));
+                    })
+                    .onErrorResume(e -> {
+                        log.error("Streaming failed, returning error signal", e);
+                        Tracing.fail(span, e);
+                        return Flux.just("[ERROR] " + e.getMessage());
+                    })
+                    .doFinally(signal -> {
+                        long[] usage = reportedUsage.get();
+                        if (usage != null) {
+                            recordUsage(request, modelId, usage[0], usage[1], false);
+                        } else if (contentChars.get() > 0) {
+                            // No usage chunk (older API or cancelled): estimate at ~4 chars per token
+                            recordUsage(request, modelId, estimatePromptTokens(requestBody),
+                                    (contentChars.get() + 3) / 4, true);
+                        }
+                    });
+        });
     }
 
     /**
@@ -211,7 +289,7 @@ public class NvidiaAIService {
      * reasoning chunks from content chunks WITHOUT wrapping each in <think></think>
      * (which would break the stateful parser).
      */
-    private String extractContentFromChunk(String jsonChunk) {
+    String extractContentFromChunk(String jsonChunk) {
         try {
             // Handle raw SSE data that may still have "data: " prefix
             String data = jsonChunk;
@@ -269,7 +347,7 @@ public class NvidiaAIService {
     /**
      * Parse raw JSON response into AIResponse object
      */
-    private AIResponse parseResponse(String responseBody, long responseTime) {
+    private AIResponse parseResponse(String responseBody, long responseTime, AIRequest request) {
         try {
             JsonNode root = objectMapper.readTree(responseBody);
             
@@ -294,6 +372,14 @@ public class NvidiaAIService {
             if (root.get("model") != null) {
                 resolvedModel = root.get("model").asText();
             }
+            
+            if (usage != null) {
+                recordUsage(request, resolvedModel, promptTokens, completionTokens, false);
+            } else {
+                recordUsage(request, resolvedModel, estimatePromptTokens(buildRequestBody(request)),
+                        RagContextBuilder.estimateTokens(content), true);
+            }
+            metrics.recordTokenRate(resolvedModel, completionTokens, Duration.ofMillis(responseTime));
 
             return AIResponse.builder()
                     .success(true)
@@ -311,8 +397,37 @@ public class NvidiaAIService {
         }
     }
 
+    private void recordUsage(AIRequest request, String model, long promptTokens, long completionTokens,
+                             boolean estimated) {
+        metrics.countTokens(model, promptTokens, completionTokens);
+        usageLedger.record(request.getUserId(), model, request.getFeature(), promptTokens, completionTokens, estimated);
+    }
+
     /**
-     * Build request body for NVIDIA API.
+     * Read prompt/completion tokens from a stream chunk's usage block, or null if it has none.
+     */
+    private long[] readUsage(String data) {
+        try {
+            JsonNode usage = objectMapper.readTree(data).get("usage");
+            if (usage == null || usage.isNull()) {
+                return null;
+            }
+            return new long[] {usage.path("prompt_tokens").asLong(), usage.path("completion_tokens").asLong()};
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private long estimatePromptTokens(ObjectNode requestBody) {
+        long tokens = 0;
+        for (JsonNode message : requestBody.path("messages")) {
+            tokens += RagContextBuilder.estimateTokens(message.path("content").asText());
+        }
+        return tokens;
+    }
+
+    /**
+     * Build the OpenAI-compatible chat completion request body.
      * Resolves model from request or falls back to configured default.
      */
     private ObjectNode buildRequestBody(AIRequest request) {
@@ -363,10 +478,17 @@ public class NvidiaAIService {
     }
 
     /**
-     * Check if NVIDIA AI service is properly configured and available
+     * Check if the backend serving the default model is configured and available
      */
     public boolean isAvailable() {
-        return apiKey != null && !apiKey.isEmpty() && !apiKey.equals("your-nvidia-api-key-here");
+        return providers.forModel(modelConfig.getDefaultModelId()).isAvailable();
+    }
+
+    /**
+     * Model routed for a light task (e.g. "title") in models.json, if its backend is available
+     */
+    public Optional<String> modelForTask(String task) {
+        return providers.modelForTask(task);
     }
 
     /**
@@ -0,0 +1,133 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LLMProvider} for any server speaking the OpenAI {@code /chat/completions} API:
+ * NVIDIA's hosted endpoint as well as llama.cpp or vLLM servers on the local network.
+ * Each instance owns its connection pool, so a slow backend can't exhaust the
+ * connections of another.
+ */
+@Slf4j
+public class OpenAICompatibleProvider implements LLMProvider {
+
+    /**
+     * @param apiKeyRequired    local servers usually run without a key; hosted ones are unusable without
+     * @param maxConnections    size of this backend's connection pool
+     * @param pendingAcquireMax requests allowed to wait for a pooled connection before failing fast
+     */
+    public record Settings(String id, String baseUrl, String apiKey, boolean apiKeyRequired, boolean scheduled,
+                           int timeoutSeconds, int connectTimeoutMillis, int maxConnections,
+                           int pendingAcquireMax) {
+    }
+
+    private final Settings settings;
+    private final ConnectionProvider connections;
+    private final WebClient webClient;
+
+    public OpenAICompatibleProvider(Settings settings, WebClient.Builder webClientBuilder) {
+        this.settings = settings;
+        this.connections = ConnectionProvider.builder("llm-" + settings.id())
+                .maxConnections(Math.max(1, settings.maxConnections()))
+                .pendingAcquireMaxCount(Math.max(1, settings.pendingAcquireMax()))
+                .pendingAcquireTimeout(Duration.ofSeconds(settings.timeoutSeconds()))
+                .maxIdleTime(Duration.ofSeconds(60))
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connections)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, settings.connectTimeoutMillis())
+                .responseTimeout(Duration.ofSeconds(settings.timeoutSeconds()))
+                .doOnConnected(conn -> conn
+                        .addHandlerLast(new ReadTimeoutHandler(settings.timeoutSeconds(), TimeUnit.SECONDS)));
+
+        // Allow large SSE buffers (some models return big chunks)
+        ExchangeStrategies strategies = ExchangeStrategies.builder()
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build();
+
+        this.webClient = webClientBuilder.clone()
+                .baseUrl(settings.baseUrl() != null ? settings.baseUrl() : "")
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .exchangeStrategies(strategies)
+                .build();
+    }
+
+    @Override
+    public String id() {
+        return settings.id();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        if (settings.baseUrl() == null || settings.baseUrl().isBlank()) {
+            return false;
+        }
+        String key = settings.apiKey();
+        boolean hasKey = key != null && !key.isEmpty() && !key.equals("your-nvidia-api-key-here");
+        return hasKey || !settings.apiKeyRequired();
+    }
+
+    @Override
+    public boolean isScheduled() {
+        return settings.scheduled();
+    }
+
+    @Override
+    public Duration timeout() {
+        return Duration.ofSeconds(settings.timeoutSeconds());
+    }
+
+    @Override
+    public Mono<String> complete(ObjectNode requestBody) {
+        return post(requestBody)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(timeout());
+    }
+
+    @Override
+    public Flux<ServerSentEvent<String>> stream(ObjectNode requestBody) {
+        return post(requestBody)
+                .header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {});
+    }
+
+    private WebClient.RequestHeadersSpec<?> post(ObjectNode requestBody) {
+        WebClient.RequestBodySpec request = webClient.post()
+                .uri("/chat/completions")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        if (settings.apiKey() != null && !settings.apiKey().isEmpty()) {
+            request = request.header(HttpHeaders.AUTHORIZATION, "Bearer " + settings.apiKey());
+        }
+        return request.bodyValue(requestBody);
+    }
+
+    /** Close the pooled connections; called on shutdown. */
+    void dispose() {
+        connections.dispose();
+    }
+
+    @Override
+    public String toString() {
+        return settings.id() + " (" + settings.baseUrl() + ", pool=" + settings.maxConnections()
+                + ", timeout=" + settings.timeoutSeconds() + "s)";
+    }
+}
@@ -1,11 +1,10 @@
 package com.study.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.config.AIModelConfig;
 import com.study.model.Content;
 import com.study.model.Topic;
 import com.study.model.UserInteraction;
-import com.study.repository.ContentRepository;
-import com.study.repository.TopicRepository;
 import com.study.repository.UserInteractionRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
@@ -19,86 +18,40 @@ import java.util.stream.Collectors;
 @Service
 public class RAGService {
 
+    /** Number of most recent interactions the context is built from */
+    public static final int SIMILARITY_WINDOW = 10;
+
     private final UserInteractionRepository interactionRepository;
-    private final ContentRepository contentRepository;
-    private final TopicRepository topicRepository;
     private final ObjectMapper objectMapper;
+    private final AIModelConfig modelConfig;
 
     public RAGService(UserInteractionRepository interactionRepository,
-                      ContentRepository contentRepository,
-                      TopicRepository topicRepository,
-                      ObjectMapper objectMapper) {
+                      ObjectMapper objectMapper,
+                      AIModelConfig modelConfig) {
         this.interactionRepository = interactionRepository;
-        this.contentRepository = contentRepository;
-        this.topicRepository = topicRepository;
         this.objectMapper = objectMapper;
+        this.modelConfig = modelConfig;
     }
 
     /**
-     * Get relevant context for a user doubt/question
-     * Combines user history, topic content, and related materials
+     * Build relevant context from data the caller has already fetched, ranked by
+     * relevance to the query and packed into the model's context token budget.
+     * recentInteractions must be ordered newest first.
      */
-    public String getRelevantContext(String userId, String roadmapId, String topicId, String query, int maxItems) {
-        StringBuilder context = new StringBuilder();
-        
-        // 1. Get user's recent learning history
-        List<UserInteraction> recentHistory = getUserLearningHistory(userId, maxItems / 2);
-        if (!recentHistory.isEmpty()) {
-            context.append("User's Recent Learning Context:\n");
-            for (UserInteraction interaction : recentHistory) {
-                context.append("- ").append(interaction.getType()).append(": ")
-                       .append(interaction.getContent()).append("\n");
-            }
-            context.append("\n");
-        }
-        
-        // 2. Get current topic information
-        if (topicId != null) {
-            Optional<Topic> topicOpt = topicRepository.findById(topicId);
-            if (topicOpt.isPresent()) {
-                Topic topic = topicOpt.get();
-                context.append("Current Topic: ").append(topic.getTitle()).append("\n");
-                context.append("Description: ").append(topic.getDescription()).append("\n");
-                context.append("Learning Objectives: ").append(
-                    String.join(", ", topic.getLearningObjectives())
-                ).append("\n\n");
-            }
-        }
-        
-        // 3. Get relevant content for the topic
-        if (topicId != null) {
-            List<Content> contents = contentRepository.findByTopicIdOrderByCreatedAtAsc(topicId);
-            if (!contents.isEmpty()) {
-                context.append("Relevant Learning Materials:\n");
-                for (Content content : contents.stream().limit(maxItems / 2).collect(Collectors.toList())) {
-                    context.append("- ").append(content.getTitle())
-                           .append(" (").append(content.getType()).append(")\n");
-                    if (content.getKeyPoints() != null && !content.getKeyPoints().isEmpty()) {
-                        context.append("  Key points: ")
-                               .append(String.join(", ", content.getKeyPoints().subList(0, 
-                                   Math.min(3, content.getKeyPoints().size()))))
-                               .append("\n");
-                    }
-                }
-                context.append("\n");
-            }
-        }
-        
-        // 4. Get similar past doubts/interactions
-        List<UserInteraction> similarDoubts = findSimilarInteractions(userId, query, maxItems / 3);
-        if (!similarDoubts.isEmpty()) {
-            context.append("Similar Previous Questions:\n");
-            for (UserInteraction doubt : similarDoubts) {
-                context.append("Q: ").append(doubt.getContent()).append("\n");
-                if (doubt.getAiResponse() != null) {
-                    context.append("A: ").append(doubt.getAiResponse().substring(0, 
-                        Math.min(200, doubt.getAiResponse().length()))).append("...\n");
-                }
-            }
-            context.append("\n");
-        }
-        
-        return context.toString();
+    public String buildRelevantContext(Topic topic, List<Content> contents, List<UserInteraction> recentInteractions,
+                                       String query, String modelId) {
+        int budget = modelConfig.resolveContextTokens(modelId);
+        RagContextBuilder.Result result = new RagContextBuilder(query, budget)
+                .topic(topic)
+                .contents(contents)
+                .interactions(recentInteractions.stream().limit(SIMILARITY_WINDOW).toList())
+                .build();
+        
+        log.debug("RAG context: {} of {} snippets, ~{}/{} tokens ({} duplicates, {} over budget)",
+                result.selected().size(), result.candidates(), result.tokens(), budget,
+                result.duplicates(), result.overBudget());
+        
+        return result.context();
     }
 
     /**
@@ -109,32 +62,6 @@ public class RAGService {
         return interactionRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable).getContent();
     }
 
-    /**
-     * Find similar past interactions based on query
-     * Simple keyword matching - can be enhanced with embeddings
-     */
-    public List<UserInteraction> findSimilarInteractions(String userId, String query, int limit) {
-        // Get recent interactions and filter by keyword similarity
-        List<UserInteraction> allInteractions = interactionRepository.findTop10ByUserIdOrderByCreatedAtDesc(userId);
-        
-        if (query == null || query.isEmpty()) {
-            return allInteractions.stream().limit(limit).collect(Collectors.toList());
-        }
-        
-        Set<String> queryKeywords = extractKeywords(query);
-        
-        return allInteractions.stream()
-                .filter(interaction -> {
-                    Set<String> interactionKeywords = extractKeywords(interaction.getContent());
-                    // Check for keyword overlap
-                    Set<String> intersection = new HashSet<>(queryKeywords);
-                    intersection.retainAll(interactionKeywords);
-                    return !intersection.isEmpty();
-                })
-                .limit(limit)
-                .collect(Collectors.toList());
-    }
-
     /**
      * Create a simple embedding for text using keyword extraction
      * In production, this should use a proper embedding model (e.g., OpenAI, HuggingFace)
@@ -236,7 +163,7 @@ public class RAGService {
     /**
      * Extract keywords from text
      */
-    private Set<String> extractKeywords(String text) {
+    Set<String> extractKeywords(String text) {
         if (text == null || text.isEmpty()) {
             return new HashSet<>();
         }
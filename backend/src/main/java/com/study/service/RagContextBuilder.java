@@ -0,0 +1,264 @@
+package com.study.service;
+
+import com.study.model.Content;
+import com.study.model.Topic;
+import com.study.model.UserInteraction;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the retrieved-context block of a prompt under a token budget.
+ *
+ * Candidate snippets (topic metadata, content key points, past Q&A and recent
+ * activity) are scored by keyword overlap with the query plus a small prior per
+ * kind and a recency bonus for interactions. The highest scoring snippets are
+ * packed greedily until the budget is spent; a snippet whose terms mostly repeat
+ * an already selected one is dropped as a near-duplicate.
+ *
+ * Token cost is estimated at roughly four characters per token, which is close
+ * enough for budgeting and needs no tokenizer. One instance per prompt.
+ */
+class RagContextBuilder {
+
+    enum Kind {
+        RECENT("User's Recent Learning Context:", 0.05),
+        TOPIC(null, 0.35),
+        MATERIAL("Relevant Learning Materials:", 0.10),
+        PAST_QA("Similar Previous Questions:", 0.0);
+
+        final String heading;
+        final double prior;
+
+        Kind(String heading, double prior) {
+            this.heading = heading;
+            this.prior = prior;
+        }
+    }
+
+    record Snippet(Kind kind, String text, Set<String> terms, double score, int tokens) {
+    }
+
+    /**
+     * The rendered context and what went into it.
+     * duplicates and overBudget count candidates that were dropped for each reason.
+     */
+    record Result(String context, int tokens, List<Snippet> selected,
+                  int candidates, int duplicates, int overBudget) {
+    }
+
+    /** Term-set Jaccard similarity at or above which a snippet counts as a duplicate */
+    static final double DUPLICATE_JACCARD = 0.8;
+
+    /** Past answers are cut at a sentence boundary near this length */
+    static final int MAX_ANSWER_CHARS = 600;
+
+    private static final double RECENCY_BONUS = 0.15;
+    private static final double RECENCY_DECAY = 0.85;
+    private static final int MAX_KEY_POINTS = 5;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "and", "for", "are", "was", "were", "been", "being", "have", "has", "had",
+            "does", "did", "will", "would", "could", "should", "may", "might", "must", "can",
+            "this", "that", "these", "those", "with", "from", "into", "what", "when", "where",
+            "which", "who", "why", "how", "you", "your", "about", "there", "their", "then",
+            "than", "its", "not", "but", "also", "just", "like", "use", "using", "get"
+    );
+
+    private final Set<String> queryTerms;
+    private final int tokenBudget;
+    private final List<Snippet> candidates = new ArrayList<>();
+
+    RagContextBuilder(String query, int tokenBudget) {
+        this.queryTerms = terms(query);
+        this.tokenBudget = tokenBudget;
+    }
+
+    RagContextBuilder topic(Topic topic) {
+        if (topic == null) {
+            return this;
+        }
+        StringBuilder text = new StringBuilder();
+        text.append("Current Topic: ").append(topic.getTitle()).append("\n");
+        if (topic.getDescription() != null && !topic.getDescription().isBlank()) {
+            text.append("Description: ").append(topic.getDescription()).append("\n");
+        }
+        if (topic.getLearningObjectives() != null && !topic.getLearningObjectives().isEmpty()) {
+            text.append("Learning Objectives: ")
+                .append(String.join(", ", topic.getLearningObjectives())).append("\n");
+        }
+        addCandidate(Kind.TOPIC, text.toString(), 0.0);
+        return this;
+    }
+
+    RagContextBuilder contents(List<Content> contents) {
+        for (Content content : contents) {
+            StringBuilder text = new StringBuilder();
+            text.append("- ").append(content.getTitle())
+                .append(" (").append(content.getType()).append(")\n");
+
+            List<String> keyPoints = content.getKeyPoints() != null ? content.getKeyPoints() : List.of();
+            if (!keyPoints.isEmpty()) {
+                // Most relevant key points first
+                List<String> ranked = keyPoints.stream()
+                        .sorted(Comparator.comparingDouble((String kp) -> overlap(terms(kp))).reversed())
+                        .limit(MAX_KEY_POINTS)
+                        .toList();
+                text.append("  Key points: ").append(String.join(", ", ranked)).append("\n");
+            }
+            addCandidate(Kind.MATERIAL, text.toString(), 0.0);
+        }
+        return this;
+    }
+
+    /**
+     * Add recent interactions, newest first. Answered doubts that share terms with
+     * the query become Q&A snippets; everything else is a one-line activity entry.
+     */
+    RagContextBuilder interactions(List<UserInteraction> recentInteractions) {
+        for (int rank = 0; rank < recentInteractions.size(); rank++) {
+            UserInteraction interaction = recentInteractions.get(rank);
+            double recency = RECENCY_BONUS * Math.pow(RECENCY_DECAY, rank);
+
+            boolean answered = interaction.getType() == UserInteraction.InteractionType.DOUBT
+                    && interaction.getAiResponse() != null && interaction.isResolved();
+            if (answered && overlap(terms(interaction.getContent())) > 0) {
+                String text = "Q: " + interaction.getContent() + "\n"
+                        + "A: " + trimAtSentence(interaction.getAiResponse(), MAX_ANSWER_CHARS) + "\n";
+                addCandidate(Kind.PAST_QA, text, recency);
+            } else {
+                String text = "- " + interaction.getType() + ": " + interaction.getContent() + "\n";
+                addCandidate(Kind.RECENT, text, recency);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Greedily pack the best snippets into the budget and render them by section.
+     */
+    Result build() {
+        List<Snippet> ranked = candidates.stream()
+                .sorted(Comparator.comparingDouble(Snippet::score).reversed())
+                .toList();
+
+        List<Snippet> selected = new ArrayList<>();
+        Set<Kind> usedKinds = EnumSet.noneOf(Kind.class);
+        int used = 0;
+        int duplicates = 0;
+        int overBudget = 0;
+
+        for (Snippet snippet : ranked) {
+            if (isDuplicate(snippet, selected)) {
+                duplicates++;
+                continue;
+            }
+            int cost = snippet.tokens() + sectionOverhead(snippet.kind(), usedKinds);
+            if (used + cost > tokenBudget) {
+                overBudget++;
+                continue;
+            }
+            selected.add(snippet);
+            usedKinds.add(snippet.kind());
+            used += cost;
+        }
+
+        return new Result(render(selected), used, selected, candidates.size(), duplicates, overBudget);
+    }
+
+    static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    static Set<String> terms(String text) {
+        if (text == null || text.isBlank()) {
+            return Set.of();
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}+#]+"))
+                .filter(word -> word.length() > 2)
+                .filter(word -> !STOP_WORDS.contains(word))
+                .map(RagContextBuilder::stem)
+                .collect(Collectors.toSet());
+    }
+
+    static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1.0;
+        }
+        Set<String> intersection = new HashSet<>(a);
+        intersection.retainAll(b);
+        int union = a.size() + b.size() - intersection.size();
+        return union == 0 ? 0.0 : (double) intersection.size() / union;
+    }
+
+    private void addCandidate(Kind kind, String text, double bonus) {
+        Set<String> snippetTerms = terms(text);
+        double score = kind.prior + overlap(snippetTerms) + bonus;
+        candidates.add(new Snippet(kind, text, snippetTerms, score, estimateTokens(text)));
+    }
+
+    /** Fraction of query terms the snippet covers */
+    private double overlap(Set<String> snippetTerms) {
+        if (queryTerms.isEmpty() || snippetTerms.isEmpty()) {
+            return 0.0;
+        }
+        long hits = queryTerms.stream().filter(snippetTerms::contains).count();
+        return (double) hits / queryTerms.size();
+    }
+
+    private boolean isDuplicate(Snippet snippet, List<Snippet> selected) {
+        for (Snippet other : selected) {
+            if (jaccard(snippet.terms(), other.terms()) >= DUPLICATE_JACCARD) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int sectionOverhead(Kind kind, Set<Kind> usedKinds) {
+        if (usedKinds.contains(kind)) {
+            return 0;
+        }
+        // Heading line plus the blank line that closes the section
+        return estimateTokens(kind.heading != null ? kind.heading + "\n\n" : "\n");
+    }
+
+    private String render(List<Snippet> selected) {
+        StringBuilder context = new StringBuilder();
+        for (Kind kind : Kind.values()) {
+            List<Snippet> section = selected.stream().filter(s -> s.kind() == kind).toList();
+            if (section.isEmpty()) {
+                continue;
+            }
+            if (kind.heading != null) {
+                context.append(kind.heading).append("\n");
+            }
+            section.forEach(s -> context.append(s.text()));
+            context.append("\n");
+        }
+        return context.toString();
+    }
+
+    private static String trimAtSentence(String text, int maxChars) {
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        String cut = text.substring(0, maxChars);
+        int sentenceEnd = Math.max(cut.lastIndexOf(". "), cut.lastIndexOf(".\n"));
+        if (sentenceEnd > maxChars / 2) {
+            return cut.substring(0, sentenceEnd + 1);
+        }
+        return cut + "...";
+    }
+
+    /** Light plural folding so "closures" matches "closure" */
+    private static String stem(String word) {
+        if (word.length() > 4 && word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+}
@@ -0,0 +1,263 @@
+package com.study.service;
+
+import com.study.exception.QuotaExceededException;
+import com.study.exception.ServiceOverloadedException;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detached SSE generation with a replay buffer, so a client that loses its connection
+ * can pick up where it left off instead of paying for a new LLM call.
+ *
+ * {@link #start} subscribes to the generation itself; HTTP requests are only viewers.
+ * Every event gets a monotonic SSE id and is kept in a bounded ring buffer. A client
+ * reconnects with GET /streams/{id} and Last-Event-ID and receives the events after
+ * that id, then the live tail. A running stream with no viewer for detach-grace-ms is
+ * cancelled (the services save what was generated so far); a finished stream is
+ * evicted retention-ms after completion. Streams live in this instance's memory, so
+ * a resume has to reach the same instance.
+ *
+ * Background jobs {@link #open} a stream that is never cancelled for lack of viewers
+ * and feed it themselves through {@link #relay}.
+ */
+@Slf4j
+@Component
+public class ResumableStreamHub {
+
+    /** Response header carrying the id to resume the stream with */
+    public static final String STREAM_ID_HEADER = "X-Stream-Id";
+
+    public record Started(String streamId, Flux<ServerSentEvent<String>> events) {
+    }
+
+    private record Entry(long seq, ServerSentEvent<String> event) {
+    }
+
+    private static final class Stream {
+        private final String id;
+        private final String userId;
+        /** Kept running with no viewer; a background job owns the generation */
+        private final boolean detached;
+        private final ArrayDeque<Entry> buffer = new ArrayDeque<>();
+        private final List<FluxSink<ServerSentEvent<String>>> viewers = new ArrayList<>();
+        private long seq;
+        private boolean done;
+        /** When the last viewer left (nanoTime), or when the stream finished */
+        private long since = System.nanoTime();
+        private Disposable generation;
+
+        private Stream(String id, String userId, boolean detached) {
+            this.id = id;
+            this.userId = userId;
+            this.detached = detached;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Stream> streams = new ConcurrentHashMap<>();
+    private final int bufferEvents;
+    private final long detachGraceNanos;
+    private final long retentionNanos;
+
+    public ResumableStreamHub(@Value("${streams.replay.buffer-events:2000}") int bufferEvents,
+                              @Value("${streams.replay.detach-grace-ms:30000}") long detachGraceMillis,
+                              @Value("${streams.replay.retention-ms:120000}") long retentionMillis) {
+        this.bufferEvents = Math.max(1, bufferEvents);
+        this.detachGraceNanos = TimeUnit.MILLISECONDS.toNanos(detachGraceMillis);
+        this.retentionNanos = TimeUnit.MILLISECONDS.toNanos(retentionMillis);
+    }
+
+    /**
+     * Run a generation detached from the request. The returned events are the first
+     * viewer; pass {@code streamId} back to the client for {@link #resume}.
+     */
+    public Started start(String userId, Flux<ServerSentEvent<String>> generation) {
+        Stream stream = new Stream(new ObjectId().toHexString(), userId, false);
+        streams.put(stream.id, stream);
+        Flux<ServerSentEvent<String>> events = view(stream, 0);
+        Disposable subscription = relay(stream, generation).subscribe(event -> {
+        }, error -> {
+        });
+        synchronized (stream) {
+            if (!stream.done) {
+                stream.generation = subscription;
+            }
+        }
+        return new Started(stream.id, events);
+    }
+
+    /**
+     * Register a stream whose generation is run by the caller via {@link #relay}.
+     * Viewers can attach right away; the stream is not cancelled when nobody watches.
+     */
+    public String open(String userId) {
+        Stream stream = new Stream(new ObjectId().toHexString(), userId, true);
+        streams.put(stream.id, stream);
+        return stream.id;
+    }
+
+    /**
+     * The generation with every event recorded into an {@link #open}ed stream. The stream
+     * finishes when the returned flux terminates or is cancelled.
+     */
+    public Flux<ServerSentEvent<String>> relay(String streamId, Flux<ServerSentEvent<String>> generation) {
+        Stream stream = streams.get(streamId);
+        if (stream == null) {
+            return Flux.error(new IllegalStateException("Stream " + streamId + " is not open"));
+        }
+        return relay(stream, generation);
+    }
+
+    /**
+     * Drop an {@link #open}ed stream that will never run; current viewers are completed.
+     */
+    public void discard(String streamId) {
+        Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            finish(stream);
+        }
+    }
+
+    /**
+     * Reattach to a stream, replaying the events after {@code lastEventId}.
+     * Unknown, expired or foreign streams yield a single "error" event.
+     */
+    public Flux<ServerSentEvent<String>> resume(String streamId, String userId, String lastEventId) {
+        Stream stream = streams.get(streamId);
+        if (stream == null || !stream.userId.equals(userId)) {
+            return Flux.just(error("Stream not found or expired"));
+        }
+        long after;
+        try {
+            after = lastEventId != null && !lastEventId.isBlank() ? Long.parseLong(lastEventId.trim()) : 0;
+        } catch (NumberFormatException e) {
+            after = 0;
+        }
+        return view(stream, after);
+    }
+
+    /**
+     * Cancel generations nobody is watching and evict finished streams past their retention.
+     */
+    @Scheduled(fixedDelayString = "${streams.replay.sweep-interval-ms:5000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        streams.values().removeIf(stream -> {
+            Disposable abandoned = null;
+            synchronized (stream) {
+                if (stream.done) {
+                    return now - stream.since > retentionNanos;
+                }
+                if (stream.detached || !stream.viewers.isEmpty() || now - stream.since <= detachGraceNanos) {
+                    return false;
+                }
+                stream.done = true;
+                abandoned = stream.generation;
+            }
+            log.info("Stream {} has had no viewer for {}s, cancelling generation", stream.id,
+                    TimeUnit.NANOSECONDS.toSeconds(now - stream.since));
+            if (abandoned != null) {
+                abandoned.dispose();
+            }
+            return true;
+        });
+    }
+
+    private Flux<ServerSentEvent<String>> relay(Stream stream, Flux<ServerSentEvent<String>> generation) {
+        return generation
+                .doOnNext(event -> append(stream, event))
+                .doOnError(failure -> {
+                    if (failure instanceof QuotaExceededException || failure instanceof ServiceOverloadedException) {
+                        // A refusal the user can act on, not a fault: pass its message on
+                        log.info("Stream {} refused: {}", stream.id, failure.getMessage());
+                        append(stream, error(failure.getMessage().replace("\"", "'")));
+                    } else {
+                        log.error("Stream {} failed", stream.id, failure);
+                        append(stream, error("Stream failed"));
+                    }
+                })
+                .doFinally(signal -> finish(stream));
+    }
+
+    private Flux<ServerSentEvent<String>> view(Stream stream, long after) {
+        return Flux.create(sink -> {
+            synchronized (stream) {
+                Entry oldest = stream.buffer.peekFirst();
+                if (oldest != null && after + 1 < oldest.seq()) {
+                    sink.next(error("Missed events are no longer buffered"));
+                    sink.complete();
+                    return;
+                }
+                for (Entry entry : stream.buffer) {
+                    if (entry.seq() > after) {
+                        sink.next(entry.event());
+                    }
+                }
+                if (stream.done) {
+                    sink.complete();
+                    return;
+                }
+                stream.viewers.add(sink);
+            }
+            sink.onDispose(() -> detach(stream, sink));
+        });
+    }
+
+    private void append(Stream stream, ServerSentEvent<String> event) {
+        synchronized (stream) {
+            ServerSentEvent<String> numbered = ServerSentEvent.builder(event.data())
+                    .id(Long.toString(++stream.seq))
+                    .event(event.event())
+                    .comment(event.comment())
+                    .build();
+            stream.buffer.addLast(new Entry(stream.seq, numbered));
+            if (stream.buffer.size() > bufferEvents) {
+                stream.buffer.removeFirst();
+            }
+            for (FluxSink<ServerSentEvent<String>> viewer : List.copyOf(stream.viewers)) {
+                viewer.next(numbered);
+            }
+        }
+    }
+
+    private void finish(Stream stream) {
+        synchronized (stream) {
+            stream.done = true;
+            stream.since = System.nanoTime();
+            stream.generation = null;
+            for (FluxSink<ServerSentEvent<String>> viewer : List.copyOf(stream.viewers)) {
+                viewer.complete();
+            }
+            stream.viewers.clear();
+        }
+    }
+
+    private void detach(Stream stream, FluxSink<ServerSentEvent<String>> sink) {
+        synchronized (stream) {
+            if (stream.viewers.remove(sink) && stream.viewers.isEmpty() && !stream.done) {
+                stream.since = System.nanoTime();
+                log.info("Last viewer left stream {} at event {}; generation continues for resume", stream.id,
+                        stream.seq);
+            }
+        }
+    }
+
+    private static ServerSentEvent<String> error(String message) {
+        return ServerSentEvent.<String>builder()
+                .event("error")
+                .data("{\"message\":\"" + message + "\"}")
+                .build();
+    }
+}
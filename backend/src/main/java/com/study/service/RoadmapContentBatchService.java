@@ -0,0 +1,254 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.config.AIModelConfig;
+import com.study.dto.AIRequest;
+import com.study.dto.AIResponse;
+import com.study.exception.QuotaExceededException;
+import com.study.exception.ServiceOverloadedException;
+import com.study.model.Content;
+import com.study.model.Roadmap;
+import com.study.model.SharedContent;
+import com.study.model.Topic;
+import com.study.model.TokenUsage;
+import com.study.observability.Tracing;
+import com.study.repository.ContentRepository;
+import com.study.repository.RoadmapRepository;
+import com.study.repository.TopicRepository;
+import com.study.util.PromptTemplates;
+import com.study.util.SseEvents;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Content for many topics of a roadmap in one SSE stream (POST
+ * /roadmaps/{id}/generate-content/stream).
+ *
+ * Topics are generated content.batch.parallelism at a time, each prompt opening with
+ * the same roadmap outline so the topics stay consistent with each other. Library
+ * hits are copied as in the single-topic path. Finished topics are persisted together
+ * (one insert for the Content documents, one bulk update of Topic.contentIds) once
+ * parallelism of them are done or flush-interval-ms has passed, then announced with a
+ * "topic" or "topic-error" event each. XP is awarded once for the whole batch, with
+ * the final "complete" event.
+ */
+@Slf4j
+@Service
+public class RoadmapContentBatchService {
+
+    /** One topic's outcome in a content batch: the unsaved content, or why there is none */
+    private record BatchResult(Topic topic, Content content, boolean reused, String error) {
+    }
+
+    private final RoadmapRepository roadmapRepository;
+    private final TopicRepository topicRepository;
+    private final ContentRepository contentRepository;
+    private final NvidiaAIService aiService;
+    private final ObjectMapper objectMapper;
+    private final AIModelConfig modelConfig;
+    private final WriteBehindService writeBehind;
+    private final ContentLibraryService contentLibrary;
+    private final MongoTemplate mongoTemplate;
+    private final TopicContentPrefetcher prefetcher;
+    private final int batchParallelism;
+    private final Duration batchFlushInterval;
+
+    public RoadmapContentBatchService(RoadmapRepository roadmapRepository,
+                                      TopicRepository topicRepository,
+                                      ContentRepository contentRepository,
+                                      NvidiaAIService aiService,
+                                      ObjectMapper objectMapper,
+                                      AIModelConfig modelConfig,
+                                      WriteBehindService writeBehind,
+                                      ContentLibraryService contentLibrary,
+                                      MongoTemplate mongoTemplate,
+                                      TopicContentPrefetcher prefetcher,
+                                      @Value("${content.batch.parallelism:4}") int batchParallelism,
+                                      @Value("${content.batch.flush-interval-ms:2000}") long batchFlushMillis) {
+        this.roadmapRepository = roadmapRepository;
+        this.topicRepository = topicRepository;
+        this.contentRepository = contentRepository;
+        this.aiService = aiService;
+        this.objectMapper = objectMapper;
+        this.modelConfig = modelConfig;
+        this.writeBehind = writeBehind;
+        this.contentLibrary = contentLibrary;
+        this.mongoTemplate = mongoTemplate;
+        this.prefetcher = prefetcher;
+        this.batchParallelism = Math.max(1, batchParallelism);
+        this.batchFlushInterval = Duration.ofMillis(Math.max(1, batchFlushMillis));
+    }
+
+    /**
+     * Generate content for every topic of a roadmap that has none yet (or for the given
+     * topics) in one SSE stream.
+     */
+    public Flux<ServerSentEvent<String>> generateRoadmapContentBatch(String userId, String roadmapId,
+                                                                    List<String> topicIds, String contentType) {
+        try {
+            Roadmap roadmap = roadmapRepository.findByIdAndUserId(roadmapId, userId)
+                    .orElseThrow(() -> new RuntimeException("Roadmap not found"));
+
+            String resolvedType = Content.ContentType.valueOf(contentType != null ? contentType : "THEORY").name();
+            List<Topic> topics = topicRepository.findByRoadmapIdOrderBySequenceOrderAsc(roadmapId);
+            List<Topic> selected = topics.stream()
+                    .filter(topic -> topicIds != null && !topicIds.isEmpty()
+                            ? topicIds.contains(topic.getId())
+                            : topic.getContentIds().isEmpty())
+                    .toList();
+            String outline = topics.stream()
+                    .map(topic -> topic.getSequenceOrder() + ". " + topic.getTitle())
+                    .collect(Collectors.joining("\n"));
+            String model = modelConfig.getDefaultModelId();
+
+            AtomicInteger generated = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            log.info("Generating {} content for {} of {} topics of roadmap {}",
+                    resolvedType, selected.size(), topics.size(), roadmapId);
+
+            return Flux.just(sseEvent("batch", Map.of("roadmapId", roadmapId, "topics", selected.size())))
+                    .concatWith(Flux.fromIterable(selected)
+                            .flatMap(topic -> Mono.fromCallable(() ->
+                                            generateBatchContent(userId, roadmap, outline, topic, resolvedType, model))
+                                    .subscribeOn(Schedulers.boundedElastic()), batchParallelism)
+                            .bufferTimeout(batchParallelism, batchFlushInterval)
+                            .publishOn(Schedulers.boundedElastic())
+                            .concatMapIterable(results -> persistBatch(results, generated, failed)))
+                    .concatWith(Flux.defer(() -> {
+                        int xp = generated.get() * GamificationService.XP_GENERATE_CONTENT;
+                        if (xp > 0) {
+                            writeBehind.awardXP(userId, xp, "Generated content for " + generated.get()
+                                    + " topics of: " + roadmap.getTitle(), "GENERATE_CONTENT");
+                        }
+                        log.info("Content batch for roadmap {} done: {} generated, {} failed",
+                                roadmapId, generated.get(), failed.get());
+                        return Flux.just(sseEvent("complete", Map.of(
+                                "roadmapId", roadmapId,
+                                "generated", generated.get(),
+                                "failed", failed.get(),
+                                "xpAwarded", xp)));
+                    }))
+                    .contextWrite(Tracing.capture());
+
+        } catch (Exception e) {
+            log.error("Error starting content batch", e);
+            return Flux.just(sseEvent("error", Map.of("message", e.getMessage() != null ? e.getMessage() : "Failed to generate content")));
+        }
+    }
+
+    /**
+     * Library lookup or blocking generation for one topic of a batch. Never throws, so
+     * one failed topic does not stop the others.
+     */
+    private BatchResult generateBatchContent(String userId, Roadmap roadmap, String outline, Topic topic,
+                                             String contentType, String model) {
+        prefetcher.cancelTopic(topic.getId());
+        try {
+            String fingerprint = contentLibrary.fingerprint(roadmap.getGoal(), topic.getTitle(),
+                    topic.getDescription(), Content.ContentType.valueOf(contentType), model);
+
+            Optional<SharedContent> shared = contentLibrary.findReusable(fingerprint);
+            if (shared.isPresent()) {
+                return new BatchResult(topic, contentLibrary.prepareCopy(shared.get(), topic, roadmap.getId(), userId),
+                        true, null);
+            }
+            if (!aiService.isAvailable()) {
+                return new BatchResult(topic, null, false, "AI service is not available");
+            }
+
+            String prompt = PromptTemplates.formatBatchContentPrompt(
+                    roadmap.getTitle(),
+                    roadmap.getGoal(),
+                    outline,
+                    topic.getTitle(),
+                    topic.getDescription(),
+                    contentType
+            );
+            AIRequest aiRequest = AIRequest.withSystemPrompt(
+                    PromptTemplates.SYSTEM_PROMPT_CONTENT_GENERATOR,
+                    prompt
+            ).attributedTo(userId, TokenUsage.Feature.CONTENT);
+            aiRequest.setModel(model);
+            AIResponse aiResponse = aiService.generate(aiRequest);
+
+            if (!aiResponse.isSuccess()) {
+                return new BatchResult(topic, null, false, "Failed to generate content: " + aiResponse.getErrorMessage());
+            }
+
+            JsonNode root = objectMapper.readTree(aiService.extractJsonFromResponse(aiResponse.getContent()));
+            Content content = GeneratedJson.content(topic, roadmap, userId, root, contentType, model);
+            contentLibrary.publishEntry(fingerprint, roadmap.getGoal(), topic, model, content);
+            return new BatchResult(topic, content, false, null);
+
+        } catch (QuotaExceededException | ServiceOverloadedException e) {
+            return new BatchResult(topic, null, false, e.getMessage());
+        } catch (Exception e) {
+            log.error("Error generating batch content for topic {}", topic.getId(), e);
+            return new BatchResult(topic, null, false, "Failed to generate content");
+        }
+    }
+
+    /**
+     * Insert the finished contents of a batch chunk and link them to their topics,
+     * then emit one event per topic.
+     */
+    private List<ServerSentEvent<String>> persistBatch(List<BatchResult> results, AtomicInteger generated,
+                                                       AtomicInteger failed) {
+        List<BatchResult> succeeded = results.stream()
+                .filter(result -> result.content() != null)
+                .toList();
+        if (!succeeded.isEmpty()) {
+            contentRepository.saveAll(succeeded.stream().map(BatchResult::content).toList());
+
+            BulkOperations links = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Topic.class);
+            for (BatchResult result : succeeded) {
+                links.updateOne(Query.query(Criteria.where("_id").is(result.topic().getId())),
+                        new Update().push("contentIds", result.content().getId()));
+            }
+            links.execute();
+        }
+
+        List<ServerSentEvent<String>> events = new ArrayList<>();
+        for (BatchResult result : results) {
+            if (result.content() != null) {
+                generated.incrementAndGet();
+                events.add(sseEvent("topic", Map.of(
+                        "topicId", result.topic().getId(),
+                        "contentId", result.content().getId(),
+                        "title", Objects.requireNonNullElse(result.content().getTitle(), result.topic().getTitle()),
+                        "reused", result.reused())));
+            } else {
+                failed.incrementAndGet();
+                events.add(sseEvent("topic-error", Map.of(
+                        "topicId", result.topic().getId(),
+                        "title", result.topic().getTitle(),
+                        "message", result.error())));
+            }
+        }
+        return events;
+    }
+
+    private ServerSentEvent<String> sseEvent(String event, Object payload) {
+        return SseEvents.json(objectMapper, event, payload);
+    }
+}
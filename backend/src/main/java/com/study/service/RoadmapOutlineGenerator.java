@@ -0,0 +1,280 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.dto.AIRequest;
+import com.study.dto.AIResponse;
+import com.study.dto.RoadmapRequest;
+import com.study.exception.QuotaExceededException;
+import com.study.exception.ServiceOverloadedException;
+import com.study.model.Roadmap;
+import com.study.model.Topic;
+import com.study.model.TokenUsage;
+import com.study.observability.Tracing;
+import com.study.repository.RoadmapRepository;
+import com.study.repository.TopicRepository;
+import com.study.util.PromptTemplates;
+import com.study.util.SseEvents;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Outline-first roadmap generation (roadmap.outline-first.enabled, or outlineFirst on
+ * the request): a short outline call, then one expansion call per topic.
+ *
+ * RoadmapService decides when to use it, after the template lookup; a roadmap whose
+ * topics all expanded is published as a template here.
+ */
+@Slf4j
+@Service
+public class RoadmapOutlineGenerator {
+
+    /** Roadmap and topic stubs saved from an outline, with the outline as prompt text */
+    private record Outline(Roadmap roadmap, List<Topic> topics, String text) {
+    }
+
+    private final RoadmapRepository roadmapRepository;
+    private final TopicRepository topicRepository;
+    private final NvidiaAIService aiService;
+    private final ObjectMapper objectMapper;
+    private final MongoTemplate mongoTemplate;
+    private final RoadmapTemplateService roadmapTemplates;
+    private final int outlineParallelism;
+
+    public RoadmapOutlineGenerator(RoadmapRepository roadmapRepository,
+                                   TopicRepository topicRepository,
+                                   NvidiaAIService aiService,
+                                   ObjectMapper objectMapper,
+                                   MongoTemplate mongoTemplate,
+                                   RoadmapTemplateService roadmapTemplates,
+                                   @Value("${roadmap.outline-first.parallelism:4}") int outlineParallelism) {
+        this.roadmapRepository = roadmapRepository;
+        this.topicRepository = topicRepository;
+        this.aiService = aiService;
+        this.objectMapper = objectMapper;
+        this.mongoTemplate = mongoTemplate;
+        this.roadmapTemplates = roadmapTemplates;
+        this.outlineParallelism = Math.max(1, outlineParallelism);
+    }
+
+    /**
+     * Outline-first roadmap via SSE. One short call returns the outline; the roadmap and
+     * all topic stubs are saved and sent right away ("outline", then a "topic" per stub),
+     * then each topic's objectives and resources are generated in separate calls,
+     * roadmap.outline-first.parallelism at a time, and merged into the topic as they
+     * arrive ("topic-expanded" or "topic-error"). Total latency is the outline plus the
+     * slowest few expansions instead of one completion growing with the topic count.
+     * onCreated runs after the last expansion, before the "complete" event.
+     */
+    public Flux<ServerSentEvent<String>> stream(String userId, RoadmapRequest request, String model,
+                                                String templateKey, Runnable onCreated) {
+        AtomicInteger expanded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        return Mono.fromCallable(() -> generateOutline(userId, request, model))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(outline -> Flux.just(sseEvent("outline", Map.of(
+                                "roadmapId", outline.roadmap().getId(),
+                                "title", outline.roadmap().getTitle(),
+                                "totalTopics", outline.topics().size())))
+                        .concatWith(Flux.fromIterable(outline.topics()).map(topic -> topicEvent(objectMapper, "topic", topic)))
+                        .concatWith(expandTopics(userId, outline, model, expanded, failed))
+                        .concatWith(Flux.defer(() -> {
+                            if (failed.get() == 0) {
+                                roadmapTemplates.publish(templateKey, request, model, outline.roadmap(), outline.topics());
+                            }
+                            onCreated.run();
+                            log.info("Outline-first roadmap {} done: {} topics, {} expanded, {} failed",
+                                    outline.roadmap().getId(), outline.topics().size(), expanded.get(), failed.get());
+                            return Flux.just(sseEvent("complete", Map.of(
+                                    "roadmapId", outline.roadmap().getId(),
+                                    "totalTopics", outline.topics().size(),
+                                    "expanded", expanded.get(),
+                                    "failed", failed.get())));
+                        })))
+                .onErrorResume(e -> {
+                    log.error("Outline-first roadmap generation failed for user {}", userId, e);
+                    return Flux.just(sseEvent("error", Map.of("message",
+                            e instanceof QuotaExceededException || e instanceof ServiceOverloadedException
+                                    ? e.getMessage() : "Failed to generate roadmap")));
+                })
+                .contextWrite(Tracing.capture());
+    }
+
+    /**
+     * Blocking variant of {@link #stream} for POST /roadmaps.
+     */
+    public Roadmap generate(String userId, RoadmapRequest request, String model,
+                            String templateKey) throws Exception {
+        Outline outline = generateOutline(userId, request, model);
+        AtomicInteger expanded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        expandTopics(userId, outline, model, expanded, failed).blockLast();
+        if (failed.get() == 0) {
+            roadmapTemplates.publish(templateKey, request, model, outline.roadmap(), outline.topics());
+        }
+        log.info("Outline-first roadmap {} done: {} topics, {} expanded, {} failed",
+                outline.roadmap().getId(), outline.topics().size(), expanded.get(), failed.get());
+        return outline.roadmap();
+    }
+
+    /**
+     * Generate the outline and save the roadmap with one stub per topic (title,
+     * description, time estimate and prerequisites; no objectives or resources yet).
+     */
+    private Outline generateOutline(String userId, RoadmapRequest request, String model) throws Exception {
+        AIRequest aiRequest = AIRequest.withSystemPrompt(
+                PromptTemplates.SYSTEM_PROMPT_ROADMAP_GENERATOR,
+                PromptTemplates.formatRoadmapOutlinePrompt(
+                        request.getGoal(),
+                        request.getCurrentLevel(),
+                        request.getDifficulty(),
+                        request.getEstimatedHoursPerWeek(),
+                        request.getPreferredLearningStyle())
+        ).attributedTo(userId, TokenUsage.Feature.ROADMAP);
+        aiRequest.setModel(model);
+        AIResponse aiResponse = aiService.generate(aiRequest);
+
+        if (!aiResponse.isSuccess()) {
+            throw new RuntimeException("Failed to generate roadmap outline: " + aiResponse.getErrorMessage());
+        }
+        JsonNode root = objectMapper.readTree(aiService.extractJsonFromResponse(aiResponse.getContent()));
+        JsonNode topicsNode = root.path("topics");
+        if (!topicsNode.isArray() || topicsNode.isEmpty()) {
+            throw new RuntimeException("Roadmap outline has no topics");
+        }
+
+        Roadmap roadmap = roadmapRepository.save(Roadmap.builder()
+                .userId(userId)
+                .title(request.getTitle() != null && !request.getTitle().isEmpty() ? request.getTitle()
+                        : root.path("title").asText("AI Roadmap"))
+                .description(request.getDescription() != null && !request.getDescription().isEmpty()
+                        ? request.getDescription() : root.path("description").asText(""))
+                .goal(request.getGoal())
+                .difficulty(request.getDifficulty())
+                .estimatedHours(root.has("estimatedHours") ? root.get("estimatedHours").asInt() : 0)
+                .estimatedWeeks(root.has("estimatedWeeks") ? root.get("estimatedWeeks").asInt() : 0)
+                .tags(request.getTags() != null && !request.getTags().isEmpty() ? request.getTags() : GeneratedJson.tags(root))
+                .status(Roadmap.RoadmapStatus.DRAFT)
+                .progressPercentage(0.0)
+                .completedTopics(0)
+                .totalTopics(0)
+                .build());
+
+        List<Topic> stubs = new ArrayList<>();
+        int sequence = 1;
+        for (JsonNode topicNode : topicsNode) {
+            stubs.add(Topic.builder()
+                    .roadmapId(roadmap.getId())
+                    .userId(userId)
+                    .title(topicNode.has("title") ? topicNode.get("title").asText() : "Untitled Topic")
+                    .description(topicNode.has("description") ? topicNode.get("description").asText() : "")
+                    .sequenceOrder(sequence++)
+                    .estimatedMinutes(topicNode.has("estimatedMinutes") ? topicNode.get("estimatedMinutes").asInt() : 30)
+                    .prerequisites(GeneratedJson.stringArray(topicNode, "prerequisites"))
+                    .status(Topic.TopicStatus.AVAILABLE)
+                    .build());
+        }
+        List<Topic> topics = topicRepository.saveAll(stubs);
+
+        roadmap.setTotalTopics(topics.size());
+        roadmap.setTopicIds(topics.stream().map(Topic::getId).collect(Collectors.toList()));
+        roadmap = roadmapRepository.save(roadmap);
+
+        String text = topics.stream()
+                .map(topic -> topic.getSequenceOrder() + ". " + topic.getTitle())
+                .collect(Collectors.joining("\n"));
+        return new Outline(roadmap, topics, text);
+    }
+
+    /**
+     * Expand every stub of an outline, roadmap.outline-first.parallelism at a time, in
+     * completion order.
+     */
+    private Flux<ServerSentEvent<String>> expandTopics(String userId, Outline outline, String model,
+                                                       AtomicInteger expanded, AtomicInteger failed) {
+        return Flux.fromIterable(outline.topics())
+                .flatMap(topic -> Mono.fromCallable(() -> expandTopic(userId, outline, topic, model, expanded, failed))
+                        .subscribeOn(Schedulers.boundedElastic()), outlineParallelism);
+    }
+
+    /**
+     * Generate one topic's objectives and resources and merge them into its document.
+     * Never throws, so one failed topic does not stop the others; it keeps its stub.
+     */
+    private ServerSentEvent<String> expandTopic(String userId, Outline outline, Topic topic, String model,
+                                                AtomicInteger expanded, AtomicInteger failed) {
+        try {
+            Roadmap roadmap = outline.roadmap();
+            AIRequest aiRequest = AIRequest.withSystemPrompt(
+                    PromptTemplates.SYSTEM_PROMPT_ROADMAP_GENERATOR,
+                    PromptTemplates.formatTopicExpansionPrompt(
+                            roadmap.getTitle(),
+                            roadmap.getGoal(),
+                            roadmap.getDifficulty(),
+                            outline.text(),
+                            topic.getTitle(),
+                            topic.getDescription())
+            ).attributedTo(userId, TokenUsage.Feature.ROADMAP);
+            aiRequest.setModel(model);
+            AIResponse aiResponse = aiService.generate(aiRequest);
+
+            if (!aiResponse.isSuccess()) {
+                throw new RuntimeException(aiResponse.getErrorMessage());
+            }
+            JsonNode root = objectMapper.readTree(aiService.extractJsonFromResponse(aiResponse.getContent()));
+            topic.setLearningObjectives(GeneratedJson.stringArray(root, "learningObjectives"));
+            topic.setResources(GeneratedJson.resources(root));
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(topic.getId())),
+                    new Update().set("learningObjectives", topic.getLearningObjectives())
+                            .set("resources", topic.getResources()),
+                    Topic.class);
+
+            expanded.incrementAndGet();
+            return topicEvent(objectMapper, "topic-expanded", topic);
+
+        } catch (Exception e) {
+            log.warn("Expanding topic {} of roadmap {} failed: {}", topic.getId(), topic.getRoadmapId(), e.getMessage());
+            failed.incrementAndGet();
+            return sseEvent("topic-error", Map.of(
+                    "id", topic.getId(),
+                    "title", topic.getTitle(),
+                    "message", e instanceof QuotaExceededException || e instanceof ServiceOverloadedException
+                            ? e.getMessage() : "Failed to expand topic"));
+        }
+    }
+
+    /**
+     * A topic as sent in roadmap streams, with whatever it has been expanded with so far.
+     */
+    static ServerSentEvent<String> topicEvent(ObjectMapper objectMapper, String event, Topic topic) {
+        return SseEvents.json(objectMapper, event, Map.of(
+                "id", topic.getId(),
+                "title", topic.getTitle(),
+                "description", topic.getDescription(),
+                "sequenceOrder", topic.getSequenceOrder(),
+                "estimatedMinutes", topic.getEstimatedMinutes(),
+                "prerequisites", topic.getPrerequisites(),
+                "learningObjectives", topic.getLearningObjectives(),
+                "resources", topic.getResources()));
+    }
+
+    private ServerSentEvent<String> sseEvent(String event, Object payload) {
+        return SseEvents.json(objectMapper, event, payload);
+    }
+}
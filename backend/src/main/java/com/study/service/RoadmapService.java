@@ -2,12 +2,25 @@ package com.study.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.study.config.AIModelConfig;
 import com.study.dto.*;
+import com.study.exception.QuotaExceededException;
+import com.study.exception.ServiceOverloadedException;
 import com.study.model.*;
+import com.study.observability.Tracing;
 import com.study.repository.*;
+import com.study.util.KeysetCursor;
 import com.study.util.PromptTemplates;
+import com.study.util.SseEvents;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,6 +29,8 @@ import java.util.*;
 import java.util.stream.Collectors;
 import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
@@ -33,7 +48,14 @@ public class RoadmapService {
     private final RAGService ragService;
     private final ObjectMapper objectMapper;
     private final AIModelConfig modelConfig;
-    private final GamificationService gamificationService;
+    private final WriteBehindService writeBehind;
+    private final ContentLibraryService contentLibrary;
+    private final Tracing tracing;
+    private final MongoTemplate mongoTemplate;
+    private final TopicContentPrefetcher prefetcher;
+    private final RoadmapTemplateService roadmapTemplates;
+    private final boolean outlineFirstDefault;
+    private final RoadmapOutlineGenerator outlineGenerator;
 
     public RoadmapService(RoadmapRepository roadmapRepository,
                           TopicRepository topicRepository,
@@ -43,7 +65,14 @@ public class RoadmapService {
                           RAGService ragService,
                           ObjectMapper objectMapper,
                           AIModelConfig modelConfig,
-                          GamificationService gamificationService) {
+                          WriteBehindService writeBehind,
+                          ContentLibraryService contentLibrary,
+                          Tracing tracing,
+                          MongoTemplate mongoTemplate,
+                          TopicContentPrefetcher prefetcher,
+                          RoadmapTemplateService roadmapTemplates,
+                          RoadmapOutlineGenerator outlineGenerator,
+                          @Value("${roadmap.outline-first.enabled:false}") boolean outlineFirstDefault) {
         this.roadmapRepository = roadmapRepository;
         this.topicRepository = topicRepository;
         this.contentRepository = contentRepository;
@@ -52,7 +81,14 @@ public class RoadmapService {
         this.ragService = ragService;
         this.objectMapper = objectMapper;
         this.modelConfig = modelConfig;
-        this.gamificationService = gamificationService;
+        this.writeBehind = writeBehind;
+        this.contentLibrary = contentLibrary;
+        this.tracing = tracing;
+        this.mongoTemplate = mongoTemplate;
+        this.prefetcher = prefetcher;
+        this.roadmapTemplates = roadmapTemplates;
+        this.outlineFirstDefault = outlineFirstDefault;
+        this.outlineGenerator = outlineGenerator;
     }
 
     /**
@@ -67,6 +103,17 @@ public class RoadmapService {
                     .build());
         }
 
+        String resolvedModel = modelConfig.resolveModelId(request.getModel());
+        String templateKey = roadmapTemplates.fingerprint(request, resolvedModel);
+        Optional<RoadmapTemplate> template = findReusableTemplate(templateKey, request);
+        if (template.isPresent()) {
+            return streamFromTemplate(userId, request, template.get());
+        }
+        if (isOutlineFirst(request)) {
+            return outlineGenerator.stream(userId, request, resolvedModel, templateKey,
+                    () -> awardRoadmapCreationXP(userId));
+        }
+
         String prompt = PromptTemplates.formatRoadmapStreamPrompt(
                 request.getGoal(),
                 request.getCurrentLevel(),
@@ -75,189 +122,50 @@ public class RoadmapService {
                 request.getPreferredLearningStyle()
         );
 
-        String resolvedModel = modelConfig.resolveModelId(request.getModel());
-
         AIRequest aiRequest = AIRequest.withSystemPrompt(
                 PromptTemplates.SYSTEM_PROMPT_ROADMAP_GENERATOR,
                 prompt
-        );
+        ).attributedTo(userId, TokenUsage.Feature.ROADMAP);
         aiRequest.setModel(resolvedModel);
 
-        AtomicReference<String> buffer = new AtomicReference<>("");
+        RoadmapStreamParser parser = new RoadmapStreamParser();
         AtomicInteger sequenceOrder = new AtomicInteger(1);
         AtomicReference<Roadmap> draftRoadmap = new AtomicReference<>(null);
+        Context parent = Context.current();
 
         return aiService.generateStream(aiRequest)
                 .flatMap(chunk -> {
-                    String current = buffer.get() + chunk;
                     List<ServerSentEvent<String>> events = new ArrayList<>();
 
-                    // Very simple state machine/parser for THINKING and TOPIC
-                    if (current.contains("THINKING:")) {
-                        int thinkingStart = current.indexOf("THINKING:") + "THINKING:".length();
-                        int topicStart = current.indexOf("TOPIC:", thinkingStart);
-                        
-                        if (topicStart != -1) {
-                            // Thinking section is complete
-                            String thinkingContent = current.substring(thinkingStart, topicStart).trim();
-                            if (!thinkingContent.isEmpty()) {
-                                String escapedThinking = thinkingContent.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r");
-                                events.add(ServerSentEvent.<String>builder()
-                                        .event("thinking")
-                                        .data("{\"content\":\"" + escapedThinking + "\"}")
-                                        .build());
-                            }
-                            current = current.substring(topicStart);
+                    for (RoadmapStreamParser.Event parsed : parser.feed(chunk)) {
+                        if (parsed.type() == RoadmapStreamParser.EventType.THINKING) {
+                            String escapedThinking = parsed.text().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r");
+                            events.add(ServerSentEvent.<String>builder()
+                                    .event("thinking")
+                                    .data("{\"content\":\"" + escapedThinking + "\"}")
+                                    .build());
                         } else {
-                            // Still thinking
-                            String thinkingContent = current.substring(thinkingStart).trim();
-                            if (!thinkingContent.isEmpty()) {
-                                String escapedThinking = thinkingContent.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r");
-                                events.add(ServerSentEvent.<String>builder()
-                                        .event("thinking")
-                                        .data("{\"content\":\"" + escapedThinking + "\"}")
-                                        .build());
-                                current = "THINKING:\n";
-                            }
-                        }
-                    }
-
-                    // Process TOPICs
-                    while (current.contains("TOPIC:")) {
-                        int topicStart = current.indexOf("TOPIC:") + "TOPIC:".length();
-                        int nextTopicStart = current.indexOf("TOPIC:", topicStart);
-                        
-                        if (nextTopicStart != -1) {
-                            // We have a complete topic
-                            String topicJson = current.substring(topicStart, nextTopicStart).trim();
-                            topicJson = aiService.extractJsonFromResponse(topicJson);
-                            
+                            String topicJson = aiService.extractJsonFromResponse(parsed.text());
                             try {
-                                JsonNode topicNode = objectMapper.readTree(topicJson);
-                                
-                                if (draftRoadmap.get() == null) {
-                                    Roadmap initial = Roadmap.builder()
-                                            .userId(userId)
-                                            .title(request.getTitle() != null && !request.getTitle().isEmpty() ? request.getTitle() : "AI Roadmap")
-                                            .description(request.getDescription() != null ? request.getDescription() : "")
-                                            .goal(request.getGoal())
-                                            .difficulty(request.getDifficulty())
-                                            .estimatedHours(request.getEstimatedHoursPerWeek() * 4)
-                                            .estimatedWeeks(4)
-                                            .tags(request.getTags() != null ? request.getTags() : new ArrayList<>())
-                                            .status(Roadmap.RoadmapStatus.DRAFT)
-                                            .progressPercentage(0.0)
-                                            .completedTopics(0)
-                                            .totalTopics(0)
-                                            .build();
-                                    draftRoadmap.set(roadmapRepository.save(initial));
-                                }
-
-                                Topic topic = Topic.builder()
-                                        .roadmapId(draftRoadmap.get().getId())
-                                        .userId(userId)
-                                        .title(topicNode.has("title") ? topicNode.get("title").asText() : "Untitled Topic")
-                                        .description(topicNode.has("description") ? topicNode.get("description").asText() : "")
-                                        .sequenceOrder(sequenceOrder.getAndIncrement())
-                                        .estimatedMinutes(topicNode.has("estimatedMinutes") ? topicNode.get("estimatedMinutes").asInt() : 30)
-                                        .learningObjectives(extractStringArray(topicNode, "learningObjectives"))
-                                        .prerequisites(extractStringArray(topicNode, "prerequisites"))
-                                        .status(Topic.TopicStatus.AVAILABLE)
-                                        .resources(extractResources(topicNode))
-                                        .build();
-                                
-                                topic = topicRepository.save(topic);
-
-                                com.fasterxml.jackson.databind.node.ObjectNode objNode = (com.fasterxml.jackson.databind.node.ObjectNode) topicNode;
-                                objNode.put("id", topic.getId());
-                                objNode.put("sequenceOrder", topic.getSequenceOrder());
-
-                                events.add(ServerSentEvent.<String>builder()
-                                        .event("topic")
-                                        .data(objectMapper.writeValueAsString(topicNode))
-                                        .build());
-
+                                events.add(tracing.inSpan("roadmap.topic.save", parent,
+                                        () -> saveStreamedTopic(userId, request, topicJson, draftRoadmap, sequenceOrder)));
                             } catch (Exception e) {
                                 log.error("Failed to parse topic JSON: " + topicJson, e);
                             }
-                            
-                            current = current.substring(nextTopicStart);
-                        } else {
-                            // Incomplete topic, wait for more chunks
-                            break;
                         }
                     }
                     
-                    buffer.set(current);
                     return Flux.fromIterable(events);
                 })
                 .concatWith(Flux.defer(() -> {
+                    List<ServerSentEvent<String>> events = new ArrayList<>();
+
                     // Process any remaining topic at the end
-                    String current = buffer.get();
-                    if (current.contains("TOPIC:")) {
-                        int topicStart = current.indexOf("TOPIC:") + "TOPIC:".length();
-                        String topicJson = current.substring(topicStart).trim();
-                        topicJson = aiService.extractJsonFromResponse(topicJson);
-                        
+                    String lastTopic = parser.finish();
+                    if (lastTopic != null) {
                         try {
-                            JsonNode topicNode = objectMapper.readTree(topicJson);
-                            
-                            if (draftRoadmap.get() == null) {
-                                Roadmap initial = Roadmap.builder()
-                                        .userId(userId)
-                                        .title(request.getTitle() != null && !request.getTitle().isEmpty() ? request.getTitle() : "AI Roadmap")
-                                        .description(request.getDescription() != null ? request.getDescription() : "")
-                                        .goal(request.getGoal())
-                                        .difficulty(request.getDifficulty())
-                                        .estimatedHours(request.getEstimatedHoursPerWeek() * 4)
-                                        .estimatedWeeks(4)
-                                        .tags(request.getTags() != null ? request.getTags() : new ArrayList<>())
-                                        .status(Roadmap.RoadmapStatus.DRAFT)
-                                        .progressPercentage(0.0)
-                                        .completedTopics(0)
-                                        .totalTopics(0)
-                                        .build();
-                                draftRoadmap.set(roadmapRepository.save(initial));
-                            }
-
-                            Topic topic = Topic.builder()
-                                    .roadmapId(draftRoadmap.get().getId())
-                                    .userId(userId)
-                                    .title(topicNode.has("title") ? topicNode.get("title").asText() : "Untitled Topic")
-                                    .description(topicNode.has("description") ? topicNode.get("description").asText() : "")
-                                    .sequenceOrder(sequenceOrder.getAndIncrement())
-                                    .estimatedMinutes(topicNode.has("estimatedMinutes") ? topicNode.get("estimatedMinutes").asInt() : 30)
-                                    .learningObjectives(extractStringArray(topicNode, "learningObjectives"))
-                                    .prerequisites(extractStringArray(topicNode, "prerequisites"))
-                                    .status(Topic.TopicStatus.AVAILABLE)
-                                    .resources(extractResources(topicNode))
-                                    .build();
-                            
-                            topic = topicRepository.save(topic);
-
-                            com.fasterxml.jackson.databind.node.ObjectNode objNode = (com.fasterxml.jackson.databind.node.ObjectNode) topicNode;
-                            objNode.put("id", topic.getId());
-                            objNode.put("sequenceOrder", topic.getSequenceOrder());
-
-                            ServerSentEvent<String> event = ServerSentEvent.<String>builder()
-                                    .event("topic")
-                                    .data(objectMapper.writeValueAsString(topicNode))
-                                    .build();
-
-                            Roadmap rm = draftRoadmap.get();
-                            rm.setTotalTopics(sequenceOrder.get() - 1);
-                            roadmapRepository.save(rm);
-
-                            // Award XP for creating a roadmap
-                            awardRoadmapCreationXP(userId);
-
-                            ServerSentEvent<String> complete = ServerSentEvent.<String>builder()
-                                    .event("complete")
-                                    .data("{\"roadmapId\":\"" + rm.getId() + "\",\"totalTopics\":" + rm.getTotalTopics() + "}")
-                                    .build();
-
-                            return Flux.just(event, complete);
-
+                            events.add(tracing.inSpan("roadmap.topic.save", parent, () -> saveStreamedTopic(userId, request,
+                                    aiService.extractJsonFromResponse(lastTopic), draftRoadmap, sequenceOrder)));
                         } catch (Exception e) {
                             log.error("Failed to parse final topic JSON", e);
                         }
@@ -266,19 +174,89 @@ public class RoadmapService {
                     if (draftRoadmap.get() != null) {
                         Roadmap rm = draftRoadmap.get();
                         rm.setTotalTopics(sequenceOrder.get() - 1);
-                        roadmapRepository.save(rm);
+                        tracing.inSpan("roadmap.finalize", parent, () -> {
+                            roadmapRepository.save(rm);
+                            roadmapTemplates.publish(templateKey, request, resolvedModel, rm,
+                                    topicRepository.findByRoadmapIdOrderBySequenceOrderAsc(rm.getId()));
 
-                        // Award XP for creating a roadmap
-                        awardRoadmapCreationXP(userId);
+                            // Award XP for creating a roadmap
+                            awardRoadmapCreationXP(userId);
+                            return null;
+                        });
 
-                        return Flux.just(ServerSentEvent.<String>builder()
+                        events.add(ServerSentEvent.<String>builder()
                                 .event("complete")
                                 .data("{\"roadmapId\":\"" + rm.getId() + "\",\"totalTopics\":" + rm.getTotalTopics() + "}")
                                 .build());
                     }
                     
-                    return Flux.empty();
-                }));
+                    return Flux.fromIterable(events);
+                }))
+                .doOnCancel(() -> {
+                    // Abandoned by the client: cancelling stops the upstream call; keep the topics saved so far
+                    Roadmap rm = draftRoadmap.get();
+                    log.info("Roadmap stream for user {} cancelled after {} topics",
+                            userId, sequenceOrder.get() - 1);
+                    if (rm != null) {
+                        Schedulers.boundedElastic().schedule(() -> {
+                            rm.setTotalTopics(sequenceOrder.get() - 1);
+                            roadmapRepository.save(rm);
+                        });
+                    }
+                })
+                .contextWrite(Tracing.capture());
+    }
+
+    /**
+     * Persist one streamed topic (creating the draft roadmap on the first one)
+     * and build its "topic" event.
+     */
+    private ServerSentEvent<String> saveStreamedTopic(String userId, RoadmapRequest request, String topicJson,
+                                                      AtomicReference<Roadmap> draftRoadmap,
+                                                      AtomicInteger sequenceOrder) throws Exception {
+        JsonNode topicNode = objectMapper.readTree(topicJson);
+        
+        if (draftRoadmap.get() == null) {
+            Roadmap initial = Roadmap.builder()
+                    .userId(userId)
+                    .title(request.getTitle() != null && !request.getTitle().isEmpty() ? request.getTitle() : "AI Roadmap")
+                    .description(request.getDescription() != null ? request.getDescription() : "")
+                    .goal(request.getGoal())
+                    .difficulty(request.getDifficulty())
+                    .estimatedHours(request.getEstimatedHoursPerWeek() * 4)
+                    .estimatedWeeks(4)
+                    .tags(request.getTags() != null ? request.getTags() : new ArrayList<>())
+                    .status(Roadmap.RoadmapStatus.DRAFT)
+                    .progressPercentage(0.0)
+                    .completedTopics(0)
+                    .totalTopics(0)
+                    .build();
+            draftRoadmap.set(roadmapRepository.save(initial));
+        }
+
+        Topic topic = Topic.builder()
+                .roadmapId(draftRoadmap.get().getId())
+                .userId(userId)
+                .title(topicNode.has("title") ? topicNode.get("title").asText() : "Untitled Topic")
+                .description(topicNode.has("description") ? topicNode.get("description").asText() : "")
+                .sequenceOrder(sequenceOrder.getAndIncrement())
+                .estimatedMinutes(topicNode.has("estimatedMinutes") ? topicNode.get("estimatedMinutes").asInt() : 30)
+                .learningObjectives(GeneratedJson.stringArray(topicNode, "learningObjectives"))
+                .prerequisites(GeneratedJson.stringArray(topicNode, "prerequisites"))
+                .status(Topic.TopicStatus.AVAILABLE)
+                .resources(GeneratedJson.resources(topicNode))
+                .build();
+        
+        topic = topicRepository.save(topic);
+
+        ObjectNode objNode = (ObjectNode) topicNode;
+        objNode.put("id", topic.getId());
+        objNode.put("sequenceOrder", topic.getSequenceOrder());
+
+        return ServerSentEvent.<String>builder()
+                .event("topic")
+                .data(objectMapper.writeValueAsString(topicNode))
+                .build();
     }
 
     /**
@@ -307,6 +285,16 @@ public class RoadmapService {
      */
     private Roadmap generateRoadmapWithAI(String userId, RoadmapRequest request) {
         try {
+            String model = modelConfig.resolveModelId(request.getModel());
+            String templateKey = roadmapTemplates.fingerprint(request, model);
+            Optional<RoadmapTemplate> template = findReusableTemplate(templateKey, request);
+            if (template.isPresent()) {
+                return roadmapTemplates.instantiate(template.get(), userId, request).roadmap();
+            }
+            if (isOutlineFirst(request)) {
+                return outlineGenerator.generate(userId, request, model, templateKey);
+            }
+            
             String prompt = PromptTemplates.formatRoadmapPrompt(
                     request.getGoal(),
                     request.getCurrentLevel(),
@@ -315,10 +303,12 @@ public class RoadmapService {
                     request.getPreferredLearningStyle()
             );
             
-            AIResponse aiResponse = aiService.generateWithSystem(
+            AIRequest aiRequest = AIRequest.withSystemPrompt(
                     PromptTemplates.SYSTEM_PROMPT_ROADMAP_GENERATOR,
                     prompt
-            );
+            ).attributedTo(userId, TokenUsage.Feature.ROADMAP);
+            aiRequest.setModel(model);
+            AIResponse aiResponse = aiService.generate(aiRequest);
             
             if (!aiResponse.isSuccess()) {
                 log.error("AI roadmap generation failed: {}", aiResponse.getErrorMessage());
@@ -338,7 +328,7 @@ public class RoadmapService {
                     .difficulty(request.getDifficulty())
                     .estimatedHours(root.has("estimatedHours") ? root.get("estimatedHours").asInt() : 0)
                     .estimatedWeeks(root.has("estimatedWeeks") ? root.get("estimatedWeeks").asInt() : 0)
-                    .tags(extractTags(root))
+                    .tags(GeneratedJson.tags(root))
                     .status(Roadmap.RoadmapStatus.DRAFT)
                     .progressPercentage(0.0)
                     .completedTopics(0)
@@ -353,16 +343,59 @@ public class RoadmapService {
                 roadmap.setTotalTopics(topics.size());
                 roadmap.setTopicIds(topics.stream().map(Topic::getId).collect(Collectors.toList()));
                 roadmap = roadmapRepository.save(roadmap);
+                roadmapTemplates.publish(templateKey, request, model, roadmap, topics);
             }
             
             return roadmap;
             
+        } catch (QuotaExceededException | ServiceOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error generating AI roadmap", e);
             throw new RuntimeException("Failed to generate roadmap", e);
         }
     }
 
+    private boolean isOutlineFirst(RoadmapRequest request) {
+        return request.getOutlineFirst() != null ? request.getOutlineFirst() : outlineFirstDefault;
+    }
+
+    /**
+     * The template to clone for this request, unless the user asked to regenerate (which
+     * counts against the template's quality).
+     */
+    private Optional<RoadmapTemplate> findReusableTemplate(String templateKey, RoadmapRequest request) {
+        if (request.isRegenerate()) {
+            roadmapTemplates.recordRegenerate(templateKey);
+            return Optional.empty();
+        }
+        return roadmapTemplates.findReusable(templateKey);
+    }
+
+    /**
+     * Clone a template for the user and stream its topics, in the same events as a
+     * generated roadmap.
+     */
+    private Flux<ServerSentEvent<String>> streamFromTemplate(String userId, RoadmapRequest request,
+                                                            RoadmapTemplate template) {
+        return Mono.fromCallable(() -> {
+                    RoadmapTemplateService.Instance instance = roadmapTemplates.instantiate(template, userId, request);
+                    awardRoadmapCreationXP(userId);
+                    return instance;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(instance -> Flux.fromIterable(instance.topics())
+                        .map(topic -> RoadmapOutlineGenerator.topicEvent(objectMapper, "topic", topic))
+                        .concatWith(Flux.just(sseEvent("complete", Map.of(
+                                "roadmapId", instance.roadmap().getId(),
+                                "totalTopics", instance.topics().size(),
+                                "templateId", template.getId())))))
+                .onErrorResume(e -> {
+                    log.error("Copying roadmap template {} failed for user {}", template.getId(), userId, e);
+                    return Flux.just(sseEvent("error", Map.of("message", "Failed to create roadmap")));
+                });
+    }
+
     /**
      * Create manual roadmap without AI
      */
@@ -400,10 +433,10 @@ public class RoadmapService {
                     .description(topicNode.has("description") ? topicNode.get("description").asText() : "")
                     .sequenceOrder(sequence++)
                     .estimatedMinutes(topicNode.has("estimatedMinutes") ? topicNode.get("estimatedMinutes").asInt() : 30)
-                    .learningObjectives(extractStringArray(topicNode, "learningObjectives"))
-                    .prerequisites(extractStringArray(topicNode, "prerequisites"))
+                    .learningObjectives(GeneratedJson.stringArray(topicNode, "learningObjectives"))
+                    .prerequisites(GeneratedJson.stringArray(topicNode, "prerequisites"))
                     .status(Topic.TopicStatus.AVAILABLE)
-                    .resources(extractResources(topicNode))
+                    .resources(GeneratedJson.resources(topicNode))
                     .build();
             
             topics.add(topicRepository.save(topic));
@@ -423,36 +456,68 @@ public class RoadmapService {
     }
 
     /**
-     * Get all roadmaps for a user
+     * Roadmap cards for the list view, newest first, one keyset page at a time.
+     * The topicIds array is not loaded.
      */
-    public List<RoadmapResponse> getUserRoadmaps(String userId) {
-        return roadmapRepository.findByUserIdOrderByCreatedAtDesc(userId)
-                .stream()
-                .map(this::mapToRoadmapResponse)
-                .collect(Collectors.toList());
+    public KeysetPage<RoadmapResponse> listRoadmaps(String userId, String cursor, int limit) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (after != null) {
+            criteria = criteria.andOperator(after.after("createdAt"));
+        }
+        Query query = Query.query(criteria)
+                .with(KeysetCursor.newestFirst("createdAt"))
+                .limit(limit + 1);
+        query.fields().include("userId", "title", "description", "goal", "difficulty",
+                "estimatedHours", "estimatedWeeks", "tags", "status", "progressPercentage",
+                "completedTopics", "totalTopics", "createdAt", "updatedAt", "startedAt", "completedAt");
+
+        return KeysetPage.of(mongoTemplate.find(query, Roadmap.class), limit,
+                        (Roadmap roadmap) -> new KeysetCursor(roadmap.getCreatedAt(), roadmap.getId()))
+                .map(this::mapToRoadmapResponse);
     }
 
     /**
-     * Start a roadmap
+     * Start a roadmap, or resume a paused one
      */
     @Transactional
     public RoadmapResponse startRoadmap(String userId, String roadmapId) {
         Roadmap roadmap = roadmapRepository.findByIdAndUserId(roadmapId, userId)
                 .orElseThrow(() -> new RuntimeException("Roadmap not found"));
         
-        if (roadmap.getStatus() == Roadmap.RoadmapStatus.DRAFT) {
+        if (roadmap.getStatus() == Roadmap.RoadmapStatus.PAUSED) {
+            roadmap.setStatus(Roadmap.RoadmapStatus.ACTIVE);
+            roadmap = roadmapRepository.save(roadmap);
+        } else if (roadmap.getStatus() == Roadmap.RoadmapStatus.DRAFT) {
             roadmap.setStatus(Roadmap.RoadmapStatus.ACTIVE);
             roadmap.setStartedAt(LocalDateTime.now());
             roadmap = roadmapRepository.save(roadmap);
 
             // Award XP for starting a roadmap
-            gamificationService.awardXP(userId, GamificationService.XP_START_ROADMAP,
+            writeBehind.awardXP(userId, GamificationService.XP_START_ROADMAP,
                     "Started roadmap: " + roadmap.getTitle(), "START_ROADMAP");
         }
         
         return mapToRoadmapResponse(roadmap);
     }
 
+    /**
+     * Pause an active roadmap. Content prefetch for it stops until it is started again.
+     */
+    public RoadmapResponse pauseRoadmap(String userId, String roadmapId) {
+        Roadmap roadmap = roadmapRepository.findByIdAndUserId(roadmapId, userId)
+                .orElseThrow(() -> new RuntimeException("Roadmap not found"));
+        
+        if (roadmap.getStatus() != Roadmap.RoadmapStatus.ACTIVE) {
+            throw new RuntimeException("Only an active roadmap can be paused");
+        }
+        roadmap.setStatus(Roadmap.RoadmapStatus.PAUSED);
+        roadmap = roadmapRepository.save(roadmap);
+        prefetcher.cancelRoadmap(roadmapId);
+        
+        return mapToRoadmapResponse(roadmap);
+    }
+
     /**
      * Delete a roadmap
      */
@@ -460,6 +525,7 @@ public class RoadmapService {
     public void deleteRoadmap(String userId, String roadmapId) {
         Roadmap roadmap = roadmapRepository.findByIdAndUserId(roadmapId, userId)
                 .orElseThrow(() -> new RuntimeException("Roadmap not found"));
+        prefetcher.cancelRoadmap(roadmapId);
         
         // Delete associated topics and content
         List<Topic> topics = topicRepository.findByRoadmapIdOrderBySequenceOrderAsc(roadmapId);
@@ -472,7 +538,8 @@ public class RoadmapService {
     }
 
     /**
-     * Generate content for a topic using AI
+     * Generate content for a topic using AI.
+     * Checks the shared content library first and only calls the AI on a miss.
      */
     @Transactional
     public ContentResponse generateTopicContent(String userId, String topicId, String contentType) {
@@ -482,46 +549,230 @@ public class RoadmapService {
         Roadmap roadmap = roadmapRepository.findById(topic.getRoadmapId())
                 .orElseThrow(() -> new RuntimeException("Roadmap not found"));
         
-        if (!aiService.isAvailable()) {
+        String resolvedType = contentType != null ? contentType : "THEORY";
+        Optional<Content> prefetched = prefetcher.claimPrefetched(userId, topicId, Content.ContentType.valueOf(resolvedType));
+        if (prefetched.isPresent()) {
+            awardContentXP(userId, topic);
+            return mapToContentResponse(prefetched.get());
+        }
+        prefetcher.cancelTopic(topicId);
+        
+        String model = modelConfig.getDefaultModelId();
+        String fingerprint = contentLibrary.fingerprint(roadmap.getGoal(), topic.getTitle(),
+                topic.getDescription(), Content.ContentType.valueOf(resolvedType), model);
+        
+        Optional<SharedContent> shared = contentLibrary.findReusable(fingerprint);
+        
+        if (shared.isEmpty() && !aiService.isAvailable()) {
             throw new RuntimeException("AI service is not available");
         }
         
         try {
+            Content content;
+            
+            if (shared.isPresent()) {
+                content = contentLibrary.copyForUser(shared.get(), topic, roadmap.getId(), userId);
+            } else {
+                String prompt = PromptTemplates.formatContentPrompt(
+                        roadmap.getTitle(),
+                        topic.getTitle(),
+                        topic.getDescription(),
+                        resolvedType
+                );
+                
+                AIRequest aiRequest = AIRequest.withSystemPrompt(
+                        PromptTemplates.SYSTEM_PROMPT_CONTENT_GENERATOR,
+                        prompt
+                ).attributedTo(userId, TokenUsage.Feature.CONTENT);
+                aiRequest.setModel(model);
+                AIResponse aiResponse = aiService.generate(aiRequest);
+                
+                if (!aiResponse.isSuccess()) {
+                    throw new RuntimeException("Failed to generate content: " + aiResponse.getErrorMessage());
+                }
+                
+                String jsonContent = aiService.extractJsonFromResponse(aiResponse.getContent());
+                JsonNode root = objectMapper.readTree(jsonContent);
+                
+                content = createContentFromAIResponse(topic, roadmap, userId, root, resolvedType);
+                content = contentLibrary.publish(fingerprint, roadmap.getGoal(), topic, model, content);
+            }
+            
+            return completeContentGeneration(userId, topic, content);
+            
+        } catch (QuotaExceededException | ServiceOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error generating topic content", e);
+            throw new RuntimeException("Failed to generate content", e);
+        }
+    }
+
+    /**
+     * Generate content for a topic with SSE streaming.
+     * Emits "title", "markdown" (one section at a time), "quiz" and "code" events as the
+     * JSON document streams in, then persists the Content and sends "complete".
+     */
+    public Flux<ServerSentEvent<String>> generateTopicContentStreaming(String userId, String topicId, String contentType) {
+        try {
+            Topic topic = topicRepository.findByIdAndUserId(topicId, userId)
+                    .orElseThrow(() -> new RuntimeException("Topic not found"));
+            
+            Roadmap roadmap = roadmapRepository.findById(topic.getRoadmapId())
+                    .orElseThrow(() -> new RuntimeException("Roadmap not found"));
+            
+            String resolvedType = contentType != null ? contentType : "THEORY";
+            Optional<Content> prefetched = prefetcher.claimPrefetched(userId, topicId, Content.ContentType.valueOf(resolvedType));
+            if (prefetched.isPresent()) {
+                return Flux.defer(() -> {
+                    awardContentXP(userId, topic);
+                    return replayContent(prefetched.get());
+                });
+            }
+            prefetcher.cancelTopic(topicId);
+            
+            String model = modelConfig.getDefaultModelId();
+            String fingerprint = contentLibrary.fingerprint(roadmap.getGoal(), topic.getTitle(),
+                    topic.getDescription(), Content.ContentType.valueOf(resolvedType), model);
+            
+            Optional<SharedContent> shared = contentLibrary.findReusable(fingerprint);
+            if (shared.isPresent()) {
+                return streamSharedContent(userId, topic, roadmap, shared.get());
+            }
+            
+            if (!aiService.isAvailable()) {
+                throw new RuntimeException("AI service is not available");
+            }
+            
             String prompt = PromptTemplates.formatContentPrompt(
                     roadmap.getTitle(),
                     topic.getTitle(),
                     topic.getDescription(),
-                    contentType != null ? contentType : "THEORY"
+                    resolvedType
             );
             
-            AIResponse aiResponse = aiService.generateWithSystem(
+            AIRequest aiRequest = AIRequest.withSystemPrompt(
                     PromptTemplates.SYSTEM_PROMPT_CONTENT_GENERATOR,
                     prompt
-            );
-            
-            if (!aiResponse.isSuccess()) {
-                throw new RuntimeException("Failed to generate content: " + aiResponse.getErrorMessage());
-            }
-            
-            String jsonContent = aiService.extractJsonFromResponse(aiResponse.getContent());
-            JsonNode root = objectMapper.readTree(jsonContent);
-            
-            Content content = createContentFromAIResponse(topic, roadmap, userId, root, contentType);
-            
-            // Update topic with content reference
-            topic.getContentIds().add(content.getId());
-            topicRepository.save(topic);
+            ).attributedTo(userId, TokenUsage.Feature.CONTENT);
+            aiRequest.setModel(model);
             
-            // Award XP for generating content
-            gamificationService.awardXP(userId, GamificationService.XP_GENERATE_CONTENT,
-                    "Generated content for: " + topic.getTitle(), "GENERATE_CONTENT");
+            ContentStreamParser parser = new ContentStreamParser(objectMapper);
+            Context parent = Context.current();
             
-            return mapToContentResponse(content);
+            return aiService.generateStream(aiRequest)
+                    .concatMap(chunk -> {
+                        if (chunk.startsWith("[ERROR]")) {
+                            return Flux.just(sseEvent("error", Map.of("message", chunk)));
+                        }
+                        if (chunk.startsWith(NvidiaAIService.REASONING_MARKER)) {
+                            return Flux.empty();
+                        }
+                        return Flux.fromIterable(parser.feed(chunk)).map(this::toContentEvent);
+                    })
+                    .concatWith(Flux.defer(() -> {
+                        List<ServerSentEvent<String>> events = new ArrayList<>();
+                        parser.finish().forEach(event -> events.add(toContentEvent(event)));
+                        
+                        Span span = tracing.start("content.persist", parent);
+                        try (Scope ignored = span.makeCurrent()) {
+                            String jsonContent = aiService.extractJsonFromResponse(parser.rawContent());
+                            JsonNode root = objectMapper.readTree(jsonContent);
+                            
+                            Content content = createContentFromAIResponse(topic, roadmap, userId, root, resolvedType);
+                            content = contentLibrary.publish(fingerprint, roadmap.getGoal(), topic, model, content);
+                            
+                            ContentResponse response = completeContentGeneration(userId, topic, content);
+                            events.add(sseEvent("complete", response));
+                            log.info("Streamed content {} for topic {} ({} chars)",
+                                    content.getId(), topicId, parser.rawContent().length());
+                        } catch (Exception e) {
+                            log.error("Failed to persist streamed content for topic {}", topicId, e);
+                            Tracing.fail(span, e);
+                            events.add(sseEvent("error", Map.of("message", "Failed to parse generated content")));
+                        } finally {
+                            span.end();
+                        }
+                        return Flux.fromIterable(events);
+                    }))
+                    .contextWrite(Tracing.capture());
             
         } catch (Exception e) {
-            log.error("Error generating topic content", e);
-            throw new RuntimeException("Failed to generate content", e);
+            log.error("Error starting content stream", e);
+            return Flux.just(sseEvent("error", Map.of("message", e.getMessage() != null ? e.getMessage() : "Failed to generate content")));
+        }
+    }
+
+    /**
+     * Replay a shared library entry through the same event shapes as a live generation.
+     */
+    private Flux<ServerSentEvent<String>> streamSharedContent(String userId, Topic topic, Roadmap roadmap,
+                                                              SharedContent shared) {
+        return Flux.defer(() -> {
+            Content content = contentLibrary.copyForUser(shared, topic, roadmap.getId(), userId);
+            completeContentGeneration(userId, topic, content);
+            return replayContent(content);
+        });
+    }
+
+    /**
+     * Stored content as the events of a live generation, ending with "complete".
+     */
+    private Flux<ServerSentEvent<String>> replayContent(Content content) {
+        List<ServerSentEvent<String>> events = new ArrayList<>();
+        events.add(sseEvent("title", Map.of("title", content.getTitle() != null ? content.getTitle() : "")));
+        
+        ContentStreamParser parser = new ContentStreamParser(objectMapper);
+        try {
+            ObjectNode document = objectMapper.createObjectNode();
+            document.put("markdownContent", content.getMarkdownContent());
+            parser.feed(objectMapper.writeValueAsString(document))
+                    .forEach(event -> events.add(toContentEvent(event)));
+            for (Content.QuizQuestion question : Objects.requireNonNullElse(content.getQuizQuestions(),
+                    List.<Content.QuizQuestion>of())) {
+                events.add(sseEvent("quiz", question));
+            }
+            for (String example : Objects.requireNonNullElse(content.getCodeExamples(), List.<String>of())) {
+                events.add(sseEvent("code", objectMapper.readTree(example)));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to replay content {}: {}", content.getId(), e.getMessage());
         }
+        
+        events.add(sseEvent("complete", mapToContentResponse(content)));
+        return Flux.fromIterable(events);
+    }
+
+    /**
+     * Link freshly created content to its topic and award XP.
+     */
+    private ContentResponse completeContentGeneration(String userId, Topic topic, Content content) {
+        // Update topic with content reference
+        topic.getContentIds().add(content.getId());
+        // A prefetch claimed when the topic was loaded has been cancelled; don't write it back
+        topic.setPrefetchClaimedAt(null);
+        topicRepository.save(topic);
+        
+        awardContentXP(userId, topic);
+        return mapToContentResponse(content);
+    }
+
+    private void awardContentXP(String userId, Topic topic) {
+        writeBehind.awardXP(userId, GamificationService.XP_GENERATE_CONTENT,
+                "Generated content for: " + topic.getTitle(), "GENERATE_CONTENT");
+    }
+
+    private ServerSentEvent<String> toContentEvent(ContentStreamParser.Event event) {
+        return switch (event.type()) {
+            case TITLE -> sseEvent("title", Map.of("title", event.text()));
+            case MARKDOWN -> sseEvent("markdown", Map.of("content", event.text()));
+            case QUIZ_QUESTION -> sseEvent("quiz", event.node());
+            case CODE_EXAMPLE -> sseEvent("code", event.node());
+        };
+    }
+
+    private ServerSentEvent<String> sseEvent(String event, Object payload) {
+        return SseEvents.json(objectMapper, event, payload);
     }
 
     /**
@@ -529,24 +780,8 @@ public class RoadmapService {
      */
     private Content createContentFromAIResponse(Topic topic, Roadmap roadmap, String userId, 
                                                  JsonNode root, String contentType) {
-        Content content = Content.builder()
-                .topicId(topic.getId())
-                .roadmapId(roadmap.getId())
-                .userId(userId)
-                .type(contentType != null ? Content.ContentType.valueOf(contentType) : Content.ContentType.THEORY)
-                .title(root.has("title") ? root.get("title").asText() : topic.getTitle())
-                .markdownContent(root.has("markdownContent") ? root.get("markdownContent").asText() : "")
-                .rawContent(root.has("rawContent") ? root.get("rawContent").asText() : "")
-                .codeExamples(extractCodeExamples(root))
-                .quizQuestions(extractQuizQuestions(root))
-                .keyPoints(extractStringArray(root, "keyPoints"))
-                .aiGenerated(true)
-                .aiModelVersion(modelConfig.getDefaultModelId())
-                .readingTimeMinutes(root.has("readingTimeMinutes") ? root.get("readingTimeMinutes").asInt() : 10)
-                .complexity(root.has("complexity") ? root.get("complexity").asDouble() : 0.5)
-                .build();
-        
-        return contentRepository.save(content);
+        return contentRepository.save(GeneratedJson.content(topic, roadmap, userId, root, contentType,
+                modelConfig.getDefaultModelId()));
     }
 
     /**
@@ -612,81 +847,18 @@ public class RoadmapService {
                 .build();
     }
 
-    private List<String> extractTags(JsonNode root) {
-        List<String> tags = new ArrayList<>();
-        if (root.has("tags") && root.get("tags").isArray()) {
-            for (JsonNode tag : root.get("tags")) {
-                tags.add(tag.asText());
-            }
-        }
-        return tags;
-    }
-
-    private List<String> extractStringArray(JsonNode node, String fieldName) {
-        List<String> result = new ArrayList<>();
-        if (node.has(fieldName) && node.get(fieldName).isArray()) {
-            for (JsonNode item : node.get(fieldName)) {
-                result.add(item.asText());
-            }
-        }
-        return result;
-    }
-
-    private List<Topic.Resource> extractResources(JsonNode topicNode) {
-        List<Topic.Resource> resources = new ArrayList<>();
-        if (topicNode.has("resources") && topicNode.get("resources").isArray()) {
-            for (JsonNode resNode : topicNode.get("resources")) {
-                Topic.Resource resource = Topic.Resource.builder()
-                        .type(resNode.has("type") ? resNode.get("type").asText() : "article")
-                        .title(resNode.has("title") ? resNode.get("title").asText() : "Resource")
-                        .url(resNode.has("url") ? resNode.get("url").asText() : "")
-                        .description(resNode.has("description") ? resNode.get("description").asText() : "")
-                        .build();
-                resources.add(resource);
-            }
-        }
-        return resources;
-    }
-
-    private List<String> extractCodeExamples(JsonNode root) {
-        List<String> examples = new ArrayList<>();
-        if (root.has("codeExamples") && root.get("codeExamples").isArray()) {
-            for (JsonNode example : root.get("codeExamples")) {
-                examples.add(example.toString());
-            }
-        }
-        return examples;
-    }
-
-    private List<Content.QuizQuestion> extractQuizQuestions(JsonNode root) {
-        List<Content.QuizQuestion> questions = new ArrayList<>();
-        if (root.has("quizQuestions") && root.get("quizQuestions").isArray()) {
-            for (JsonNode qNode : root.get("quizQuestions")) {
-                Content.QuizQuestion question = Content.QuizQuestion.builder()
-                        .question(qNode.has("question") ? qNode.get("question").asText() : "")
-                        .options(extractStringArray(qNode, "options"))
-                        .correctOptionIndex(qNode.has("correctOptionIndex") ? qNode.get("correctOptionIndex").asInt() : 0)
-                        .explanation(qNode.has("explanation") ? qNode.get("explanation").asText() : "")
-                        .difficulty(qNode.has("difficulty") ? qNode.get("difficulty").asText() : "medium")
-                        .build();
-                questions.add(question);
-            }
-        }
-        return questions;
-    }
-
     /**
      * Award XP for creating a roadmap, including first-roadmap bonus.
      */
     private void awardRoadmapCreationXP(String userId) {
         try {
-            gamificationService.awardXP(userId, GamificationService.XP_CREATE_ROADMAP,
+            writeBehind.awardXP(userId, GamificationService.XP_CREATE_ROADMAP,
                     "Created a roadmap", "CREATE_ROADMAP");
 
             // Check if this is the user's first roadmap for bonus XP
             long roadmapCount = roadmapRepository.countByUserId(userId);
             if (roadmapCount == 1) {
-                gamificationService.awardXP(userId, GamificationService.XP_FIRST_ROADMAP,
+                writeBehind.awardXP(userId, GamificationService.XP_FIRST_ROADMAP,
                         "First roadmap bonus!", "FIRST_ROADMAP");
             }
         } catch (Exception e) {
@@ -0,0 +1,89 @@
+package com.study.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental parser for the streamed roadmap format:
+ *
+ * <pre>
+ * THINKING:
+ * ...free text shown live...
+ * TOPIC:
+ * {"title": ...}
+ * TOPIC:
+ * {"title": ...}
+ * </pre>
+ *
+ * Thinking text is emitted as it arrives. A topic is emitted once the next
+ * TOPIC: marker shows it is complete; the last one comes out of {@link #finish()}.
+ * Topic text is returned raw; the caller extracts and parses the JSON.
+ * Not thread-safe; one instance per stream.
+ */
+class RoadmapStreamParser {
+
+    static final String THINKING_MARKER = "THINKING:";
+    static final String TOPIC_MARKER = "TOPIC:";
+
+    enum EventType { THINKING, TOPIC }
+
+    record Event(EventType type, String text) {
+    }
+
+    private String buffer = "";
+
+    /**
+     * Feed the next chunk of model output and return any events it completed.
+     */
+    List<Event> feed(String chunk) {
+        String current = buffer + chunk;
+        List<Event> events = new ArrayList<>();
+
+        if (current.contains(THINKING_MARKER)) {
+            int thinkingStart = current.indexOf(THINKING_MARKER) + THINKING_MARKER.length();
+            int topicStart = current.indexOf(TOPIC_MARKER, thinkingStart);
+
+            if (topicStart != -1) {
+                // Thinking section is complete
+                String thinkingContent = current.substring(thinkingStart, topicStart).trim();
+                if (!thinkingContent.isEmpty()) {
+                    events.add(new Event(EventType.THINKING, thinkingContent));
+                }
+                current = current.substring(topicStart);
+            } else {
+                // Still thinking
+                String thinkingContent = current.substring(thinkingStart).trim();
+                if (!thinkingContent.isEmpty()) {
+                    events.add(new Event(EventType.THINKING, thinkingContent));
+                    current = THINKING_MARKER + "\n";
+                }
+            }
+        }
+
+        while (current.contains(TOPIC_MARKER)) {
+            int topicStart = current.indexOf(TOPIC_MARKER) + TOPIC_MARKER.length();
+            int nextTopicStart = current.indexOf(TOPIC_MARKER, topicStart);
+            if (nextTopicStart == -1) {
+                // Incomplete topic, wait for more chunks
+                break;
+            }
+            events.add(new Event(EventType.TOPIC, current.substring(topicStart, nextTopicStart).trim()));
+            current = current.substring(nextTopicStart);
+        }
+
+        buffer = current;
+        return events;
+    }
+
+    /**
+     * Signal end of stream. Returns the text of the final topic, or null if none is pending.
+     */
+    String finish() {
+        String current = buffer;
+        buffer = "";
+        if (!current.contains(TOPIC_MARKER)) {
+            return null;
+        }
+        return current.substring(current.indexOf(TOPIC_MARKER) + TOPIC_MARKER.length()).trim();
+    }
+}
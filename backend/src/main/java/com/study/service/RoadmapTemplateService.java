@@ -0,0 +1,341 @@
+package com.study.service;
+
+import com.study.dto.RoadmapRequest;
+import com.study.model.Roadmap;
+import com.study.model.RoadmapTemplate;
+import com.study.model.RoadmapTemplate.TemplateTopic;
+import com.study.model.Topic;
+import com.study.observability.AIMetrics;
+import com.study.repository.RoadmapRepository;
+import com.study.repository.RoadmapTemplateRepository;
+import com.study.repository.TopicRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Reusable roadmap outlines, so users asking for practically the same roadmap
+ * ("learn React as a beginner, 5 h/week") get it in milliseconds instead of a full
+ * generation.
+ *
+ * A template is keyed by a fingerprint of the goal class (see
+ * {@link ContentLibraryService#goalClass}), the normalized level, difficulty and
+ * learning style, a bucket of the hours per week, and the model. A hit is cloned into
+ * the user's own {@link Roadmap} and {@link Topic} documents, the topics in one bulk
+ * insert. Requests with {@code regenerate} skip the lookup.
+ *
+ * Refresh policy: a template is only reused while it is younger than
+ * {@code roadmap.templates.max-age-days} and scores at least
+ * {@code roadmap.templates.min-quality}. The score starts from the template's
+ * structure and loses {@code roadmap.templates.regenerate-penalty} every time a user
+ * asks for a fresh roadmap instead, so a rejected template gives way to the fresh one
+ * even if that scores a little lower, and one rejected repeatedly expires. A fresh
+ * generation replaces a stale or lower-scoring template in place and bumps its revision.
+ * Changing {@code roadmap.templates.version} invalidates every existing fingerprint.
+ */
+@Slf4j
+@Service
+public class RoadmapTemplateService {
+
+    /** Upper bounds of the hours-per-week buckets; above the last one is a single open bucket */
+    private static final int[] HOURS_BUCKET_LIMITS = {3, 6, 10, 20};
+
+    /** A template cloned for one user */
+    public record Instance(Roadmap roadmap, List<Topic> topics) {
+    }
+
+    private final RoadmapTemplateRepository templateRepository;
+    private final RoadmapRepository roadmapRepository;
+    private final TopicRepository topicRepository;
+    private final ContentLibraryService contentLibrary;
+    private final MongoTemplate mongoTemplate;
+    private final AIMetrics metrics;
+
+    @Value("${roadmap.templates.enabled:true}")
+    private boolean enabled;
+
+    @Value("${roadmap.templates.version:1}")
+    private int templateVersion;
+
+    @Value("${roadmap.templates.max-age-days:30}")
+    private int maxAgeDays;
+
+    @Value("${roadmap.templates.min-quality:0.6}")
+    private double minQuality;
+
+    @Value("${roadmap.templates.regenerate-penalty:0.15}")
+    private double regeneratePenalty;
+
+    public RoadmapTemplateService(RoadmapTemplateRepository templateRepository,
+                                  RoadmapRepository roadmapRepository,
+                                  TopicRepository topicRepository,
+                                  ContentLibraryService contentLibrary,
+                                  MongoTemplate mongoTemplate,
+                                  AIMetrics metrics) {
+        this.templateRepository = templateRepository;
+        this.roadmapRepository = roadmapRepository;
+        this.topicRepository = topicRepository;
+        this.contentLibrary = contentLibrary;
+        this.mongoTemplate = mongoTemplate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Compute the canonical fingerprint of a roadmap request.
+     */
+    public String fingerprint(RoadmapRequest request, String model) {
+        String canonical = String.join("\u001F",
+                "v" + templateVersion,
+                contentLibrary.goalClass(request.getGoal()),
+                ContentLibraryService.normalizeText(request.getCurrentLevel()),
+                ContentLibraryService.normalizeText(request.getDifficulty()),
+                hoursBucket(request.getEstimatedHoursPerWeek()),
+                ContentLibraryService.normalizeText(request.getPreferredLearningStyle()),
+                model != null ? model : "");
+        return ContentLibraryService.sha256(canonical);
+    }
+
+    /**
+     * Look up a reusable template. Returns empty on a miss, or when the template exists
+     * but is stale or below the quality bar (the caller then generates).
+     */
+    public Optional<RoadmapTemplate> findReusable(String fingerprint) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Optional<RoadmapTemplate> entry = templateRepository.findByFingerprint(fingerprint);
+        if (entry.isEmpty()) {
+            log.debug("Roadmap template miss: {}", fingerprint);
+            metrics.cacheLookup("roadmap-template", false);
+            return Optional.empty();
+        }
+
+        RoadmapTemplate template = entry.get();
+        if (isStale(template)) {
+            log.info("Roadmap template {} (rev {}) is stale, regenerating", template.getId(), template.getRevision());
+            metrics.cacheLookup("roadmap-template", false);
+            return Optional.empty();
+        }
+        if (template.getQualityScore() < minQuality) {
+            log.info("Roadmap template {} quality {} below {}, regenerating",
+                    template.getId(), String.format("%.2f", template.getQualityScore()), minQuality);
+            metrics.cacheLookup("roadmap-template", false);
+            return Optional.empty();
+        }
+
+        log.info("Roadmap template hit: {} (rev {}, reused {} times)",
+                template.getId(), template.getRevision(), template.getReuseCount());
+        metrics.cacheLookup("roadmap-template", true);
+        return entry;
+    }
+
+    /**
+     * Clone a template into a new DRAFT roadmap for the user. The request's own title,
+     * description and tags win over the template's; without them the title and
+     * description are derived from the template's fingerprint fields.
+     */
+    public Instance instantiate(RoadmapTemplate template, String userId, RoadmapRequest request) {
+        Roadmap roadmap = roadmapRepository.save(Roadmap.builder()
+                .userId(userId)
+                .title(request.getTitle() != null && !request.getTitle().isEmpty() ? request.getTitle() : neutralTitle(template))
+                .description(request.getDescription() != null && !request.getDescription().isEmpty()
+                        ? request.getDescription() : neutralDescription(template))
+                .goal(request.getGoal())
+                .difficulty(request.getDifficulty())
+                .estimatedHours(template.getEstimatedHours())
+                .estimatedWeeks(template.getEstimatedWeeks())
+                .tags(request.getTags() != null && !request.getTags().isEmpty()
+                        ? request.getTags() : new ArrayList<>(template.getTags()))
+                .status(Roadmap.RoadmapStatus.DRAFT)
+                .progressPercentage(0.0)
+                .completedTopics(0)
+                .totalTopics(0)
+                .templateId(template.getId())
+                .build());
+
+        List<Topic> clones = new ArrayList<>();
+        int sequence = 1;
+        for (TemplateTopic source : template.getTopics()) {
+            clones.add(Topic.builder()
+                    .roadmapId(roadmap.getId())
+                    .userId(userId)
+                    .title(source.getTitle())
+                    .description(source.getDescription())
+                    .sequenceOrder(sequence++)
+                    .estimatedMinutes(source.getEstimatedMinutes())
+                    .learningObjectives(new ArrayList<>(source.getLearningObjectives()))
+                    .prerequisites(new ArrayList<>(source.getPrerequisites()))
+                    .status(Topic.TopicStatus.AVAILABLE)
+                    .resources(new ArrayList<>(source.getResources()))
+                    .build());
+        }
+        List<Topic> topics = topicRepository.saveAll(clones);
+
+        roadmap.setTotalTopics(topics.size());
+        roadmap.setTopicIds(topics.stream().map(Topic::getId).collect(Collectors.toList()));
+        roadmap = roadmapRepository.save(roadmap);
+
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(template.getId())),
+                new Update().inc("reuseCount", 1).set("lastReusedAt", LocalDateTime.now()),
+                RoadmapTemplate.class);
+
+        return new Instance(roadmap, topics);
+    }
+
+    /**
+     * A user asked for a fresh roadmap where the template would have been used: count it
+     * against the template's quality.
+     */
+    public void recordRegenerate(String fingerprint) {
+        if (!enabled) {
+            return;
+        }
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("fingerprint").is(fingerprint)),
+                new Update().inc("regenerateCount", 1).inc("qualityScore", -regeneratePenalty),
+                RoadmapTemplate.class);
+    }
+
+    /**
+     * Publish a freshly generated roadmap as the template for its fingerprint. A missing
+     * template is inserted, a stale or lower-quality one is replaced in place with a
+     * bumped revision. Only the outline is shared: the author's title, description and
+     * own tags stay on their roadmap.
+     */
+    public void publish(String fingerprint, RoadmapRequest request, String model, Roadmap roadmap, List<Topic> topics) {
+        if (!enabled || topics.isEmpty()) {
+            return;
+        }
+
+        double quality = scoreQuality(roadmap, topics);
+        try {
+            Optional<RoadmapTemplate> existing = templateRepository.findByFingerprint(fingerprint);
+            RoadmapTemplate template;
+            if (existing.isPresent()) {
+                template = existing.get();
+                boolean replace = isStale(template) || quality >= template.getQualityScore();
+                if (!replace) {
+                    log.debug("Keeping roadmap template {} (quality {} >= {})",
+                            template.getId(), template.getQualityScore(), quality);
+                    return;
+                }
+                template.setRevision(template.getRevision() + 1);
+                template.setRegenerateCount(0);
+            } else {
+                template = RoadmapTemplate.builder()
+                        .fingerprint(fingerprint)
+                        .goalClass(contentLibrary.goalClass(request.getGoal()))
+                        .currentLevel(request.getCurrentLevel())
+                        .difficulty(request.getDifficulty())
+                        .hoursBucket(hoursBucket(request.getEstimatedHoursPerWeek()))
+                        .learningStyle(request.getPreferredLearningStyle())
+                        .model(model)
+                        .build();
+            }
+
+            template.setTitle(neutralTitle(template));
+            template.setDescription(neutralDescription(template));
+            template.setEstimatedHours(roadmap.getEstimatedHours());
+            template.setEstimatedWeeks(roadmap.getEstimatedWeeks());
+            // Tags the user typed are theirs; only tags extracted from the generation are shared
+            template.setTags(request.getTags() != null && !request.getTags().isEmpty()
+                    ? new ArrayList<>() : new ArrayList<>(roadmap.getTags()));
+            template.setTopics(topics.stream()
+                    .map(topic -> TemplateTopic.builder()
+                            .title(topic.getTitle())
+                            .description(topic.getDescription())
+                            .estimatedMinutes(topic.getEstimatedMinutes())
+                            .learningObjectives(new ArrayList<>(topic.getLearningObjectives()))
+                            .prerequisites(new ArrayList<>(topic.getPrerequisites()))
+                            .resources(new ArrayList<>(topic.getResources()))
+                            .build())
+                    .collect(Collectors.toList()));
+            template.setQualityScore(quality);
+            template.setGeneratedAt(LocalDateTime.now());
+            template = templateRepository.save(template);
+
+            log.info("Published roadmap template: {} rev {} ({} topics, quality {})",
+                    template.getId(), template.getRevision(), topics.size(), String.format("%.2f", quality));
+
+        } catch (DuplicateKeyException e) {
+            // Another user published the same fingerprint concurrently; theirs wins
+            log.debug("Concurrent roadmap template publish for {}, keeping existing template", fingerprint);
+        } catch (Exception e) {
+            log.error("Failed to publish roadmap template: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Heuristic quality score from the structure of the generated roadmap.
+     */
+    double scoreQuality(Roadmap roadmap, List<Topic> topics) {
+        double count = topics.size();
+        double score = Math.min(count / 5.0, 1.0) * 0.2;
+
+        score += topics.stream().filter(topic -> topic.getLearningObjectives().size() >= 2).count() / count * 0.4;
+        score += topics.stream()
+                .filter(topic -> topic.getDescription() != null && !topic.getDescription().isBlank())
+                .count() / count * 0.2;
+        score += topics.stream().filter(topic -> !topic.getResources().isEmpty()).count() / count * 0.1;
+
+        boolean hasTitle = roadmap.getTitle() != null && !roadmap.getTitle().isBlank();
+        score += hasTitle ? 0.1 : 0.0;
+
+        return score;
+    }
+
+    /** "Python roadmap": the goal class, never a user's own wording */
+    static String neutralTitle(RoadmapTemplate template) {
+        String subject = template.getGoalClass() == null || template.getGoalClass().isBlank()
+                ? "Learning" : Character.toUpperCase(template.getGoalClass().charAt(0)) + template.getGoalClass().substring(1);
+        return subject + " roadmap";
+    }
+
+    /** "Study plan for python: beginner level, easy difficulty, 4-6 hours per week." */
+    static String neutralDescription(RoadmapTemplate template) {
+        List<String> parts = new ArrayList<>();
+        String level = ContentLibraryService.normalizeText(template.getCurrentLevel());
+        if (!level.isEmpty()) {
+            parts.add(level + " level");
+        }
+        String difficulty = ContentLibraryService.normalizeText(template.getDifficulty());
+        if (!difficulty.isEmpty()) {
+            parts.add(difficulty + " difficulty");
+        }
+        if (template.getHoursBucket() != null) {
+            parts.add(template.getHoursBucket() + " hours per week");
+        }
+        String subject = template.getGoalClass() == null || template.getGoalClass().isBlank()
+                ? "this goal" : template.getGoalClass();
+        return "Study plan for " + subject + (parts.isEmpty() ? "" : ": " + String.join(", ", parts)) + ".";
+    }
+
+    static String hoursBucket(int hoursPerWeek) {
+        int lower = 0;
+        for (int limit : HOURS_BUCKET_LIMITS) {
+            if (hoursPerWeek <= limit) {
+                return lower + "-" + limit;
+            }
+            lower = limit + 1;
+        }
+        return lower + "+";
+    }
+
+    private boolean isStale(RoadmapTemplate template) {
+        LocalDateTime generatedAt = template.getGeneratedAt() != null ? template.getGeneratedAt() : template.getCreatedAt();
+        return generatedAt == null || generatedAt.isBefore(LocalDateTime.now().minusDays(maxAgeDays));
+    }
+}
@@ -0,0 +1,81 @@
+package com.study.service;
+
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Running generation streams that can be stopped explicitly (the chat stop button),
+ * as opposed to the client disconnecting. A stream registers under a key, ends itself
+ * with {@code takeUntilOther(registration.signal())} and releases the key when done.
+ */
+@Component
+public class StreamCancellationRegistry {
+
+    public final class Registration {
+        private final String key;
+        private final Sinks.One<Boolean> sink = Sinks.one();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private Registration(String key) {
+            this.key = key;
+        }
+
+        /** Emits once the stream is cancelled. */
+        public Mono<Boolean> signal() {
+            return sink.asMono();
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        public void release() {
+            active.computeIfPresent(key, (k, streams) -> {
+                streams.remove(this);
+                return streams.isEmpty() ? null : streams;
+            });
+        }
+
+        private boolean cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return false;
+            }
+            sink.tryEmitValue(true);
+            return true;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Set<Registration>> active = new ConcurrentHashMap<>();
+
+    public Registration register(String key) {
+        Registration registration = new Registration(key);
+        active.compute(key, (k, streams) -> {
+            Set<Registration> registered = streams != null ? streams : ConcurrentHashMap.newKeySet();
+            registered.add(registration);
+            return registered;
+        });
+        return registration;
+    }
+
+    /**
+     * Cancel every stream registered under the key.
+     *
+     * @return true if a running stream was cancelled
+     */
+    public boolean cancel(String key) {
+        Set<Registration> streams = active.remove(key);
+        if (streams == null) {
+            return false;
+        }
+        boolean cancelled = false;
+        for (Registration registration : streams) {
+            cancelled |= registration.cancel();
+        }
+        return cancelled;
+    }
+}
@@ -0,0 +1,241 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.config.AIModelConfig;
+import com.study.dto.AIRequest;
+import com.study.model.Content;
+import com.study.model.Roadmap;
+import com.study.model.SharedContent;
+import com.study.model.Topic;
+import com.study.model.TokenUsage;
+import com.study.repository.ContentRepository;
+import com.study.repository.RoadmapRepository;
+import com.study.repository.TopicRepository;
+import com.study.util.PromptTemplates;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generating, storing and handing out the content of one prefetched topic.
+ *
+ * ContentPrefetchService decides which topic to prefetch and when; this class claims the
+ * topic, generates its THEORY content (or copies it from the shared library) and attaches
+ * it as prefetched. RoadmapService takes the prefetched content when the topic is opened,
+ * and cancels a running prefetch when the roadmap is paused or deleted or the user
+ * generates the topic's content themselves.
+ */
+@Slf4j
+@Service
+public class TopicContentPrefetcher {
+
+    /** A prefetch claim older than this is from a prefetch that died; generations time out well before */
+    private static final Duration PREFETCH_CLAIM_TTL = Duration.ofMinutes(15);
+
+    private final RoadmapRepository roadmapRepository;
+    private final TopicRepository topicRepository;
+    private final ContentRepository contentRepository;
+    private final NvidiaAIService aiService;
+    private final ObjectMapper objectMapper;
+    private final AIModelConfig modelConfig;
+    private final ContentLibraryService contentLibrary;
+    private final MongoTemplate mongoTemplate;
+    private final StreamCancellationRegistry cancellations;
+
+    public TopicContentPrefetcher(RoadmapRepository roadmapRepository,
+                                  TopicRepository topicRepository,
+                                  ContentRepository contentRepository,
+                                  NvidiaAIService aiService,
+                                  ObjectMapper objectMapper,
+                                  AIModelConfig modelConfig,
+                                  ContentLibraryService contentLibrary,
+                                  MongoTemplate mongoTemplate,
+                                  StreamCancellationRegistry cancellations) {
+        this.roadmapRepository = roadmapRepository;
+        this.topicRepository = topicRepository;
+        this.contentRepository = contentRepository;
+        this.aiService = aiService;
+        this.objectMapper = objectMapper;
+        this.modelConfig = modelConfig;
+        this.contentLibrary = contentLibrary;
+        this.mongoTemplate = mongoTemplate;
+        this.cancellations = cancellations;
+    }
+
+    /**
+     * Stop the prefetch running for a roadmap's topics, if any.
+     */
+    public void cancelRoadmap(String roadmapId) {
+        cancellations.cancel(prefetchKey(roadmapId));
+    }
+
+    /**
+     * Stop the prefetch running for one topic, if any; generating the topic's content for
+     * the user cancels it, so the same content isn't paid for twice.
+     */
+    public void cancelTopic(String topicId) {
+        cancellations.cancel(prefetchTopicKey(topicId));
+    }
+
+    /**
+     * Generate THEORY content for a topic the student has not opened yet, without XP; it
+     * is handed out (and XP awarded) when the topic is opened. Runs on the caller's thread
+     * and is stopped early when the roadmap is paused or deleted, or when the user
+     * generates the topic's content themselves.
+     *
+     * The topic is claimed (prefetchClaimedAt) before generating, so only one prefetch
+     * runs per topic, and the content is attached only if the topic still has none.
+     *
+     * @return false if nothing was stored: the topic already has content or is being
+     *         prefetched, the roadmap is gone or paused, the generation was cancelled or failed
+     */
+    public boolean prefetchTopicContent(String userId, String topicId) {
+        Topic topic = topicRepository.findByIdAndUserId(topicId, userId).orElse(null);
+        if (topic == null || !topic.getContentIds().isEmpty() || !isPrefetchable(topic.getRoadmapId())) {
+            return false;
+        }
+        // Mongo keeps milliseconds; the claim is matched by value when released
+        LocalDateTime claim = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        if (!claimForPrefetch(topicId, claim)) {
+            return false;
+        }
+        try {
+            return prefetchClaimedTopic(userId, topic);
+        } finally {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(topicId).and("prefetchClaimedAt").is(claim)),
+                    new Update().unset("prefetchClaimedAt"), Topic.class);
+        }
+    }
+
+    private boolean prefetchClaimedTopic(String userId, Topic topic) {
+        String topicId = topic.getId();
+        Roadmap roadmap = roadmapRepository.findById(topic.getRoadmapId()).orElseThrow();
+        
+        String model = modelConfig.getDefaultModelId();
+        String fingerprint = contentLibrary.fingerprint(roadmap.getGoal(), topic.getTitle(),
+                topic.getDescription(), Content.ContentType.THEORY, model);
+        
+        Content content;
+        Optional<SharedContent> shared = contentLibrary.findReusable(fingerprint);
+        if (shared.isPresent()) {
+            content = contentLibrary.prepareCopy(shared.get(), topic, roadmap.getId(), userId);
+        } else {
+            if (!aiService.isAvailable()) {
+                return false;
+            }
+            AIRequest aiRequest = AIRequest.withSystemPrompt(
+                    PromptTemplates.SYSTEM_PROMPT_CONTENT_GENERATOR,
+                    PromptTemplates.formatContentPrompt(roadmap.getTitle(), topic.getTitle(),
+                            topic.getDescription(), Content.ContentType.THEORY.name())
+            ).attributedTo(userId, TokenUsage.Feature.PREFETCH);
+            aiRequest.setModel(model);
+            
+            StreamCancellationRegistry.Registration registration = cancellations.register(prefetchKey(roadmap.getId()));
+            StreamCancellationRegistry.Registration topicRegistration = cancellations.register(prefetchTopicKey(topicId));
+            StringBuilder raw = new StringBuilder();
+            AtomicReference<String> error = new AtomicReference<>();
+            try {
+                aiService.generateStream(aiRequest)
+                        .takeUntilOther(Mono.firstWithSignal(registration.signal(), topicRegistration.signal()))
+                        .doOnNext(chunk -> {
+                            if (chunk.startsWith("[ERROR]")) {
+                                error.compareAndSet(null, chunk);
+                            } else if (!chunk.startsWith(NvidiaAIService.REASONING_MARKER)) {
+                                raw.append(chunk);
+                            }
+                        })
+                        .blockLast();
+            } finally {
+                registration.release();
+                topicRegistration.release();
+            }
+            if (registration.isCancelled() || topicRegistration.isCancelled() || error.get() != null) {
+                log.info("Prefetch for topic {} stopped: {}", topicId,
+                        error.get() != null ? error.get()
+                                : topicRegistration.isCancelled() ? "the user is generating it" : "roadmap paused or deleted");
+                return false;
+            }
+            try {
+                JsonNode root = objectMapper.readTree(aiService.extractJsonFromResponse(raw.toString()));
+                content = GeneratedJson.content(topic, roadmap, userId, root, Content.ContentType.THEORY.name(), model);
+            } catch (Exception e) {
+                log.warn("Prefetched content for topic {} could not be parsed: {}", topicId, e.getMessage());
+                return false;
+            }
+            contentLibrary.publishEntry(fingerprint, roadmap.getGoal(), topic, model, content);
+        }
+        
+        // The roadmap may have been paused or deleted while generating
+        if (!isPrefetchable(roadmap.getId())) {
+            return false;
+        }
+        content.setPrefetched(true);
+        content = contentRepository.save(content);
+        // Attach only if the user hasn't got content for the topic in the meantime
+        long attached = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(topicId).and("contentIds").size(0)),
+                new Update().push("contentIds", content.getId()), Topic.class).getModifiedCount();
+        if (attached == 0) {
+            contentRepository.delete(content);
+            log.info("Prefetched content for topic {} discarded: the topic got content meanwhile", topicId);
+            return false;
+        }
+        log.info("Prefetched content {} for topic {}{}", content.getId(), topicId,
+                shared.isPresent() ? " from the library" : "");
+        return true;
+    }
+
+    /**
+     * Claim a topic without content for one prefetch. A claim older than PREFETCH_CLAIM_TTL
+     * is from a prefetch that died without releasing it and is taken over.
+     */
+    private boolean claimForPrefetch(String topicId, LocalDateTime claim) {
+        Query unclaimed = Query.query(Criteria.where("_id").is(topicId)
+                .and("contentIds").size(0)
+                .orOperator(Criteria.where("prefetchClaimedAt").is(null),
+                        Criteria.where("prefetchClaimedAt").lt(claim.minus(PREFETCH_CLAIM_TTL))));
+        return mongoTemplate.updateFirst(unclaimed, new Update().set("prefetchClaimedAt", claim), Topic.class)
+                .getModifiedCount() == 1;
+    }
+
+    private boolean isPrefetchable(String roadmapId) {
+        return roadmapRepository.findById(roadmapId)
+                .map(roadmap -> roadmap.getStatus() == Roadmap.RoadmapStatus.DRAFT
+                        || roadmap.getStatus() == Roadmap.RoadmapStatus.ACTIVE)
+                .orElse(false);
+    }
+
+    /**
+     * Take the prefetched content of a topic, if there is one; each is served once.
+     */
+    public Optional<Content> claimPrefetched(String userId, String topicId, Content.ContentType type) {
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                Query.query(Criteria.where("topicId").is(topicId)
+                        .and("userId").is(userId)
+                        .and("type").is(type)
+                        .and("prefetched").is(true)),
+                new Update().set("prefetched", false),
+                FindAndModifyOptions.options().returnNew(true),
+                Content.class));
+    }
+
+    private static String prefetchKey(String roadmapId) {
+        return "prefetch:" + roadmapId;
+    }
+
+    private static String prefetchTopicKey(String topicId) {
+        return "prefetch-topic:" + topicId;
+    }
+}
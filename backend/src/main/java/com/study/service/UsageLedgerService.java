@@ -0,0 +1,243 @@
+package com.study.service;
+
+import com.study.dto.UsageResponse;
+import com.study.exception.QuotaExceededException;
+import com.study.model.TokenUsage;
+import com.study.repository.TokenUsageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token ledger: who spent how many tokens, on which model and feature.
+ *
+ * Calls are aggregated in memory per (user, day, model, feature) and written to
+ * the token_usage collection in one unordered bulk of $inc upserts per flush.
+ * A per-user running total for today backs the daily quota check, so enforcement
+ * never waits for a flush.
+ */
+@Slf4j
+@Service
+public class UsageLedgerService {
+
+    /** Ledger user for calls made outside a user request */
+    static final String SYSTEM_USER = "system";
+
+    private record Key(String userId, LocalDate day, String model, TokenUsage.Feature feature) {
+    }
+
+    private record Delta(long promptTokens, long completionTokens, long calls, long estimatedCalls) {
+        Delta plus(Delta other) {
+            return new Delta(promptTokens + other.promptTokens, completionTokens + other.completionTokens,
+                    calls + other.calls, estimatedCalls + other.estimatedCalls);
+        }
+    }
+
+    private record DailyTotal(LocalDate day, AtomicLong tokens) {
+    }
+
+    private final TokenUsageRepository usageRepository;
+    private final MongoTemplate mongoTemplate;
+
+    private final ConcurrentHashMap<Key, Delta> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DailyTotal> dailyTotals = new ConcurrentHashMap<>();
+
+    @Value("${usage.quota.daily-tokens:0}")
+    private long dailyTokenQuota;
+
+    public UsageLedgerService(TokenUsageRepository usageRepository, MongoTemplate mongoTemplate) {
+        this.usageRepository = usageRepository;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Record the tokens of one upstream call.
+     *
+     * @param estimated true when the API reported no usage and the counts are estimates
+     */
+    public void record(String userId, String model, TokenUsage.Feature feature,
+                       long promptTokens, long completionTokens, boolean estimated) {
+        String ledgerUser = userId != null ? userId : SYSTEM_USER;
+        LocalDate today = LocalDate.now();
+        Key key = new Key(ledgerUser, today, model, feature != null ? feature : TokenUsage.Feature.OTHER);
+        pending.merge(key, new Delta(promptTokens, completionTokens, 1, estimated ? 1 : 0), Delta::plus);
+
+        if (userId != null) {
+            todayTotal(userId, today).tokens().addAndGet(promptTokens + completionTokens);
+        }
+    }
+
+    /**
+     * Fail fast if the user has used up today's token quota. No-op when the quota is 0 (unlimited).
+     */
+    public void checkQuota(String userId) {
+        if (userId == null || dailyTokenQuota <= 0) {
+            return;
+        }
+        long used = todayTotal(userId, LocalDate.now()).tokens().get();
+        if (used >= dailyTokenQuota) {
+            log.warn("User {} is over the daily token quota ({} / {})", userId, used, dailyTokenQuota);
+            throw new QuotaExceededException("Daily AI token quota reached (" + dailyTokenQuota
+                    + " tokens). It resets at midnight.");
+        }
+    }
+
+    /**
+     * Share of today's token quota the user has used (0 when the quota is unlimited).
+     */
+    public double quotaUsed(String userId) {
+        if (userId == null || dailyTokenQuota <= 0) {
+            return 0;
+        }
+        return todayTotal(userId, LocalDate.now()).tokens().get() / (double) dailyTokenQuota;
+    }
+
+    /**
+     * Usage summary for the last {@code days} days, including calls not flushed yet.
+     */
+    public UsageResponse getUsage(String userId, int days) {
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(days - 1L);
+
+        Map<Key, Delta> buckets = new HashMap<>();
+        for (TokenUsage usage : usageRepository.findByUserIdAndDayGreaterThanEqualOrderByDayAsc(userId, from)) {
+            buckets.merge(new Key(userId, usage.getDay(), usage.getModel(), usage.getFeature()),
+                    new Delta(usage.getPromptTokens(), usage.getCompletionTokens(), usage.getCalls(), usage.getEstimatedCalls()),
+                    Delta::plus);
+        }
+        pending.forEach((key, delta) -> {
+            if (key.userId().equals(userId) && !key.day().isBefore(from)) {
+                buckets.merge(key, delta, Delta::plus);
+            }
+        });
+
+        Map<String, Long> byFeature = new TreeMap<>();
+        Map<String, Long> byModel = new TreeMap<>();
+        Map<LocalDate, long[]> byDay = new TreeMap<>();
+        long prompt = 0, completion = 0, calls = 0, todayTokens = 0;
+        for (Map.Entry<Key, Delta> entry : buckets.entrySet()) {
+            Key key = entry.getKey();
+            Delta delta = entry.getValue();
+            long tokens = delta.promptTokens() + delta.completionTokens();
+            byFeature.merge(key.feature().name(), tokens, Long::sum);
+            byModel.merge(key.model(), tokens, Long::sum);
+            long[] day = byDay.computeIfAbsent(key.day(), d -> new long[2]);
+            day[0] += delta.promptTokens();
+            day[1] += delta.completionTokens();
+            prompt += delta.promptTokens();
+            completion += delta.completionTokens();
+            calls += delta.calls();
+            if (key.day().equals(today)) {
+                todayTokens += tokens;
+            }
+        }
+
+        List<UsageResponse.DailyUsage> daily = new ArrayList<>();
+        byDay.forEach((day, tokens) -> daily.add(UsageResponse.DailyUsage.builder()
+                .date(day.toString())
+                .promptTokens(tokens[0])
+                .completionTokens(tokens[1])
+                .build()));
+
+        return UsageResponse.builder()
+                .tokensToday(todayTokens)
+                .dailyQuota(Math.max(0, dailyTokenQuota))
+                .remainingToday(dailyTokenQuota > 0 ? Math.max(0, dailyTokenQuota - todayTokens) : -1)
+                .days(days)
+                .promptTokens(prompt)
+                .completionTokens(completion)
+                .calls(calls)
+                .tokensByFeature(byFeature)
+                .tokensByModel(byModel)
+                .daily(daily)
+                .build();
+    }
+
+    /**
+     * Write pending usage in one bulk of $inc upserts. Failed batches are merged back
+     * and retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${usage.flush-interval-ms:15000}")
+    public void flush() {
+        LocalDate today = LocalDate.now();
+        dailyTotals.values().removeIf(total -> !total.day().equals(today));
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // remove() is atomic with merge(), so nothing recorded concurrently is lost
+        Map<Key, Delta> batch = new HashMap<>();
+        for (Key key : pending.keySet()) {
+            Delta delta = pending.remove(key);
+            if (delta != null) {
+                batch.put(key, delta);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TokenUsage.class);
+        batch.forEach((key, delta) -> ops.upsert(
+                Query.query(Criteria.where("userId").is(key.userId())
+                        .and("day").is(key.day())
+                        .and("model").is(key.model())
+                        .and("feature").is(key.feature())),
+                new Update()
+                        .inc("promptTokens", delta.promptTokens())
+                        .inc("completionTokens", delta.completionTokens())
+                        .inc("calls", delta.calls())
+                        .inc("estimatedCalls", delta.estimatedCalls())
+                        .set("updatedAt", now)));
+
+        try {
+            ops.execute();
+            log.debug("Flushed {} token usage buckets", batch.size());
+        } catch (Exception e) {
+            log.warn("Failed to flush {} token usage buckets, will retry: {}", batch.size(), e.getMessage());
+            batch.forEach((key, delta) -> pending.merge(key, delta, Delta::plus));
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * The user's running total for today, loaded from Mongo on first use. The query runs
+     * outside the map so it never holds a bin lock; if two threads load it at once, the
+     * first total installed wins and the other load is dropped.
+     */
+    private DailyTotal todayTotal(String userId, LocalDate today) {
+        DailyTotal current = dailyTotals.get(userId);
+        if (current != null && current.day().equals(today)) {
+            return current;
+        }
+        DailyTotal loaded = new DailyTotal(today, new AtomicLong(persistedTokens(userId, today)));
+        // Replaces yesterday's total, keeps a today's total another thread installed meanwhile
+        return dailyTotals.merge(userId, loaded,
+                (existing, fresh) -> existing.day().equals(today) ? existing : fresh);
+    }
+
+    private long persistedTokens(String userId, LocalDate day) {
+        return usageRepository.findByUserIdAndDay(userId, day).stream()
+                .mapToLong(usage -> usage.getPromptTokens() + usage.getCompletionTokens())
+                .sum();
+    }
+}
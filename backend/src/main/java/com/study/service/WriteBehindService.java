@@ -0,0 +1,469 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.model.GamificationData;
+import com.study.model.GamificationData.XPGainEntry;
+import com.study.model.UserInteraction;
+import com.study.observability.AIMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind buffer for bookkeeping writes that do not shape the HTTP response:
+ * doubt interactions and XP awards.
+ *
+ * Writes are queued in memory and appended to a local journal, then persisted by a
+ * background flush: interactions with one unordered insert per batch, XP with one
+ * $inc/$push upsert per user per batch. When the queue is full, callers wait up to
+ * offer-timeout-ms and then write on their own thread, so nothing is dropped.
+ *
+ * The journal is an append-only NDJSON segment that is rotated at every flush and
+ * deleted once its events are persisted. Segments left behind by a crash are replayed
+ * on startup. Interactions carry their id from the start, so a replayed insert that
+ * already landed is skipped; XP awards are applied at least once.
+ */
+@Slf4j
+@Service
+public class WriteBehindService {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".ndjson";
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int XP_HISTORY_SIZE = 100;
+
+    /** One buffered write; exactly one of the two fields is set. */
+    public record Event(UserInteraction interaction, XPAward xp) {
+    }
+
+    public record XPAward(String userId, int amount, String reason, String action, LocalDateTime timestamp) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final RAGService ragService;
+    private final ObjectMapper objectMapper;
+    private final AIMetrics metrics;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final Path journalDir;
+    private final boolean fsync;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Event> queue = new ArrayDeque<>();
+    /** Drained by the running flush and not persisted yet */
+    private List<Event> inFlight = List.of();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private Path segment;
+    private FileChannel journal;
+    private long segmentSeq;
+
+    public WriteBehindService(MongoTemplate mongoTemplate,
+                              RAGService ragService,
+                              ObjectMapper objectMapper,
+                              AIMetrics metrics,
+                              @Value("${write-behind.enabled:true}") boolean enabled,
+                              @Value("${write-behind.capacity:10000}") int capacity,
+                              @Value("${write-behind.batch-size:500}") int batchSize,
+                              @Value("${write-behind.offer-timeout-ms:100}") long offerTimeoutMillis,
+                              @Value("${write-behind.journal-dir:data/write-behind}") String journalDir,
+                              @Value("${write-behind.fsync:false}") boolean fsync) {
+        this.mongoTemplate = mongoTemplate;
+        this.ragService = ragService;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.journalDir = Path.of(journalDir);
+        this.fsync = fsync;
+        metrics.writeBehindGauge(this::queued);
+    }
+
+    /**
+     * Queue a new interaction for insert. The id and createdAt are assigned here,
+     * so the caller can return them right away.
+     */
+    public UserInteraction saveInteraction(UserInteraction interaction) {
+        if (interaction.getId() == null) {
+            interaction.setId(new ObjectId().toHexString());
+        }
+        if (interaction.getCreatedAt() == null) {
+            // Millisecond precision, as stored by Mongo, so keyset cursors match before and after the flush
+            interaction.setCreatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+        }
+        enqueue(new Event(interaction, null));
+        return interaction;
+    }
+
+    /**
+     * Queue an XP award. Same effect as {@link GamificationService#awardXP}, applied at the next flush.
+     */
+    public void awardXP(String userId, int amount, String reason, String action) {
+        enqueue(new Event(null, new XPAward(userId, amount, reason, action, LocalDateTime.now())));
+    }
+
+    /**
+     * Interactions of a user that are queued or being flushed, oldest first.
+     */
+    public List<UserInteraction> pendingInteractions(String userId) {
+        lock.lock();
+        try {
+            return Stream.concat(inFlight.stream(), queue.stream())
+                    .map(Event::interaction)
+                    .filter(interaction -> interaction != null && userId.equals(interaction.getUserId()))
+                    .toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Persist everything queued so far. The journal segment is rotated with the drain,
+     * so the old segment holds exactly the drained events and can be deleted once they
+     * are written. Batches that fail go back to the head of the queue and the new segment.
+     */
+    @Scheduled(fixedDelayString = "${write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Event> drained;
+            Path written;
+            lock.lock();
+            try {
+                if (queue.isEmpty()) {
+                    return;
+                }
+                drained = new ArrayList<>(queue);
+                queue.clear();
+                inFlight = drained;
+                written = rotate();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            for (int from = 0; from < drained.size(); from += batchSize) {
+                List<Event> batch = drained.subList(from, Math.min(from + batchSize, drained.size()));
+                try {
+                    write(batch);
+                } catch (Exception e) {
+                    List<Event> failed = drained.subList(from, drained.size());
+                    log.warn("Failed to flush {} buffered writes, will retry: {}", failed.size(), e.getMessage());
+                    count(failed, "retry");
+                    requeue(failed);
+                    break;
+                }
+                count(batch, "success");
+            }
+            lock.lock();
+            try {
+                inFlight = List.of();
+            } finally {
+                lock.unlock();
+            }
+            deleteSegment(written);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Replay journal segments left by a previous run. Their events are queued and
+     * re-journaled in a fresh segment, then the old segments are removed.
+     */
+    @PostConstruct
+    void recover() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(journalDir);
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            segments = files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        segmentSeq = System.currentTimeMillis();
+        List<Path> replayed = new ArrayList<>();
+        lock.lock();
+        try {
+            rotate();
+            for (Path old : segments) {
+                try {
+                    for (Event event : readSegment(old)) {
+                        appendToJournal(event);
+                        queue.add(event);
+                    }
+                    replayed.add(old);
+                } catch (IOException e) {
+                    log.error("Failed to replay write-behind journal {}, keeping it: {}", old, e.getMessage());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        replayed.forEach(this::deleteSegment);
+        if (!queue.isEmpty()) {
+            log.info("Recovered {} buffered writes from the write-behind journal", queue.size());
+        }
+    }
+
+    @PreDestroy
+    void drainOnShutdown() {
+        if (!enabled) {
+            return;
+        }
+        // Wait for a flush already in progress, then drain the rest
+        flushLock.lock();
+        try {
+            flush();
+        } finally {
+            flushLock.unlock();
+        }
+        lock.lock();
+        try {
+            if (queue.isEmpty()) {
+                deleteSegment(segment);
+            } else {
+                log.warn("{} buffered writes could not be flushed and stay in the journal for the next start",
+                        queue.size());
+            }
+            closeJournal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Event event) {
+        if (enabled) {
+            lock.lock();
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+                while (queue.size() >= capacity && remaining > 0) {
+                    remaining = notFull.awaitNanos(remaining);
+                }
+                if (queue.size() < capacity) {
+                    appendToJournal(event);
+                    queue.add(event);
+                    if (queue.size() == batchSize) {
+                        // A full batch is waiting; flush now instead of at the next interval
+                        Thread.startVirtualThread(this::flush);
+                    }
+                    return;
+                }
+                log.warn("Write-behind queue is full ({}), writing on the caller's thread", capacity);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.warn("Write-behind journal append failed, writing on the caller's thread: {}", e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+        write(List.of(event));
+        count(List.of(event), "sync");
+    }
+
+    /**
+     * Persist one batch: unordered insert of the interactions, then one upsert per user for XP.
+     */
+    private void write(List<Event> batch) {
+        List<UserInteraction> interactions = new ArrayList<>();
+        Map<String, List<XPAward>> awards = new LinkedHashMap<>();
+        for (Event event : batch) {
+            if (event.interaction() != null) {
+                interactions.add(event.interaction());
+            } else {
+                awards.computeIfAbsent(event.xp().userId(), id -> new ArrayList<>()).add(event.xp());
+            }
+        }
+
+        if (!interactions.isEmpty()) {
+            interactions.forEach(interaction ->
+                    interaction.setEmbedding(ragService.createEmbedding(interaction.getContent())));
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserInteraction.class);
+            ops.insert(interactions);
+            try {
+                ops.execute();
+            } catch (BulkOperationException e) {
+                // Already inserted before a crash or a failed flush
+                if (!e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY)) {
+                    throw e;
+                }
+            }
+        }
+
+        if (!awards.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, GamificationData.class);
+            awards.forEach((userId, userAwards) -> {
+                int total = userAwards.stream().mapToInt(XPAward::amount).sum();
+                // History is newest first, capped like GamificationService.awardXP
+                List<XPGainEntry> entries = new ArrayList<>();
+                for (int i = userAwards.size() - 1; i >= 0; i--) {
+                    XPAward award = userAwards.get(i);
+                    entries.add(XPGainEntry.builder()
+                            .amount(award.amount())
+                            .reason(award.reason())
+                            .action(award.action())
+                            .timestamp(award.timestamp())
+                            .build());
+                }
+                Update update = new Update()
+                        .inc("xp", total)
+                        .set("updatedAt", now)
+                        .setOnInsert("streak", 0)
+                        .setOnInsert("longestStreak", 0)
+                        .setOnInsert("badgesEarned", List.of())
+                        .setOnInsert("createdAt", now);
+                update.push("xpHistory").atPosition(0).slice(XP_HISTORY_SIZE).each(entries.toArray());
+                ops.upsert(Query.query(Criteria.where("userId").is(userId)), update);
+                log.info("Awarded {} XP to user {} for {} buffered actions", total, userId, userAwards.size());
+            });
+            ops.execute();
+        }
+    }
+
+    private void requeue(List<Event> failed) {
+        lock.lock();
+        try {
+            for (int i = failed.size() - 1; i >= 0; i--) {
+                queue.addFirst(failed.get(i));
+            }
+            for (Event event : failed) {
+                appendToJournal(event);
+            }
+        } catch (IOException e) {
+            log.error("Failed to re-journal {} buffered writes: {}", failed.size(), e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void count(List<Event> events, String outcome) {
+        long interactions = events.stream().filter(event -> event.interaction() != null).count();
+        if (interactions > 0) {
+            metrics.countWriteBehind("interaction", outcome, (int) interactions);
+        }
+        if (interactions < events.size()) {
+            metrics.countWriteBehind("xp", outcome, events.size() - (int) interactions);
+        }
+    }
+
+    // ── Journal ──
+
+    /** Start a new segment and return the previous one. Caller holds the lock. */
+    private Path rotate() {
+        Path previous = segment;
+        closeJournal();
+        segment = journalDir.resolve(SEGMENT_PREFIX + (segmentSeq++) + SEGMENT_SUFFIX);
+        try {
+            journal = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("Cannot open write-behind journal {}: {}", segment, e.getMessage());
+            journal = null;
+        }
+        return previous;
+    }
+
+    /** Caller holds the lock. */
+    private void appendToJournal(Event event) throws IOException {
+        if (journal == null) {
+            throw new IOException("journal is not open");
+        }
+        byte[] line = objectMapper.writeValueAsBytes(event);
+        ByteBuffer buffer = ByteBuffer.allocate(line.length + 1).put(line).put((byte) '\n').flip();
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        if (fsync) {
+            journal.force(false);
+        }
+    }
+
+    private List<Event> readSegment(Path path) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    events.add(objectMapper.readValue(line, Event.class));
+                } catch (IOException e) {
+                    // A torn last line from a crash mid-append
+                    log.warn("Skipping unreadable write-behind journal entry in {}", path.getFileName());
+                }
+            }
+        }
+        return events;
+    }
+
+    private void deleteSegment(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete write-behind journal {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Failed to close write-behind journal {}: {}", segment, e.getMessage());
+        }
+        journal = null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.study.util;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+/**
+ * Opaque cursor for newest-first keyset pagination on (sortField desc, _id desc).
+ *
+ * The token is the URL-safe Base64 of "epochMillis:id" of the last item on a page.
+ * The next page starts strictly after it, so inserts at the head of the list never
+ * shift or duplicate items the way skip/limit paging does.
+ */
+public record KeysetCursor(LocalDateTime sortValue, String id) {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    /**
+     * @return the decoded cursor, or null for the first page
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            long millis = Long.parseLong(raw.substring(0, separator));
+            String id = raw.substring(separator + 1);
+            if (!ObjectId.isValid(id)) {
+                throw new IllegalArgumentException(id);
+            }
+            return new KeysetCursor(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()),
+                    id);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        long millis = sortValue.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((millis + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Criteria matching documents after this cursor in {@link #newestFirst(String)} order.
+     */
+    public Criteria after(String sortField) {
+        return new Criteria().orOperator(
+                Criteria.where(sortField).lt(sortValue),
+                Criteria.where(sortField).is(sortValue).and("_id").lt(new ObjectId(id)));
+    }
+
+    /**
+     * In-memory counterpart of {@link #after(String)}: true if an item with this sort
+     * value and id comes after the cursor.
+     */
+    public boolean precedes(LocalDateTime itemSortValue, String itemId) {
+        int bySortValue = itemSortValue.compareTo(sortValue);
+        return bySortValue < 0 || bySortValue == 0 && new ObjectId(itemId).compareTo(new ObjectId(id)) < 0;
+    }
+
+    public static Sort newestFirst(String sortField) {
+        return Sort.by(Sort.Direction.DESC, sortField, "_id");
+    }
+
+    public static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
@@ -94,6 +94,19 @@ public final class PromptTemplates {
         Make the content thorough yet digestible for self-study.
         """;
     
+    /** Shared prefix of every prompt in a roadmap content batch; the topic-specific part follows it */
+    public static final String BATCH_CONTENT_CONTEXT = """
+        You are writing the learning content for every topic of one roadmap, one topic per request.
+        Keep terminology consistent across topics, build on the topics before this one,
+        and leave material that belongs to later topics for later.
+        
+        ROADMAP: %s
+        GOAL: %s
+        TOPICS IN ORDER:
+        %s
+        
+        """;
+    
     public static final String SYSTEM_PROMPT_DOUBT_SOLVER = """
         You are a patient, knowledgeable tutor helping a student understand concepts.
         
@@ -167,6 +180,48 @@ public final class PromptTemplates {
         - Be thorough in THINKING — the user sees this live
         """;
         
+    /** Outline-first generation, phase one: structure only, expanded per topic afterwards */
+    public static final String ROADMAP_OUTLINE = """
+        Create a compact outline of a learning roadmap for the following goal. Only the structure:
+        each topic's objectives and resources are written separately afterwards.
+        
+        GOAL: %s
+        CURRENT LEVEL: %s
+        DIFFICULTY: %s
+        ESTIMATED HOURS PER WEEK: %d
+        PREFERRED STYLE: %s
+        
+        Respond with a single JSON object and nothing else:
+        {"title": "Roadmap title", "description": "2-3 sentences", "estimatedWeeks": 6, "estimatedHours": 40, "tags": ["tag1", "tag2"], "topics": [{"title": "Topic Name", "description": "One sentence", "estimatedMinutes": 45, "prerequisites": []}, {"title": "Next Topic", "description": "One sentence", "estimatedMinutes": 60, "prerequisites": ["Topic Name"]}]}
+        
+        Rules:
+        - Determine the RIGHT number of topics for this subject. Let the content dictate.
+        - List topics in learning order; prerequisites name earlier topics by their exact title
+        - Keep each description to one sentence; do NOT include objectives or resources
+        - Do NOT use markdown code blocks around the JSON
+        """;
+    
+    /** Outline-first generation, phase two: one topic of an existing outline */
+    public static final String ROADMAP_TOPIC_EXPANSION = """
+        Expand one topic of this learning roadmap.
+        
+        ROADMAP: %s
+        GOAL: %s
+        DIFFICULTY: %s
+        TOPICS IN ORDER:
+        %s
+        
+        TOPIC TO EXPAND: %s
+        DESCRIPTION: %s
+        
+        Respond with a single JSON object and nothing else:
+        {"learningObjectives": ["obj1", "obj2", "obj3"], "resources": [{"type": "article", "title": "Resource", "url": "", "description": "Why it helps"}]}
+        
+        Rules:
+        - 3-5 specific learning objectives covering this topic only, not the topics around it
+        - Do NOT use markdown code blocks around the JSON
+        """;
+        
     public static String formatRoadmapStreamPrompt(String goal, String currentLevel, String difficulty, 
                                               int hoursPerWeek, String learningStyle) {
         return String.format(ROADMAP_GENERATION_STREAM, goal, currentLevel, difficulty, hoursPerWeek, learningStyle);
@@ -177,10 +232,26 @@ public final class PromptTemplates {
         return String.format(ROADMAP_GENERATION, goal, currentLevel, difficulty, hoursPerWeek, learningStyle);
     }
     
+    public static String formatRoadmapOutlinePrompt(String goal, String currentLevel, String difficulty,
+                                                    int hoursPerWeek, String learningStyle) {
+        return String.format(ROADMAP_OUTLINE, goal, currentLevel, difficulty, hoursPerWeek, learningStyle);
+    }
+    
+    public static String formatTopicExpansionPrompt(String roadmap, String goal, String difficulty, String outline,
+                                                    String topic, String description) {
+        return String.format(ROADMAP_TOPIC_EXPANSION, roadmap, goal, difficulty, outline, topic, description);
+    }
+    
     public static String formatContentPrompt(String roadmap, String topic, String description, String contentType) {
         return String.format(CONTENT_GENERATION, roadmap, topic, description, contentType);
     }
     
+    public static String formatBatchContentPrompt(String roadmap, String goal, String outline,
+                                                  String topic, String description, String contentType) {
+        return String.format(BATCH_CONTENT_CONTEXT, roadmap, goal, outline)
+                + formatContentPrompt(roadmap, topic, description, contentType);
+    }
+    
     public static String formatDoubtPrompt(String doubt, String roadmap, String topic, 
                                            String currentLearning, String historyContext) {
         String historySection = historyContext.isEmpty() ? "" : 
@@ -188,6 +259,19 @@ public final class PromptTemplates {
         return String.format(DOUBT_SOLVING, doubt, roadmap, topic, currentLearning, historySection);
     }
 
+    // ── Chat Session Title (light task, see the models.json routing table) ──
+
+    public static final String CHAT_SESSION_TITLE = """
+        Write a title of at most six words for a chat that starts with the message below.
+        Reply with the title only: no quotes, no trailing punctuation.
+
+        Message: %s
+        """;
+
+    public static String formatChatTitlePrompt(String message) {
+        return String.format(CHAT_SESSION_TITLE, message);
+    }
+
     // ── Nexus Chat System Prompt ──
 
     public static final String SYSTEM_PROMPT_NEXUS_CHAT = """
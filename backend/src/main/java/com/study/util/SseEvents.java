@@ -0,0 +1,34 @@
+package com.study.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+
+/**
+ * Named server-sent events with a JSON payload, as emitted by the generation streams.
+ */
+@Slf4j
+public final class SseEvents {
+
+    private SseEvents() {
+    }
+
+    /**
+     * Event {@code event} carrying {@code payload} as JSON; an "error" event if the
+     * payload can't be serialized, so a stream never fails over one bad event.
+     */
+    public static ServerSentEvent<String> json(ObjectMapper objectMapper, String event, Object payload) {
+        try {
+            return ServerSentEvent.<String>builder()
+                    .event(event)
+                    .data(objectMapper.writeValueAsString(payload))
+                    .build();
+        } catch (Exception e) {
+            log.error("Failed to serialize {} event", event, e);
+            return ServerSentEvent.<String>builder()
+                    .event("error")
+                    .data("{\"message\":\"Failed to serialize event\"}")
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.study.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Loads the recorded benchmark inputs under src/test/resources/bench.
+ * Each file is a JSON array of strings (stream chunks, responses or questions)
+ * so whitespace and chunk boundaries are preserved exactly as recorded.
+ */
+public final class BenchInputs {
+
+    /** SSE data payloads of a reasoning model answer, reasoning_content first */
+    public static final String NVIDIA_SSE_CHUNKS = "nvidia-sse-chunks.json";
+
+    /** Chat output with inline think tags split at arbitrary chunk boundaries */
+    public static final String CHAT_THINK_STREAM = "chat-think-stream.json";
+
+    /** Streamed THINKING/TOPIC roadmap output */
+    public static final String ROADMAP_STREAM = "roadmap-stream.json";
+
+    /** Full model responses wrapping a content JSON document in different ways */
+    public static final String AI_RESPONSES = "ai-responses.json";
+
+    /** Student doubts */
+    public static final String DOUBTS = "doubts.json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private BenchInputs() {
+    }
+
+    public static List<String> load(String name) {
+        try (InputStream in = BenchInputs.class.getResourceAsStream("/bench/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Missing benchmark input: " + name);
+            }
+            return MAPPER.readValue(in, new TypeReference<List<String>>() {});
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
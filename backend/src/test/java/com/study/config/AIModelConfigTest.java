@@ -0,0 +1,115 @@
+package com.study.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Loading and hot reload of the model registry from ai.models.path.
+ */
+class AIModelConfigTest {
+
+    /** Default model of the bundled classpath models.json */
+    private static final String BUNDLED_DEFAULT = "qwen/qwen3-235b-a22b";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    static String modelsJson(String defaultModel, String... ids) {
+        StringBuilder models = new StringBuilder();
+        for (String id : ids) {
+            if (models.length() > 0) {
+                models.append(',');
+            }
+            models.append("{\"id\": \"").append(id).append("\", \"name\": \"").append(id).append("\"}");
+        }
+        return "{\"defaultModel\": \"" + defaultModel + "\", \"models\": [" + models + "]}";
+    }
+
+    @Test
+    void missingPathAtStartupFallsBackToTheBundledFile() {
+        AIModelConfig config = new AIModelConfig(objectMapper, dir.resolve("missing.json").toString());
+        config.init();
+
+        assertEquals(BUNDLED_DEFAULT, config.getDefaultModelId());
+        assertTrue(config.getModels().size() > 1);
+
+        // Polling a missing file keeps the bundled registry
+        long version = config.snapshot().version();
+        config.reloadIfChanged();
+        config.reloadIfChanged();
+        assertEquals(version, config.snapshot().version());
+    }
+
+    @Test
+    void brokenPathAtStartupFallsBackAndIsPickedUpOnceFixed() throws IOException {
+        Path models = dir.resolve("models.json");
+        Files.writeString(models, "{ broken");
+        AIModelConfig config = new AIModelConfig(objectMapper, models.toString());
+        config.init();
+        assertEquals(BUNDLED_DEFAULT, config.getDefaultModelId());
+
+        Files.writeString(models, modelsJson("a", "a", "b"));
+        touch(models, 1);
+        config.reloadIfChanged();
+
+        assertEquals("a", config.getDefaultModelId());
+        assertEquals(2, config.getModels().size());
+    }
+
+    @Test
+    void brokenFileKeepsTheCurrentSnapshot() throws IOException {
+        Path models = dir.resolve("models.json");
+        Files.writeString(models, modelsJson("a", "a", "b"));
+        AIModelConfig config = new AIModelConfig(objectMapper, models.toString());
+        config.init();
+        AIModelConfig.Snapshot loaded = config.snapshot();
+
+        Files.writeString(models, "{\"defaultModel\": \"a\", \"models\": []}");
+        assertThrows(IOException.class, config::reload);
+        assertSame(loaded, config.snapshot());
+
+        Files.writeString(models, "{ broken");
+        touch(models, 1);
+        config.reloadIfChanged();
+        assertSame(loaded, config.snapshot());
+        assertEquals("a", config.resolveModelId("unknown"));
+    }
+
+    @Test
+    void changedFileIsReloadedWithANewVersion() throws IOException {
+        Path models = dir.resolve("models.json");
+        Files.writeString(models, modelsJson("a", "a", "b"));
+        AIModelConfig config = new AIModelConfig(objectMapper, models.toString());
+        config.init();
+        long version = config.snapshot().version();
+
+        // Unchanged modification time: nothing to do
+        config.reloadIfChanged();
+        assertEquals(version, config.snapshot().version());
+
+        Files.writeString(models, modelsJson("c", "b", "c"));
+        touch(models, 1);
+        config.reloadIfChanged();
+
+        assertTrue(config.snapshot().version() > version);
+        assertEquals("c", config.getDefaultModelId());
+        assertTrue(config.getModelById("a").isEmpty());
+    }
+
+    /** Move the modification time forward, since a rewrite can land in the same clock tick */
+    static void touch(Path path, int seconds) throws IOException {
+        Instant modified = Files.getLastModifiedTime(path).toInstant();
+        Files.setLastModifiedTime(path, FileTime.from(modified.plusSeconds(seconds)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.study.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.config.AIModelConfig;
+import com.study.service.LLMProviderRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GET /ai/models is serialized once per registry snapshot and revalidated by ETag.
+ */
+class AIControllerTest {
+
+    private static final String MODELS = """
+            {"defaultModel": "a", "models": [
+              {"id": "a", "name": "A"},
+              {"id": "local-1", "name": "Local", "backend": "local"}
+            ]}""";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    private Path modelsPath;
+    private AIModelConfig modelConfig;
+    private AIController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        modelsPath = dir.resolve("models.json");
+        Files.writeString(modelsPath, MODELS);
+        modelConfig = new AIModelConfig(objectMapper, modelsPath.toString());
+        modelConfig.init();
+        // No local inference server configured
+        LLMProviderRegistry providers = new LLMProviderRegistry(WebClient.builder(), modelConfig,
+                "key", "http://localhost:1", 5, 1000, 1, "", "", 5, 1000, 1, 1);
+        controller = new AIController(modelConfig, providers, objectMapper);
+    }
+
+    @Test
+    void unchangedRegistryIsRevalidatedWith304() throws Exception {
+        ResponseEntity<String> first = controller.getModels(null);
+        String etag = first.getHeaders().getETag();
+
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        JsonNode models = objectMapper.readTree(first.getBody()).path("data").path("models");
+        assertEquals(1, models.size(), "local models are hidden without a local backend");
+
+        ResponseEntity<String> revalidated = controller.getModels(etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+        assertEquals(etag, revalidated.getHeaders().getETag());
+        assertSame(first.getBody(), controller.getModels(null).getBody(), "payload is cached per snapshot");
+    }
+
+    @Test
+    void versionBumpReserializesWithANewETag() throws Exception {
+        ResponseEntity<String> before = controller.getModels(null);
+        String etag = before.getHeaders().getETag();
+
+        Files.writeString(modelsPath, MODELS.replace("\"defaultModel\": \"a\"", "\"defaultModel\": \"b\"")
+                .replace("{\"id\": \"a\", \"name\": \"A\"}", "{\"id\": \"a\", \"name\": \"A\"}, {\"id\": \"b\", \"name\": \"B\"}"));
+        modelConfig.reload();
+
+        ResponseEntity<String> after = controller.getModels(etag);
+        assertEquals(HttpStatus.OK, after.getStatusCode());
+        assertNotEquals(etag, after.getHeaders().getETag());
+        assertEquals("b", objectMapper.readTree(after.getBody()).path("data").path("defaultModel").asText());
+    }
+
+    @Test
+    void failedReloadKeepsTheETag() throws Exception {
+        String etag = controller.getModels(null).getHeaders().getETag();
+
+        Files.writeString(modelsPath, "{ broken");
+        assertThrows(IOException.class, modelConfig::reload);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, controller.getModels(etag).getStatusCode());
+    }
+}
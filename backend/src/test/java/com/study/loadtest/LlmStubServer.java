@@ -0,0 +1,361 @@
+package com.study.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded OpenAI-compatible {@code /v1/chat/completions} endpoint for load tests.
+ *
+ * Point {@code nvidia.api.base-url} at {@link #baseUrl()}. The response script is
+ * picked from the prompt so every feature gets output it can parse:
+ * - roadmap stream prompts get a THINKING section and one TOPIC line per topic
+ * - roadmap outline and topic expansion prompts get their JSON objects
+ * - content generation prompts get the CONTENT_GENERATION JSON document
+ * - everything else (chat, doubts) gets markdown prose
+ *
+ * Streaming honours the configured time-to-first-token and tokens/sec; a "token"
+ * is one whitespace-delimited word per SSE chunk. Reasoning is emitted either as
+ * delta.reasoning_content chunks or inline {@code <think>} tags.
+ */
+public class LlmStubServer implements AutoCloseable {
+
+    public enum ReasoningMode { NONE, REASONING_CONTENT, THINK_TAGS }
+
+    /**
+     * @param ttftMillis      delay before the first chunk (and before a non-streamed body)
+     * @param tokensPerSecond chunk rate once streaming has started
+     * @param errorRate       fraction of requests answered with HTTP 503
+     * @param reasoningTokens words of reasoning emitted before the answer
+     */
+    public record Config(long ttftMillis, int tokensPerSecond, double errorRate,
+                         ReasoningMode reasoningMode, int reasoningTokens, int topicCount) {
+
+        public static Config fromSystemProperties() {
+            return new Config(
+                    Long.getLong("loadtest.stub.ttft-ms", 150),
+                    Integer.getInteger("loadtest.stub.tokens-per-second", 400),
+                    Double.parseDouble(System.getProperty("loadtest.stub.error-rate", "0.0")),
+                    ReasoningMode.valueOf(System.getProperty("loadtest.stub.reasoning", "REASONING_CONTENT")),
+                    Integer.getInteger("loadtest.stub.reasoning-tokens", 40),
+                    Integer.getInteger("loadtest.stub.topics", 6));
+        }
+    }
+
+    private final Config config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    public LlmStubServer(Config config) throws IOException {
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/v1/chat/completions", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    public long injectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+
+            if (ThreadLocalRandom.current().nextDouble() < config.errorRate()) {
+                injectedErrors.incrementAndGet();
+                byte[] error = "{\"error\":{\"message\":\"injected failure\"}}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(503, error.length);
+                exchange.getResponseBody().write(error);
+                return;
+            }
+
+            String prompt = promptText(body);
+            String model = body.path("model").asText("stub-model");
+            List<String> reasoning = reasoningWords();
+            String answer = answerFor(prompt);
+
+            sleep(config.ttftMillis());
+            if (body.path("stream").asBoolean(false)) {
+                stream(exchange, model, reasoning, answer);
+            } else {
+                complete(exchange, model, reasoning, answer);
+            }
+        } catch (IOException e) {
+            // Client went away mid-stream (cancelled SSE); nothing to do
+        }
+    }
+
+    private void stream(HttpExchange exchange, String model, List<String> reasoning, String answer) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        long delayNanos = 1_000_000_000L / Math.max(1, config.tokensPerSecond());
+        int completionTokens = 0;
+
+        if (config.reasoningMode() == ReasoningMode.REASONING_CONTENT) {
+            for (String word : reasoning) {
+                writeChunk(out, model, "reasoning_content", word + " ");
+                completionTokens++;
+                pace(delayNanos);
+            }
+        } else if (config.reasoningMode() == ReasoningMode.THINK_TAGS && !reasoning.isEmpty()) {
+            writeChunk(out, model, "content", "<think>");
+            for (String word : reasoning) {
+                writeChunk(out, model, "content", word + " ");
+                completionTokens++;
+                pace(delayNanos);
+            }
+            writeChunk(out, model, "content", "</think>\n");
+        }
+
+        for (String token : tokenize(answer)) {
+            writeChunk(out, model, "content", token);
+            completionTokens++;
+            pace(delayNanos);
+        }
+
+        ObjectNode usage = objectMapper.createObjectNode();
+        usage.put("id", "stub");
+        usage.putArray("choices");
+        usage.set("usage", usage(completionTokens));
+        out.write(("data: " + usage + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void complete(HttpExchange exchange, String model, List<String> reasoning, String answer) throws IOException {
+        String content = config.reasoningMode() == ReasoningMode.THINK_TAGS && !reasoning.isEmpty()
+                ? "<think>" + String.join(" ", reasoning) + "</think>\n" + answer
+                : answer;
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("id", "stub");
+        root.put("model", model);
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("role", "assistant");
+        message.put("content", content);
+        if (config.reasoningMode() == ReasoningMode.REASONING_CONTENT) {
+            message.put("reasoning_content", String.join(" ", reasoning));
+        }
+        root.putArray("choices").addObject().set("message", message);
+        root.set("usage", usage(tokenize(content).size()));
+
+        // Non-streamed bodies arrive all at once, after the whole generation time
+        sleep(tokenize(content).size() * 1000L / Math.max(1, config.tokensPerSecond()));
+        byte[] bytes = objectMapper.writeValueAsBytes(root);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void writeChunk(OutputStream out, String model, String field, String text) throws IOException {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("id", "stub");
+        chunk.put("model", model);
+        ArrayNode choices = chunk.putArray("choices");
+        choices.addObject().putObject("delta").put(field, text);
+        out.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private ObjectNode usage(int completionTokens) {
+        ObjectNode usage = objectMapper.createObjectNode();
+        usage.put("prompt_tokens", 200);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", 200 + completionTokens);
+        return usage;
+    }
+
+    private String promptText(JsonNode body) {
+        StringBuilder text = new StringBuilder();
+        for (JsonNode message : body.path("messages")) {
+            text.append(message.path("content").asText()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private String answerFor(String prompt) throws IOException {
+        if (prompt.contains("TOPIC TO EXPAND:")) {
+            return expansionScript();
+        }
+        if (prompt.contains("compact outline")) {
+            return outlineScript();
+        }
+        if (prompt.contains("TOPIC:") && prompt.contains("THINKING:")) {
+            return roadmapScript();
+        }
+        if (prompt.contains("markdownContent")) {
+            return contentScript();
+        }
+        return proseScript();
+    }
+
+    private String roadmapScript() throws IOException {
+        StringBuilder script = new StringBuilder("THINKING:\n");
+        script.append("The learner needs fundamentals first, then practice, then a capstone. ")
+              .append("Splitting the plan into ").append(config.topicCount()).append(" topics.\n\n");
+        for (int i = 1; i <= config.topicCount(); i++) {
+            ObjectNode topic = objectMapper.createObjectNode();
+            topic.put("title", "Stub Topic " + i);
+            topic.put("description", "Generated topic number " + i + " for load testing");
+            topic.put("estimatedMinutes", 30 + i * 5);
+            topic.putArray("learningObjectives").add("Understand part " + i).add("Practice part " + i);
+            topic.putArray("prerequisites");
+            topic.putArray("resources");
+            script.append("TOPIC:\n").append(objectMapper.writeValueAsString(topic)).append("\n\n");
+        }
+        return script.toString();
+    }
+
+    private String outlineScript() throws IOException {
+        ObjectNode outline = objectMapper.createObjectNode();
+        outline.put("title", "Stub roadmap");
+        outline.put("description", "Generated outline for load testing");
+        outline.put("estimatedWeeks", 4);
+        outline.put("estimatedHours", 20);
+        outline.putArray("tags").add("stub");
+        ArrayNode topics = outline.putArray("topics");
+        for (int i = 1; i <= config.topicCount(); i++) {
+            ObjectNode topic = topics.addObject();
+            topic.put("title", "Stub Topic " + i);
+            topic.put("description", "Generated topic number " + i + " for load testing");
+            topic.put("estimatedMinutes", 30 + i * 5);
+            ArrayNode prerequisites = topic.putArray("prerequisites");
+            if (i > 1) {
+                prerequisites.add("Stub Topic " + (i - 1));
+            }
+        }
+        return objectMapper.writeValueAsString(outline);
+    }
+
+    private String expansionScript() throws IOException {
+        ObjectNode expansion = objectMapper.createObjectNode();
+        expansion.putArray("learningObjectives").add("Understand the topic").add("Practice the topic")
+                 .add("Explain the topic");
+        expansion.putArray("resources").addObject()
+                 .put("type", "article").put("title", "Stub reading").put("url", "").put("description", "Background");
+        return objectMapper.writeValueAsString(expansion);
+    }
+
+    private String contentScript() throws IOException {
+        ObjectNode content = objectMapper.createObjectNode();
+        content.put("title", "Stub lesson");
+        StringBuilder markdown = new StringBuilder();
+        for (int section = 1; section <= 4; section++) {
+            markdown.append("## Section ").append(section).append("\n\n")
+                    .append("This paragraph explains concept ").append(section)
+                    .append(" with enough words to look like a real lesson body. ".repeat(6))
+                    .append("\n\n");
+        }
+        content.put("markdownContent", markdown.toString());
+        content.putArray("codeExamples").addObject()
+               .put("language", "python").put("code", "print('hello')").put("explanation", "Prints a greeting");
+        ArrayNode quiz = content.putArray("quizQuestions");
+        for (int q = 1; q <= 3; q++) {
+            ObjectNode question = quiz.addObject();
+            question.put("question", "Question " + q + "?");
+            question.putArray("options").add("A").add("B").add("C").add("D");
+            question.put("correctOptionIndex", q % 4);
+            question.put("explanation", "Because.");
+            question.put("difficulty", "easy");
+        }
+        content.putArray("keyPoints").add("Point one").add("Point two").add("Point three")
+               .add("Point four").add("Point five");
+        content.put("readingTimeMinutes", 6);
+        content.put("complexity", 0.4);
+        return objectMapper.writeValueAsString(content);
+    }
+
+    private String proseScript() {
+        return """
+                ## Explanation
+
+                Here is a **step by step** answer generated by the load-test stub. It is long enough \
+                to exercise chunked streaming and the markdown renderer on the client.
+
+                ```python
+                def example(values):
+                    return [v * 2 for v in values]
+                ```
+
+                - First point with `inline code`
+                - Second point that wraps onto a longer line to look realistic
+                - Third point
+
+                > Tip: streaming latency is what this test measures.
+                """;
+    }
+
+    private List<String> reasoningWords() {
+        List<String> words = new ArrayList<>();
+        if (config.reasoningMode() == ReasoningMode.NONE) {
+            return words;
+        }
+        for (int i = 0; i < config.reasoningTokens(); i++) {
+            words.add("step" + i);
+        }
+        return words;
+    }
+
+    /** Split into word-sized chunks, keeping whitespace attached so the text reassembles exactly */
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= text.length(); i++) {
+            if (i == text.length() || (Character.isWhitespace(text.charAt(i - 1)) && !Character.isWhitespace(text.charAt(i)))) {
+                tokens.add(text.substring(start, i));
+                start = i;
+            }
+        }
+        return tokens;
+    }
+
+    private static void pace(long nanos) {
+        if (nanos >= 1_000_000) {
+            sleep(nanos / 1_000_000);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.study.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Thread-safe sample collector that summarises each scenario as
+ * p50/p99 latency, p50/p99 time-to-first-event and events per second.
+ */
+public class LoadReport {
+
+    /**
+     * One timed request.
+     *
+     * @param ttftMillis time to the first SSE event carrying content; -1 for plain requests
+     * @param events     SSE events received; 0 for plain requests
+     */
+    public record Sample(String scenario, long latencyMillis, long ttftMillis, int events, boolean ok) {
+    }
+
+    public record ScenarioStats(String scenario, int requests, int errors,
+                                long p50Millis, long p99Millis, long maxMillis,
+                                Long ttftP50Millis, Long ttftP99Millis,
+                                double eventsPerSecond, double requestsPerSecond) {
+    }
+
+    private final Queue<Sample> samples = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+
+    public void record(Sample sample) {
+        samples.add(sample);
+    }
+
+    public void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public List<ScenarioStats> summarize() {
+        double wallSeconds = Math.max(1, (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos) / 1e9;
+        Map<String, List<Sample>> byScenario = new TreeMap<>();
+        for (Sample sample : samples) {
+            byScenario.computeIfAbsent(sample.scenario(), k -> new ArrayList<>()).add(sample);
+        }
+
+        List<ScenarioStats> stats = new ArrayList<>();
+        byScenario.forEach((scenario, list) -> {
+            long[] latencies = list.stream().mapToLong(Sample::latencyMillis).sorted().toArray();
+            long[] ttfts = list.stream().filter(s -> s.ok() && s.ttftMillis() >= 0)
+                    .mapToLong(Sample::ttftMillis).sorted().toArray();
+            long streamedMillis = list.stream().filter(s -> s.events() > 0).mapToLong(Sample::latencyMillis).sum();
+            long events = list.stream().mapToLong(Sample::events).sum();
+
+            stats.add(new ScenarioStats(
+                    scenario,
+                    list.size(),
+                    (int) list.stream().filter(s -> !s.ok()).count(),
+                    percentile(latencies, 50),
+                    percentile(latencies, 99),
+                    latencies.length > 0 ? latencies[latencies.length - 1] : 0,
+                    ttfts.length > 0 ? percentile(ttfts, 50) : null,
+                    ttfts.length > 0 ? percentile(ttfts, 99) : null,
+                    streamedMillis > 0 ? events * 1000.0 / streamedMillis : 0.0,
+                    list.size() / wallSeconds));
+        });
+        return stats;
+    }
+
+    /** Print a table and write the JSON report */
+    public void publish(Path jsonFile, Map<String, Object> settings) throws IOException {
+        List<ScenarioStats> stats = summarize();
+
+        StringBuilder table = new StringBuilder("\n");
+        table.append(String.format(Locale.ROOT, "%-18s %6s %5s %8s %8s %8s %9s %9s %10s%n",
+                "scenario", "reqs", "errs", "p50 ms", "p99 ms", "max ms", "ttft p50", "ttft p99", "events/s"));
+        for (ScenarioStats s : stats) {
+            table.append(String.format(Locale.ROOT, "%-18s %6d %5d %8d %8d %8d %9s %9s %10.1f%n",
+                    s.scenario(), s.requests(), s.errors(), s.p50Millis(), s.p99Millis(), s.maxMillis(),
+                    s.ttftP50Millis() != null ? s.ttftP50Millis() : "-",
+                    s.ttftP99Millis() != null ? s.ttftP99Millis() : "-",
+                    s.eventsPerSecond()));
+        }
+        System.out.println(table);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings);
+        report.put("scenarios", stats);
+        Files.createDirectories(jsonFile.getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(jsonFile.toFile(), report);
+        System.out.println("Load test report written to " + jsonFile.toAbsolutePath());
+    }
+
+    /** Nearest-rank percentile of a sorted array */
+    static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,308 @@
+package com.study.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.model.User;
+import com.study.repository.UserRepository;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end load test: the real application against an in-memory Mongo
+ * stand-in and the {@link LlmStubServer} in place of the NVIDIA API.
+ *
+ * Each virtual user registers once, then repeats the scripted journey:
+ * two chat turns in one session, a streamed roadmap, streamed content for its
+ * first topic, a streamed doubt about that topic and three gamification polls.
+ *
+ * Run with {@code mvn -Ploadtest test}. Tunables (system properties):
+ * loadtest.users, loadtest.iterations and the loadtest.stub.* settings read by
+ * {@link LlmStubServer.Config}. The report goes to target/loadtest/report.json and
+ * the slowest request traces (from /debug/traces/slowest) to target/loadtest/traces.json.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class StudyPlatformLoadTest {
+
+    /** SSE event types that carry generated output; the first one marks time-to-first-token */
+    private static final Set<String> OUTPUT_EVENTS = Set.of("thinking", "content", "topic", "title", "markdown");
+
+    private static final int USERS = Integer.getInteger("loadtest.users", 8);
+    private static final int ITERATIONS = Integer.getInteger("loadtest.iterations", 3);
+    private static final LlmStubServer.Config STUB_CONFIG = LlmStubServer.Config.fromSystemProperties();
+
+    private static MongoServer mongoServer;
+    private static LlmStubServer stubServer;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @DynamicPropertySource
+    static void backends(DynamicPropertyRegistry registry) throws IOException {
+        mongoServer = new MongoServer(new MemoryBackend());
+        InetSocketAddress mongoAddress = mongoServer.bind();
+        stubServer = new LlmStubServer(STUB_CONFIG);
+
+        registry.add("spring.data.mongodb.uri", () ->
+                "mongodb://" + mongoAddress.getHostString() + ":" + mongoAddress.getPort() + "/loadtest");
+        registry.add("nvidia.api.base-url", stubServer::baseUrl);
+        registry.add("nvidia.api.key", () -> "loadtest-key");
+        // The in-memory Mongo stand-in has no explain()
+        registry.add("mongo.index-check.enabled", () -> "false");
+        // Measure throughput, not the per-user limiter, unless asked for
+        registry.add("rate-limit.enabled", () -> System.getProperty("loadtest.rate-limit", "false"));
+        Path journalDir = Files.createTempDirectory("loadtest-write-behind");
+        registry.add("write-behind.journal-dir", journalDir::toString);
+        registry.add("logging.level.com.study", () -> "INFO");
+        registry.add("logging.level.org.springframework.security", () -> "WARN");
+    }
+
+    @AfterAll
+    static void stopBackends() {
+        if (stubServer != null) stubServer.close();
+        if (mongoServer != null) mongoServer.shutdownNow();
+    }
+
+    @Test
+    void scriptedScenarios() throws Exception {
+        LoadReport report = new LoadReport();
+
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int u = 0; u < USERS; u++) {
+                int userIndex = u;
+                running.add(users.submit(() -> {
+                    runUser(userIndex, report);
+                    return null;
+                }));
+            }
+            for (Future<?> user : running) {
+                user.get();
+            }
+        }
+        report.finish();
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("users", USERS);
+        settings.put("iterations", ITERATIONS);
+        settings.put("stub", STUB_CONFIG);
+        settings.put("stubRequests", stubServer.requestCount());
+        settings.put("stubInjectedErrors", stubServer.injectedErrorCount());
+        report.publish(Path.of("target", "loadtest", "report.json"), settings);
+        publishSlowestTraces(Path.of("target", "loadtest", "traces.json"));
+
+        List<LoadReport.ScenarioStats> stats = report.summarize();
+        assertEquals(Set.of("chat-turn", "roadmap-stream", "content-stream", "doubt-stream", "gamification-poll"),
+                stats.stream().map(LoadReport.ScenarioStats::scenario).collect(java.util.stream.Collectors.toSet()));
+        if (STUB_CONFIG.errorRate() == 0.0) {
+            stats.forEach(s -> assertEquals(0, s.errors(), s.scenario() + " had errors"));
+        }
+    }
+
+    // ── Virtual user journey ──
+
+    private void runUser(int userIndex, LoadReport report) throws Exception {
+        String token = register("load" + userIndex + "_" + UUID.randomUUID().toString().substring(0, 8));
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            StreamResult firstTurn = stream(report, "chat-turn", "/chat/send", token,
+                    Map.of("message", "Explain list comprehensions with an example", "enableThinking", true));
+            String sessionId = firstTurn.firstData("session").path("sessionId").asText(null);
+            stream(report, "chat-turn", "/chat/send", token,
+                    sessionId != null
+                            ? Map.of("message", "Now show a nested one", "sessionId", sessionId)
+                            : Map.of("message", "Now show a nested one"));
+
+            StreamResult roadmap = stream(report, "roadmap-stream", "/roadmaps/stream", token, Map.of(
+                    "title", "Load test roadmap " + i,
+                    "goal", "Learn Python programming for data analysis",
+                    "difficulty", "BEGINNER",
+                    "currentLevel", "BEGINNER",
+                    "estimatedHoursPerWeek", 5,
+                    "preferredLearningStyle", "hands-on"));
+            JsonNode firstTopic = roadmap.firstData("topic");
+            String topicId = firstTopic.path("id").asText(null);
+            String roadmapId = roadmap.firstData("complete").path("roadmapId").asText(null);
+
+            if (topicId != null) {
+                stream(report, "content-stream", "/roadmaps/topics/" + topicId + "/generate-content/stream?contentType=THEORY",
+                        token, Map.of());
+            }
+
+            Map<String, Object> doubt = new HashMap<>();
+            doubt.put("doubt", "Why does my loop variable keep its last value in a closure?");
+            doubt.put("includeUserHistory", true);
+            if (topicId != null) doubt.put("topicId", topicId);
+            if (roadmapId != null) doubt.put("roadmapId", roadmapId);
+            stream(report, "doubt-stream", "/doubts/stream", token, doubt);
+
+            for (int poll = 0; poll < 3; poll++) {
+                get(report, "gamification-poll", "/gamification", token);
+            }
+        }
+    }
+
+    /**
+     * Spans are exported in batches, so poll briefly until the traces show up.
+     * The trace endpoint is admin-only, so the tracer account is promoted first.
+     */
+    private void publishSlowestTraces(Path jsonFile) throws Exception {
+        String username = "tracer_" + UUID.randomUUID().toString().substring(0, 8);
+        String token = register(username);
+        User tracer = userRepository.findByUsername(username).orElseThrow();
+        tracer.getRoles().add(User.Role.ADMIN.name());
+        userRepository.save(tracer);
+        JsonNode traces = com.fasterxml.jackson.databind.node.MissingNode.getInstance();
+        for (int attempt = 0; attempt < 20 && traces.size() == 0; attempt++) {
+            Thread.sleep(500);
+            HttpRequest request = HttpRequest.newBuilder(uri("/debug/traces/slowest?limit=10"))
+                    .header("Authorization", "Bearer " + token)
+                    .GET()
+                    .build();
+            traces = objectMapper.readTree(http.send(request, HttpResponse.BodyHandlers.ofString()).body()).path("data");
+        }
+        java.nio.file.Files.createDirectories(jsonFile.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(jsonFile.toFile(), traces);
+        System.out.println("Slowest traces written to " + jsonFile.toAbsolutePath());
+    }
+
+    private String register(String username) throws Exception {
+        Map<String, Object> body = Map.of(
+                "fullName", "Load Tester",
+                "username", username,
+                "email", username + "@loadtest.local",
+                "password", "password123");
+        HttpResponse<String> response = http.send(jsonPost("/auth/register", null, body),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), "register failed: " + response.body());
+        return objectMapper.readTree(response.body()).path("token").asText();
+    }
+
+    // ── HTTP helpers ──
+
+    /** Collected SSE events of one streamed request */
+    private record StreamResult(List<Map.Entry<String, String>> events) {
+        JsonNode firstData(String type) {
+            return events.stream()
+                    .filter(e -> e.getKey().equals(type))
+                    .findFirst()
+                    .map(e -> readTree(e.getValue()))
+                    .orElse(com.fasterxml.jackson.databind.node.MissingNode.getInstance());
+        }
+
+        private static JsonNode readTree(String json) {
+            try {
+                return new ObjectMapper().readTree(json);
+            } catch (IOException e) {
+                return com.fasterxml.jackson.databind.node.MissingNode.getInstance();
+            }
+        }
+    }
+
+    private StreamResult stream(LoadReport report, String scenario, String path, String token,
+                                Map<String, Object> body) throws Exception {
+        long start = System.nanoTime();
+        long firstOutput = -1;
+        boolean ok;
+        List<Map.Entry<String, String>> events = new ArrayList<>();
+
+        HttpRequest request = jsonPost(path, token, body);
+        HttpResponse<Stream<String>> response = http.send(request, HttpResponse.BodyHandlers.ofLines());
+        ok = response.statusCode() == 200;
+
+        String eventType = "message";
+        StringBuilder data = new StringBuilder();
+        try (Stream<String> lines = response.body()) {
+            for (Iterator<String> it = lines.iterator(); it.hasNext(); ) {
+                String line = it.next();
+                if (line.isEmpty()) {
+                    if (!data.isEmpty()) {
+                        events.add(Map.entry(eventType, data.toString()));
+                        if (firstOutput < 0 && OUTPUT_EVENTS.contains(eventType)) {
+                            firstOutput = System.nanoTime();
+                        }
+                        if (eventType.equals("error")) {
+                            ok = false;
+                        }
+                    }
+                    eventType = "message";
+                    data.setLength(0);
+                } else if (line.startsWith("event:")) {
+                    eventType = line.substring("event:".length()).trim();
+                } else if (line.startsWith("data:")) {
+                    if (!data.isEmpty()) data.append('\n');
+                    data.append(line.substring("data:".length()));
+                }
+            }
+        }
+
+        long end = System.nanoTime();
+        report.record(new LoadReport.Sample(
+                scenario,
+                (end - start) / 1_000_000,
+                firstOutput > 0 ? (firstOutput - start) / 1_000_000 : -1,
+                events.size(),
+                ok && firstOutput > 0));
+        return new StreamResult(events);
+    }
+
+    private void get(LoadReport report, String scenario, String path, String token) throws Exception {
+        long start = System.nanoTime();
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        report.record(new LoadReport.Sample(scenario, (System.nanoTime() - start) / 1_000_000, -1, 0,
+                response.statusCode() == 200));
+    }
+
+    private HttpRequest jsonPost(String path, String token, Map<String, Object> body) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json, text/event-stream")
+                .timeout(Duration.ofMinutes(2))
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder.build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + "/api" + path);
+    }
+}
@@ -0,0 +1,93 @@
+package com.study.repository;
+
+import com.study.config.IndexPlanVerifier;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.core.support.AbstractRepositoryMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every derived query on every repository must be served by an index declared on its
+ * entity (@Indexed / @CompoundIndex) without a collection scan or in-memory sort.
+ * Adding a finder without a matching index fails here, before it reaches a database.
+ */
+class RepositoryIndexCoverageTest {
+
+    private final MongoPersistentEntityIndexResolver indexResolver = new MongoPersistentEntityIndexResolver(mappingContext());
+
+    private static MongoMappingContext mappingContext() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        return mappingContext;
+    }
+
+    @Test
+    void everyDerivedQueryHasASupportingIndex() throws Exception {
+        List<String> unsupported = new ArrayList<>();
+        int checked = 0;
+
+        for (Class<?> repository : repositoryInterfaces()) {
+            Class<?> domainType = AbstractRepositoryMetadata.getMetadata(repository).getDomainType();
+            List<Document> indexes = indexKeys(domainType);
+            for (IndexPlanVerifier.QueryShape shape : IndexPlanVerifier.queryShapes(repository, domainType)) {
+                checked++;
+                if (!IndexPlanVerifier.isSupported(shape, indexes)) {
+                    unsupported.add(shape.describe());
+                }
+            }
+        }
+
+        assertTrue(checked > 0, "no repository queries found");
+        assertTrue(unsupported.isEmpty(), "Queries without a supporting index: " + unsupported);
+    }
+
+    @Test
+    void sortOnANonIndexedFieldIsReported() {
+        List<Document> indexes = indexKeys(com.study.model.ChatSession.class);
+        IndexPlanVerifier.QueryShape shape = IndexPlanVerifier.queryShapes(UnindexedSortRepository.class,
+                com.study.model.ChatSession.class).get(0);
+
+        assertFalse(IndexPlanVerifier.isSupported(shape, indexes));
+    }
+
+    interface UnindexedSortRepository extends Repository<com.study.model.ChatSession, String> {
+        List<com.study.model.ChatSession> findByUserIdOrderByTitleAsc(String userId);
+    }
+
+    private List<Document> indexKeys(Class<?> domainType) {
+        List<Document> indexes = new ArrayList<>();
+        indexes.add(new Document("_id", 1));
+        for (IndexDefinition definition : indexResolver.resolveIndexFor(domainType)) {
+            indexes.add(definition.getIndexKeys());
+        }
+        return indexes;
+    }
+
+    private List<Class<?>> repositoryInterfaces() throws ClassNotFoundException {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(org.springframework.beans.factory.annotation.AnnotatedBeanDefinition definition) {
+                return definition.getMetadata().isInterface() && !definition.getMetadata().hasEnclosingClass();
+            }
+        };
+        scanner.addIncludeFilter(new AssignableTypeFilter(Repository.class));
+
+        List<Class<?>> repositories = new ArrayList<>();
+        for (BeanDefinition candidate : scanner.findCandidateComponents("com.study.repository")) {
+            repositories.add(Class.forName(candidate.getBeanClassName()));
+        }
+        return repositories;
+    }
+}
@@ -0,0 +1,78 @@
+package com.study.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token validation as done by the JWT filter on every authenticated request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilsBenchmark {
+
+    /** Same development secret as application.yml */
+    private static final String SECRET = "bXktc3VwZXItc2VjcmV0LWp3dC1rZXktZm9yLXN0dWR5LXBsYXRmb3JtLWRldmVsb3BtZW50";
+
+    private JwtUtils jwtUtils;
+    private String validToken;
+    private String expiredToken;
+    private String tamperedToken;
+
+    @Setup
+    public void setup() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpiration", 86_400_000);
+
+        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        long now = System.currentTimeMillis();
+        validToken = token(key, new Date(now), new Date(now + 86_400_000));
+        expiredToken = token(key, new Date(now - 2 * 86_400_000L), new Date(now - 86_400_000));
+        String signature = validToken.substring(validToken.lastIndexOf('.') + 1);
+        tamperedToken = validToken.substring(0, validToken.lastIndexOf('.') + 1)
+                + (signature.charAt(0) == 'A' ? 'B' : 'A') + signature.substring(1);
+    }
+
+    @Benchmark
+    public boolean validateValid() {
+        return jwtUtils.validateToken(validToken);
+    }
+
+    @Benchmark
+    public boolean validateExpired() {
+        return jwtUtils.validateToken(expiredToken);
+    }
+
+    /** A bad signature escapes validateToken; the JWT filter catches it, so do the same here */
+    @Benchmark
+    public boolean validateTampered() {
+        try {
+            return jwtUtils.validateToken(tamperedToken);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static String token(SecretKey key, Date issuedAt, Date expiry) {
+        return Jwts.builder()
+                .subject("65f1c0a2b7e4d93a1c2f8e01")
+                .claim("username", "bench_user")
+                .claim("email", "bench@example.com")
+                .claim("roles", java.util.List.of(java.util.Map.of("authority", "ROLE_USER")))
+                .issuedAt(issuedAt)
+                .expiration(expiry)
+                .signWith(key)
+                .compact();
+    }
+}
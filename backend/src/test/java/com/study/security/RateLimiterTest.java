@@ -0,0 +1,114 @@
+package com.study.security;
+
+import com.study.security.RateLimiter.Endpoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Token buckets: burst size, refill, per-user isolation and lock-free concurrent takes.
+ */
+class RateLimiterTest {
+
+    /** Every endpoint gets the same capacity and refill rate */
+    private static RateLimiter limiter(int clusterSize, int capacity, double perMinute) {
+        return new RateLimiter(true, clusterSize, capacity, perMinute, capacity, perMinute,
+                capacity, perMinute, capacity, perMinute);
+    }
+
+    @Test
+    void burstUpToCapacityThenWaitForRefill() throws InterruptedException {
+        // One token per 100 ms
+        RateLimiter limiter = limiter(1, 2, 600);
+
+        assertEquals(0, limiter.tryAcquire("u1", Endpoint.CHAT));
+        assertEquals(0, limiter.tryAcquire("u1", Endpoint.CHAT));
+        long waitNanos = limiter.tryAcquire("u1", Endpoint.CHAT);
+        assertTrue(waitNanos > 0 && waitNanos <= TimeUnit.MILLISECONDS.toNanos(100), "wait " + waitNanos);
+
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 20);
+        assertEquals(0, limiter.tryAcquire("u1", Endpoint.CHAT));
+    }
+
+    @Test
+    void bucketsArePerUserAndEndpoint() {
+        RateLimiter limiter = limiter(1, 1, 0.001);
+
+        assertEquals(0, limiter.tryAcquire("u1", Endpoint.CHAT));
+        assertTrue(limiter.tryAcquire("u1", Endpoint.CHAT) > 0);
+        assertEquals(0, limiter.tryAcquire("u1", Endpoint.DOUBT));
+        assertEquals(0, limiter.tryAcquire("u2", Endpoint.CHAT));
+    }
+
+    @Test
+    void clusterSizeSharesTheCapacity() {
+        RateLimiter limiter = limiter(2, 4, 0.001);
+
+        assertEquals(0, limiter.tryAcquire("u1", Endpoint.ROADMAP));
+        assertEquals(0, limiter.tryAcquire("u1", Endpoint.ROADMAP));
+        assertTrue(limiter.tryAcquire("u1", Endpoint.ROADMAP) > 0);
+    }
+
+    @Test
+    void disabledLimiterNeverWaits() {
+        RateLimiter limiter = new RateLimiter(false, 1, 1, 0.001, 1, 0.001, 1, 0.001, 1, 0.001);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire("u1", Endpoint.CONTENT));
+        }
+    }
+
+    @Test
+    void concurrentTakesNeverExceedTheCapacity() throws Exception {
+        int capacity = 200;
+        // Refill is negligible over the test, so exactly `capacity` takes may succeed
+        RateLimiter limiter = limiter(1, capacity, 0.001);
+        int threads = 16;
+        int attemptsPerThread = 50;
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int granted = 0;
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        if (limiter.tryAcquire("shared", Endpoint.CHAT) == 0) {
+                            granted++;
+                        }
+                    }
+                    return granted;
+                }));
+            }
+            start.countDown();
+
+            int granted = 0;
+            for (Future<Integer> result : results) {
+                granted += result.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(capacity, granted);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void evictionKeepsDrainedBuckets() {
+        RateLimiter limiter = limiter(1, 1, 0.001);
+
+        assertEquals(0, limiter.tryAcquire("u1", Endpoint.CHAT));
+        limiter.evictIdleBuckets();
+        // Evicting it would hand the user a fresh, full bucket
+        assertTrue(limiter.tryAcquire("u1", Endpoint.CHAT) > 0);
+    }
+}
@@ -0,0 +1,47 @@
+package com.study.service;
+
+import com.study.bench.BenchInputs;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Think-tag routing and JSON escaping for one recorded chat answer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatServiceBenchmark {
+
+    private ChatService chatService;
+    private List<String> chunks;
+
+    @Setup
+    public void setup() {
+        chatService = new ChatService(null, null, null, null, null, null, null);
+        chunks = BenchInputs.load(BenchInputs.CHAT_THINK_STREAM);
+    }
+
+    @Benchmark
+    public void processChunkWithThinking(Blackhole bh) {
+        StringBuilder fullContent = new StringBuilder();
+        StringBuilder thinkingContent = new StringBuilder();
+        boolean[] state = {false};
+        for (String chunk : chunks) {
+            bh.consume(chatService.processChunkWithThinking(chunk, fullContent, thinkingContent, state));
+        }
+        bh.consume(fullContent.length());
+    }
+
+    @Benchmark
+    public void escapeJson(Blackhole bh) {
+        for (String chunk : chunks) {
+            bh.consume(chatService.escapeJson(chunk));
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.study.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.study.model.Content;
+import com.study.model.SharedContent;
+import com.study.observability.AIMetrics;
+import com.study.repository.ContentRepository;
+import com.study.repository.SharedContentRepository;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fingerprint normalisation, the quality heuristic and the refresh policy of the shared
+ * content library. Repositories run against an in-memory Mongo; the service is built by hand.
+ */
+class ContentLibraryServiceTest {
+
+    private static final String FINGERPRINT = "fp-1";
+
+    private MongoServer mongoServer;
+    private MongoClient mongoClient;
+    private SharedContentRepository sharedContentRepository;
+    private SimpleMeterRegistry registry;
+    private ContentLibraryService library;
+
+    @BeforeEach
+    void setUp() {
+        mongoServer = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = mongoServer.bind();
+        mongoClient = MongoClients.create("mongodb://" + address.getHostString() + ":" + address.getPort());
+        MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, "library");
+        MongoRepositoryFactory repositories = new MongoRepositoryFactory(mongoTemplate);
+        sharedContentRepository = repositories.getRepository(SharedContentRepository.class);
+
+        registry = new SimpleMeterRegistry();
+        library = new ContentLibraryService(sharedContentRepository,
+                repositories.getRepository(ContentRepository.class), mongoTemplate, new AIMetrics(registry));
+        ReflectionTestUtils.setField(library, "enabled", true);
+        ReflectionTestUtils.setField(library, "libraryVersion", 1);
+        ReflectionTestUtils.setField(library, "maxAgeDays", 90);
+        ReflectionTestUtils.setField(library, "minQuality", 0.6);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoClient.close();
+        mongoServer.shutdownNow();
+    }
+
+    // ── Fingerprint ──
+
+    @Test
+    void goalClassKeepsOnlySubjectKeywords() {
+        assertEquals("python", library.goalClass("Learn Python"));
+        assertEquals("python", library.goalClass("I want to master python"));
+        assertEquals("python", library.goalClass("Become a Python 3 expert from scratch"));
+        assertEquals("c++ data structures", library.goalClass("Understanding data structures in C++"));
+        assertEquals("", library.goalClass("   "));
+        assertEquals("", library.goalClass(null));
+    }
+
+    @Test
+    void goalClassIgnoresWordOrderAndRepeats() {
+        assertEquals(library.goalClass("Data science with Python and SQL"),
+                library.goalClass("SQL, python & data science (python)"));
+    }
+
+    @Test
+    void fingerprintIgnoresPhrasingCaseAndPunctuation() {
+        String fingerprint = library.fingerprint("Learn Python", "Lists & Tuples", "Sequences: the basics.",
+                Content.ContentType.THEORY, "model-a");
+
+        assertEquals(fingerprint, library.fingerprint("I want to master python", "lists, tuples",
+                "SEQUENCES - the basics", Content.ContentType.THEORY, "model-a"));
+        assertEquals(fingerprint, library.fingerprint("Learn Python", "Lists & Tuples", "Sequences: the basics.",
+                null, "model-a"), "no type means theory");
+        assertEquals(64, fingerprint.length());
+    }
+
+    @Test
+    void fingerprintSeparatesTypeModelTopicAndLibraryVersion() {
+        String fingerprint = library.fingerprint("Learn Python", "Lists", "Sequences",
+                Content.ContentType.THEORY, "model-a");
+
+        assertNotEquals(fingerprint, library.fingerprint("Learn Python", "Lists", "Sequences",
+                Content.ContentType.QUIZ, "model-a"));
+        assertNotEquals(fingerprint, library.fingerprint("Learn Python", "Lists", "Sequences",
+                Content.ContentType.THEORY, "model-b"));
+        assertNotEquals(fingerprint, library.fingerprint("Learn Rust", "Lists", "Sequences",
+                Content.ContentType.THEORY, "model-a"));
+        assertNotEquals(fingerprint, library.fingerprint("Learn Python", "Lists", "Mappings",
+                Content.ContentType.THEORY, "model-a"));
+
+        ReflectionTestUtils.setField(library, "libraryVersion", 2);
+        assertNotEquals(fingerprint, library.fingerprint("Learn Python", "Lists", "Sequences",
+                Content.ContentType.THEORY, "model-a"), "a version bump invalidates every fingerprint");
+    }
+
+    // ── Quality ──
+
+    @Test
+    void emptyContentScoresZero() {
+        assertEquals(0.0, library.scoreQuality(new Content()), 1e-9);
+    }
+
+    @Test
+    void completeContentScoresOne() {
+        Content content = content("x".repeat(4000), 3, 5, "Lists");
+
+        assertEquals(1.0, library.scoreQuality(content), 1e-9);
+        // Past the caps nothing more is added
+        assertEquals(1.0, library.scoreQuality(content("x".repeat(9000), 6, 9, "Lists")), 1e-9);
+    }
+
+    @Test
+    void partialContentScoresItsShareOfEachPart() {
+        // Half the markdown (0.25), one quiz (0.25 / 3), no key points, no title
+        assertEquals(0.25 + 0.25 / 3, library.scoreQuality(content("x".repeat(2000), 1, 0, null)), 1e-9);
+        // Key points and title only: 0.15 + 0.1
+        assertEquals(0.25, library.scoreQuality(content(null, 0, 5, "Lists")), 1e-9);
+    }
+
+    @Test
+    void malformedQuizQuestionsDontCount() {
+        Content content = content(null, 0, 0, " ");
+        content.getQuizQuestions().add(Content.QuizQuestion.builder().question(" ").options(List.of("a", "b")).build());
+        content.getQuizQuestions().add(Content.QuizQuestion.builder().question("Why?").options(List.of("a")).build());
+        content.getQuizQuestions().add(Content.QuizQuestion.builder().question("Why?").build());
+
+        assertEquals(0.0, library.scoreQuality(content), 1e-9);
+    }
+
+    // ── Refresh policy ──
+
+    @Test
+    void missingEntryIsAMiss() {
+        assertTrue(library.findReusable(FINGERPRINT).isEmpty());
+        assertEquals(1, lookups("miss"));
+    }
+
+    @Test
+    void freshGoodEntryIsReused() {
+        save(entry(LocalDateTime.now().minusDays(89), 0.6));
+
+        assertTrue(library.findReusable(FINGERPRINT).isPresent());
+        assertEquals(1, lookups("hit"));
+    }
+
+    @Test
+    void entryOlderThanMaxAgeIsAMiss() {
+        save(entry(LocalDateTime.now().minusDays(91), 0.9));
+
+        assertTrue(library.findReusable(FINGERPRINT).isEmpty());
+        assertEquals(1, lookups("miss"));
+    }
+
+    @Test
+    void entryWithoutATimestampIsStale() {
+        save(entry(null, 0.9));
+
+        assertTrue(library.findReusable(FINGERPRINT).isEmpty());
+    }
+
+    @Test
+    void creationTimeStandsInForAMissingGenerationTime() {
+        SharedContent entry = entry(null, 0.9);
+        entry.setCreatedAt(LocalDateTime.now().minusDays(1));
+        save(entry);
+
+        assertTrue(library.findReusable(FINGERPRINT).isPresent());
+    }
+
+    @Test
+    void entryBelowMinQualityIsAMiss() {
+        save(entry(LocalDateTime.now(), 0.59));
+
+        assertTrue(library.findReusable(FINGERPRINT).isEmpty());
+        assertEquals(1, lookups("miss"));
+    }
+
+    @Test
+    void disabledLibraryNeverReuses() {
+        save(entry(LocalDateTime.now(), 0.9));
+        ReflectionTestUtils.setField(library, "enabled", false);
+
+        assertTrue(library.findReusable(FINGERPRINT).isEmpty());
+        assertEquals(0, lookups("hit") + lookups("miss"), "a disabled library is not a cache lookup");
+    }
+
+    private static Content content(String markdown, int quizzes, int keyPoints, String title) {
+        List<Content.QuizQuestion> questions = new ArrayList<>();
+        for (int i = 0; i < quizzes; i++) {
+            questions.add(Content.QuizQuestion.builder()
+                    .question("Question " + i)
+                    .options(List.of("a", "b", "c"))
+                    .build());
+        }
+        List<String> points = new ArrayList<>();
+        for (int i = 0; i < keyPoints; i++) {
+            points.add("Point " + i);
+        }
+        return Content.builder()
+                .title(title)
+                .markdownContent(markdown)
+                .quizQuestions(questions)
+                .keyPoints(points)
+                .build();
+    }
+
+    private static SharedContent entry(LocalDateTime generatedAt, double quality) {
+        return SharedContent.builder()
+                .fingerprint(FINGERPRINT)
+                .type(Content.ContentType.THEORY)
+                .title("Lists")
+                .qualityScore(quality)
+                .generatedAt(generatedAt)
+                .build();
+    }
+
+    private void save(SharedContent entry) {
+        sharedContentRepository.save(entry);
+    }
+
+    private long lookups(String result) {
+        var counter = registry.find("cache.lookups").tag("cache", "content-library").tag("result", result).counter();
+        return counter != null ? (long) counter.count() : 0;
+    }
+}
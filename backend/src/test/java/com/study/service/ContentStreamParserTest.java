@@ -0,0 +1,150 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.service.ContentStreamParser.Event;
+import com.study.service.ContentStreamParser.EventType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The incremental CONTENT_GENERATION parser must produce the same events however the
+ * model output is split into chunks, so most cases are fed both whole and one
+ * character at a time.
+ */
+class ContentStreamParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String DOCUMENT = """
+            {
+              "title": "Closures in \\"JavaScript\\"",
+              "markdownContent": "# Intro\\nA closure captures {braces} and \\"quotes\\".\\n\\n## Details\\nCaf\\u00e9 \\u2013 done.\\n",
+              "quizQuestions": [
+                {"question": "What is {x}?", "options": ["a", "b [c]"], "meta": {"difficulty": {"level": 1}}},
+                {"question": "Second \\"one\\"", "options": []}
+              ],
+              "codeExamples": [
+                {"language": "js", "code": "function f() { return () => 1; }"}
+              ],
+              "estimatedReadingMinutes": 5
+            }""";
+
+    @Test
+    void eventsDoNotDependOnChunking() {
+        List<Event> whole = feedInChunks(DOCUMENT, DOCUMENT.length());
+        for (int size : new int[] {1, 2, 3, 7, 64}) {
+            assertEquals(describe(whole), describe(feedInChunks(DOCUMENT, size)), "chunk size " + size);
+        }
+    }
+
+    @Test
+    void titleIsDecodedAcrossSplitEscapes() {
+        List<Event> events = feedInChunks(DOCUMENT, 1);
+
+        List<String> titles = texts(events, EventType.TITLE);
+        assertEquals(List.of("Closures in \"JavaScript\""), titles);
+    }
+
+    @Test
+    void markdownIsDecodedAndSplitAtHeadings() {
+        List<String> sections = texts(feedInChunks(DOCUMENT, 1), EventType.MARKDOWN);
+
+        assertEquals(List.of(
+                "# Intro\nA closure captures {braces} and \"quotes\".\n\n",
+                "## Details\nCafé – done.\n"), sections);
+    }
+
+    @Test
+    void unicodeEscapeSplitAcrossChunksIsDecoded() {
+        ContentStreamParser parser = new ContentStreamParser(objectMapper);
+        List<Event> events = new ArrayList<>();
+        events.addAll(parser.feed("{\"title\": \"na\\u00"));
+        events.addAll(parser.feed("efve\\u0021\", \"markdownContent\": \"x\"}"));
+
+        assertEquals(List.of("naïve!"), texts(events, EventType.TITLE));
+    }
+
+    @Test
+    void nestedArrayElementsAreEmittedWhole() {
+        List<Event> events = feedInChunks(DOCUMENT, 1);
+
+        List<JsonNode> quiz = nodes(events, EventType.QUIZ_QUESTION);
+        assertEquals(2, quiz.size());
+        assertEquals("What is {x}?", quiz.get(0).path("question").asText());
+        assertEquals("b [c]", quiz.get(0).path("options").path(1).asText());
+        assertEquals(1, quiz.get(0).path("meta").path("difficulty").path("level").asInt());
+        assertEquals("Second \"one\"", quiz.get(1).path("question").asText());
+
+        List<JsonNode> code = nodes(events, EventType.CODE_EXAMPLE);
+        assertEquals(1, code.size());
+        assertEquals("function f() { return () => 1; }", code.get(0).path("code").asText());
+    }
+
+    @Test
+    void thinkBlockAndFenceBeforeTheDocumentAreSkipped() {
+        String output = "<think>maybe {not json}</think>\n```json\n" + DOCUMENT + "\n```";
+        assertEquals(describe(feedInChunks(DOCUMENT, 5)), describe(feedInChunks(output, 5)));
+    }
+
+    @Test
+    void truncatedMarkdownIsFlushedOnFinish() {
+        String truncated = "{\"title\": \"T\", \"markdownContent\": \"# One\\npartial line";
+        ContentStreamParser parser = new ContentStreamParser(objectMapper);
+        List<Event> events = new ArrayList<>(parser.feed(truncated));
+        assertTrue(texts(events, EventType.MARKDOWN).isEmpty());
+
+        events.addAll(parser.finish());
+        assertEquals(List.of("# One\npartial line"), texts(events, EventType.MARKDOWN));
+        assertEquals(truncated, parser.rawContent());
+    }
+
+    @Test
+    void truncatedArrayElementIsNotEmitted() {
+        String truncated = "{\"markdownContent\": \"x\", \"quizQuestions\": [{\"question\": \"done\"}, {\"question\": \"cut";
+        ContentStreamParser parser = new ContentStreamParser(objectMapper);
+        List<Event> events = new ArrayList<>(parser.feed(truncated));
+        events.addAll(parser.finish());
+
+        List<JsonNode> quiz = nodes(events, EventType.QUIZ_QUESTION);
+        assertEquals(1, quiz.size());
+        assertEquals("done", quiz.get(0).path("question").asText());
+    }
+
+    @Test
+    void textAfterTheClosingBraceIsIgnored() {
+        ContentStreamParser parser = new ContentStreamParser(objectMapper);
+        List<Event> events = new ArrayList<>(parser.feed("{\"title\": \"A\"}"));
+        events.addAll(parser.feed(" {\"title\": \"B\"}"));
+
+        assertEquals(List.of("A"), texts(events, EventType.TITLE));
+    }
+
+    private List<Event> feedInChunks(String text, int size) {
+        ContentStreamParser parser = new ContentStreamParser(objectMapper);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += size) {
+            events.addAll(parser.feed(text.substring(i, Math.min(text.length(), i + size))));
+        }
+        events.addAll(parser.finish());
+        return events;
+    }
+
+    private static List<String> texts(List<Event> events, EventType type) {
+        return events.stream().filter(e -> e.type() == type).map(Event::text).toList();
+    }
+
+    private static List<JsonNode> nodes(List<Event> events, EventType type) {
+        return events.stream().filter(e -> e.type() == type).map(Event::node).toList();
+    }
+
+    private static List<String> describe(List<Event> events) {
+        return events.stream()
+                .map(e -> e.type() + ":" + (e.text() != null ? e.text() : e.node().toString()))
+                .toList();
+    }
+}
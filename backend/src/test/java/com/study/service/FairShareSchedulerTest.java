@@ -0,0 +1,128 @@
+package com.study.service;
+
+import com.study.exception.ServiceOverloadedException;
+import com.study.model.TokenUsage.Feature;
+import com.study.observability.AIMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ordering and cancellation in the upstream call queue. A single slot is held by a
+ * stream that only completes when the test says so, so queued calls are released one by
+ * one in the scheduler's order.
+ */
+class FairShareSchedulerTest {
+
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    private FairShareScheduler scheduler(long maxWaitMillis) {
+        return new FairShareScheduler(new AIMetrics(new SimpleMeterRegistry()), 1, maxWaitMillis, 7, 2, 0.5);
+    }
+
+    /** Occupy the only slot until the returned sink completes */
+    private Sinks.Empty<Void> holdSlot(FairShareScheduler scheduler) {
+        Sinks.Empty<Void> hold = Sinks.empty();
+        scheduler.stream("holder", Feature.ROADMAP, () -> hold.asMono().flux()).subscribe();
+        assertEquals(1, scheduler.running());
+        return hold;
+    }
+
+    private Disposable enqueue(FairShareScheduler scheduler, String userId, Feature feature, String name) {
+        return scheduler.stream(userId, feature, () -> {
+            started.add(name);
+            return Flux.just(name);
+        }).subscribe();
+    }
+
+    @Test
+    void queuedCallsAreReleasedByWeightedFinishTime() {
+        FairShareScheduler scheduler = scheduler(60_000);
+        Sinks.Empty<Void> hold = holdSlot(scheduler);
+
+        // One user floods the queue with generation calls before two others arrive
+        enqueue(scheduler, "a", Feature.ROADMAP, "a1");
+        enqueue(scheduler, "a", Feature.ROADMAP, "a2");
+        enqueue(scheduler, "a", Feature.ROADMAP, "a3");
+        enqueue(scheduler, "c", Feature.PREFETCH, "c-prefetch");
+        enqueue(scheduler, "b", Feature.CHAT, "b-chat");
+        assertEquals(5, scheduler.queued());
+        assertTrue(started.isEmpty());
+
+        hold.tryEmitEmpty();
+
+        // Finish tags: chat 0.5 (weight 2), a1 1, a2 2, prefetch 2 (weight 0.5, later seq), a3 3
+        assertEquals(List.of("b-chat", "a1", "a2", "c-prefetch", "a3"), started);
+        assertEquals(0, scheduler.running());
+        assertEquals(0, scheduler.queued());
+    }
+
+    @Test
+    void newUserIsServedBeforeABacklog() {
+        FairShareScheduler scheduler = scheduler(60_000);
+        Sinks.Empty<Void> hold = holdSlot(scheduler);
+
+        for (int i = 1; i <= 4; i++) {
+            enqueue(scheduler, "a", Feature.CONTENT, "a" + i);
+        }
+        enqueue(scheduler, "b", Feature.CONTENT, "b1");
+        hold.tryEmitEmpty();
+
+        assertEquals(List.of("a1", "b1", "a2", "a3", "a4"), started);
+    }
+
+    @Test
+    void cancelledWhileQueuedNeverRunsAndFreesNoExtraSlot() {
+        FairShareScheduler scheduler = scheduler(60_000);
+        Sinks.Empty<Void> hold = holdSlot(scheduler);
+
+        Disposable cancelled = enqueue(scheduler, "a", Feature.CHAT, "cancelled");
+        enqueue(scheduler, "b", Feature.ROADMAP, "kept");
+        cancelled.dispose();
+        assertTrue(started.isEmpty());
+
+        hold.tryEmitEmpty();
+
+        assertEquals(List.of("kept"), started);
+        assertEquals(0, scheduler.running());
+        assertEquals(0, scheduler.queued());
+    }
+
+    @Test
+    void cancelledRunningStreamReleasesItsSlot() {
+        FairShareScheduler scheduler = scheduler(60_000);
+        Disposable running = scheduler.stream("a", Feature.CHAT, () -> Flux.<String>never()).subscribe();
+        enqueue(scheduler, "b", Feature.CHAT, "next");
+        assertTrue(started.isEmpty());
+
+        running.dispose();
+
+        assertEquals(List.of("next"), started);
+        assertEquals(0, scheduler.running());
+    }
+
+    @Test
+    void timedOutWaitIsAnOverloadWithRetryAfter() {
+        FairShareScheduler scheduler = scheduler(50);
+        Sinks.Empty<Void> hold = holdSlot(scheduler);
+
+        ServiceOverloadedException blocking = assertThrows(ServiceOverloadedException.class,
+                () -> scheduler.call("a", Feature.ROADMAP, () -> "never"));
+        assertEquals(7, blocking.getRetryAfterSeconds());
+
+        assertThrows(ServiceOverloadedException.class,
+                () -> scheduler.stream("a", Feature.CHAT, () -> Flux.just("never")).blockLast());
+
+        // Abandoned waits don't hold on to the slot they never got
+        hold.tryEmitEmpty();
+        assertEquals(0, scheduler.running());
+        assertEquals("ran", scheduler.call("a", Feature.ROADMAP, () -> "ran"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.study.service;
+
+import com.study.model.GamificationData;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Level and badge computation for a mid-game user (repository counts precomputed).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GamificationServiceBenchmark {
+
+    private static final int[] XP_SAMPLES = {0, 40, 149, 150, 620, 1_480, 3_200, 7_750, 15_000, 60_000};
+
+    private GamificationService gamificationService;
+    private GamificationData data;
+    private GamificationService.BadgeCounts counts;
+
+    @Setup
+    public void setup() {
+        gamificationService = new GamificationService(null, null, null, null, null);
+        data = GamificationData.builder()
+                .userId("bench-user")
+                .xp(1_480)
+                .streak(9)
+                .longestStreak(12)
+                .badgesEarned(new java.util.HashSet<>(Set.of("first_roadmap", "topic_starter", "streak_week")))
+                .build();
+        counts = new GamificationService.BadgeCounts(4, 2, 1, 17, 23);
+    }
+
+    @Benchmark
+    public void computeLevel(Blackhole bh) {
+        for (int xp : XP_SAMPLES) {
+            bh.consume(GamificationService.computeLevel(xp));
+        }
+    }
+
+    @Benchmark
+    public void buildBadges(Blackhole bh) {
+        bh.consume(gamificationService.buildBadges(data, counts));
+    }
+}
@@ -0,0 +1,47 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.bench.BenchInputs;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-chunk SSE payload decoding and JSON extraction from full responses.
+ * One invocation processes the whole recorded stream / response set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NvidiaAIServiceBenchmark {
+
+    private NvidiaAIService aiService;
+    private List<String> sseChunks;
+    private List<String> responses;
+
+    @Setup
+    public void setup() {
+        aiService = new NvidiaAIService(null, new ObjectMapper(), null, null, null, null, null);
+        sseChunks = BenchInputs.load(BenchInputs.NVIDIA_SSE_CHUNKS);
+        responses = BenchInputs.load(BenchInputs.AI_RESPONSES);
+    }
+
+    @Benchmark
+    public void extractContentFromChunk(Blackhole bh) {
+        for (String chunk : sseChunks) {
+            bh.consume(aiService.extractContentFromChunk(chunk));
+        }
+    }
+
+    @Benchmark
+    public void extractJsonFromResponse(Blackhole bh) {
+        for (String response : responses) {
+            bh.consume(aiService.extractJsonFromResponse(response));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.bench.BenchInputs;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyword extraction and embedding similarity over the recorded doubts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RAGServiceBenchmark {
+
+    private RAGService ragService;
+    private List<String> doubts;
+    private List<List<Double>> embeddings;
+
+    @Setup
+    public void setup() {
+        ragService = new RAGService(null, new ObjectMapper(), null);
+        doubts = BenchInputs.load(BenchInputs.DOUBTS);
+        embeddings = doubts.stream().map(ragService::createEmbedding).toList();
+    }
+
+    @Benchmark
+    public void extractKeywords(Blackhole bh) {
+        for (String doubt : doubts) {
+            bh.consume(ragService.extractKeywords(doubt));
+        }
+    }
+
+    /** All pairs, as a similarity search over the recent window would do */
+    @Benchmark
+    public void calculateSimilarity(Blackhole bh) {
+        for (List<Double> a : embeddings) {
+            for (List<Double> b : embeddings) {
+                bh.consume(ragService.calculateSimilarity(a, b));
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.study.service;
+
+import com.study.model.Content;
+import com.study.model.Topic;
+import com.study.model.UserInteraction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Offline evaluation of the RAG context builder.
+ *
+ * Each fixture carries "gold" terms that a good answer depends on. Coverage of
+ * those terms in the rendered context is the relevance proxy; prompt size is the
+ * estimated token count. The baseline is the fixed-slice context the doubt
+ * solver used before budgeting (all topic materials plus maxItems=5 slices).
+ */
+class RagContextBuilderTest {
+
+    private static final int BUDGET = 1500;
+
+    private record Fixture(String name, String query, Topic topic, List<Content> contents,
+                           List<UserInteraction> interactions, Set<String> gold) {
+    }
+
+    @Test
+    void packedContextStaysInBudgetAndBeatsBaselinePerFixture() {
+        for (Fixture fixture : fixtures()) {
+            RagContextBuilder.Result result = build(fixture, BUDGET);
+            String baseline = baselineContext(fixture);
+            int baselineTokens = RagContextBuilder.estimateTokens(baseline);
+
+            assertTrue(result.tokens() <= BUDGET, fixture.name() + " exceeded budget: " + result.tokens());
+            assertTrue(RagContextBuilder.estimateTokens(result.context()) <= BUDGET,
+                    fixture.name() + " rendered context exceeded budget");
+
+            double recall = coverage(result.context(), fixture.gold());
+            assertEquals(1.0, recall, fixture.name() + " missed gold passages:\n" + result.context());
+            assertTrue(recall >= coverage(baseline, fixture.gold()), fixture.name() + " recalled less than baseline");
+            assertTrue(result.tokens() <= baselineTokens,
+                    fixture.name() + " used " + result.tokens() + " tokens, baseline " + baselineTokens);
+        }
+    }
+
+    @Test
+    void fullAnswerBeyondTheBaselineCutIsRecalled() {
+        Fixture fixture = fixtures().stream().filter(f -> f.name().equals("python-gil")).findFirst().orElseThrow();
+
+        assertTrue(coverage(baselineContext(fixture), fixture.gold()) < 1.0);
+        assertEquals(1.0, coverage(build(fixture, BUDGET).context(), fixture.gold()));
+    }
+
+    @Test
+    void duplicatedMaterialsCostTheBuilderNoTokens() {
+        Fixture fixture = fixtures().stream().filter(f -> f.name().equals("sql-left-join")).findFirst().orElseThrow();
+
+        // Five copies of "Joins" are packed once; the baseline renders every one
+        assertTrue(build(fixture, BUDGET).tokens() * 2 < RagContextBuilder.estimateTokens(baselineContext(fixture)));
+    }
+
+    @Test
+    void relevantPastAnswerIsPreferredUnderTightBudget() {
+        List<UserInteraction> interactions = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            interactions.add(activity("Opened lesson " + i + " on CSS grid layout"));
+        }
+        interactions.add(answered("How do closures capture variables in JavaScript?",
+                "A closure keeps a reference to the variables of its enclosing scope. "
+                        + "The captured variables stay alive as long as the closure does."));
+
+        RagContextBuilder.Result result = new RagContextBuilder("why does my closure capture the loop variable", 80)
+                .interactions(interactions)
+                .build();
+
+        assertTrue(result.tokens() <= 80);
+        assertTrue(result.context().contains("Similar Previous Questions:"), result.context());
+        assertTrue(result.context().contains("enclosing scope"));
+    }
+
+    @Test
+    void nearDuplicateSnippetsAreDropped() {
+        Content first = content("Closures", List.of("functions capture enclosing scope", "lexical environment"));
+        Content copy = content("Closures", List.of("functions capture enclosing scope", "lexical environment"));
+        Content other = content("Event loop", List.of("call stack", "task queue"));
+
+        RagContextBuilder.Result result = new RagContextBuilder("closure scope", BUDGET)
+                .contents(List.of(first, copy, other))
+                .build();
+
+        assertEquals(1, result.duplicates());
+        assertEquals(1, countOccurrences(result.context(), "- Closures"));
+        assertTrue(result.context().contains("Event loop"));
+    }
+
+    @Test
+    void longAnswersAreCutAtSentenceBoundary() {
+        String answer = "First sentence about recursion. ".repeat(40);
+        RagContextBuilder.Result result = new RagContextBuilder("recursion", BUDGET)
+                .interactions(List.of(answered("What is recursion?", answer)))
+                .build();
+
+        String rendered = result.context();
+        int answerStart = rendered.indexOf("A: ") + 3;
+        String renderedAnswer = rendered.substring(answerStart, rendered.indexOf('\n', answerStart));
+        assertTrue(renderedAnswer.length() <= RagContextBuilder.MAX_ANSWER_CHARS);
+        assertTrue(renderedAnswer.endsWith("."));
+    }
+
+    @Test
+    void emptyInputsProduceEmptyContext() {
+        RagContextBuilder.Result result = new RagContextBuilder("anything", BUDGET)
+                .topic(null)
+                .contents(List.of())
+                .interactions(List.of())
+                .build();
+
+        assertEquals("", result.context());
+        assertEquals(0, result.tokens());
+    }
+
+    // ── Evaluation harness ──
+
+    private RagContextBuilder.Result build(Fixture fixture, int budget) {
+        return new RagContextBuilder(fixture.query(), budget)
+                .topic(fixture.topic())
+                .contents(fixture.contents())
+                .interactions(fixture.interactions())
+                .build();
+    }
+
+    /** Fraction of gold terms present in the context */
+    private double coverage(String context, Set<String> gold) {
+        String lower = context.toLowerCase(Locale.ROOT);
+        long hits = gold.stream().filter(lower::contains).count();
+        return (double) hits / gold.size();
+    }
+
+    /** The pre-budget doubt context: every material, then fixed slices with maxItems = 5 */
+    private String baselineContext(Fixture fixture) {
+        StringBuilder context = new StringBuilder();
+        context.append("Current Learning Materials:\n");
+        for (Content content : fixture.contents()) {
+            context.append("- ").append(content.getTitle()).append(" (").append(content.getType()).append(")\n");
+            context.append("  Key concepts: ")
+                   .append(String.join(", ", content.getKeyPoints().subList(0, Math.min(3, content.getKeyPoints().size()))))
+                   .append("\n");
+        }
+        context.append("\nUser's Recent Learning Context:\n");
+        for (UserInteraction interaction : fixture.interactions().stream().limit(2).toList()) {
+            context.append("- ").append(interaction.getType()).append(": ").append(interaction.getContent()).append("\n");
+        }
+        Topic topic = fixture.topic();
+        context.append("\nCurrent Topic: ").append(topic.getTitle()).append("\n")
+               .append("Description: ").append(topic.getDescription()).append("\n")
+               .append("Learning Objectives: ").append(String.join(", ", topic.getLearningObjectives())).append("\n\n");
+        context.append("Relevant Learning Materials:\n");
+        for (Content content : fixture.contents().stream().limit(2).toList()) {
+            context.append("- ").append(content.getTitle()).append(" (").append(content.getType()).append(")\n");
+            context.append("  Key points: ")
+                   .append(String.join(", ", content.getKeyPoints().subList(0, Math.min(3, content.getKeyPoints().size()))))
+                   .append("\n");
+        }
+        Set<String> queryTerms = RagContextBuilder.terms(fixture.query());
+        fixture.interactions().stream()
+                .filter(i -> RagContextBuilder.terms(i.getContent()).stream().anyMatch(queryTerms::contains))
+                .limit(1)
+                .forEach(i -> {
+                    context.append("\nSimilar Previous Questions:\nQ: ").append(i.getContent()).append("\n");
+                    if (i.getAiResponse() != null) {
+                        context.append("A: ").append(i.getAiResponse(), 0, Math.min(200, i.getAiResponse().length()))
+                               .append("...\n");
+                    }
+                });
+        return context.toString();
+    }
+
+    private List<Fixture> fixtures() {
+        List<Fixture> fixtures = new ArrayList<>();
+
+        // Many materials, the relevant one is last and its useful key point is fourth
+        List<Content> reactContents = new ArrayList<>();
+        for (String title : List.of("JSX basics", "Props", "Component styling", "Routing", "Forms", "Testing")) {
+            reactContents.add(content(title, List.of(title + " overview", "syntax rules", "common patterns",
+                    "best practices for " + title.toLowerCase(Locale.ROOT))));
+        }
+        reactContents.add(content("Hooks", List.of("hooks overview", "rules of hooks", "custom hooks",
+                "useEffect dependency array controls re-runs", "cleanup functions")));
+        fixtures.add(new Fixture("react-useeffect",
+                "Why does my useEffect run on every render even with a dependency array?",
+                topic("React Hooks", "State and side effects in function components",
+                        List.of("Use useState", "Use useEffect correctly")),
+                reactContents,
+                List.of(activity("Completed Routing quiz"), activity("Viewed Forms lesson"),
+                        answered("My useEffect keeps looping, what is wrong with the dependency array?",
+                                "An object or function created during render gets a new identity each time, "
+                                        + "so the dependency array sees a change on every render. Memoize it with "
+                                        + "useMemo or useCallback, or move it inside the effect.")),
+                Set.of("dependency array", "usememo", "usecallback", "identity")));
+
+        // Past answer is long; the key fact sits beyond the baseline's 200-char cut
+        fixtures.add(new Fixture("python-gil",
+                "Does the GIL stop threads from running in parallel in Python?",
+                topic("Python Concurrency", "Threads, processes and asyncio",
+                        List.of("Choose threads or processes", "Understand the GIL")),
+                List.of(content("Threading", List.of("Thread class", "locks", "daemon threads")),
+                        content("Multiprocessing", List.of("Process pools", "pickling", "shared memory"))),
+                List.of(answered("Why are my Python threads not faster for CPU work? Is it the GIL?",
+                        "The global interpreter lock allows only one thread to execute Python bytecode at a time. "
+                                + "That serialises CPU bound work across threads in CPython, so adding threads does "
+                                + "not add throughput for pure Python loops. I/O bound threads still overlap because "
+                                + "the lock is released while waiting. For CPU bound work use multiprocessing or "
+                                + "native extensions that release the GIL.")),
+                Set.of("one thread", "multiprocessing", "released", "cpu bound")));
+
+        // Duplicated materials pad the baseline without adding information
+        List<Content> sqlContents = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sqlContents.add(content("Joins", List.of("inner join keeps matching rows",
+                    "left join keeps all rows from the left table", "join conditions")));
+        }
+        sqlContents.add(content("Indexes", List.of("b-tree indexes", "covering index", "composite index order")));
+        fixtures.add(new Fixture("sql-left-join",
+                "When should I use a left join instead of an inner join?",
+                topic("SQL Joins", "Combining rows from multiple tables", List.of("Write inner and left joins")),
+                sqlContents,
+                List.of(activity("Started SQL Joins"), activity("Read about indexes")),
+                Set.of("left join keeps all rows", "inner join keeps matching rows", "sql joins")));
+
+        return fixtures;
+    }
+
+    private static Topic topic(String title, String description, List<String> objectives) {
+        return Topic.builder().title(title).description(description).learningObjectives(objectives).build();
+    }
+
+    private static Content content(String title, List<String> keyPoints) {
+        return Content.builder()
+                .title(title)
+                .type(Content.ContentType.THEORY)
+                .keyPoints(new ArrayList<>(keyPoints))
+                .build();
+    }
+
+    private static UserInteraction answered(String question, String answer) {
+        return UserInteraction.builder()
+                .type(UserInteraction.InteractionType.DOUBT)
+                .content(question)
+                .aiResponse(answer)
+                .resolved(true)
+                .build();
+    }
+
+    private static UserInteraction activity(String content) {
+        return UserInteraction.builder()
+                .type(UserInteraction.InteractionType.GENERAL_QUESTION)
+                .content(content)
+                .build();
+    }
+
+    private static int countOccurrences(String text, String needle) {
+        int count = 0;
+        for (int i = text.indexOf(needle); i != -1; i = text.indexOf(needle, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,36 @@
+package com.study.service;
+
+import com.study.bench.BenchInputs;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * THINKING/TOPIC parsing of one recorded roadmap stream, end to end.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoadmapStreamParserBenchmark {
+
+    private List<String> chunks;
+
+    @Setup
+    public void setup() {
+        chunks = BenchInputs.load(BenchInputs.ROADMAP_STREAM);
+    }
+
+    @Benchmark
+    public void parseStream(Blackhole bh) {
+        RoadmapStreamParser parser = new RoadmapStreamParser();
+        for (String chunk : chunks) {
+            bh.consume(parser.feed(chunk));
+        }
+        bh.consume(parser.finish());
+    }
+}
@@ -0,0 +1,278 @@
+package com.study.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.study.dto.RoadmapRequest;
+import com.study.model.Roadmap;
+import com.study.model.RoadmapTemplate;
+import com.study.model.Topic;
+import com.study.observability.AIMetrics;
+import com.study.repository.RoadmapRepository;
+import com.study.repository.RoadmapTemplateRepository;
+import com.study.repository.TopicRepository;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fingerprint bucketing, the neutral title and description, the quality score with its
+ * regenerate penalty, and what an author's roadmap shares when it is published as a
+ * template. Repositories run against an in-memory Mongo; services are built by hand.
+ */
+class RoadmapTemplateServiceTest {
+
+    private static final String MODEL = "model-a";
+
+    private MongoServer mongoServer;
+    private MongoClient mongoClient;
+    private RoadmapTemplateRepository templateRepository;
+    private RoadmapTemplateService templates;
+
+    @BeforeEach
+    void setUp() {
+        mongoServer = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = mongoServer.bind();
+        mongoClient = MongoClients.create("mongodb://" + address.getHostString() + ":" + address.getPort());
+        MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, "templates");
+        MongoRepositoryFactory repositories = new MongoRepositoryFactory(mongoTemplate);
+        templateRepository = repositories.getRepository(RoadmapTemplateRepository.class);
+
+        AIMetrics metrics = new AIMetrics(new SimpleMeterRegistry());
+        templates = new RoadmapTemplateService(templateRepository,
+                repositories.getRepository(RoadmapRepository.class),
+                repositories.getRepository(TopicRepository.class),
+                new ContentLibraryService(null, null, mongoTemplate, metrics),
+                mongoTemplate, metrics);
+        ReflectionTestUtils.setField(templates, "enabled", true);
+        ReflectionTestUtils.setField(templates, "templateVersion", 1);
+        ReflectionTestUtils.setField(templates, "maxAgeDays", 30);
+        ReflectionTestUtils.setField(templates, "minQuality", 0.6);
+        ReflectionTestUtils.setField(templates, "regeneratePenalty", 0.15);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoClient.close();
+        mongoServer.shutdownNow();
+    }
+
+    // ── Fingerprint ──
+
+    @Test
+    void hoursBucketBoundaries() {
+        assertEquals("0-3", RoadmapTemplateService.hoursBucket(0));
+        assertEquals("0-3", RoadmapTemplateService.hoursBucket(3));
+        assertEquals("4-6", RoadmapTemplateService.hoursBucket(4));
+        assertEquals("4-6", RoadmapTemplateService.hoursBucket(6));
+        assertEquals("7-10", RoadmapTemplateService.hoursBucket(7));
+        assertEquals("7-10", RoadmapTemplateService.hoursBucket(10));
+        assertEquals("11-20", RoadmapTemplateService.hoursBucket(11));
+        assertEquals("11-20", RoadmapTemplateService.hoursBucket(20));
+        assertEquals("21+", RoadmapTemplateService.hoursBucket(21));
+        assertEquals("21+", RoadmapTemplateService.hoursBucket(80));
+    }
+
+    @Test
+    void fingerprintMatchesRephrasedRequestsInTheSameBucket() {
+        String fingerprint = templates.fingerprint(request("Learn React", "Beginner", "Easy", 4, "Visual"), MODEL);
+
+        assertEquals(fingerprint, templates.fingerprint(
+                request("I want to master react", "beginner", "EASY", 6, "visual"), MODEL));
+        assertEquals(64, fingerprint.length());
+    }
+
+    @Test
+    void fingerprintSeparatesBucketLevelStyleModelAndVersion() {
+        RoadmapRequest request = request("Learn React", "Beginner", "Easy", 6, "Visual");
+        String fingerprint = templates.fingerprint(request, MODEL);
+
+        assertNotEquals(fingerprint, templates.fingerprint(request("Learn React", "Beginner", "Easy", 7, "Visual"), MODEL));
+        assertNotEquals(fingerprint, templates.fingerprint(request("Learn React", "Advanced", "Easy", 6, "Visual"), MODEL));
+        assertNotEquals(fingerprint, templates.fingerprint(request("Learn React", "Beginner", "Hard", 6, "Visual"), MODEL));
+        assertNotEquals(fingerprint, templates.fingerprint(request("Learn React", "Beginner", "Easy", 6, "Reading"), MODEL));
+        assertNotEquals(fingerprint, templates.fingerprint(request("Learn Vue", "Beginner", "Easy", 6, "Visual"), MODEL));
+        assertNotEquals(fingerprint, templates.fingerprint(request, "model-b"));
+
+        ReflectionTestUtils.setField(templates, "templateVersion", 2);
+        assertNotEquals(fingerprint, templates.fingerprint(request, MODEL), "a version bump invalidates every fingerprint");
+    }
+
+    // ── Neutral title and description ──
+
+    @Test
+    void neutralTitleNamesTheGoalClass() {
+        assertEquals("Python roadmap", RoadmapTemplateService.neutralTitle(template("python", null, null, null)));
+        assertEquals("Data science roadmap",
+                RoadmapTemplateService.neutralTitle(template("data science", null, null, null)));
+        assertEquals("Learning roadmap", RoadmapTemplateService.neutralTitle(template(" ", null, null, null)));
+        assertEquals("Learning roadmap", RoadmapTemplateService.neutralTitle(template(null, null, null, null)));
+    }
+
+    @Test
+    void neutralDescriptionListsTheFingerprintFields() {
+        assertEquals("Study plan for python: beginner level, easy difficulty, 4-6 hours per week.",
+                RoadmapTemplateService.neutralDescription(template("python", "Beginner", "Easy", "4-6")));
+        assertEquals("Study plan for python: 21+ hours per week.",
+                RoadmapTemplateService.neutralDescription(template("python", " ", null, "21+")));
+        assertEquals("Study plan for this goal.",
+                RoadmapTemplateService.neutralDescription(template(null, null, null, null)));
+    }
+
+    // ── Quality ──
+
+    @Test
+    void completeRoadmapScoresOne() {
+        assertEquals(1.0, templates.scoreQuality(roadmap("React roadmap", List.of()), topics(5, true)), 1e-9);
+        assertEquals(1.0, templates.scoreQuality(roadmap("React roadmap", List.of()), topics(8, true)), 1e-9);
+    }
+
+    @Test
+    void bareRoadmapScoresOnlyItsTopicCount() {
+        // One of five topics (0.2 / 5), nothing else
+        assertEquals(0.04, templates.scoreQuality(roadmap(null, List.of()), topics(1, false)), 1e-9);
+    }
+
+    @Test
+    void partlyDetailedTopicsScoreTheirShare() {
+        List<Topic> topics = new ArrayList<>(topics(2, true));
+        topics.addAll(topics(2, false));
+
+        // 4 of 5 topics (0.16), half detailed (0.2 + 0.1 + 0.05), a title (0.1)
+        assertEquals(0.16 + 0.35 + 0.1, templates.scoreQuality(roadmap("React roadmap", List.of()), topics), 1e-9);
+    }
+
+    @Test
+    void regeneratesCostQualityUntilTheTemplateExpires() {
+        RoadmapRequest request = request("Learn React", "Beginner", "Easy", 5, "Visual");
+        String fingerprint = templates.fingerprint(request, MODEL);
+        templates.publish(fingerprint, request, MODEL, roadmap("React roadmap", List.of()), topics(5, true));
+
+        templates.recordRegenerate(fingerprint);
+        templates.recordRegenerate(fingerprint);
+
+        RoadmapTemplate penalised = templateRepository.findByFingerprint(fingerprint).orElseThrow();
+        assertEquals(0.7, penalised.getQualityScore(), 1e-9);
+        assertEquals(2, penalised.getRegenerateCount());
+        assertTrue(templates.findReusable(fingerprint).isPresent());
+
+        templates.recordRegenerate(fingerprint);
+        assertTrue(templates.findReusable(fingerprint).isEmpty(), "below min-quality after a third regenerate");
+    }
+
+    @Test
+    void penalisedTemplateGivesWayToALowerScoringGeneration() {
+        RoadmapRequest request = request("Learn React", "Beginner", "Easy", 5, "Visual");
+        String fingerprint = templates.fingerprint(request, MODEL);
+        templates.publish(fingerprint, request, MODEL, roadmap("React roadmap", List.of()), topics(5, true));
+        templates.recordRegenerate(fingerprint);
+
+        // 0.16 + 0.4 + 0.2 + 0.1 + 0.1 = 0.96, below the unpenalised 1.0 but above 0.85
+        templates.publish(fingerprint, request, MODEL, roadmap("React roadmap", List.of()), topics(4, true));
+
+        RoadmapTemplate replaced = templateRepository.findByFingerprint(fingerprint).orElseThrow();
+        assertEquals(2, replaced.getRevision());
+        assertEquals(4, replaced.getTopics().size());
+        assertEquals(0, replaced.getRegenerateCount());
+    }
+
+    @Test
+    void regenerateIsIgnoredWhileDisabled() {
+        RoadmapRequest request = request("Learn React", "Beginner", "Easy", 5, "Visual");
+        String fingerprint = templates.fingerprint(request, MODEL);
+        templates.publish(fingerprint, request, MODEL, roadmap("React roadmap", List.of()), topics(5, true));
+
+        ReflectionTestUtils.setField(templates, "enabled", false);
+        templates.recordRegenerate(fingerprint);
+
+        assertEquals(1.0, templateRepository.findByFingerprint(fingerprint).orElseThrow().getQualityScore(), 1e-9);
+    }
+
+    // ── Publish ──
+
+    @Test
+    void publishNeverSharesTheAuthorsWording() {
+        RoadmapRequest request = request("Learn React for my interview at Acme Corp", "Beginner", "Easy", 5, "Visual");
+        request.setTitle("Jane's Acme interview prep");
+        request.setDescription("Get hired at Acme Corp by March");
+        request.setTags(List.of("acme", "job-hunt"));
+        Roadmap roadmap = roadmap("Jane's Acme interview prep", List.of("acme", "job-hunt", "react"));
+        roadmap.setDescription("Get hired at Acme Corp by March");
+        String fingerprint = templates.fingerprint(request, MODEL);
+
+        templates.publish(fingerprint, request, MODEL, roadmap, topics(5, true));
+
+        RoadmapTemplate template = templateRepository.findByFingerprint(fingerprint).orElseThrow();
+        assertEquals(RoadmapTemplateService.neutralTitle(template), template.getTitle());
+        assertEquals(RoadmapTemplateService.neutralDescription(template), template.getDescription());
+        assertFalse(template.getTitle().contains("Jane"), template.getTitle());
+        assertFalse(template.getDescription().contains("March"), template.getDescription());
+        assertTrue(template.getTags().isEmpty(), "tags the author typed stay on their roadmap");
+        assertEquals(5, template.getTopics().size());
+    }
+
+    @Test
+    void generatedTagsAreSharedWhenTheAuthorTypedNone() {
+        RoadmapRequest request = request("Learn React", "Beginner", "Easy", 5, "Visual");
+        String fingerprint = templates.fingerprint(request, MODEL);
+
+        templates.publish(fingerprint, request, MODEL, roadmap("React roadmap", List.of("react", "frontend")), topics(5, true));
+
+        assertEquals(List.of("react", "frontend"), templateRepository.findByFingerprint(fingerprint).orElseThrow().getTags());
+    }
+
+    private static RoadmapRequest request(String goal, String level, String difficulty, int hoursPerWeek, String style) {
+        return RoadmapRequest.builder()
+                .goal(goal)
+                .currentLevel(level)
+                .difficulty(difficulty)
+                .estimatedHoursPerWeek(hoursPerWeek)
+                .preferredLearningStyle(style)
+                .build();
+    }
+
+    private static RoadmapTemplate template(String goalClass, String level, String difficulty, String hoursBucket) {
+        return RoadmapTemplate.builder()
+                .goalClass(goalClass)
+                .currentLevel(level)
+                .difficulty(difficulty)
+                .hoursBucket(hoursBucket)
+                .build();
+    }
+
+    private static Roadmap roadmap(String title, List<String> tags) {
+        return Roadmap.builder()
+                .title(title)
+                .tags(new ArrayList<>(tags))
+                .estimatedHours(20)
+                .estimatedWeeks(4)
+                .build();
+    }
+
+    /** {@code detailed} topics have two objectives, a description and a resource */
+    private static List<Topic> topics(int count, boolean detailed) {
+        List<Topic> topics = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Topic topic = Topic.builder().title("Topic " + i).estimatedMinutes(60).build();
+            if (detailed) {
+                topic.setDescription("What topic " + i + " covers");
+                topic.setLearningObjectives(new ArrayList<>(List.of("Explain " + i, "Apply " + i)));
+                topic.setResources(new ArrayList<>(List.of(Topic.Resource.builder()
+                        .type("article").title("Read " + i).url("https://example.com/" + i).build())));
+            }
+            topics.add(topic);
+        }
+        return topics;
+    }
+}
@@ -0,0 +1,223 @@
+package com.study.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.study.model.GamificationData;
+import com.study.model.UserInteraction;
+import com.study.observability.AIMetrics;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Journal replay and flush retries of the write-behind buffer against an in-memory Mongo.
+ * Services are built by hand; a "restart" is a second instance on the same journal dir.
+ */
+class WriteBehindServiceTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @TempDir
+    Path journalDir;
+
+    private MongoServer mongoServer;
+    private MongoClient mongoClient;
+    private FlakyMongoTemplate mongoTemplate;
+
+    /** Fails every bulk write while {@code down} is set, like an unreachable primary */
+    static class FlakyMongoTemplate extends MongoTemplate {
+        volatile boolean down;
+
+        FlakyMongoTemplate(MongoClient client) {
+            super(client, "writebehind");
+        }
+
+        @Override
+        public BulkOperations bulkOps(BulkOperations.BulkMode mode, Class<?> entityClass) {
+            if (down) {
+                throw new DataAccessResourceFailureException("Mongo is down");
+            }
+            return super.bulkOps(mode, entityClass);
+        }
+    }
+
+    @BeforeEach
+    void startMongo() {
+        mongoServer = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = mongoServer.bind();
+        mongoClient = MongoClients.create("mongodb://" + address.getHostString() + ":" + address.getPort());
+        mongoTemplate = new FlakyMongoTemplate(mongoClient);
+    }
+
+    @AfterEach
+    void stopMongo() {
+        mongoClient.close();
+        mongoServer.shutdownNow();
+    }
+
+    @Test
+    void tornLastLineIsSkippedOnReplay() throws IOException {
+        String complete = objectMapper.writeValueAsString(interactionEvent("u1", "first"))
+                + "\n" + objectMapper.writeValueAsString(xpEvent("u1", 10)) + "\n";
+        String torn = objectMapper.writeValueAsString(xpEvent("u1", 99));
+        Files.writeString(journalDir.resolve("journal-1.ndjson"),
+                complete + torn.substring(0, torn.length() / 2), StandardCharsets.UTF_8);
+
+        WriteBehindService service = newService();
+        service.recover();
+
+        assertEquals(2, service.queued());
+        assertFalse(Files.exists(journalDir.resolve("journal-1.ndjson")), "replayed segment is re-journaled and removed");
+        assertEquals(2, journaledLines(), "complete entries are carried into the new segment");
+
+        service.flush();
+        assertEquals(0, service.queued());
+        assertEquals(1, mongoTemplate.count(new Query(), UserInteraction.class));
+        assertEquals(10, xp("u1"));
+    }
+
+    @Test
+    void failedFlushIsRequeuedAndJournaled() throws IOException {
+        WriteBehindService service = newService();
+        service.recover();
+        UserInteraction saved = service.saveInteraction(interaction("u1", "why?"));
+        service.awardXP("u1", 10, "Asked a doubt", "ask_doubt");
+
+        mongoTemplate.down = true;
+        service.flush();
+
+        assertEquals(2, service.queued());
+        assertEquals(List.of(saved.getId()),
+                service.pendingInteractions("u1").stream().map(UserInteraction::getId).toList());
+        assertEquals(2, journaledLines(), "requeued writes must survive a crash before the retry");
+
+        mongoTemplate.down = false;
+        service.flush();
+
+        assertEquals(0, service.queued());
+        assertEquals(0, journaledLines());
+        assertNotNull(mongoTemplate.findById(saved.getId(), UserInteraction.class));
+        assertEquals(10, xp("u1"));
+    }
+
+    @Test
+    void unflushedWritesAreAppliedAfterARestart() throws IOException {
+        WriteBehindService crashed = newService();
+        crashed.recover();
+        UserInteraction saved = crashed.saveInteraction(interaction("u1", "why?"));
+        crashed.awardXP("u1", 10, "Asked a doubt", "ask_doubt");
+        // No flush and no drainOnShutdown: the process died
+
+        WriteBehindService restarted = newService();
+        restarted.recover();
+        assertEquals(2, restarted.queued());
+        restarted.flush();
+
+        assertNotNull(mongoTemplate.findById(saved.getId(), UserInteraction.class));
+        assertEquals(10, xp("u1"));
+    }
+
+    @Test
+    void writesPersistedBeforeACrashAreReplayedAtLeastOnce() throws IOException {
+        WriteBehindService crashed = newService();
+        crashed.recover();
+        UserInteraction saved = crashed.saveInteraction(interaction("u1", "why?"));
+        crashed.awardXP("u1", 10, "Asked a doubt", "ask_doubt");
+
+        // The flush reaches Mongo but the process dies before the segment is deleted
+        List<Path> segments = segments();
+        List<byte[]> journal = segments.stream().map(WriteBehindServiceTest::read).toList();
+        crashed.flush();
+        for (int i = 0; i < segments.size(); i++) {
+            Files.write(segments.get(i), journal.get(i));
+        }
+
+        WriteBehindService restarted = newService();
+        restarted.recover();
+        restarted.flush();
+
+        // The interaction keeps its id, so the replayed insert is a no-op
+        assertEquals(1, mongoTemplate.count(Query.query(Criteria.where("_id").is(saved.getId())), UserInteraction.class));
+        // XP has no idempotency key and is applied again
+        assertEquals(20, xp("u1"));
+        assertEquals(0, restarted.queued());
+    }
+
+    private WriteBehindService newService() {
+        return new WriteBehindService(mongoTemplate,
+                new RAGService(null, objectMapper, null),
+                objectMapper,
+                new AIMetrics(new SimpleMeterRegistry()),
+                true, 100, 500, 100, journalDir.toString(), false);
+    }
+
+    private static UserInteraction interaction(String userId, String content) {
+        return UserInteraction.builder()
+                .userId(userId)
+                .type(UserInteraction.InteractionType.DOUBT)
+                .content(content)
+                .build();
+    }
+
+    private static WriteBehindService.Event interactionEvent(String userId, String content) {
+        UserInteraction interaction = interaction(userId, content);
+        interaction.setId(new org.bson.types.ObjectId().toHexString());
+        interaction.setCreatedAt(LocalDateTime.now());
+        return new WriteBehindService.Event(interaction, null);
+    }
+
+    private static WriteBehindService.Event xpEvent(String userId, int amount) {
+        return new WriteBehindService.Event(null,
+                new WriteBehindService.XPAward(userId, amount, "Asked a doubt", "ask_doubt", LocalDateTime.now()));
+    }
+
+    private int xp(String userId) {
+        GamificationData data = mongoTemplate.findOne(Query.query(Criteria.where("userId").is(userId)),
+                GamificationData.class);
+        return data != null ? data.getXp() : 0;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private long journaledLines() throws IOException {
+        long lines = 0;
+        for (Path segment : segments()) {
+            lines += Files.readAllLines(segment).stream().filter(line -> !line.isBlank()).count();
+        }
+        return lines;
+    }
+
+    private static byte[] read(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
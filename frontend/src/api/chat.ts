@@ -1,4 +1,5 @@
 import client from './client';
+import { readResumableStream } from './sse';
 import type { ApiResponse, ChatSession, ChatMessage, ChatMessageRequest } from '../types';
 
 export const chatApi = {
@@ -13,6 +14,10 @@ export const chatApi = {
 
   updateSession: (sessionId: string, title: string) =>
     client.patch<ApiResponse<ChatSession>>(`/chat/sessions/${sessionId}`, { title }),
+
+  // Stops the running answer; the stream still ends with a "done" event (truncated: true)
+  cancelGeneration: (sessionId: string) =>
+    client.post<ApiResponse<{ cancelled: boolean }>>(`/chat/sessions/${sessionId}/cancel`),
 };
 
 // ── SSE streaming helper ──
@@ -21,7 +26,7 @@ export interface StreamCallbacks {
   onSession: (data: { sessionId: string; isNew: boolean }) => void;
   onContent: (content: string) => void;
   onThinking: (content: string) => void;
-  onDone: (data: { sessionId: string; model: string }) => void;
+  onDone: (data: { sessionId: string; model: string; truncated?: boolean }) => void;
   onError: (message: string) => void;
 }
 
@@ -47,57 +52,32 @@ export async function streamChatMessage(
     return;
   }
 
-  const reader = response.body!.getReader();
-  const decoder = new TextDecoder();
-  let buffer = '';
-
-  while (true) {
-    const { done, value } = await reader.read();
-    if (done) break;
-
-    buffer += decoder.decode(value, { stream: true });
-
-    // SSE events are separated by double newlines
-    const parts = buffer.split('\n\n');
-    buffer = parts.pop() || ''; // keep incomplete event in buffer
-
-    for (const part of parts) {
-      const lines = part.split('\n');
-      let eventType = '';
-      let data = '';
-
-      for (const line of lines) {
-        if (line.startsWith('event:')) {
-          eventType = line.slice(6).trim();
-        } else if (line.startsWith('data:')) {
-          data = line.slice(5).trim();
+  await readResumableStream(
+    response,
+    ({ event, data }) => {
+      try {
+        const parsed = JSON.parse(data);
+        switch (event) {
+          case 'session':
+            callbacks.onSession(parsed);
+            break;
+          case 'content':
+            callbacks.onContent(parsed.content);
+            break;
+          case 'thinking':
+            callbacks.onThinking(parsed.content);
+            break;
+          case 'done':
+            callbacks.onDone(parsed);
+            break;
+          case 'error':
+            callbacks.onError(parsed.message);
+            break;
         }
+      } catch {
+        // skip malformed JSON
       }
-
-      if (eventType && data) {
-        try {
-          const parsed = JSON.parse(data);
-          switch (eventType) {
-            case 'session':
-              callbacks.onSession(parsed);
-              break;
-            case 'content':
-              callbacks.onContent(parsed.content);
-              break;
-            case 'thinking':
-              callbacks.onThinking(parsed.content);
-              break;
-            case 'done':
-              callbacks.onDone(parsed);
-              break;
-            case 'error':
-              callbacks.onError(parsed.message);
-              break;
-          }
-        } catch {
-          // skip malformed JSON
-        }
-      }
-    }
-  }
+    },
+    signal,
+  );
 }
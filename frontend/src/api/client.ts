@@ -29,4 +29,10 @@ client.interceptors.response.use(
   }
 );
 
+/**
+ * Idempotency-Key header for a generation POST. Each call gets a fresh key by default;
+ * pass the same key again to retry an action without generating twice.
+ */
+export const idempotencyHeaders = (key: string = crypto.randomUUID()) => ({ 'Idempotency-Key': key });
+
 export default client;
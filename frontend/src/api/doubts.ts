@@ -1,13 +1,16 @@
-import client from './client';
-import type { ApiResponse, DoubtRequest, DoubtResponse, DoubtHistory, LearningInsights } from '../types';
+import client, { idempotencyHeaders } from './client';
+import type { ApiResponse, DoubtRequest, DoubtResponse, DoubtHistory, DoubtDetail, LearningInsights } from '../types';
 
 export const doubtApi = {
-  ask: (data: DoubtRequest) =>
-    client.post<ApiResponse<DoubtResponse>>('/doubts', data),
+  ask: (data: DoubtRequest, idempotencyKey?: string) =>
+    client.post<ApiResponse<DoubtResponse>>('/doubts', data, { headers: idempotencyHeaders(idempotencyKey) }),
 
   getHistory: (limit: number = 20) =>
     client.get<ApiResponse<DoubtHistory[]>>(`/doubts/history?limit=${limit}`),
 
+  getDoubt: (doubtId: string) =>
+    client.get<ApiResponse<DoubtDetail>>(`/doubts/${doubtId}`),
+
   getInsights: () =>
     client.get<ApiResponse<LearningInsights>>('/doubts/insights'),
 };
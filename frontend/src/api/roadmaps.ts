@@ -1,16 +1,18 @@
-import client from './client';
+import client, { idempotencyHeaders } from './client';
+import { readResumableStream } from './sse';
 import type { ApiResponse, RoadmapRequest, RoadmapResponse, ContentResponse } from '../types';
 
 export const roadmapApi = {
-  create: (data: RoadmapRequest) =>
-    client.post<ApiResponse<RoadmapResponse>>('/roadmaps', data),
+  create: (data: RoadmapRequest, idempotencyKey?: string) =>
+    client.post<ApiResponse<RoadmapResponse>>('/roadmaps', data, { headers: idempotencyHeaders(idempotencyKey) }),
 
   createStreaming: async (
     data: RoadmapRequest,
     onThinking: (content: string) => void,
     onTopic: (topic: any) => void,
     onComplete: (data: { roadmapId: string; totalTopics: number }) => void,
-    onError: (error: Error) => void
+    onError: (error: Error) => void,
+    idempotencyKey?: string
   ) => {
     try {
       const token = localStorage.getItem('token');
@@ -19,6 +21,7 @@ export const roadmapApi = {
         headers: {
           'Content-Type': 'application/json',
           ...(token ? { Authorization: `Bearer ${token}` } : {}),
+          ...idempotencyHeaders(idempotencyKey),
         },
         body: JSON.stringify(data),
       });
@@ -27,40 +30,22 @@ export const roadmapApi = {
         throw new Error(`HTTP error! status: ${response.status}`);
       }
 
-      const reader = response.body?.getReader();
-      const decoder = new TextDecoder();
-      let buffer = '';
-
-      if (reader) {
-        while (true) {
-          const { done, value } = await reader.read();
-          if (done) break;
-          
-          buffer += decoder.decode(value, { stream: true });
-          
-          let eventMatch;
-          while ((eventMatch = buffer.match(/^event: (.+)\ndata: (.+)\n\n/m))) {
-            const fullMatch = eventMatch[0];
-            const event = eventMatch[1];
-            const eventData = eventMatch[2];
-            
-            try {
-              const parsedData = JSON.parse(eventData);
-              if (event === 'thinking') {
-                onThinking(parsedData.content);
-              } else if (event === 'topic') {
-                onTopic(parsedData);
-              } else if (event === 'complete') {
-                onComplete(parsedData);
-              }
-            } catch (e) {
-              console.error('Error parsing SSE data', e);
-            }
-            
-            buffer = buffer.slice(eventMatch.index! + fullMatch.length);
+      await readResumableStream(response, ({ event, data: eventData }) => {
+        try {
+          const parsedData = JSON.parse(eventData);
+          if (event === 'thinking') {
+            onThinking(parsedData.content);
+          } else if (event === 'topic') {
+            onTopic(parsedData);
+          } else if (event === 'complete') {
+            onComplete(parsedData);
+          } else if (event === 'error') {
+            onError(new Error(parsedData.message || 'Failed to generate roadmap'));
           }
+        } catch (e) {
+          console.error('Error parsing SSE data', e);
         }
-      }
+      });
     } catch (err: any) {
       onError(err);
     }
@@ -75,9 +60,50 @@ export const roadmapApi = {
   start: (id: string) =>
     client.post<ApiResponse<RoadmapResponse>>(`/roadmaps/${id}/start`),
 
+  pause: (id: string) =>
+    client.post<ApiResponse<RoadmapResponse>>(`/roadmaps/${id}/pause`),
+
   delete: (id: string) =>
     client.delete<ApiResponse<void>>(`/roadmaps/${id}`),
 
-  generateContent: (topicId: string, contentType: string = 'THEORY') =>
-    client.post<ApiResponse<ContentResponse>>(`/roadmaps/topics/${topicId}/generate-content?contentType=${contentType}`),
+  generateContent: (topicId: string, contentType: string = 'THEORY', idempotencyKey?: string) =>
+    client.post<ApiResponse<ContentResponse>>(`/roadmaps/topics/${topicId}/generate-content?contentType=${contentType}`,
+      undefined, { headers: idempotencyHeaders(idempotencyKey) }),
+
+  /** Generate content for every topic that has none yet, reporting each topic as it lands. */
+  generateAllContentStreaming: async (
+    roadmapId: string,
+    onTopic: (topic: { topicId: string; contentId?: string; title: string; message?: string }, failed: boolean) => void,
+    onComplete: (data: { generated: number; failed: number; xpAwarded: number }) => void,
+    onError: (error: Error) => void
+  ) => {
+    try {
+      const token = localStorage.getItem('token');
+      const response = await fetch(`/api/roadmaps/${roadmapId}/generate-content/stream`, {
+        method: 'POST',
+        headers: token ? { Authorization: `Bearer ${token}` } : {},
+      });
+
+      if (!response.ok) {
+        throw new Error(`HTTP error! status: ${response.status}`);
+      }
+
+      await readResumableStream(response, ({ event, data: eventData }) => {
+        try {
+          const parsedData = JSON.parse(eventData);
+          if (event === 'topic' || event === 'topic-error') {
+            onTopic(parsedData, event === 'topic-error');
+          } else if (event === 'complete') {
+            onComplete(parsedData);
+          } else if (event === 'error') {
+            onError(new Error(parsedData.message));
+          }
+        } catch (e) {
+          console.error('Error parsing SSE data', e);
+        }
+      });
+    } catch (err: any) {
+      onError(err);
+    }
+  },
 };
@@ -0,0 +1,96 @@
+// ── SSE reading with resume ──
+//
+// Chat and roadmap streams keep generating on the server when the connection
+// drops. The response carries X-Stream-Id and every event an id, so a dropped
+// read is resumed from GET /api/streams/{id} with Last-Event-ID instead of
+// starting a new generation.
+
+export interface SseEvent {
+  id?: string;
+  event: string;
+  data: string;
+}
+
+const MAX_RESUMES = 5;
+
+/**
+ * Read an SSE response to the end, calling onEvent for every complete event.
+ */
+export async function readEventStream(
+  response: Response,
+  onEvent: (event: SseEvent) => void,
+): Promise<void> {
+  const reader = response.body!.getReader();
+  const decoder = new TextDecoder();
+  let buffer = '';
+
+  while (true) {
+    const { done, value } = await reader.read();
+    if (done) break;
+
+    buffer += decoder.decode(value, { stream: true });
+
+    // SSE events are separated by double newlines
+    const parts = buffer.split('\n\n');
+    buffer = parts.pop() || ''; // keep incomplete event in buffer
+
+    for (const part of parts) {
+      let id: string | undefined;
+      let event = 'message';
+      let data = '';
+
+      for (const line of part.split('\n')) {
+        if (line.startsWith('id:')) {
+          id = line.slice(3).trim();
+        } else if (line.startsWith('event:')) {
+          event = line.slice(6).trim();
+        } else if (line.startsWith('data:')) {
+          data = line.slice(5).trim();
+        }
+      }
+
+      if (data) {
+        onEvent({ id, event, data });
+      }
+    }
+  }
+}
+
+/**
+ * Read a resumable stream to the end. If the connection fails mid-stream,
+ * reconnect (with backoff) and continue after the last event seen.
+ */
+export async function readResumableStream(
+  response: Response,
+  onEvent: (event: SseEvent) => void,
+  signal?: AbortSignal,
+): Promise<void> {
+  const streamId = response.headers.get('X-Stream-Id');
+  let lastEventId = '';
+
+  for (let attempt = 0; ; attempt++) {
+    try {
+      if (attempt > 0) {
+        await new Promise((resolve) => setTimeout(resolve, 500 * 2 ** (attempt - 1)));
+        const token = localStorage.getItem('token');
+        response = await fetch(`/api/streams/${streamId}`, {
+          headers: {
+            ...(token ? { Authorization: `Bearer ${token}` } : {}),
+            ...(lastEventId ? { 'Last-Event-ID': lastEventId } : {}),
+          },
+          signal,
+        });
+        if (!response.ok) {
+          throw new Error(`Resume failed: ${response.status}`);
+        }
+      }
+      await readEventStream(response, (event) => {
+        if (event.id) lastEventId = event.id;
+        onEvent(event);
+      });
+      return;
+    } catch (err) {
+      if (signal?.aborted || !streamId || attempt >= MAX_RESUMES) throw err;
+    }
+  }
+}
@@ -138,6 +138,22 @@ export default function Doubts() {
     }
   };
 
+  const openHistoryItem = async (item: DoubtHistory) => {
+    let answer = item.answerPreview;
+    try {
+      const res = await doubtApi.getDoubt(item.id);
+      if (res.data.success) answer = res.data.data.aiResponse;
+    } catch {
+      // fall back to the preview
+    }
+    setMessages((prev) => [
+      ...prev,
+      { role: 'user', content: item.question, timestamp: new Date(item.createdAt) },
+      { role: 'assistant', content: answer, timestamp: new Date(item.respondedAt || item.createdAt), resolved: item.resolved },
+    ]);
+    setShowHistory(false);
+  };
+
   const handleKeyDown = (e: React.KeyboardEvent) => {
     if (e.key === 'Enter' && !e.shiftKey) {
       e.preventDefault();
@@ -370,16 +386,9 @@ export default function Doubts() {
                   <div
                     key={item.id}
                     className="px-5 py-4 hover:bg-bg-hover transition-colors cursor-pointer"
-                    onClick={() => {
-                      setMessages((prev) => [
-                        ...prev,
-                        { role: 'user', content: item.content, timestamp: new Date(item.createdAt) },
-                        { role: 'assistant', content: item.aiResponse, timestamp: new Date(item.respondedAt || item.createdAt), resolved: item.resolved },
-                      ]);
-                      setShowHistory(false);
-                    }}
+                    onClick={() => openHistoryItem(item)}
                   >
-                    <p className="text-xs text-text-primary truncate">{item.content}</p>
+                    <p className="text-xs text-text-primary truncate">{item.question}</p>
                     <div className="flex items-center gap-2 mt-1.5 text-[12px] text-text-muted">
                       <span>{new Date(item.createdAt).toLocaleDateString()}</span>
                       {item.resolved ? (
@@ -736,6 +736,7 @@ export default function NexusChat() {
               content: finalContent,
               thinking: finalThinking || null,
               model: data.model,
+              truncated: data.truncated,
               createdAt: new Date().toISOString(),
             };
             setMessages((prev) => [...prev, assistantMsg]);
@@ -809,7 +810,12 @@ export default function NexusChat() {
   };
 
   const handleStop = () => {
-    abortRef.current?.abort();
+    // Ask the server to stop so the partial answer is saved; abort locally if that fails
+    if (activeSessionId) {
+      chatApi.cancelGeneration(activeSessionId).catch(() => abortRef.current?.abort());
+    } else {
+      abortRef.current?.abort();
+    }
   };
 
   // ── Input handlers ──
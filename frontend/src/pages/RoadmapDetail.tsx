@@ -10,6 +10,7 @@ import {
   ChevronLeft,
   Loader2,
   Play,
+  Pause,
   Lock,
   CheckCircle2,
   Clock,
@@ -42,6 +43,7 @@ export default function RoadmapDetail() {
   const [generatingContent, setGeneratingContent] = useState<string | null>(null);
   const [selectedTopic, setSelectedTopic] = useState<string | null>(null);
   const [contentError, setContentError] = useState<string | null>(null);
+  const [batchProgress, setBatchProgress] = useState<{ done: number; failed: number } | null>(null);
 
   useEffect(() => {
     if (id) loadRoadmap();
@@ -68,6 +70,15 @@ export default function RoadmapDetail() {
     }
   };
 
+  const handlePause = async () => {
+    try {
+      const res = await roadmapApi.pause(id!);
+      if (res.data.success) setRoadmap(res.data.data);
+    } catch {
+      // silently handle
+    }
+  };
+
   const handleGenerateContent = async (topicId: string, status: string) => {
     if (status === 'LOCKED') {
       setContentError('This topic is locked. Complete previous topics first or start the roadmap.');
@@ -96,6 +107,23 @@ export default function RoadmapDetail() {
     }
   };
 
+  const handleGenerateAll = async () => {
+    setBatchProgress({ done: 0, failed: 0 });
+    await roadmapApi.generateAllContentStreaming(
+      id!,
+      (_topic, failed) =>
+        setBatchProgress((p) => p && (failed ? { ...p, failed: p.failed + 1 } : { ...p, done: p.done + 1 })),
+      () => {
+        setBatchProgress(null);
+        refreshGamification();
+      },
+      (err) => {
+        setBatchProgress(null);
+        setContentError(err.message || 'Failed to generate content.');
+      }
+    );
+  };
+
   if (loading) {
     return (
       <div className="h-full flex items-center justify-center">
@@ -175,6 +203,26 @@ export default function RoadmapDetail() {
               </button>
             )}
 
+            {roadmap.status === 'ACTIVE' && (
+              <button
+                onClick={handlePause}
+                className="mt-3.5 flex items-center gap-2.5 px-3.5 py-2 text-sm bg-bg-active border border-border-secondary rounded text-text-secondary hover:text-text-primary transition-colors cursor-pointer"
+              >
+                <Pause size={15} />
+                pause roadmap
+              </button>
+            )}
+
+            {roadmap.status === 'PAUSED' && (
+              <button
+                onClick={handleStart}
+                className="mt-3.5 flex items-center gap-2.5 px-3.5 py-2 text-sm bg-accent-dim-green border border-accent-green/30 rounded text-accent-green hover:bg-accent-green/20 transition-colors cursor-pointer"
+              >
+                <Play size={15} />
+                resume roadmap
+              </button>
+            )}
+
             {roadmap.tags?.length > 0 && (
               <div className="flex flex-wrap gap-2 mt-3.5">
                 {roadmap.tags.map((tag) => (
@@ -191,6 +239,25 @@ export default function RoadmapDetail() {
             <div className="px-6 py-3.5 border-b border-border-primary flex items-center gap-2.5">
               <BookOpen size={17} className="text-accent-cyan" />
               <span className="text-base font-medium">topics</span>
+              {roadmap.topics && roadmap.topics.length > 0 && (
+                <button
+                  onClick={handleGenerateAll}
+                  disabled={batchProgress !== null}
+                  className="ml-3.5 flex items-center gap-1.5 text-[15px] text-text-muted hover:text-accent-purple transition-colors cursor-pointer disabled:cursor-default"
+                >
+                  {batchProgress ? (
+                    <>
+                      <Loader2 size={13} className="spinner" />
+                      generating {batchProgress.done}{batchProgress.failed > 0 && ` (${batchProgress.failed} failed)`}...
+                    </>
+                  ) : (
+                    <>
+                      <Sparkles size={13} />
+                      generate all
+                    </>
+                  )}
+                </button>
+              )}
               <span className="text-[15px] text-text-muted ml-auto">
                 {roadmap.completedTopics || 0}/{roadmap.totalTopics || 0} completed
               </span>
@@ -514,6 +514,16 @@ export default function Roadmaps() {
                 )}
               </div>
 
+              <label className="flex items-center gap-2.5 text-sm text-text-secondary cursor-pointer">
+                <input
+                  type="checkbox"
+                  checked={!!form.regenerate}
+                  onChange={(e) => setForm((p) => ({ ...p, regenerate: e.target.checked }))}
+                  className="accent-accent-green"
+                />
+                <span>regenerate fresh (skip matching templates)</span>
+              </label>
+
               <button
                 type="submit"
                 disabled={creating}
@@ -3,6 +3,7 @@ export interface AIModel {
   id: string;
   name: string;
   provider: string;
+  backend: string;
   description: string;
   maxTokens: number;
   supportsStreaming: boolean;
@@ -30,6 +31,8 @@ export interface ChatMessage {
   content: string;
   thinking?: string | null;
   model?: string | null;
+  /** Generation was stopped before the model finished */
+  truncated?: boolean;
   createdAt: string;
 }
 
@@ -103,6 +106,10 @@ export interface RoadmapRequest {
   preferredLearningStyle: string;
   generateWithAI: boolean;
   model?: string;
+  /** Outline first, then expand topics in parallel; omitted uses the server default */
+  outlineFirst?: boolean;
+  /** Generate a fresh roadmap even if a matching template exists */
+  regenerate?: boolean;
 }
 
 export interface TopicSummary {
@@ -252,6 +259,18 @@ export interface DoubtResponse {
 }
 
 export interface DoubtHistory {
+  id: string;
+  roadmapId: string | null;
+  topicId: string | null;
+  question: string;
+  answerPreview: string;
+  resolved: boolean;
+  confidence: number;
+  createdAt: string;
+  respondedAt: string;
+}
+
+export interface DoubtDetail {
   id: string;
   userId: string;
   roadmapId: string | null;